@@ -309,6 +309,27 @@ public class NodusC {
   /** Name of the moving duration field in the database tables. */
   public static final String DBF_MVDURATION = "mvduration";
 
+  /** Name of the relative gap field in the convergence tables. */
+  public static final String DBF_RELATIVE_GAP = "relgap";
+
+  /** Name of the average excess cost field in the convergence tables. */
+  public static final String DBF_AVERAGE_EXCESS_COST = "aec";
+
+  /** Name of the total cost field in the convergence tables. */
+  public static final String DBF_TOTAL_COST = "totalcost";
+
+  /** Name of the step (lambda) field in the convergence tables. */
+  public static final String DBF_LAMBDA = "lambda";
+
+  /** Name of the field that contains the duration of the costs computations. */
+  public static final String DBF_COSTS_TIME = "coststime";
+
+  /** Name of the field that contains the duration of the all-or-nothing assignments. */
+  public static final String DBF_AON_TIME = "aontime";
+
+  /** Name of the field that contains the duration of the volumes update (line search). */
+  public static final String DBF_UPDATE_TIME = "updtime";
+
   /*
    * *********************************************************************************************
    * Mandatory fields for Node and Link layers
@@ -489,6 +510,9 @@ public class NodusC {
   /** Extension used for lock files. */
   public static final String TYPE_LOCK = ".lck";
 
+  /** Extension used for the snapshots of the generated virtual networks. */
+  public static final String TYPE_VNET_SNAPSHOT = ".vnet";
+
   /** Extension used for Nodus local properties files. */
   public static final String TYPE_LOCAL = ".local";
 
@@ -513,6 +537,9 @@ public class NodusC {
   /** Default table name extension used for paths. */
   public static final String SUFFIX_PATH = "_path";
 
+  /** Default table name extension used for the convergence of the equilibrium assignments. */
+  public static final String SUFFIX_CONVERGENCE = "_conv";
+
   /** Default table name extension used for services. */
   public static final String SUFFIX_SERVICES = "_services";
 
@@ -1062,6 +1089,34 @@ public class NodusC {
    */
   public static final String PROP_ASSIGNMENT_PRECISION = "assignmentprecision";
 
+  /**
+   * Properties strings used in project and/or project local properties.
+   *
+   * @hidden
+   */
+  public static final String PROP_ASSIGNMENT_RELATIVE_GAP = "assignmentrelativegap";
+
+  /**
+   * Properties strings used in project and/or project local properties.
+   *
+   * @hidden
+   */
+  public static final String PROP_ASSIGNMENT_WARM_START = "assignmentwarmstart";
+
+  /**
+   * Properties strings used in project and/or project local properties.
+   *
+   * @hidden
+   */
+  public static final String PROP_ASSIGNMENT_WARM_START_SCENARIO = "assignmentwarmstartscenario";
+
+  /**
+   * Properties strings used in project and/or project local properties.
+   *
+   * @hidden
+   */
+  public static final String PROP_VNET_SNAPSHOT = "vnetsnapshot";
+
   /**
    * Properties strings used in project and/or project local properties.
    *
@@ -2586,12 +2586,21 @@ public class NodusProject implements ShapeConstants {
       JDBCUtils.dropTable(tableName + scenario + NodusC.SUFFIX_DETAIL);
     }
 
+    // Convergence of the equilibrium assignments
+    tableName = getLocalProperty(NodusC.PROP_PROJECT_DOTNAME) + NodusC.SUFFIX_CONVERGENCE;
+    if (JDBCUtils.tableExists(tableName + scenario)) {
+      JDBCUtils.dropTable(tableName + scenario);
+    }
+
     removeLocalProperty(NodusC.PROP_COST_FUNCTIONS + scenario);
     removeLocalProperty(NodusC.PROP_OD_TABLE + scenario);
     removeLocalProperty(NodusC.PROP_ASSIGNMENT_TAB + scenario);
     removeLocalProperty(NodusC.PROP_ASSIGNMENT_METHOD + scenario);
     removeLocalProperty(NodusC.PROP_ASSIGNMENT_NB_ITERATIONS + scenario);
     removeLocalProperty(NodusC.PROP_ASSIGNMENT_PRECISION + scenario);
+    removeLocalProperty(NodusC.PROP_ASSIGNMENT_RELATIVE_GAP + scenario);
+    removeLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START + scenario);
+    removeLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO + scenario);
     removeLocalProperty(NodusC.PROP_COST_MARKUP + scenario);
     removeLocalProperty(NodusC.PROP_MAX_DETOUR + scenario);
     removeLocalProperty(NodusC.PROP_THREADS + scenario);
@@ -2610,15 +2619,17 @@ public class NodusProject implements ShapeConstants {
   }
 
   /**
-   * Renames a property in the project's properties.
+   * Renames a property in the project's properties. Nothing is done if the property doesn't exist.
    *
    * @param oldKey The key string to rename.
    * @param newKey The new name of the key.
    */
   public void renameLocalProperty(String oldKey, String newKey) {
     String v = localProperties.getProperty(oldKey);
-    localProperties.setProperty(newKey, v);
-    removeLocalProperty(oldKey);
+    if (v != null) {
+      localProperties.setProperty(newKey, v);
+      removeLocalProperty(oldKey);
+    }
   }
 
   /**
@@ -2655,6 +2666,15 @@ public class NodusProject implements ShapeConstants {
             tableName + oldNum + NodusC.SUFFIX_DETAIL, tableName + newNum + NodusC.SUFFIX_DETAIL);
       }
     }
+
+    // Convergence of the equilibrium assignments
+    tableName = getLocalProperty(NodusC.PROP_PROJECT_DOTNAME) + NodusC.SUFFIX_CONVERGENCE;
+    if (JDBCUtils.tableExists(tableName + oldNum)) {
+      if (!JDBCUtils.tableExists(tableName + newNum)) {
+        JDBCUtils.renameTable(tableName + oldNum, tableName + newNum);
+      }
+    }
+
     renameLocalProperty(NodusC.PROP_COST_FUNCTIONS + oldNum, NodusC.PROP_COST_FUNCTIONS + newNum);
     renameLocalProperty(NodusC.PROP_OD_TABLE + oldNum, NodusC.PROP_OD_TABLE + newNum);
     renameLocalProperty(NodusC.PROP_ASSIGNMENT_TAB + oldNum, NodusC.PROP_ASSIGNMENT_TAB + newNum);
@@ -2665,6 +2685,14 @@ public class NodusProject implements ShapeConstants {
         NodusC.PROP_ASSIGNMENT_NB_ITERATIONS + newNum);
     renameLocalProperty(
         NodusC.PROP_ASSIGNMENT_PRECISION + oldNum, NodusC.PROP_ASSIGNMENT_PRECISION + newNum);
+    renameLocalProperty(
+        NodusC.PROP_ASSIGNMENT_RELATIVE_GAP + oldNum,
+        NodusC.PROP_ASSIGNMENT_RELATIVE_GAP + newNum);
+    renameLocalProperty(
+        NodusC.PROP_ASSIGNMENT_WARM_START + oldNum, NodusC.PROP_ASSIGNMENT_WARM_START + newNum);
+    renameLocalProperty(
+        NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO + oldNum,
+        NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO + newNum);
     renameLocalProperty(NodusC.PROP_COST_MARKUP + oldNum, NodusC.PROP_COST_MARKUP + newNum);
     renameLocalProperty(NodusC.PROP_MAX_DETOUR + oldNum, NodusC.PROP_MAX_DETOUR + newNum);
     renameLocalProperty(NodusC.PROP_THREADS + oldNum, NodusC.PROP_THREADS + newNum);
@@ -24,7 +24,6 @@ package edu.uclouvain.core.nodus.compute.assign;
 import edu.uclouvain.core.nodus.NodusMapPanel;
 import edu.uclouvain.core.nodus.compute.assign.workers.AllOrNothingAssignmentWorker;
 import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
 import edu.uclouvain.core.nodus.compute.od.ODReader;
 import edu.uclouvain.core.nodus.compute.rules.NodeRulesReader;
@@ -146,10 +145,7 @@ public class AllOrNothingAssignment extends Assignment {
       }
 
       // Add the jobs to the queue
-      for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-        AssignmentWorkerParameters awp = new AssignmentWorkerParameters(this, groupIndex, odClass);
-        queue.addWork(awp);
-      }
+      addAssignmentJobs(queue, odClass, 0, 0.0);
 
       // Add special end-of-stream markers to terminate the workers
       for (int i = 0; i < assignmentWorkers.length; i++) {
@@ -26,14 +26,19 @@ import com.bbn.openmap.util.I18n;
 import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.NodusMapPanel;
 import edu.uclouvain.core.nodus.NodusProject;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.ShortestPathTreeCache;
 import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
+import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
 import edu.uclouvain.core.nodus.compute.virtual.PathWriter;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualNetwork;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNetworkReader;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNodeList;
 import edu.uclouvain.core.nodus.tools.console.NodusConsole;
 import edu.uclouvain.core.nodus.utils.GarbageCollectionRunner;
 import edu.uclouvain.core.nodus.utils.ScriptRunner;
 import edu.uclouvain.core.nodus.utils.SoundPlayer;
+import edu.uclouvain.core.nodus.utils.WorkQueue;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -43,8 +48,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.LinkedList;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Function;
 import javax.swing.JOptionPane;
 
 /**
@@ -60,6 +68,15 @@ public abstract class Assignment implements Runnable {
   /** The All-Or-Nothing time dependent assignment type. */
   public static final int AON_TIME_DEPENDENT = 7;
 
+  /** The Bi-conjugate Frank-Wolfe equilibrium assignment type. */
+  public static final int BICONJUGATE_FRANK_WOLFE = 10;
+
+  /** The origin-based (bush-based) equilibrium assignment type. */
+  public static final int BUSH_BASED = 11;
+
+  /** The Conjugate Frank-Wolfe equilibrium assignment type. */
+  public static final int CONJUGATE_FRANK_WOLFE = 9;
+
   /** The Dynamic time dependent assignment type. */
   public static final int DYNAMIC_TIME_DEPENDENT = 8;
 
@@ -84,6 +101,9 @@ public abstract class Assignment implements Runnable {
   /** I18N mechanism. */
   static I18n i18n = Environment.getI18n();
 
+  /** Number of chunks of origins created per thread when the groups are split. */
+  private static final int ORIGIN_CHUNKS_PER_THREAD = 4;
+
   /** Contains the choices made into the assignment dialog box. */
   AssignmentParameters assignmentParameters;
 
@@ -101,6 +121,18 @@ public abstract class Assignment implements Runnable {
 
   AssignmentWorker[] assignmentWorkers = null;
 
+  /** Measures the convergence of the equilibrium assignments, or null. */
+  protected ConvergenceMonitor convergenceMonitor = null;
+
+  /** Keeps the shortest path trees between the iterations, or null. */
+  protected ShortestPathTreeCache shortestPathTreeCache = null;
+
+  /** Jobs that assign a chunk of origins, which volumes must be merged once completed. */
+  private LinkedList<AssignmentWorkerParameters> originChunks = new LinkedList<>();
+
+  /** Queue of the persistent assignment workers, or null if the workers stop after each round. */
+  private WorkQueue workerQueue = null;
+
   /** Periodic garbage collector runner used during long assignments. */
   private GarbageCollectionRunner garbageCollectionRunner = null;
 
@@ -128,6 +160,34 @@ public abstract class Assignment implements Runnable {
    */
   public abstract boolean assign() throws OutOfMemoryError;
 
+  /**
+   * Tests if the assignment can stop. When a relative gap target is given, it replaces the stop
+   * rule as soon as the relative gap can be measured.
+   *
+   * @param iteration Current iteration.
+   * @return True if the iterations can stop.
+   */
+  protected boolean isConverged(int iteration) {
+    double targetGap = assignmentParameters.getRelativeGap();
+    double relativeGap = convergenceMonitor.getRelativeGap();
+    if (targetGap > 0 && !Double.isNaN(relativeGap)) {
+      return relativeGap <= targetGap;
+    }
+    return stopRule(iteration, assignmentParameters.getPrecision());
+  }
+
+  /**
+   * Returns true if the volumes computed by an iterative assignment are stable enough to stop. Must
+   * be overridden by the iterative assignment methods.
+   *
+   * @param iteration int
+   * @param precision double
+   * @return boolean
+   */
+  public boolean stopRule(int iteration, double precision) {
+    return false;
+  }
+
   void displayConsoleIfNeeded() {
     if (isFirstLostPath) {
       isFirstLostPath = false;
@@ -144,6 +204,15 @@ public abstract class Assignment implements Runnable {
     return assignmentParameters;
   }
 
+  /**
+   * Returns the monitor that measures the convergence of an equilibrium assignment.
+   *
+   * @return The ConvergenceMonitor, or null if the assignment doesn't measure its convergence.
+   */
+  public ConvergenceMonitor getConvergenceMonitor() {
+    return convergenceMonitor;
+  }
+
   /**
    * Returns the Nodus project.
    *
@@ -162,6 +231,16 @@ public abstract class Assignment implements Runnable {
     return pathWriter;
   }
 
+  /**
+   * Returns the cache in which the shortest path trees of the origins are kept between the
+   * iterations of an equilibrium assignment.
+   *
+   * @return The ShortestPathTreeCache, or null if the trees are not kept.
+   */
+  public ShortestPathTreeCache getShortestPathTreeCache() {
+    return shortestPathTreeCache;
+  }
+
   /**
    * Returns the Virtual Network.
    *
@@ -180,6 +259,121 @@ public abstract class Assignment implements Runnable {
     return assignmentWorkers;
   }
 
+  /**
+   * Adds the jobs that assign all the groups to a work queue. When there are fewer groups than
+   * threads, the origins of each group are split in several chunks that can be assigned in
+   * parallel. The volumes of each chunk are then accumulated by its worker and merged into the
+   * virtual links by {@link #waitForAssignmentWorkers()}, in the order of the chunks. The groups
+   * are not split when the detailed paths are saved, as the links of a path must be written in
+   * sequence.
+   *
+   * @param queue The work queue.
+   * @param odClass The OD class to assign.
+   * @param iteration The iteration of the assignment.
+   * @param loadFactor The load factor (incremental assignments only).
+   */
+  protected void addAssignmentJobs(
+      WorkQueue queue, byte odClass, int iteration, double loadFactor) {
+    int nbGroups = virtualNet.getGroups().length;
+    int threads = assignmentParameters.getThreads();
+    int chunksPerGroup = 1;
+    if (nbGroups < threads && !pathWriter.isSavePaths()) {
+      chunksPerGroup = (ORIGIN_CHUNKS_PER_THREAD * threads + nbGroups - 1) / nbGroups;
+    }
+
+    VirtualNodeList[] vnl = virtualNet.getVirtualNodeLists();
+    for (byte groupIndex = 0; groupIndex < (byte) nbGroups; groupIndex++) {
+      if (chunksPerGroup == 1) {
+        queue.addWork(
+            new AssignmentWorkerParameters(this, groupIndex, odClass, iteration, loadFactor));
+        continue;
+      }
+
+      // Balance the chunks on the number of origins that have a demand
+      int group = virtualNet.getGroups()[groupIndex];
+      int nbOrigins = 0;
+      for (VirtualNodeList element : vnl) {
+        if (element.hasDemandForGroup(group, odClass)) {
+          nbOrigins++;
+        }
+      }
+      int originsPerChunk = Math.max(1, (nbOrigins + chunksPerGroup - 1) / chunksPerGroup);
+
+      int firstNodeIndex = 0;
+      int n = 0;
+      for (int nodeIndex = 0; nodeIndex < vnl.length; nodeIndex++) {
+        if (vnl[nodeIndex].hasDemandForGroup(group, odClass) && ++n == originsPerChunk) {
+          addOriginChunk(
+              queue, groupIndex, odClass, iteration, loadFactor, firstNodeIndex, nodeIndex + 1);
+          firstNodeIndex = nodeIndex + 1;
+          n = 0;
+        }
+      }
+      if (n > 0) {
+        addOriginChunk(
+            queue, groupIndex, odClass, iteration, loadFactor, firstNodeIndex, vnl.length);
+      }
+    }
+  }
+
+  private void addOriginChunk(
+      WorkQueue queue,
+      byte groupIndex,
+      byte odClass,
+      int iteration,
+      double loadFactor,
+      int firstNodeIndex,
+      int lastNodeIndex) {
+    AssignmentWorkerParameters awp =
+        new AssignmentWorkerParameters(this, groupIndex, odClass, iteration, loadFactor);
+    awp.setOriginRange(firstNodeIndex, lastNodeIndex);
+    originChunks.add(awp);
+    queue.addWork(awp);
+  }
+
+  /**
+   * Creates and starts a pool of assignment workers that is kept alive until the end of the
+   * assignment, or until another pool is started. The jobs of each iteration are added to the
+   * returned queue, and {@link #waitForAssignmentWorkers()} waits until they are completed without
+   * stopping the workers. The threads, and the graphs and shortest path data structures held by
+   * the workers, are thus reused by all the iterations of the equilibrium assignments.
+   *
+   * @param factory Creates an assignment worker that fetches its jobs in the given queue.
+   * @return The queue of the workers.
+   */
+  protected WorkQueue startAssignmentWorkers(Function<WorkQueue, AssignmentWorker> factory) {
+    stopAssignmentWorkers();
+
+    workerQueue = new WorkQueue();
+    assignmentWorkers = new AssignmentWorker[assignmentParameters.getThreads()];
+    for (int i = 0; i < assignmentWorkers.length; i++) {
+      assignmentWorkers[i] = factory.apply(workerQueue);
+      assignmentWorkers[i].start();
+    }
+    return workerQueue;
+  }
+
+  /** Stops the persistent assignment workers, if any. */
+  protected void stopAssignmentWorkers() {
+    if (workerQueue == null) {
+      return;
+    }
+
+    for (int i = 0; i < assignmentWorkers.length; i++) {
+      workerQueue.addWork(WorkQueue.NO_MORE_WORK);
+    }
+    workerQueue = null;
+
+    for (AssignmentWorker worker : assignmentWorkers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
   /** Requests cancellation of every worker associated with the current assignment. */
   protected void cancelAssignmentWorkers() {
     if (assignmentWorkers == null) {
@@ -208,23 +402,47 @@ public abstract class Assignment implements Runnable {
 
     boolean interrupted = false;
 
-    for (AssignmentWorker worker : assignmentWorkers) {
-      if (worker == null) {
-        continue;
-      }
-
+    if (workerQueue != null) {
+      // Persistent workers: wait for the completion of the jobs of this round
       try {
-        worker.join();
+        workerQueue.waitForCompletion();
       } catch (InterruptedException e) {
         interrupted = true;
-        break;
+      }
+    } else {
+      for (AssignmentWorker worker : assignmentWorkers) {
+        if (worker == null) {
+          continue;
+        }
+
+        try {
+          worker.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+          break;
+        }
       }
     }
 
     if (!interrupted) {
+      // Merge the volumes computed for the chunks of origins, in a deterministic order
+      boolean isCancelled = false;
+      for (AssignmentWorker worker : assignmentWorkers) {
+        if (worker != null && worker.isCancelled()) {
+          isCancelled = true;
+        }
+      }
+      if (!isCancelled) {
+        for (AssignmentWorkerParameters awp : originChunks) {
+          awp.mergeChunkVolumes();
+        }
+      }
+      originChunks.clear();
       return true;
     }
 
+    originChunks.clear();
+    workerQueue = null;
     cancelAssignmentWorkers();
 
     for (AssignmentWorker worker : assignmentWorkers) {
@@ -318,6 +536,7 @@ public abstract class Assignment implements Runnable {
         virtualNet = new VirtualNetwork(assignmentParameters);
         success = assign();
       } finally {
+        stopAssignmentWorkers();
         if (virtualNet != null) {
           virtualNet.dispose();
         }
@@ -426,6 +645,63 @@ public abstract class Assignment implements Runnable {
     errorMessage = msg;
   }
 
+  /**
+   * Keeps the shortest path trees of the origins between the iterations, if there are several
+   * iterations. The cache uses at most half of the memory still available.
+   */
+  protected void keepShortestPathTrees() {
+    if (assignmentParameters.getNbIterations() > 1) {
+      Runtime runtime = Runtime.getRuntime();
+      long availableMemory =
+          runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+      shortestPathTreeCache = new ShortestPathTreeCache(availableMemory / 2);
+    }
+  }
+
+  /**
+   * Tests if the assignment starts from the volumes of a reference scenario.
+   *
+   * @return True if a warm start scenario is given.
+   */
+  protected boolean isWarmStarted() {
+    return assignmentParameters.getWarmStartScenario() >= 0;
+  }
+
+  /**
+   * Initializes the current volumes of the virtual links with the volumes assigned in the warm
+   * start scenario, if any, and computes the corresponding vehicles. The virtual links of the
+   * reference scenario that don't exist in the current virtual network are reported on the
+   * console.
+   *
+   * @return True on success.
+   */
+  protected boolean loadWarmStartVolumes() {
+    if (!isWarmStarted()) {
+      return true;
+    }
+
+    int referenceScenario = assignmentParameters.getWarmStartScenario();
+    VirtualNetworkReader vnr = new VirtualNetworkReader(nodusProject, virtualNet);
+    if (!vnr.loadVolumes(referenceScenario)) {
+      setErrorMessage(vnr.getErrorMessage());
+      return false;
+    }
+
+    int nbUnmatchedRecords = vnr.getNbRecords() - vnr.getNbMatchedRecords();
+    if (nbUnmatchedRecords > 0) {
+      System.out.println(
+          MessageFormat.format(
+              i18n.get(
+                  Assignment.class,
+                  "Unmatched_virtual_links",
+                  "{0} virtual links of scenario {1} are not in the virtual network"),
+              nbUnmatchedRecords,
+              referenceScenario));
+    }
+
+    return virtualNet.volumesToVehicles(vehiclesParser);
+  }
+
   /**
    * Test if the cost functions file contains duration functions.
    *
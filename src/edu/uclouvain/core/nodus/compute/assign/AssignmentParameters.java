@@ -85,6 +85,9 @@ public class AssignmentParameters {
   /** Threshold used as a stopping rule for the equilibrium algorithms. */
   private double precision;
 
+  /** Relative gap that stops the equilibrium algorithms. Not used if equal to 0. */
+  private double relativeGap = 0;
+
   /** Set to true if the post-assignent script must be executed. */
   private boolean runPostAssignmentScript;
 
@@ -97,6 +100,9 @@ public class AssignmentParameters {
   /** The number of parallel threads during assignment. */
   private int threads = 1;
 
+  /** Scenario which volumes are used as starting solution, or -1. */
+  private int warmStartScenario = -1;
+
   /** SQL statement that can be given to filter the O-D matrix. */
   private String whereStmt;
 
@@ -208,6 +214,18 @@ public class AssignmentParameters {
     return precision;
   }
 
+  /**
+   * Returns the relative gap that must be reached to stop an equilibrium assignment. The relative
+   * gap is the difference between the total cost of the current solution and the cost of the
+   * demand on its shortest paths, divided by the total cost. When set, it replaces the precision
+   * based stop rule.
+   *
+   * @return The target relative gap, or 0 if not used.
+   */
+  public double getRelativeGap() {
+    return relativeGap;
+  }
+
   /**
    * Returns the num of the assigned scenario.
    *
@@ -235,6 +253,17 @@ public class AssignmentParameters {
     return threads;
   }
 
+  /**
+   * Returns the scenario which assigned volumes are used as starting solution of an equilibrium
+   * assignment.
+   *
+   * @return The ID of the reference scenario, or -1 if the assignment starts from an empty
+   *     network.
+   */
+  public int getWarmStartScenario() {
+    return warmStartScenario;
+  }
+
   /**
    * Returns the SQL WHERE statement used to filter the OD matrix.
    *
@@ -485,6 +514,16 @@ public class AssignmentParameters {
     this.precision = precision;
   }
 
+  /**
+   * Sets the relative gap that must be reached to stop an equilibrium assignment.
+   *
+   * @param relativeGap The target relative gap, or 0 if the precision based stop rule must be
+   *     used.
+   */
+  public void setRelativeGap(double relativeGap) {
+    this.relativeGap = relativeGap;
+  }
+
   /**
    * If true, a post assignment script will be run after the assignment.
    *
@@ -539,6 +578,17 @@ public class AssignmentParameters {
     this.isTimeDependent = isTimeDependent;
   }
 
+  /**
+   * Sets the scenario which assigned volumes are used as starting solution of an equilibrium
+   * assignment. The virtual network table of this scenario must exist.
+   *
+   * @param warmStartScenario The ID of the reference scenario, or -1 to start from an empty
+   *     network.
+   */
+  public void setWarmStartScenario(int warmStartScenario) {
+    this.warmStartScenario = warmStartScenario;
+  }
+
   /**
    * Sets the SQL WHERE statement used to filter the OD matrix.
    *
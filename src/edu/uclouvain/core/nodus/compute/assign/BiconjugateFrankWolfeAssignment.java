@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign;
+
+/**
+ * Bi-conjugate Frank-Wolfe equilibrium assignment algorithm. See <i>Mitradjieva M. and Lindberg
+ * P.O., The Stiff Is Moving - Conjugate Direction Frank-Wolfe Methods with Applications to Traffic
+ * Assignment, Transportation Science, Vol 47, n°2, pp. 280-293, 2013.</i>
+ *
+ * <p>Same as the {@link ConjugateFrankWolfeAssignment}, but each search direction is conjugate to
+ * the two previous ones.
+ *
+ * @author Bart Jourquin
+ */
+public class BiconjugateFrankWolfeAssignment extends ConjugateFrankWolfeAssignment {
+
+  /**
+   * Initializes the assignment procedure.
+   *
+   * @param ap AssignmentParameters
+   */
+  public BiconjugateFrankWolfeAssignment(AssignmentParameters ap) {
+    super(ap, true);
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign;
+
+import edu.uclouvain.core.nodus.NodusMapPanel;
+import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
+import edu.uclouvain.core.nodus.compute.assign.workers.Bush;
+import edu.uclouvain.core.nodus.compute.assign.workers.BushAssignmentWorker;
+import edu.uclouvain.core.nodus.utils.WorkQueue;
+
+/**
+ * Origin-based (bush-based) equilibrium assignment algorithm, inspired by the Algorithm B of
+ * <i>Dial R.B., A path-based user-equilibrium traffic assignment algorithm that obviates path
+ * storage and enumeration, Transportation Research Part B, Vol 40, pp. 917-936, 2006.</i>
+ *
+ * <p>The demand of each group leaving an origin is carried by an acyclic bush, kept from one
+ * iteration to the next (see {@link BushAssignmentWorker}). At each iteration, the bushes of all
+ * the origins are equilibrated in parallel, using the costs of the previous solution. As these
+ * independent moves can overshoot, the new flows of the bushes are then combined with the current
+ * ones using the line search of the Frank-Wolfe algorithm.
+ *
+ * <p>The assignment stops when the relative gap between the cost of the current solution and the
+ * cost of the demand on its shortest paths is smaller than the relative gap target, or than the
+ * precision if no target is given. The detailed paths, if asked, are obtained at the end by a
+ * decomposition of the flows of the bushes.
+ *
+ * @author Bart Jourquin
+ */
+public class BushAssignment extends FrankWolfeAssignment {
+
+  /** Bushes, per OD class, group and origin. */
+  private Bush[][][] bushes = null;
+
+  /** Cost derivatives, per OD class and group, indexed by virtual link ID. */
+  private double[][][] costDerivatives = null;
+
+  /** Version of the costs the derivatives were computed for, per OD class and group. */
+  private int[][] costDerivativesVersion = null;
+
+  private int lastIteration = 0;
+
+  private WorkQueue queue;
+
+  /** True when the workers must save the paths of the final solution. */
+  private boolean writingPaths = false;
+
+  /**
+   * Initializes the assignment procedure.
+   *
+   * @param ap AssignmentParameters
+   */
+  public BushAssignment(AssignmentParameters ap) {
+    super(ap);
+  }
+
+  /** Saves the paths of the final solution, if asked. */
+  @Override
+  protected boolean completePaths() {
+    if (!assignmentParameters.isSavePaths()) {
+      return true;
+    }
+
+    writingPaths = true;
+    AssignmentWorker.resetPathIndex();
+    NodusMapPanel nodusMapPanel = nodusProject.getNodusMapPanel();
+    int scenario = assignmentParameters.getScenario();
+    int threads = assignmentParameters.getThreads();
+
+    for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
+      if (!virtualNet.odClassHasDemand(odClass)) {
+        continue;
+      }
+
+      // Costs of the final solution
+      if (!virtualNet.computeCosts(lastIteration, scenario, odClass, threads)) {
+        nodusMapPanel.stopProgress();
+        return false;
+      }
+
+      addAssignmentJobs(queue, odClass, lastIteration, 0.0);
+
+      int lengthOfTask = 0;
+      for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
+        for (int nodeIndex = 0; nodeIndex < virtualNet.getVirtualNodeLists().length; nodeIndex++) {
+          if (virtualNet.getVirtualNodeLists()[nodeIndex].hasDemandForGroup(
+              virtualNet.getGroups()[groupIndex], odClass)) {
+            lengthOfTask++;
+          }
+        }
+      }
+      nodusMapPanel.startProgress(lengthOfTask);
+
+      if (!waitForAssignmentWorkers()) {
+        nodusMapPanel.stopProgress();
+        return false;
+      }
+      nodusMapPanel.stopProgress();
+
+      for (AssignmentWorker worker : assignmentWorkers) {
+        if (worker.isCancelled()) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  protected AssignmentWorker createAssignmentWorker(WorkQueue queue) {
+    this.queue = queue;
+    return new BushAssignmentWorker(queue);
+  }
+
+  /**
+   * Returns the bushes of the origins for an OD class and a group.
+   *
+   * @param odClass The OD class.
+   * @param groupIndex The index of the group of commodities.
+   * @return The bushes, indexed as the virtual node lists. An element is null until the bush of
+   *     the origin is created.
+   */
+  public synchronized Bush[] getBushes(byte odClass, byte groupIndex) {
+    if (bushes == null) {
+      bushes = new Bush[virtualNet.getNbODClasses()][virtualNet.getGroups().length][];
+    }
+    if (bushes[odClass][groupIndex] == null) {
+      bushes[odClass][groupIndex] = new Bush[virtualNet.getVirtualNodeLists().length];
+    }
+    return bushes[odClass][groupIndex];
+  }
+
+  /**
+   * Returns the derivatives of the costs of a group with respect to its volume, for the current
+   * costs. They are computed once and shared by the workers.
+   *
+   * @param odClass The OD class.
+   * @param groupIndex The index of the group of commodities.
+   * @return The derivatives, indexed by virtual link ID.
+   */
+  public synchronized double[] getCostDerivatives(byte odClass, byte groupIndex) {
+    if (costDerivatives == null) {
+      int nbGroups = virtualNet.getGroups().length;
+      costDerivatives = new double[virtualNet.getNbODClasses()][nbGroups][];
+      costDerivativesVersion = new int[virtualNet.getNbODClasses()][nbGroups];
+    }
+
+    int costsVersion = virtualNet.getCostsVersion();
+    if (costDerivatives[odClass][groupIndex] == null
+        || costDerivativesVersion[odClass][groupIndex] != costsVersion) {
+      costDerivatives[odClass][groupIndex] =
+          virtualNet.getCostDerivatives(
+              odClass, groupIndex, vehiclesParser, costDerivatives[odClass][groupIndex]);
+      costDerivativesVersion[odClass][groupIndex] = costsVersion;
+    }
+    return costDerivatives[odClass][groupIndex];
+  }
+
+  /**
+   * The volumes must always be the sum of the flows of the bushes, which can't be built from the
+   * volumes of another scenario.
+   *
+   * @return False.
+   */
+  @Override
+  protected boolean isWarmStarted() {
+    return false;
+  }
+
+  /**
+   * Tells the workers if they must save the paths of the final solution instead of equilibrating
+   * the bushes.
+   *
+   * @return True if the paths must be saved.
+   */
+  public boolean isWritingPaths() {
+    return writingPaths;
+  }
+
+  /** Combines the new flows of the bushes with the current ones. */
+  @Override
+  protected void stepCompleted(int iteration, double lambda) {
+    if (bushes != null) {
+      for (Bush[][] element : bushes) {
+        for (Bush[] groupBushes : element) {
+          if (groupBushes == null) {
+            continue;
+          }
+          for (Bush bush : groupBushes) {
+            if (bush != null) {
+              bush.commit(lambda);
+            }
+          }
+        }
+      }
+    }
+    lastIteration = iteration;
+  }
+
+  /**
+   * Returns true if the relative gap of the previous solution is smaller than the precision. Used
+   * when no relative gap target is given.
+   *
+   * @param iteration int
+   * @param precision double
+   * @return boolean
+   */
+  @Override
+  public boolean stopRule(int iteration, double precision) {
+    return iteration > 1 && convergenceMonitor.getRelativeGap() <= precision;
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign;
+
+import edu.uclouvain.core.nodus.compute.costs.CostJacobian;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNode;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNodeList;
+import java.util.Iterator;
+
+/**
+ * Conjugate Frank-Wolfe equilibrium assignment algorithm. See <i>Mitradjieva M. and Lindberg P.O.,
+ * The Stiff Is Moving - Conjugate Direction Frank-Wolfe Methods with Applications to Traffic
+ * Assignment, Transportation Science, Vol 47, n°2, pp. 280-293, 2013.</i>
+ *
+ * <p>Instead of moving towards the all-or-nothing solution, each iteration moves towards a
+ * combination of the all-or-nothing solution and of the target of the previous search direction,
+ * chosen to be conjugate to the previous direction with respect to the jacobian of the link costs.
+ * The conjugate directions need the derivatives of the costs. They can only be computed if all the
+ * volume dependent costs have a standard BPR or CONICAL form. If not, classic Frank-Wolfe steps are
+ * made.
+ *
+ * <p>As the volume of the paths found at an iteration can be restored by later search directions,
+ * the saved paths are weighted once, at the end of the assignment.
+ *
+ * @author Bart Jourquin
+ */
+public class ConjugateFrankWolfeAssignment extends FrankWolfeAssignment {
+
+  /** Upper bound of the conjugate coefficient, that keeps the search direction a descent one. */
+  private static final double MAX_CONJUGATE_COEFFICIENT = 0.99999;
+
+  /** True if two previous search directions are used. */
+  private boolean biconjugate;
+
+  /** Weight of each iteration in the targets of the last two search directions. */
+  private double[][] directionWeights = null;
+
+  /** Last iteration which paths were saved. */
+  private int lastIteration = 0;
+
+  /** Number of usable previous search directions (0, 1 or 2). */
+  private int nbDirections = 0;
+
+  /** Weight of each iteration in the current volumes. */
+  private double[] pathWeights = null;
+
+  /** Step made at the previous iteration. */
+  private double previousLambda = 1.0;
+
+  /**
+   * Initializes the assignment procedure.
+   *
+   * @param ap AssignmentParameters
+   */
+  public ConjugateFrankWolfeAssignment(AssignmentParameters ap) {
+    this(ap, false);
+  }
+
+  /**
+   * Initializes the assignment procedure.
+   *
+   * @param ap AssignmentParameters
+   * @param biconjugate If true, the search directions are conjugate to the two previous ones.
+   */
+  protected ConjugateFrankWolfeAssignment(AssignmentParameters ap, boolean biconjugate) {
+    super(ap);
+    this.biconjugate = biconjugate;
+  }
+
+  /** Computes the conjugate direction and stores its target in the auxiliary volumes. */
+  @Override
+  protected void computeSearchDirection(int iteration) {
+    // Weights of the all-or-nothing solution and of the targets of the last two directions
+    double b0 = 1.0;
+    double b1 = 0.0;
+    double b2 = 0.0;
+
+    CostJacobian jacobian = null;
+    if (nbDirections > 0) {
+      jacobian = virtualNet.getCostJacobian(vehiclesParser);
+    }
+
+    if (jacobian != null) {
+      CostJacobian.LinkVolumes y =
+          (vl, groupIndex) -> vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex);
+      CostJacobian.LinkVolumes z =
+          (vl, groupIndex) ->
+              vl.getDirectionVolume(groupIndex, 0) - vl.getCurrentVolume(groupIndex);
+
+      if (!biconjugate || nbDirections == 1) {
+        CostJacobian.LinkVolumes w =
+            (vl, groupIndex) ->
+                vl.getAuxiliaryVolume(groupIndex) - vl.getDirectionVolume(groupIndex, 0);
+
+        double alpha = 0.0;
+        double denominator = jacobian.product(z, w);
+        if (denominator != 0.0) {
+          alpha = jacobian.product(z, y) / denominator;
+        }
+        alpha = Math.max(0.0, Math.min(alpha, MAX_CONJUGATE_COEFFICIENT));
+
+        b0 = 1.0 - alpha;
+        b1 = alpha;
+      } else {
+        double tau = previousLambda;
+        CostJacobian.LinkVolumes x =
+            (vl, groupIndex) ->
+                tau * vl.getDirectionVolume(groupIndex, 0)
+                    + (1.0 - tau) * vl.getDirectionVolume(groupIndex, 1)
+                    - vl.getCurrentVolume(groupIndex);
+        CostJacobian.LinkVolumes w =
+            (vl, groupIndex) ->
+                vl.getDirectionVolume(groupIndex, 1) - vl.getDirectionVolume(groupIndex, 0);
+
+        double mu = 0.0;
+        double denominator = jacobian.product(x, w);
+        if (denominator != 0.0) {
+          mu = -jacobian.product(x, y) / denominator;
+        }
+        mu = Math.max(0.0, mu);
+
+        double nu = mu * tau / (1.0 - tau);
+        denominator = jacobian.product(z, z);
+        if (denominator != 0.0) {
+          nu -= jacobian.product(z, y) / denominator;
+        }
+        nu = Math.max(0.0, nu);
+
+        b0 = 1.0 / (1.0 + nu + mu);
+        b1 = nu * b0;
+        b2 = mu * b0;
+      }
+    }
+
+    // Replace the auxiliary volumes by the target of the new direction
+    byte nbGroups = (byte) virtualNet.getGroups().length;
+    VirtualNodeList[] vnl = virtualNet.getVirtualNodeLists();
+    for (VirtualNodeList element : vnl) {
+      Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+
+      while (nodeLit.hasNext()) {
+        VirtualNode vn = nodeLit.next();
+        Iterator<VirtualLink> linkLit = vn.getVirtualLinkList().iterator();
+
+        while (linkLit.hasNext()) {
+          VirtualLink vl = linkLit.next();
+
+          for (byte k = 0; k < nbGroups; k++) {
+            vl.setDirectionVolume(k, b0, b1, b2);
+          }
+        }
+      }
+    }
+
+    // Same combination for the paths of the iterations
+    if (directionWeights != null) {
+      double[] weights = new double[directionWeights[0].length];
+      for (int i = 1; i < iteration; i++) {
+        weights[i] = b1 * directionWeights[0][i] + b2 * directionWeights[1][i];
+      }
+      weights[iteration] = b0;
+      directionWeights[1] = directionWeights[0];
+      directionWeights[0] = weights;
+    }
+
+    if (nbDirections < 2) {
+      nbDirections++;
+    }
+  }
+
+  /** Updates the weights of the paths of each iteration. */
+  @Override
+  protected void stepCompleted(int iteration, double lambda) {
+    if (assignmentParameters.isSavePaths()) {
+      if (iteration == 1) {
+        int nbIterations = assignmentParameters.getNbIterations();
+        directionWeights = new double[2][nbIterations + 1];
+        pathWeights = new double[nbIterations + 1];
+        pathWeights[1] = 1.0;
+      } else {
+        for (int i = 1; i <= iteration; i++) {
+          pathWeights[i] = (1.0 - lambda) * pathWeights[i] + lambda * directionWeights[0][i];
+        }
+      }
+      lastIteration = iteration;
+    }
+
+    // The previous directions are useless after a full or a null step
+    if (lambda >= 1.0 || lambda <= 0.0) {
+      nbDirections = 0;
+    }
+    previousLambda = lambda;
+  }
+
+  /** Weights the paths of each iteration by their share in the final volumes. */
+  @Override
+  protected boolean completePaths() {
+    if (pathWeights != null) {
+      for (int i = 1; i <= lastIteration; i++) {
+        pathWriter.weightPaths(i, pathWeights[i]);
+      }
+    }
+    return true;
+  }
+}
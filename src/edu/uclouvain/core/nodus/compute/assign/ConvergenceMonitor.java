@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign;
+
+import com.bbn.openmap.Environment;
+import com.bbn.openmap.util.I18n;
+import edu.uclouvain.core.nodus.NodusC;
+import edu.uclouvain.core.nodus.NodusProject;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNetwork;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNode;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNodeList;
+import edu.uclouvain.core.nodus.database.JDBCField;
+import edu.uclouvain.core.nodus.database.JDBCUtils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Measures the convergence of an equilibrium assignment. During each all-or-nothing pass, the
+ * assignment workers accumulate the cost of the demand on its shortest paths. Compared with the
+ * total cost of the solution the pass started from, this gives:
+ *
+ * <ul>
+ *   <li>the total cost, sum over the virtual links of volume x cost;
+ *   <li>the relative gap, (total cost - shortest paths cost) / total cost;
+ *   <li>the average excess cost, (total cost - shortest paths cost) / demand.
+ * </ul>
+ *
+ * <p>These values, the step used to update the volumes and the time spent in each phase are kept
+ * for each iteration, and can be saved in the convergence table of the scenario.
+ *
+ * <p>As the volumes of the virtual links are not kept per OD class, the total cost can only be
+ * computed from the virtual links when a single OD class has demand, unless the workers provide it
+ * (see {@link #addTotalCost(double)}).
+ *
+ * @author Bart Jourquin
+ */
+public class ConvergenceMonitor {
+
+  /** Computation of the costs. */
+  public static final int PHASE_COSTS = 0;
+
+  /** All-or-nothing assignment. */
+  public static final int PHASE_ALL_OR_NOTHING = 1;
+
+  /** Update of the volumes, including the line search. */
+  public static final int PHASE_UPDATE = 2;
+
+  /** I18N mechanism. */
+  private static I18n i18n = Environment.getI18n();
+
+  /** Values measured during an iteration. */
+  private static class IterationTrace {
+    double averageExcessCost = Double.NaN;
+    int iteration;
+    double lambda = Double.NaN;
+    double[] phaseDurations = new double[3];
+    double relativeGap = Double.NaN;
+    double totalCost = Double.NaN;
+  }
+
+  private IterationTrace currentIteration = null;
+
+  /** Demand assigned on the shortest paths during the current iteration. */
+  private double demand = 0.0;
+
+  /** Relative gap of the last evaluated solution. */
+  private double relativeGap = Double.NaN;
+
+  private long phaseStart;
+
+  /** Cost of the demand on its shortest paths, for the current iteration. */
+  private double shortestPathsCost = 0.0;
+
+  /** Total cost of the solution, if provided by the workers. */
+  private double totalCost = 0.0;
+
+  private boolean totalCostProvided = false;
+
+  private LinkedList<IterationTrace> trace = new LinkedList<>();
+
+  private VirtualNetwork virtualNet;
+
+  /**
+   * Initializes the monitor of an assignment.
+   *
+   * @param virtualNet The virtual network the assignment runs on.
+   */
+  public ConvergenceMonitor(VirtualNetwork virtualNet) {
+    this.virtualNet = virtualNet;
+  }
+
+  /**
+   * Adds the cost of the demand on its shortest paths, computed by a worker for a set of origins.
+   *
+   * @param cost The cost of the demand on its shortest paths.
+   * @param demand The assigned demand.
+   */
+  public synchronized void addShortestPathsCost(double cost, double demand) {
+    shortestPathsCost += cost;
+    this.demand += demand;
+  }
+
+  /**
+   * Adds the cost of the current solution, computed by a worker for a set of origins. When
+   * provided, it replaces the total cost computed from the volumes of the virtual links.
+   *
+   * @param cost The cost of the flows of the origins.
+   */
+  public synchronized void addTotalCost(double cost) {
+    totalCost += cost;
+    totalCostProvided = true;
+  }
+
+  /** Returns the cost of the current volumes, or NaN if several OD classes have demand. */
+  private double computeTotalCost() {
+    int nbClasses = 0;
+    for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
+      if (virtualNet.odClassHasDemand(odClass)) {
+        nbClasses++;
+      }
+    }
+    if (nbClasses != 1) {
+      return Double.NaN;
+    }
+
+    double cost = 0.0;
+    byte[] groups = virtualNet.getGroups();
+    for (VirtualNodeList element : virtualNet.getVirtualNodeLists()) {
+      Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+      while (nodeLit.hasNext()) {
+        VirtualNode vn = nodeLit.next();
+        Iterator<VirtualLink> linkLit = vn.getVirtualLinkList().iterator();
+        while (linkLit.hasNext()) {
+          VirtualLink vl = linkLit.next();
+          for (byte k = 0; k < (byte) groups.length; k++) {
+            double volume = vl.getCurrentVolume(k);
+            double unitCost = vl.getCost(k);
+            if (volume > 0 && unitCost > 0) {
+              cost += volume * unitCost;
+            }
+          }
+        }
+      }
+    }
+    return cost;
+  }
+
+  /**
+   * Computes the convergence measures of the solution an all-or-nothing pass started from. Must be
+   * called once all the OD classes are assigned, before the volumes are updated, as the costs of
+   * the virtual links must still correspond to the current volumes.
+   */
+  public void evaluate() {
+    double cost = totalCostProvided ? totalCost : computeTotalCost();
+
+    relativeGap = Double.NaN;
+    if (cost > 0.0 && demand > 0.0) {
+      relativeGap = (cost - shortestPathsCost) / cost;
+      currentIteration.relativeGap = relativeGap;
+      currentIteration.averageExcessCost = (cost - shortestPathsCost) / demand;
+      currentIteration.totalCost = cost;
+    }
+
+    shortestPathsCost = 0.0;
+    demand = 0.0;
+    totalCost = 0.0;
+    totalCostProvided = false;
+  }
+
+  /**
+   * Returns the relative gap computed by the last call to {@link #evaluate()}.
+   *
+   * @return The relative gap, or NaN if it could not be computed.
+   */
+  public double getRelativeGap() {
+    return relativeGap;
+  }
+
+  /**
+   * Records the step used to update the volumes, which closes the iteration, and displays its
+   * convergence measures on the console.
+   *
+   * @param lambda The step.
+   */
+  public void iterationCompleted(double lambda) {
+    currentIteration.lambda = lambda;
+    trace.add(currentIteration);
+
+    if (!Double.isNaN(currentIteration.relativeGap)) {
+      System.out.println(
+          MessageFormat.format(
+              i18n.get(
+                  ConvergenceMonitor.class,
+                  "Relative_gap",
+                  "Iteration {0}: Relative gap={1}, Average excess cost={2}"),
+              currentIteration.iteration,
+              currentIteration.relativeGap,
+              currentIteration.averageExcessCost));
+    }
+  }
+
+  /**
+   * Adds the time elapsed since the end of the previous phase to the duration of a phase.
+   *
+   * @param phase PHASE_COSTS, PHASE_ALL_OR_NOTHING or PHASE_UPDATE.
+   */
+  public void phaseCompleted(int phase) {
+    long now = System.nanoTime();
+    currentIteration.phaseDurations[phase] += (now - phaseStart) / 1.0e9;
+    phaseStart = now;
+  }
+
+  /**
+   * Saves the trace of the iterations in the convergence table of the scenario. The relative gap,
+   * the average excess cost and the total cost of an iteration are those of the solution it started
+   * from.
+   *
+   * @param nodusProject The Nodus project.
+   * @param scenario The assigned scenario.
+   * @return True on success.
+   */
+  public boolean save(NodusProject nodusProject, int scenario) {
+    String tableName =
+        nodusProject.getLocalProperty(NodusC.PROP_PROJECT_DOTNAME)
+            + NodusC.SUFFIX_CONVERGENCE
+            + scenario;
+    tableName = JDBCUtils.getCompliantIdentifier(tableName);
+
+    JDBCUtils.dropTable(tableName);
+
+    JDBCField[] fields = {
+      new JDBCField(NodusC.DBF_ITERATION, "NUMERIC(5)"),
+      new JDBCField(NodusC.DBF_RELATIVE_GAP, "NUMERIC(15,10)"),
+      new JDBCField(NodusC.DBF_AVERAGE_EXCESS_COST, "NUMERIC(15,6)"),
+      new JDBCField(NodusC.DBF_TOTAL_COST, "NUMERIC(20,3)"),
+      new JDBCField(NodusC.DBF_LAMBDA, "NUMERIC(11,10)"),
+      new JDBCField(NodusC.DBF_COSTS_TIME, "NUMERIC(10,3)"),
+      new JDBCField(NodusC.DBF_AON_TIME, "NUMERIC(10,3)"),
+      new JDBCField(NodusC.DBF_UPDATE_TIME, "NUMERIC(10,3)")
+    };
+    if (!JDBCUtils.createTable(tableName, fields)) {
+      return false;
+    }
+
+    Connection jdbcConnection = nodusProject.getMainJDBCConnection();
+    String sqlStmt =
+        "INSERT INTO "
+            + JDBCUtils.getQuotedCompliantIdentifier(tableName)
+            + " VALUES (?,?,?,?,?,?,?,?)";
+    try (PreparedStatement prepStmt = jdbcConnection.prepareStatement(sqlStmt)) {
+      for (IterationTrace element : trace) {
+        prepStmt.setInt(1, element.iteration);
+        setDouble(prepStmt, 2, element.relativeGap);
+        setDouble(prepStmt, 3, element.averageExcessCost);
+        setDouble(prepStmt, 4, element.totalCost);
+        setDouble(prepStmt, 5, element.lambda);
+        for (int phase = 0; phase < element.phaseDurations.length; phase++) {
+          prepStmt.setDouble(6 + phase, element.phaseDurations[phase]);
+        }
+        prepStmt.executeUpdate();
+      }
+
+      if (!jdbcConnection.getAutoCommit()) {
+        jdbcConnection.commit();
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return false;
+    }
+
+    return true;
+  }
+
+  /** Sets a parameter of a prepared statement, or NULL if the value is NaN. */
+  private static void setDouble(PreparedStatement prepStmt, int index, double value)
+      throws SQLException {
+    if (Double.isNaN(value)) {
+      prepStmt.setNull(index, Types.NUMERIC);
+    } else {
+      prepStmt.setDouble(index, value);
+    }
+  }
+
+  /**
+   * Starts the measures of a new iteration.
+   *
+   * @param iteration The iteration.
+   */
+  public void startIteration(int iteration) {
+    currentIteration = new IterationTrace();
+    currentIteration.iteration = iteration;
+    phaseStart = System.nanoTime();
+  }
+}
@@ -23,6 +23,7 @@ package edu.uclouvain.core.nodus.compute.assign;
 
 import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.NodusMapPanel;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.TimeDependentEdgeWeights;
 import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
 import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.assign.workers.DynamicTimeDependentAssignmentWorker;
@@ -36,12 +37,12 @@ import javax.swing.JOptionPane;
 
 /**
  * The DynamicTimeDependentAssignment assigns a time dependent OD matrix. It is based on an
- * All-Or-Nothing assignment. At the end of each period (time slice), the algorithm computes the
- * location of each route at the end of the period and relocated the associated demand to this
- * location. At the beginning of the following period, the assignment starts the assignment of the
- * demand that starts at that time, plus the "relocated" demands which are not yet at their final
- * destination. After each iteration (period), the costs on the network are recomputed. If the costs
- * are volume/capacity dependent, this allows for dynamic route changes occurring during the trip.
+ * All-Or-Nothing assignment. The costs of the virtual network are first computed for each period
+ * (time slice). The demand that leaves an origin at a given time is then routed once with a time
+ * dependent shortest path algorithm, in which the cost and the travel time of a virtual link are
+ * those of the period during which it is entered. If the costs are time dependent, this allows for
+ * routes that change with the time at which each part of the trip is made. The volume is assigned
+ * on each virtual link for the period during which it is entered.
  *
  * @author Bart Jourquin
  */
@@ -163,82 +164,89 @@ public class DynamicTimeDependentAssignment extends Assignment {
     NodusMapPanel nodusMapPanel = nodusProject.getNodusMapPanel();
     startGarbageCollectionRunner();
 
-    // Assign each time slice
-    for (int currentTimeSlice = 0; currentTimeSlice < nbTimeSlices; currentTimeSlice++) {
+    // Assign per class
+    for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
 
-      int sliceStartTime = assignmentStartTime + currentTimeSlice * timeSliceDuration;
-
-      // Assign per class
-      for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
-
-        if (!virtualNet.odClassHasDemand(odClass)) {
-          continue;
-        }
-
-        // Get the number of threads
-        int threads = assignmentParameters.getThreads();
+      if (!virtualNet.odClassHasDemand(odClass)) {
+        continue;
+      }
 
-        // Compute costs
-        if (!virtualNet.computeCosts(0, scenario, odClass, currentTimeSlice, threads)) {
+      // Get the number of threads
+      int threads = assignmentParameters.getThreads();
+
+      // Compute the costs of each time slice and keep the resulting edge weights for each group
+      byte nbGroups = (byte) virtualNet.getGroups().length;
+      TimeDependentEdgeWeights[] timeDependentWeights = new TimeDependentEdgeWeights[nbGroups];
+      for (byte groupIndex = 0; groupIndex < nbGroups; groupIndex++) {
+        timeDependentWeights[groupIndex] =
+            new TimeDependentEdgeWeights(
+                virtualNet.getCompressedGraph(),
+                assignmentStartTime,
+                timeSliceDuration,
+                nbTimeSlices);
+      }
+      for (int timeSlice = 0; timeSlice < nbTimeSlices; timeSlice++) {
+        if (!virtualNet.computeCosts(0, scenario, odClass, timeSlice, threads)) {
           return false;
         }
+        for (byte groupIndex = 0; groupIndex < nbGroups; groupIndex++) {
+          timeDependentWeights[groupIndex].setTimeSlice(
+              timeSlice, groupIndex, assignmentParameters.hasDurationFunctions());
+        }
+      }
 
-        // Create the work queue
-        WorkQueue queue = new WorkQueue();
+      // Create the work queue
+      WorkQueue queue = new WorkQueue();
 
-        // Create a set of worker threads
-        assignmentWorkers = new AssignmentWorker[threads];
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          DynamicTimeDependentAssignmentWorker aw = new DynamicTimeDependentAssignmentWorker(queue);
-          aw.setTimeParameters(currentTimeSlice, sliceStartTime, timeSliceDuration);
-          assignmentWorkers[i] = aw;
-          assignmentWorkers[i].start();
-        }
+      // Create a set of worker threads
+      assignmentWorkers = new AssignmentWorker[threads];
+      for (int i = 0; i < assignmentWorkers.length; i++) {
+        DynamicTimeDependentAssignmentWorker aw = new DynamicTimeDependentAssignmentWorker(queue);
+        aw.setTimeParameters(timeDependentWeights, assignmentStartTime, assignmentEndTime);
+        assignmentWorkers[i] = aw;
+        assignmentWorkers[i].start();
+      }
 
-        // Add the jobs to the queue
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          AssignmentWorkerParameters awp =
-              new AssignmentWorkerParameters(this, groupIndex, odClass);
-          queue.addWork(awp);
-        }
+      // Add the jobs to the queue
+      for (byte groupIndex = 0; groupIndex < nbGroups; groupIndex++) {
+        AssignmentWorkerParameters awp = new AssignmentWorkerParameters(this, groupIndex, odClass);
+        queue.addWork(awp);
+      }
 
-        // Add special end-of-stream markers to terminate the workers
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          queue.addWork(WorkQueue.NO_MORE_WORK);
-        }
+      // Add special end-of-stream markers to terminate the workers
+      for (int i = 0; i < assignmentWorkers.length; i++) {
+        queue.addWork(WorkQueue.NO_MORE_WORK);
+      }
 
-        // Initialize a progress monitor with the number of OD matrix rows to assign
-        int lengthOfTask = 0;
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          for (int nodeIndex = 0;
-              nodeIndex < virtualNet.getVirtualNodeLists().length;
-              nodeIndex++) {
-            // Get the demand associated to this node, group and class
-            if (virtualNet.getVirtualNodeLists()[nodeIndex].hasDemandForGroup(
-                virtualNet.getGroups()[groupIndex], odClass)) {
-              lengthOfTask++;
-            }
+      // Initialize a progress monitor with the number of OD matrix rows to assign
+      int lengthOfTask = 0;
+      for (byte groupIndex = 0; groupIndex < nbGroups; groupIndex++) {
+        for (int nodeIndex = 0; nodeIndex < virtualNet.getVirtualNodeLists().length; nodeIndex++) {
+          // Get the demand associated to this node, group and class
+          if (virtualNet.getVirtualNodeLists()[nodeIndex].hasDemandForGroup(
+              virtualNet.getGroups()[groupIndex], odClass)) {
+            lengthOfTask++;
           }
         }
+      }
 
-        nodusMapPanel.startProgress(lengthOfTask);
-
-        // Wait until all the works are completed
-        if (!waitForAssignmentWorkers()) {
-          nodusMapPanel.stopProgress();
-          return false;
-        }
+      nodusMapPanel.startProgress(lengthOfTask);
 
+      // Wait until all the works are completed
+      if (!waitForAssignmentWorkers()) {
         nodusMapPanel.stopProgress();
+        return false;
+      }
 
-        // Test if everything was OK
-        for (int i = 0; i < threads; i++) {
-          if (assignmentWorkers[i].isCancelled()) {
-            return false;
-          }
+      nodusMapPanel.stopProgress();
+
+      // Test if everything was OK
+      for (int i = 0; i < threads; i++) {
+        if (assignmentWorkers[i].isCancelled()) {
+          return false;
         }
-      } // Next odClass
-    } // Next time slice
+      }
+    } // Next odClass
 
     // long end = System.currentTimeMillis();
     // System.out.println("Duration : " + ((end - start) / 1000));
@@ -23,8 +23,8 @@ package edu.uclouvain.core.nodus.compute.assign;
 
 import edu.uclouvain.core.nodus.NodusMapPanel;
 import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.assign.workers.FrankWolfeAssignmentWorker;
+import edu.uclouvain.core.nodus.compute.costs.LineSearchData;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
 import edu.uclouvain.core.nodus.compute.od.ODReader;
 import edu.uclouvain.core.nodus.compute.rules.NodeRulesReader;
@@ -48,6 +48,9 @@ import java.util.Iterator;
  */
 public class FrankWolfeAssignment extends Assignment {
 
+  /** Link level data used to evaluate the first derivatives of the current line search. */
+  private LineSearchData lineSearchData = null;
+
   /**
    * Initializes the assignment procedure.
    *
@@ -104,6 +107,11 @@ public class FrankWolfeAssignment extends Assignment {
 
     // long Start=System.currentTimeMillis() ;
 
+    // Start from the volumes of a reference scenario if asked
+    if (!loadWarmStartVolumes()) {
+      return false;
+    }
+
     // Create a path writer
     createPathWriter();
 
@@ -119,11 +127,21 @@ public class FrankWolfeAssignment extends Assignment {
     // Get the number of threads
     int threads = assignmentParameters.getThreads();
 
+    // Start the worker threads, that are kept alive for all the iterations
+    WorkQueue queue = startAssignmentWorkers(this::createAssignmentWorker);
+
+    // Keep the shortest path trees, as most of them can be updated at the next iteration
+    keepShortestPathTrees();
+
+    // Measure the convergence of the iterations
+    convergenceMonitor = new ConvergenceMonitor(virtualNet);
+
     /*
      * Enter into an iterative process that can be stopped before NbIterations if the stopping rule
      * succeeds
      */
     for (int iteration = 1; iteration <= assignmentParameters.getNbIterations(); iteration++) {
+      convergenceMonitor.startIteration(iteration);
       // -- Assign all od classes
       for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
 
@@ -135,28 +153,10 @@ public class FrankWolfeAssignment extends Assignment {
           nodusMapPanel.stopProgress();
           return false;
         }
+        convergenceMonitor.phaseCompleted(ConvergenceMonitor.PHASE_COSTS);
 
-        // Create the work queue
-        WorkQueue queue = new WorkQueue();
-
-        // Create a set of worker threads
-        assignmentWorkers = new AssignmentWorker[threads];
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          assignmentWorkers[i] = new FrankWolfeAssignmentWorker(queue);
-          assignmentWorkers[i].start();
-        }
-
-        // Add the jobs to the queue
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          AssignmentWorkerParameters awp =
-              new AssignmentWorkerParameters(this, groupIndex, odClass, iteration);
-          queue.addWork(awp);
-        }
-
-        // Add special end-of-stream markers to terminate the workers
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          queue.addWork(WorkQueue.NO_MORE_WORK);
-        }
+        // Add the jobs to the queue of the worker threads
+        addAssignmentJobs(queue, odClass, iteration, 0.0);
 
         // Initialize a progress monitor with the number of OD matrix rows to assign
         int lengthOfTask = 0;
@@ -189,14 +189,20 @@ public class FrankWolfeAssignment extends Assignment {
             return false;
           }
         }
+        convergenceMonitor.phaseCompleted(ConvergenceMonitor.PHASE_ALL_OR_NOTHING);
       } // Next od class
 
+      // Relative gap of the solution this iteration started from
+      convergenceMonitor.evaluate();
+
       // Variables that are used to split current and auxiliary volumes
       double lambda = 1.0;
       double lambdaPrecisionThreshold = 1.0e-4;
 
-      // Compute optimal Lambda
-      if (iteration > 1) {
+      // Compute optimal Lambda, also at the first iteration when starting from existing volumes
+      if (iteration > 1 || isWarmStarted()) {
+        computeSearchDirection(iteration);
+
         lambda = lineSearchLambda(iteration, threads, lambdaPrecisionThreshold);
 
         if (Double.isNaN(lambda)) {
@@ -205,15 +211,13 @@ public class FrankWolfeAssignment extends Assignment {
 
         // Now combine the auxiliary volumes with the current volume
         splitVolumes(lambda);
-
-        if (assignmentParameters.isSavePaths()) {
-          pathWriter.splitPaths(iteration, lambda);
-        }
+        stepCompleted(iteration, lambda);
       } else { // If first iteration
 
         // Now combine the auxiliary volumes with the current volume
         // In this case, current volume will simply be the AoN result...
         splitVolumes(lambda);
+        stepCompleted(iteration, lambda);
 
         // Transform the volumes in vehicles
         if (!virtualNet.volumesToVehicles(vehiclesParser)) {
@@ -221,17 +225,69 @@ public class FrankWolfeAssignment extends Assignment {
         }
       }
 
+      convergenceMonitor.phaseCompleted(ConvergenceMonitor.PHASE_UPDATE);
+      convergenceMonitor.iterationCompleted(lambda);
+
       // Test if the stop rule is satisfied
-      if (stopRule(iteration, assignmentParameters.getPrecision())) {
+      if (isConverged(iteration)) {
         break;
       }
     }
 
-    // Save the volumes
+    if (!completePaths()) {
+      return false;
+    }
+
+    // Save the convergence trace and the volumes
+    if (!convergenceMonitor.save(nodusProject, scenario)) {
+      return false;
+    }
+    shortestPathTreeCache = null;
     VirtualNetworkWriter vnw = new VirtualNetworkWriter(assignmentParameters, virtualNet);
     return vnw.save();
   }
 
+  /**
+   * Creates a worker thread that computes the auxiliary volumes of an iteration.
+   *
+   * @param queue The WorkQueue the worker will run in.
+   * @return The worker.
+   */
+  protected AssignmentWorker createAssignmentWorker(WorkQueue queue) {
+    return new FrankWolfeAssignmentWorker(queue);
+  }
+
+  /**
+   * Called once the all-or-nothing assignment of an iteration is done, before the line search. The
+   * auxiliary volumes can be replaced by the target of another search direction. The classic
+   * Frank-Wolfe method keeps the all-or-nothing volumes.
+   *
+   * @param iteration Current iteration.
+   */
+  protected void computeSearchDirection(int iteration) {}
+
+  /**
+   * Called once the current volumes are combined with the auxiliary volumes. Balances the volumes
+   * of the saved paths.
+   *
+   * @param iteration Current iteration.
+   * @param lambda The step used to combine the volumes.
+   */
+  protected void stepCompleted(int iteration, double lambda) {
+    if (assignmentParameters.isSavePaths()) {
+      pathWriter.splitPaths(iteration, lambda);
+    }
+  }
+
+  /**
+   * Called at the end of the iterations, before the volumes are saved.
+   *
+   * @return True on success.
+   */
+  protected boolean completePaths() {
+    return true;
+  }
+
   /**
    * Computes the Frank-Wolfe first derivative at a trial lambda.
    *
@@ -239,12 +295,27 @@ public class FrankWolfeAssignment extends Assignment {
    * currently committed flow x. VirtualNetwork.projectedVolumesToVehicles(...) is expected to
    * convert that projected trial flow into temporary PCUs before costs are evaluated.
    *
+   * <p>Once the costs were computed a first time, the derivative is evaluated from link level data
+   * extracted once per line search, without the cost parsers, unless some volume dependent costs
+   * don't have a standard BPR or CONICAL form.
+   *
    * @param iteration Current iteration.
    * @param lambda Trial lambda in [0, 1].
    * @param threads Number of worker threads to use for cost evaluation.
    * @return First derivative value, or NaN if the computation was aborted.
    */
   private double firstDerivativeAt(int iteration, double lambda, int threads) {
+    // Use the link level data extracted for this line search when possible
+    if (lineSearchData == null) {
+      lineSearchData = virtualNet.getLineSearchData(vehiclesParser);
+    }
+    if (lineSearchData != null) {
+      double firstDerivative = lineSearchData.getFirstDerivative(lambda);
+      if (!Double.isNaN(firstDerivative)) {
+        return firstDerivative;
+      }
+    }
+
     if (!virtualNet.projectedVolumesToVehicles(vehiclesParser, lambda)) {
       return Double.NaN;
     }
@@ -261,6 +332,9 @@ public class FrankWolfeAssignment extends Assignment {
    * @return Optimal lambda in [0, 1], or NaN if the computation was aborted.
    */
   private double lineSearchLambda(int iteration, int threads, double precision) {
+    // The current and auxiliary volumes changed since the previous line search
+    lineSearchData = null;
+
     double lowerLambda = 0.0;
     double upperLambda = 1.0;
 
@@ -288,9 +362,6 @@ public class FrankWolfeAssignment extends Assignment {
       double middleLambda = (lowerLambda + upperLambda) / 2.0;
       double derivativeAtMiddleLambda = firstDerivativeAt(iteration, middleLambda, threads);
 
-      // Debug log
-      System.out.println("lambda=" + middleLambda + " derivative=" + derivativeAtMiddleLambda);
-
       if (Double.isNaN(derivativeAtMiddleLambda)) {
         return Double.NaN;
       }
@@ -349,6 +420,7 @@ public class FrankWolfeAssignment extends Assignment {
    * @param precision double
    * @return boolean
    */
+  @Override
   public boolean stopRule(int iteration, double precision) {
     double currentGap = 0.0;
     double numerator = 0.0;
@@ -22,10 +22,9 @@
 package edu.uclouvain.core.nodus.compute.assign;
 
 import edu.uclouvain.core.nodus.NodusMapPanel;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.assign.workers.FrankWolfeAssignmentWorker;
 import edu.uclouvain.core.nodus.compute.assign.workers.IncrementalAssignmentWorker;
+import edu.uclouvain.core.nodus.compute.costs.LineSearchData;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
 import edu.uclouvain.core.nodus.compute.od.ODReader;
 import edu.uclouvain.core.nodus.compute.rules.NodeRulesReader;
@@ -51,6 +50,9 @@ import java.util.Iterator;
  */
 public class IncFrankWolfeAssignment extends Assignment {
 
+  /** Link level data used to evaluate the first derivatives of the current line search. */
+  private LineSearchData lineSearchData = null;
+
   /**
    * Initializes the assignment procedure.
    *
@@ -120,6 +122,9 @@ public class IncFrankWolfeAssignment extends Assignment {
     // Perform an incremental assignment with four iterations
     int nbIterationsInc = 4;
 
+    // Start the worker threads, that are kept alive for all the iterations
+    WorkQueue queue = startAssignmentWorkers(IncrementalAssignmentWorker::new);
+
     for (int iteration = 1; iteration <= nbIterationsInc; iteration++) {
       // Compute the load factor for the current iteration
       double den = nbIterationsInc * (nbIterationsInc + 1) / 2.0;
@@ -142,27 +147,8 @@ public class IncFrankWolfeAssignment extends Assignment {
           return false;
         }
 
-        // Create the work queue
-        WorkQueue queue = new WorkQueue();
-
-        // Create a set of worker threads
-        assignmentWorkers = new AssignmentWorker[threads];
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          assignmentWorkers[i] = new IncrementalAssignmentWorker(queue);
-          assignmentWorkers[i].start();
-        }
-
-        // Add the jobs to the queue
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          AssignmentWorkerParameters awp =
-              new AssignmentWorkerParameters(this, groupIndex, odClass, iteration, loadFactor);
-          queue.addWork(awp);
-        }
-
-        // Add special end-of-stream markers to terminate the workers
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          queue.addWork(WorkQueue.NO_MORE_WORK);
-        }
+        // Add the jobs to the queue of the worker threads
+        addAssignmentJobs(queue, odClass, iteration, loadFactor);
 
         // Initialize a progress monitor.
         int lengthOfTask = 0;
@@ -217,6 +203,9 @@ public class IncFrankWolfeAssignment extends Assignment {
     // Get the number of threads
     int threads = assignmentParameters.getThreads();
 
+    // Start the worker threads, that are kept alive for all the iterations
+    queue = startAssignmentWorkers(FrankWolfeAssignmentWorker::new);
+
     for (int iteration = start; iteration < end; iteration++) {
       // --- Assign all od classes
       for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
@@ -230,27 +219,8 @@ public class IncFrankWolfeAssignment extends Assignment {
           return false;
         }
 
-        // Create the work queue
-        WorkQueue queue = new WorkQueue();
-
-        // Create a set of worker threads
-        assignmentWorkers = new AssignmentWorker[threads];
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          assignmentWorkers[i] = new FrankWolfeAssignmentWorker(queue);
-          assignmentWorkers[i].start();
-        }
-
-        // Add the jobs to the queue
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          AssignmentWorkerParameters awp =
-              new AssignmentWorkerParameters(this, groupIndex, odClass, iteration);
-          queue.addWork(awp);
-        }
-
-        // Add special end-of-stream markers to terminate the workers
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          queue.addWork(WorkQueue.NO_MORE_WORK);
-        }
+        // Add the jobs to the queue of the worker threads
+        addAssignmentJobs(queue, odClass, iteration, 0.0);
 
         // Initialize a progress monitor.
         int lengthOfTask = 0;
@@ -317,12 +287,27 @@ public class IncFrankWolfeAssignment extends Assignment {
    * currently committed flow x. VirtualNetwork.projectedVolumesToVehicles(...) is expected to
    * convert that projected trial flow into temporary PCUs before costs are evaluated.
    *
+   * <p>Once the costs were computed a first time, the derivative is evaluated from link level data
+   * extracted once per line search, without the cost parsers, unless some volume dependent costs
+   * don't have a standard BPR or CONICAL form.
+   *
    * @param iteration Current iteration.
    * @param lambda Trial lambda in [0, 1].
    * @param threads Number of worker threads to use for cost evaluation.
    * @return First derivative value, or NaN if the computation was aborted.
    */
   private double firstDerivativeAt(int iteration, double lambda, int threads) {
+    // Use the link level data extracted for this line search when possible
+    if (lineSearchData == null) {
+      lineSearchData = virtualNet.getLineSearchData(vehiclesParser);
+    }
+    if (lineSearchData != null) {
+      double firstDerivative = lineSearchData.getFirstDerivative(lambda);
+      if (!Double.isNaN(firstDerivative)) {
+        return firstDerivative;
+      }
+    }
+
     if (!virtualNet.projectedVolumesToVehicles(vehiclesParser, lambda)) {
       return Double.NaN;
     }
@@ -339,6 +324,9 @@ public class IncFrankWolfeAssignment extends Assignment {
    * @return Optimal lambda in [0, 1], or NaN if the computation was aborted.
    */
   private double lineSearchLambda(int iteration, int threads, double precision) {
+    // The current and auxiliary volumes changed since the previous line search
+    lineSearchData = null;
+
     double lowerLambda = 0.0;
     double upperLambda = 1.0;
 
@@ -431,6 +419,7 @@ public class IncFrankWolfeAssignment extends Assignment {
    * @param precision double
    * @return boolean
    */
+  @Override
   public boolean stopRule(int iteration, double precision) {
     double currentGap = 0.0;
     double numerator = 0.0;
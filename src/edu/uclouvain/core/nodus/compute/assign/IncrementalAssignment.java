@@ -22,8 +22,6 @@
 package edu.uclouvain.core.nodus.compute.assign;
 
 import edu.uclouvain.core.nodus.NodusMapPanel;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.assign.workers.IncrementalAssignmentWorker;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
 import edu.uclouvain.core.nodus.compute.od.ODReader;
@@ -117,6 +115,12 @@ public class IncrementalAssignment extends Assignment {
     NodusMapPanel nodusMapPanel = nodusProject.getNodusMapPanel();
     startGarbageCollectionRunner();
 
+    // Start the worker threads, that are kept alive for all the iterations
+    WorkQueue queue = startAssignmentWorkers(IncrementalAssignmentWorker::new);
+
+    // Keep the shortest path trees, as most of them can be updated at the next iteration
+    keepShortestPathTrees();
+
     for (int iteration = 1; iteration <= assignmentParameters.getNbIterations(); iteration++) {
       // Compute the load factor for the current iteration
       double denominator =
@@ -140,27 +144,8 @@ public class IncrementalAssignment extends Assignment {
           return false;
         }
 
-        // Create the work queue
-        WorkQueue queue = new WorkQueue();
-
-        // Create a set of worker threads
-        assignmentWorkers = new AssignmentWorker[threads];
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          assignmentWorkers[i] = new IncrementalAssignmentWorker(queue);
-          assignmentWorkers[i].start();
-        }
-
-        // Add the jobs to the queue
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          AssignmentWorkerParameters awp =
-              new AssignmentWorkerParameters(this, groupIndex, odClass, iteration, loadFactor);
-          queue.addWork(awp);
-        }
-
-        // Add special end-of-stream markers to terminate the workers
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          queue.addWork(WorkQueue.NO_MORE_WORK);
-        }
+        // Add the jobs to the queue of the worker threads
+        addAssignmentJobs(queue, odClass, iteration, loadFactor);
 
         // Initialize a progress monitor with the number of OD matrix rows to assign
         int lengthOfTask = 0;
@@ -204,6 +189,7 @@ public class IncrementalAssignment extends Assignment {
     }
 
     // Now save virtual network
+    shortestPathTreeCache = null;
     VirtualNetworkWriter vnw = new VirtualNetworkWriter(assignmentParameters, virtualNet);
     return vnw.save();
   }
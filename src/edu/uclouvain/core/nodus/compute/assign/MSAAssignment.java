@@ -22,8 +22,6 @@
 package edu.uclouvain.core.nodus.compute.assign;
 
 import edu.uclouvain.core.nodus.NodusMapPanel;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorker;
-import edu.uclouvain.core.nodus.compute.assign.workers.AssignmentWorkerParameters;
 import edu.uclouvain.core.nodus.compute.assign.workers.MSAAssignmentWorker;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
 import edu.uclouvain.core.nodus.compute.od.ODReader;
@@ -101,6 +99,11 @@ public class MSAAssignment extends Assignment {
       }
     }
 
+    // Start from the volumes of a reference scenario if asked
+    if (!loadWarmStartVolumes()) {
+      return false;
+    }
+
     // Create a path writer
     createPathWriter();
 
@@ -123,8 +126,22 @@ public class MSAAssignment extends Assignment {
     NodusMapPanel nodusMapPanel = nodusProject.getNodusMapPanel();
     startGarbageCollectionRunner();
 
+    // Start the worker threads, that are kept alive for all the iterations
+    WorkQueue queue = startAssignmentWorkers(MSAAssignmentWorker::new);
+
+    // Keep the shortest path trees, as most of them can be updated at the next iteration
+    keepShortestPathTrees();
+
+    // Measure the convergence of the iterations
+    convergenceMonitor = new ConvergenceMonitor(virtualNet);
+
     for (int iteration = 1; iteration <= assignmentParameters.getNbIterations(); iteration++) {
+      convergenceMonitor.startIteration(iteration);
       double split = 1.0 / iteration;
+      if (isWarmStarted()) {
+        // The volumes of the reference scenario are the solution of a first iteration
+        split = 1.0 / (iteration + 1);
+      }
 
       for (byte odClass = 0; odClass < virtualNet.getNbODClasses(); odClass++) {
 
@@ -140,28 +157,10 @@ public class MSAAssignment extends Assignment {
           nodusMapPanel.stopProgress();
           return false;
         }
+        convergenceMonitor.phaseCompleted(ConvergenceMonitor.PHASE_COSTS);
 
-        // Create the work queue
-        WorkQueue queue = new WorkQueue();
-
-        // Create a set of worker threads
-        assignmentWorkers = new AssignmentWorker[threads];
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          assignmentWorkers[i] = new MSAAssignmentWorker(queue);
-          assignmentWorkers[i].start();
-        }
-
-        // Add the jobs to the queue
-        for (byte groupIndex = 0; groupIndex < (byte) virtualNet.getGroups().length; groupIndex++) {
-          AssignmentWorkerParameters awp =
-              new AssignmentWorkerParameters(this, groupIndex, odClass, iteration);
-          queue.addWork(awp);
-        }
-
-        // Add special end-of-stream markers to terminate the workers
-        for (int i = 0; i < assignmentWorkers.length; i++) {
-          queue.addWork(WorkQueue.NO_MORE_WORK);
-        }
+        // Add the jobs to the queue of the worker threads
+        addAssignmentJobs(queue, odClass, iteration, 0.0);
 
         // Initialize a progress monitor with the number of OD matrix rows to assign
         int lengthOfTask = 0;
@@ -194,8 +193,12 @@ public class MSAAssignment extends Assignment {
             return false;
           }
         }
+        convergenceMonitor.phaseCompleted(ConvergenceMonitor.PHASE_ALL_OR_NOTHING);
       } // Next od class
 
+      // Relative gap of the solution this iteration started from
+      convergenceMonitor.evaluate();
+
       // Now combine the auxiliary volumes with the current volume
       if (!splitVolumes(split)) {
         return false;
@@ -205,13 +208,20 @@ public class MSAAssignment extends Assignment {
         pathWriter.splitPaths(iteration, split);
       }
 
+      convergenceMonitor.phaseCompleted(ConvergenceMonitor.PHASE_UPDATE);
+      convergenceMonitor.iterationCompleted(split);
+
       // Test if the stop rule is satisfied
-      if (stopRule(iteration, assignmentParameters.getPrecision())) {
+      if (isConverged(iteration)) {
         break;
       }
     }
 
-    // Save the volumes
+    // Save the convergence trace and the volumes
+    if (!convergenceMonitor.save(nodusProject, scenario)) {
+      return false;
+    }
+    shortestPathTreeCache = null;
     VirtualNetworkWriter vnw = new VirtualNetworkWriter(assignmentParameters, virtualNet);
     // long end = System.currentTimeMillis();
     // System.out.println("Duration : " + (end - Start) / 1000);
@@ -270,6 +280,7 @@ public class MSAAssignment extends Assignment {
    * @param precision double
    * @return boolean
    */
+  @Override
   public boolean stopRule(int iteration, double precision) {
     double currentGap = 0.0;
     double numerator = 0.0;
@@ -29,6 +29,9 @@ import edu.uclouvain.core.nodus.NodusProject;
 import edu.uclouvain.core.nodus.compute.assign.AllOrNothingAssignment;
 import edu.uclouvain.core.nodus.compute.assign.Assignment;
 import edu.uclouvain.core.nodus.compute.assign.AssignmentParameters;
+import edu.uclouvain.core.nodus.compute.assign.BiconjugateFrankWolfeAssignment;
+import edu.uclouvain.core.nodus.compute.assign.BushAssignment;
+import edu.uclouvain.core.nodus.compute.assign.ConjugateFrankWolfeAssignment;
 import edu.uclouvain.core.nodus.compute.assign.DynamicTimeDependentAssignment;
 import edu.uclouvain.core.nodus.compute.assign.ExactMFAssignment;
 import edu.uclouvain.core.nodus.compute.assign.FastMFAssignment;
@@ -168,6 +171,15 @@ public class AssignmentDlg extends EscapeDialog {
   /** . */
   private GridBagLayout equilibriumTabGridBagLayout = new GridBagLayout();
 
+  /** . */
+  private JRadioButton biconjugateFrankWolfeRadioButton = new JRadioButton();
+
+  /** . */
+  private JRadioButton bushRadioButton = new JRadioButton();
+
+  /** . */
+  private JRadioButton conjugateFrankWolfeRadioButton = new JRadioButton();
+
   /** . */
   private JRadioButton exactMFRadioButton = new JRadioButton();
 
@@ -261,6 +273,12 @@ public class AssignmentDlg extends EscapeDialog {
   /** . */
   private JButton preferencesButton = null;
 
+  /** . */
+  private JLabel relativeGapLabel = new JLabel();
+
+  /** . */
+  private JSpinner relativeGapSpinner = new JSpinner();
+
   /** . */
   private JLabel scenarioLabel = new JLabel();
 
@@ -294,6 +312,12 @@ public class AssignmentDlg extends EscapeDialog {
   /** . */
   private GridBagLayout timeDependentTabGridBagLayout = new GridBagLayout();
 
+  /** . */
+  private JCheckBox warmStartCheckBox = new JCheckBox();
+
+  /** . */
+  private JSpinner warmStartSpinner = new JSpinner();
+
   /** . */
   private final JButton saveButton = new JButton();
 
@@ -412,6 +436,10 @@ public class AssignmentDlg extends EscapeDialog {
     ap.setNbIterations(Integer.parseInt(iterationSpinner.getValue().toString()));
     ap.setScenario(Integer.parseInt(scenarioSpinner.getValue().toString()));
     ap.setPrecision(Float.parseFloat(precisionSpinner.getValue().toString()));
+    ap.setRelativeGap(Double.parseDouble(relativeGapSpinner.getValue().toString()));
+    if (warmStartCheckBox.isEnabled() && warmStartCheckBox.isSelected()) {
+      ap.setWarmStartScenario(Integer.parseInt(warmStartSpinner.getValue().toString()));
+    }
     ap.setSavePaths(pathsCheckBox.isSelected());
     ap.setDetailedPaths(detailedPathCheckBox.isSelected());
     ap.setCostMarkup(Float.parseFloat(costMarkupSpinner.getValue().toString()));
@@ -461,6 +489,15 @@ public class AssignmentDlg extends EscapeDialog {
       case Assignment.INCREMENTAL_FRANK_WOLFE:
         as = new IncFrankWolfeAssignment(ap);
         break;
+      case Assignment.CONJUGATE_FRANK_WOLFE:
+        as = new ConjugateFrankWolfeAssignment(ap);
+        break;
+      case Assignment.BICONJUGATE_FRANK_WOLFE:
+        as = new BiconjugateFrankWolfeAssignment(ap);
+        break;
+      case Assignment.BUSH_BASED:
+        as = new BushAssignment(ap);
+        break;
       case Assignment.FAST_MULTI_FLOW:
         as = new FastMFAssignment(ap);
         break;
@@ -497,6 +534,17 @@ public class AssignmentDlg extends EscapeDialog {
     updateOptions();
   }
 
+  /**
+   * Enables the warm start options. The volumes of a previous scenario can't be combined with
+   * saved paths, as their weights would not be known.
+   */
+  private void enableWarmStart() {
+    if (!pathsCheckBox.isSelected()) {
+      warmStartCheckBox.setEnabled(true);
+      warmStartSpinner.setEnabled(warmStartCheckBox.isSelected());
+    }
+  }
+
   /**
    * Enables the GUI components relevant for the K-Shortest paths assignment method.
    *
@@ -576,6 +624,33 @@ public class AssignmentDlg extends EscapeDialog {
     odTablesComboBox.setMaximumRowCount(n);
   }
 
+  /**
+   * Enables the GUI components relevant for the bi-conjugate Frank-Wolfe assignment method.
+   *
+   * @param e ChangeEvent
+   */
+  private void biconjugateFrankWolfeRadioButton_stateChanged(ActionEvent e) {
+    updateOptions();
+  }
+
+  /**
+   * Enables the GUI components relevant for the bush-based assignment method.
+   *
+   * @param e ChangeEvent
+   */
+  private void bushRadioButton_stateChanged(ActionEvent e) {
+    updateOptions();
+  }
+
+  /**
+   * Enables the GUI components relevant for the conjugate Frank-Wolfe assignment method.
+   *
+   * @param e ChangeEvent
+   */
+  private void conjugateFrankWolfeRadioButton_stateChanged(ActionEvent e) {
+    updateOptions();
+  }
+
   /**
    * Enables the GUI components relevant for the Frank-Wolfe assignment method.
    *
@@ -760,6 +835,21 @@ public class AssignmentDlg extends EscapeDialog {
     if (dynamicTimeDependentRadioButton.isSelected()) {
       assignmentMethod = 8;
     }
+
+    // Conjugate FW
+    if (conjugateFrankWolfeRadioButton.isSelected()) {
+      assignmentMethod = 9;
+    }
+
+    // Bi-conjugate FW
+    if (biconjugateFrankWolfeRadioButton.isSelected()) {
+      assignmentMethod = 10;
+    }
+
+    // Bush-based
+    if (bushRadioButton.isSelected()) {
+      assignmentMethod = 11;
+    }
     return assignmentMethod;
   }
 
@@ -1138,6 +1228,36 @@ public class AssignmentDlg extends EscapeDialog {
           }
         });
 
+    conjugateFrankWolfeRadioButton.setText(
+        i18n.get(AssignmentDlg.class, "Conjugate_Frank_Wolfe", "Conjugate Frank-Wolfe"));
+    conjugateFrankWolfeRadioButton.addActionListener(
+        new java.awt.event.ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent e) {
+            conjugateFrankWolfeRadioButton_stateChanged(e);
+          }
+        });
+
+    biconjugateFrankWolfeRadioButton.setText(
+        i18n.get(AssignmentDlg.class, "Biconjugate_Frank_Wolfe", "Bi-conjugate Frank-Wolfe"));
+    biconjugateFrankWolfeRadioButton.addActionListener(
+        new java.awt.event.ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent e) {
+            biconjugateFrankWolfeRadioButton_stateChanged(e);
+          }
+        });
+
+    bushRadioButton.setText(
+        i18n.get(AssignmentDlg.class, "Bush_based", "Bush-based (Algorithm B)"));
+    bushRadioButton.addActionListener(
+        new java.awt.event.ActionListener() {
+          @Override
+          public void actionPerformed(ActionEvent e) {
+            bushRadioButton_stateChanged(e);
+          }
+        });
+
     exactMFRadioButton.setText(
         i18n.get(AssignmentDlg.class, "Multi_flow_Exact_method", "Multi-flow (Exact method)"));
     exactMFRadioButton.addActionListener(
@@ -1179,6 +1299,17 @@ public class AssignmentDlg extends EscapeDialog {
         });
 
     precisionLabel.setText(i18n.get(AssignmentDlg.class, "Precision", "Precision"));
+    relativeGapLabel.setText(i18n.get(AssignmentDlg.class, "Relative_gap", "Relative gap"));
+    warmStartCheckBox.setText(
+        i18n.get(AssignmentDlg.class, "Warm_start", "Start from scenario"));
+    warmStartCheckBox.setOpaque(false);
+    warmStartCheckBox.addChangeListener(
+        new ChangeListener() {
+          @Override
+          public void stateChanged(ChangeEvent evt) {
+            updateOptions();
+          }
+        });
     scenarioLabel.setHorizontalAlignment(SwingConstants.CENTER);
     scenarioLabel.setBorder(new LineBorder(Color.GRAY));
     scenarioLabel.setText(i18n.get(AssignmentDlg.class, "Scenario", "Scenario"));
@@ -1454,6 +1585,48 @@ public class AssignmentDlg extends EscapeDialog {
             new Insets(5, 5, 5, 5),
             0,
             0));
+    equilibriumTab.add(
+        conjugateFrankWolfeRadioButton,
+        new GridBagConstraints(
+            0,
+            4,
+            1,
+            1,
+            0.1,
+            0.0,
+            GridBagConstraints.NORTHWEST,
+            GridBagConstraints.NONE,
+            new Insets(5, 5, 5, 5),
+            0,
+            0));
+    equilibriumTab.add(
+        biconjugateFrankWolfeRadioButton,
+        new GridBagConstraints(
+            0,
+            5,
+            1,
+            1,
+            0.1,
+            0.0,
+            GridBagConstraints.NORTHWEST,
+            GridBagConstraints.NONE,
+            new Insets(5, 5, 5, 5),
+            0,
+            0));
+    equilibriumTab.add(
+        bushRadioButton,
+        new GridBagConstraints(
+            0,
+            6,
+            1,
+            1,
+            0.1,
+            0.0,
+            GridBagConstraints.NORTHWEST,
+            GridBagConstraints.NONE,
+            new Insets(5, 5, 5, 5),
+            0,
+            0));
 
     assignmentTabbedPane.add(
         multiflowTab, i18n.get(AssignmentDlg.class, "Multi_flow", "Multi-flow"));
@@ -1579,6 +1752,9 @@ public class AssignmentDlg extends EscapeDialog {
     final SpinnerListModel precisionSpinnerModel =
         new SpinnerListModel(
             new String[] {"0.05", "0.06", "0.07", "0.08", "0.09", "0.1", "0.15", "0.2"});
+    final SpinnerListModel relativeGapSpinnerModel =
+        new SpinnerListModel(
+            new String[] {"0", "0.01", "0.005", "0.001", "0.0005", "0.0001", "0.00005", "0.00001"});
 
     final SpinnerListModel costMarkUpSpinnerModel =
         new SpinnerListModel(
@@ -1634,7 +1810,7 @@ public class AssignmentDlg extends EscapeDialog {
     equilibriumTab.add(
         precisionLabel,
         new GridBagConstraints(
-            0,
+            1,
             3,
             1,
             1,
@@ -1648,7 +1824,7 @@ public class AssignmentDlg extends EscapeDialog {
     equilibriumTab.add(
         precisionSpinner,
         new GridBagConstraints(
-            1,
+            2,
             3,
             1,
             1,
@@ -1659,6 +1835,62 @@ public class AssignmentDlg extends EscapeDialog {
             new Insets(0, 0, 5, 5),
             0,
             0));
+    equilibriumTab.add(
+        relativeGapLabel,
+        new GridBagConstraints(
+            1,
+            4,
+            1,
+            1,
+            0.0,
+            0.5,
+            GridBagConstraints.EAST,
+            GridBagConstraints.NONE,
+            new Insets(0, 0, 5, 5),
+            0,
+            0));
+    equilibriumTab.add(
+        relativeGapSpinner,
+        new GridBagConstraints(
+            2,
+            4,
+            1,
+            1,
+            0.0,
+            0.5,
+            GridBagConstraints.WEST,
+            GridBagConstraints.HORIZONTAL,
+            new Insets(0, 0, 5, 5),
+            0,
+            0));
+    equilibriumTab.add(
+        warmStartCheckBox,
+        new GridBagConstraints(
+            1,
+            5,
+            1,
+            1,
+            0.0,
+            0.5,
+            GridBagConstraints.EAST,
+            GridBagConstraints.NONE,
+            new Insets(0, 0, 5, 5),
+            0,
+            0));
+    equilibriumTab.add(
+        warmStartSpinner,
+        new GridBagConstraints(
+            2,
+            5,
+            1,
+            1,
+            0.0,
+            0.5,
+            GridBagConstraints.WEST,
+            GridBagConstraints.HORIZONTAL,
+            new Insets(0, 0, 5, 5),
+            0,
+            0));
 
     iterationSpinner.setModel(iterationSpinnerModel);
     iterationSpinner.addChangeListener(
@@ -1678,6 +1910,8 @@ public class AssignmentDlg extends EscapeDialog {
         });
 
     precisionSpinner.setModel(precisionSpinnerModel);
+    relativeGapSpinner.setModel(relativeGapSpinnerModel);
+    warmStartSpinner.setModel(new SpinnerNumberModel(0, 0, NodusC.MAXSCENARIOS - 1, 1));
     costMarkupSpinner.setModel(costMarkUpSpinnerModel);
     maxDetourSpinner.setModel(maxDetourSpinnerModel);
 
@@ -1685,6 +1919,9 @@ public class AssignmentDlg extends EscapeDialog {
     assignmentButtonGroup.add(msaRadioButton);
     assignmentButtonGroup.add(frankWolfeRadioButton);
     assignmentButtonGroup.add(incFrankWolfeRadioButton);
+    assignmentButtonGroup.add(conjugateFrankWolfeRadioButton);
+    assignmentButtonGroup.add(biconjugateFrankWolfeRadioButton);
+    assignmentButtonGroup.add(bushRadioButton);
     assignmentButtonGroup.add(exactMFRadioButton);
     assignmentButtonGroup.add(fastMFRadioButton);
     assignmentButtonGroup.add(incrementalRadioButton);
@@ -1823,6 +2060,42 @@ public class AssignmentDlg extends EscapeDialog {
     }
     setSpinnerDoubleValue(precisionSpinner, doubleValue);
 
+    // Relative gap
+    doubleValue =
+        nodusMapPanel
+            .getNodusProject()
+            .getLocalProperty(NodusC.PROP_ASSIGNMENT_RELATIVE_GAP + scenarioSuffix, -1.0);
+    if (doubleValue == -1.0) {
+      doubleValue =
+          nodusMapPanel
+              .getNodusProject()
+              .getLocalProperty(NodusC.PROP_ASSIGNMENT_RELATIVE_GAP, 0.0);
+    }
+    setSpinnerDoubleValue(relativeGapSpinner, doubleValue);
+
+    // Warm start
+    intValue =
+        nodusMapPanel
+            .getNodusProject()
+            .getLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START + scenarioSuffix, -1);
+    if (intValue == -1) {
+      intValue =
+          nodusMapPanel.getNodusProject().getLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START, 0);
+    }
+    warmStartCheckBox.setSelected(intValue == 1);
+
+    intValue =
+        nodusMapPanel
+            .getNodusProject()
+            .getLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO + scenarioSuffix, -1);
+    if (intValue == -1) {
+      intValue =
+          nodusMapPanel
+              .getNodusProject()
+              .getLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO, 0);
+    }
+    warmStartSpinner.setValue(intValue);
+
     // Cost mark-up
     doubleValue =
         nodusMapPanel
@@ -2091,6 +2364,34 @@ public class AssignmentDlg extends EscapeDialog {
             NodusC.PROP_ASSIGNMENT_PRECISION + scenarioSuffix,
             precisionSpinner.getValue().toString());
 
+    nodusMapPanel
+        .getNodusProject()
+        .setLocalProperty(
+            NodusC.PROP_ASSIGNMENT_RELATIVE_GAP, relativeGapSpinner.getValue().toString());
+    nodusMapPanel
+        .getNodusProject()
+        .setLocalProperty(
+            NodusC.PROP_ASSIGNMENT_RELATIVE_GAP + scenarioSuffix,
+            relativeGapSpinner.getValue().toString());
+
+    int warmStart = 0;
+    if (warmStartCheckBox.isSelected()) {
+      warmStart = 1;
+    }
+    nodusMapPanel.getNodusProject().setLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START, warmStart);
+    nodusMapPanel
+        .getNodusProject()
+        .setLocalProperty(NodusC.PROP_ASSIGNMENT_WARM_START + scenarioSuffix, warmStart);
+    nodusMapPanel
+        .getNodusProject()
+        .setLocalProperty(
+            NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO, warmStartSpinner.getValue().toString());
+    nodusMapPanel
+        .getNodusProject()
+        .setLocalProperty(
+            NodusC.PROP_ASSIGNMENT_WARM_START_SCENARIO + scenarioSuffix,
+            warmStartSpinner.getValue().toString());
+
     nodusMapPanel
         .getNodusProject()
         .setLocalProperty(NodusC.PROP_COST_MARKUP, costMarkupSpinner.getValue().toString());
@@ -2244,6 +2545,21 @@ public class AssignmentDlg extends EscapeDialog {
 
         break;
 
+      case Assignment.CONJUGATE_FRANK_WOLFE:
+        conjugateFrankWolfeRadioButton.setSelected(true);
+
+        break;
+
+      case Assignment.BICONJUGATE_FRANK_WOLFE:
+        biconjugateFrankWolfeRadioButton.setSelected(true);
+
+        break;
+
+      case Assignment.BUSH_BASED:
+        bushRadioButton.setSelected(true);
+
+        break;
+
       case Assignment.FAST_MULTI_FLOW:
         fastMFRadioButton.setSelected(true);
 
@@ -2310,6 +2626,10 @@ public class AssignmentDlg extends EscapeDialog {
     iterationSpinner.setEnabled(enabled);
     precisionLabel.setEnabled(enabled);
     precisionSpinner.setEnabled(enabled);
+    relativeGapLabel.setEnabled(enabled);
+    relativeGapSpinner.setEnabled(enabled);
+    warmStartCheckBox.setEnabled(enabled);
+    warmStartSpinner.setEnabled(enabled);
     costMarkUpLabel.setEnabled(enabled);
     costMarkupSpinner.setEnabled(enabled);
     maxDetourLabel.setEnabled(enabled);
@@ -2340,8 +2660,11 @@ public class AssignmentDlg extends EscapeDialog {
     if (msaRadioButton.isSelected()) {
       precisionLabel.setEnabled(true);
       precisionSpinner.setEnabled(true);
+      relativeGapLabel.setEnabled(true);
+      relativeGapSpinner.setEnabled(true);
       iterationLabel.setEnabled(true);
       iterationSpinner.setEnabled(true);
+      enableWarmStart();
 
       return;
     }
@@ -2356,17 +2679,30 @@ public class AssignmentDlg extends EscapeDialog {
     if (frankWolfeRadioButton.isSelected()) {
       precisionLabel.setEnabled(true);
       precisionSpinner.setEnabled(true);
+      relativeGapLabel.setEnabled(true);
+      relativeGapSpinner.setEnabled(true);
       iterationLabel.setEnabled(true);
       iterationSpinner.setEnabled(true);
+      enableWarmStart();
 
       return;
     }
 
-    if (incFrankWolfeRadioButton.isSelected()) {
+    if (incFrankWolfeRadioButton.isSelected()
+        || conjugateFrankWolfeRadioButton.isSelected()
+        || biconjugateFrankWolfeRadioButton.isSelected()
+        || bushRadioButton.isSelected()) {
       precisionLabel.setEnabled(true);
       precisionSpinner.setEnabled(true);
+      // The incremental Frank-Wolfe assignment doesn't compute the relative gap
+      relativeGapLabel.setEnabled(!incFrankWolfeRadioButton.isSelected());
+      relativeGapSpinner.setEnabled(!incFrankWolfeRadioButton.isSelected());
       iterationLabel.setEnabled(true);
       iterationSpinner.setEnabled(true);
+      if (conjugateFrankWolfeRadioButton.isSelected()
+          || biconjugateFrankWolfeRadioButton.isSelected()) {
+        enableWarmStart();
+      }
 
       return;
     }
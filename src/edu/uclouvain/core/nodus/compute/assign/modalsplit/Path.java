@@ -37,12 +37,6 @@ public class Path {
   /** True if the path is intermodal. False by default. */
   public boolean intermodal = false;
 
-  /**
-   * Hash key associated to the list of virtual links that are encountered along this path. This is
-   * used to detect identical paths.
-   */
-  public double detailedPathKey = 0.0;
-
   /** Market share of this path among all the alternative paths. */
   public double marketShare = 0;
 
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import java.util.ArrayList;
+
+/**
+ * View on the adjacency lists of a virtual network, used by the multi-flow assignments to compute
+ * alternative paths for each mode/means combination. Instead of rewriting the weights of the whole
+ * graph for each combination and alternative path, the view:
+ *
+ * <ul>
+ *   <li>masks the loading edges towards the other mode/means combinations while the edges are
+ *       relaxed (see {@link BinaryHeapDijkstra#setGraphView(AdjacencyGraphView)});
+ *   <li>keeps the list of the edges used by the current paths and of the edges which weight was
+ *       marked up, so that they can be reset in a time proportional to their number.
+ * </ul>
+ *
+ * @author Bart Jourquin
+ */
+public class AdjacencyGraphView {
+
+  /** Mode/means key used when all the mode/means combinations are open. */
+  public static final int ALL_MODE_MEANS = -1;
+
+  /** Edges which weight differs from their original weight. */
+  private ArrayList<AdjacencyNode> markedUpEdges = new ArrayList<>();
+
+  /** The mode/means combination the loading edges are open to. */
+  private int openModeMeansKey = ALL_MODE_MEANS;
+
+  /** Edges used by the paths computed since the last call to clearTree. */
+  private ArrayList<AdjacencyNode> treeEdges = new ArrayList<>();
+
+  /**
+   * Marks an edge as being used by a path of the current tree.
+   *
+   * @param edge The adjacency node that holds the edge.
+   */
+  public void addToTree(AdjacencyNode edge) {
+    if (!edge.inCurrentTree) {
+      edge.inCurrentTree = true;
+      treeEdges.add(edge);
+    }
+  }
+
+  /** Forgets the edges used by the paths of the current tree. */
+  public void clearTree() {
+    for (AdjacencyNode edge : treeEdges) {
+      edge.inCurrentTree = false;
+    }
+    treeEdges.clear();
+  }
+
+  /**
+   * Tests if an edge is hidden by the view. Only the loading edges towards another mode/means
+   * combination than the open one are hidden.
+   *
+   * @param edge The adjacency node that holds the edge.
+   * @return True if the edge must be ignored.
+   */
+  final boolean isMasked(AdjacencyNode edge) {
+    return openModeMeansKey != ALL_MODE_MEANS
+        && edge.loadingModeMeansKey != ALL_MODE_MEANS
+        && edge.loadingModeMeansKey != openModeMeansKey;
+  }
+
+  /**
+   * Multiplies the weight of all the edges of the current tree by a factor, to make the already
+   * used links more expensive for the next alternative paths.
+   *
+   * @param factor The cost markup factor.
+   */
+  public void markUpTree(double factor) {
+    for (AdjacencyNode edge : treeEdges) {
+      if (!edge.isIncreased) {
+        edge.isIncreased = true;
+        markedUpEdges.add(edge);
+      }
+      edge.edgeWeight *= factor;
+    }
+  }
+
+  /**
+   * Only opens the loading edges towards a given mode/means combination.
+   *
+   * @param modeMeansKey The key of the mode/means combination, or ALL_MODE_MEANS.
+   */
+  public void openModeMeans(int modeMeansKey) {
+    openModeMeansKey = modeMeansKey;
+  }
+
+  /**
+   * Restores the original weights of the marked up edges, forgets the current tree and opens all
+   * the mode/means combinations.
+   */
+  public void reset() {
+    for (AdjacencyNode edge : markedUpEdges) {
+      edge.edgeWeight = edge.originalEdgeWeight;
+      edge.isIncreased = false;
+    }
+    markedUpEdges.clear();
+    clearTree();
+    openModeMeansKey = ALL_MODE_MEANS;
+  }
+}
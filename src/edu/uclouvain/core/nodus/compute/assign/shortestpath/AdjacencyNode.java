@@ -44,21 +44,20 @@ public class AdjacencyNode {
   public boolean inCurrentTree = false;
 
   /**
-   * Flag used in ensure that the cost is only increased one time in a Dijkstra tree. Used in the
-   * FastMFAssignment.
+   * Flag set when the cost of this adjacency node was increased, so that it can be restored later.
+   * Used by the {@link AdjacencyGraphView}.
    */
   public boolean isIncreased = false;
 
-  /**
-   * Set to true if this node is a final destination in the set of routes that is computed. Used to
-   * improve the performances of the algorithm of Dijkstra, that now can stop once all the
-   * destinations are reached.
-   */
-  public boolean isNodeToReach;
-
   /** Latitude of node. */
   public double latitude;
 
+  /**
+   * Mode/means key of the end node of the virtual link if it is a loading virtual link, or
+   * AdjacencyGraphView.ALL_MODE_MEANS.
+   */
+  public int loadingModeMeansKey = AdjacencyGraphView.ALL_MODE_MEANS;
+
   /** Longitude of node. */
   public double longitude;
 
@@ -113,5 +112,8 @@ public class AdjacencyNode {
     originalEdgeWeight = edgeWeight;
     virtualLink = vl;
     endVirtualNode = vl.getEndVirtualNode().getId();
+    if (vl.getType() == VirtualLink.TYPE_LOAD) {
+      loadingModeMeansKey = vl.getEndVirtualNode().getModeMeansKey();
+    }
   }
 }
@@ -22,12 +22,21 @@
 package edu.uclouvain.core.nodus.compute.assign.shortestpath;
 
 /**
- * An implementation of the AStar shortest path algorithm using a binary heap.
+ * An implementation of the AStar shortest path algorithm using a heap. The nodes are ordered in the
+ * priority queue by the sum of their shortest path estimate and of a lower bound of their distance
+ * to the goal. This lower bound is given by a {@link LandmarkHeuristic} if one is set, or is the
+ * straight-line distance to the goal otherwise.
  *
  * @author Bart Jourquin
  */
 public class BinaryHeapAStar extends BinaryHeapDijkstra {
 
+  /** The goal of the current computation. */
+  private int goal;
+
+  /** The landmarks used to estimate the distance to the goal, or null. */
+  private LandmarkHeuristic landmarks = null;
+
   /**
    * Initializes the data structures.
    *
@@ -43,103 +52,51 @@ public class BinaryHeapAStar extends BinaryHeapDijkstra {
    * @param source Loading virtual node num
    * @param goal Unloading virtual node num
    */
+  @Override
   public void compute(int source, int goal) {
-    this.initializeSingleSource(graph, source);
+    this.goal = goal;
+    initializeSingleSource(source);
 
     int min = extractMin();
 
     while (min != goal) {
-      if (min == -1 || minWeight == Double.MAX_VALUE) {
+      if (min == -1) {
         System.err.println("Goal not reachable from source.");
         return;
       }
 
       weights[min] = minWeight;
 
-      for (AdjacencyNode curNode = graph[min];
-          curNode.nextNode != null;
-          curNode = curNode.nextNode) {
-        int nextNodeNum = curNode.nextNode.virtualNodeNum;
-        if (nodePos[nextNodeNum] != -1
-            && upperBoundCosts[nodePos[nextNodeNum]].goalEstWeight == 0) {
-          upperBoundCosts[nodePos[nextNodeNum]].updateGoalEstWeight(
-              curNode.nextNode.goalEst(graph[goal]));
-        }
-
-        relax(graph[min].virtualNodeNum, nextNodeNum, curNode.edgeWeight);
-      }
+      relaxEdges(min);
 
       min = extractMin();
     }
 
-    if (min != -1) {
-      weights[min] = minWeight;
-    }
+    weights[min] = minWeight;
   }
 
   /**
-   * This method lowers the value of a node in the binary heap and restores the heap property. The
-   * node is found in the heap using the nodePos array.
+   * Sets the landmarks used to estimate the distance to the goal. They must have been computed on
+   * the same graph.
    *
-   * @param nodeNum the number of the node to have its key decreased
-   * @param newVal the new key value
+   * @param landmarks The landmarks, or null to use the straight-line distance.
    */
-  @Override
-  public void decreaseKey(int nodeNum, double newVal) {
-    int y = nodePos[nodeNum];
-    upperBoundCosts[y].updateWeight(newVal);
-
-    int parent = y >> 1;
-
-    while (parent != 0 && upperBoundCosts[y].keyWeight < upperBoundCosts[parent].keyWeight) {
-      swap(y, parent);
-      y = parent;
-      parent = y >> 1;
-    }
+  public void setLandmarks(LandmarkHeuristic landmarks) {
+    this.landmarks = landmarks;
   }
 
   /**
-   * Heapify is a process that causes an input node to be swapped with the smaller of its children
-   * continually until either it reaches the bottom of the tree or is less than or equal to its
-   * children. Once the node "runs down" the tree, the heap property is restored for that node with
-   * respect to the node original position and its new children, if any.
+   * Returns the shortest path estimate of a node, plus the estimate of its distance to the goal.
    *
-   * @param i the index in the binary heap array of the node to perform heapify on
+   * @param node The node number.
+   * @param weight The shortest path estimate of the node.
+   * @return The key of the node in the priority queue.
    */
   @Override
-  public void heapify(int i) {
-    int l = i << 1;
-
-    int r = l + 1;
-    int smallest;
-
-    if (l <= heapSize && upperBoundCosts[l].keyWeight < upperBoundCosts[i].keyWeight) {
-      smallest = l;
-    } else {
-      smallest = i;
-    }
-
-    if (r <= heapSize && upperBoundCosts[r].keyWeight < upperBoundCosts[smallest].keyWeight) {
-      smallest = r;
-    }
-
-    if (smallest != i) {
-      swap(i, smallest);
-      heapify(smallest);
+  double priority(int node, double weight) {
+    if (landmarks != null) {
+      return weight + landmarks.lowerBound(node, goal);
     }
-  }
-
-  /**
-   * Initialize the shortest-path estimates and predecessor function. The predecessor function is
-   * left at the default of all zeros. Because there is no zero node in the graph, zero denotes a
-   * null value for a predecessor. The source node upperBoundCosts value is initially set to
-   * cost zero and all other nodes are set to have cost equal to the maximum double floating point
-   * precision value to represent infinity.
-   *
-   * @param graph the input graph in adjacency-list form
-   * @param source the number identifier of the source node
-   */
-  public void initializeSingleSource(AdjacencyNode[] graph, int source) {
-    super.initializeSingleSource(source);
+    return weight + graph[node].goalEst(graph[goal]);
   }
 }
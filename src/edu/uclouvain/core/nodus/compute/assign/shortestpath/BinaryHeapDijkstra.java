@@ -28,25 +28,68 @@ import java.util.Iterator;
 import java.util.LinkedList;
 
 /**
- * A Binary Heap implementation of the algorithm of Dijkstra. The Binary Heap implementation has
- * been proven to be the most effective for the class of problems to be resolved by means of virtual
- * networks.
+ * A heap based implementation of the algorithm of Dijkstra. A heap implementation has been proven
+ * to be the most effective for the class of problems to be resolved by means of virtual networks.
+ * The priority queue is an indexed 4-ary heap by default, but another {@link IndexedPriorityQueue}
+ * can be set with {@link #setPriorityQueue(IndexedPriorityQueue)}.
+ *
+ * <p>The state of the nodes is stamped with a generation number, incremented for each new source.
+ * Only the nodes reached from the previous source are reset, so that a shortest path tree that
+ * only covers a small part of the graph doesn't pay for the initialization of the whole graph.
+ *
+ * <p>On a compressed graph, a tree computed with previous edge weights can be updated with {@link
+ * #update(int, LinkedList, ShortestPathTree, int[])} instead of being computed from scratch, which
+ * is much faster when the weights of only a few edges changed (late iterations of an equilibrium
+ * assignment).
  *
  * @author Bart Jourquin
  */
 public class BinaryHeapDijkstra {
 
-  /**
-   * Array of BHNodes containing information on the upper bounds of the cost of a shortest path from
-   * source weights to a node in upperBoundCosts.
-   */
-  BinaryHeapNode[] upperBoundCosts;
-
-  /** Graph in which shortest paths must be computed. */
+  /** Graph in which shortest paths must be computed, in adjacency-list form. */
   AdjacencyNode[] graph;
 
-  /** Heap size. */
-  int heapSize;
+  /** View that hides some edges of the adjacency lists, or null. */
+  AdjacencyGraphView graphView = null;
+
+  /** Graph in which shortest paths must be computed, in compressed (CSR) form. */
+  CompressedGraph compressedGraph;
+
+  /** Weights of the edges of the compressed graph. */
+  double[] edgeWeights;
+
+  /** Number of nodes in the graph. */
+  int nbNodes;
+
+  /** The priority queue of the nodes to settle. */
+  IndexedPriorityQueue queue;
+
+  /** Current generation, incremented for each new source. */
+  int generation = 0;
+
+  /** Shortest path estimate of each node, valid if reachedStamp equals the current generation. */
+  double[] upperBoundCosts;
+
+  /** Generation in which each node was reached. */
+  int[] reachedStamp;
+
+  /** Generation in which each node was settled. */
+  int[] settledStamp;
+
+  /** Generation in which each node was marked as a node to reach. */
+  int[] toReachStamp;
+
+  /** Nodes settled from the current source, in the order they were settled. */
+  int[] settledNodes;
+
+  /** Number of nodes in settledNodes. */
+  int nbSettledNodes = 0;
+
+  /** Nodes reached from the current source, which must be reset for the next source. */
+  int[] reachedNodes;
+
+  /** Number of nodes in reachedNodes. */
+  int nbReachedNodes = 0;
 
   /** Weight of the shortest path to the vertex last extracted from the priority queue. */
   double minWeight;
@@ -54,21 +97,39 @@ public class BinaryHeapDijkstra {
   /** Used to stop the search when all the nodes that have to be reached are reached. */
   int nbNodesToReach;
 
-  /** Positions of nodes in the heap -- needed for decreaseKey. */
-  int[] nodePos;
+  /** The distinct nodes that have to be reached from the current source. */
+  int[] nodesToReach;
+
+  /** Weight under which all the nodes of the last computed tree are known, or NaN. */
+  double treeLimit = Double.NaN;
+
+  /** Generation in which each node was in the tree to update. Allocated by the first update. */
+  int[] treeStamp;
+
+  /** Generation in which each node was found to depend on a changed edge. */
+  int[] affectedStamp;
+
+  /** Generation in which each node was added to the order of the updated tree. */
+  int[] orderStamp;
+
+  /** First child of each node in the updated tree, or 0. */
+  int[] firstChild;
+
+  /** Next child of the predecessor of each node in the updated tree, or 0. */
+  int[] nextSibling;
 
   /** Set of predecessors. */
   int[] pi;
 
+  /** Edge of the compressed graph used to reach each node from its predecessor. */
+  int[] piEdge;
+
+  /** Adjacency node that holds the edge used to reach each node from its predecessor. */
+  AdjacencyNode[] piAdjacencyNode;
+
   /** Set of weights of the shortest paths. */
   double[] weights;
 
-  /**
-   * Array of BHNodes that will be allocated at the initialization of the class. Used to feed
-   * "upperBoundCosts" at each new shortest path tree computation.
-   */
-  BinaryHeapNode[] stock;
-
   /** Virtual network used for the assignment. */
   private VirtualNetwork virtualNet;
 
@@ -79,23 +140,7 @@ public class BinaryHeapDijkstra {
    */
   public BinaryHeapDijkstra(AdjacencyNode[] graph) {
     this.graph = graph;
-    weights = new double[graph.length];
-
-    for (int i = 0; i < graph.length; i++) {
-      weights[i] = Double.MAX_VALUE;
-    }
-
-    pi = new int[graph.length];
-
-    stock = new BinaryHeapNode[graph.length];
-    upperBoundCosts = new BinaryHeapNode[graph.length];
-
-    // Initialization of binary heap specific implementation
-    for (int i = 0; i < graph.length; i++) {
-      stock[i] = new BinaryHeapNode();
-    }
-
-    nodePos = new int[graph.length];
+    allocate(graph.length);
   }
 
   /**
@@ -109,6 +154,72 @@ public class BinaryHeapDijkstra {
     this.virtualNet = virtualNet;
   }
 
+  /**
+   * Initializes the needed data structures for a compressed graph.
+   *
+   * @param graph The compressed graph.
+   * @param edgeWeights The weights of the edges of the graph.
+   * @param virtualNet VirtualNetwork
+   */
+  public BinaryHeapDijkstra(
+      CompressedGraph graph, double[] edgeWeights, VirtualNetwork virtualNet) {
+    this.compressedGraph = graph;
+    this.edgeWeights = edgeWeights;
+    this.virtualNet = virtualNet;
+    allocate(graph.getNbNodes());
+  }
+
+  /**
+   * Replaces the weights of the edges of the compressed graph, keeping all the other data
+   * structures. This allows to reuse the same instance when the costs change.
+   *
+   * @param edgeWeights The new weights of the edges of the graph.
+   */
+  public void setEdgeWeights(double[] edgeWeights) {
+    this.edgeWeights = edgeWeights;
+  }
+
+  /** Allocates the arrays used by the algorithm for a graph of the given size. */
+  private void allocate(int nbNodes) {
+    this.nbNodes = nbNodes;
+    weights = new double[nbNodes];
+    Arrays.fill(weights, Double.MAX_VALUE);
+    pi = new int[nbNodes];
+    if (compressedGraph != null) {
+      piEdge = new int[nbNodes];
+    } else {
+      piAdjacencyNode = new AdjacencyNode[nbNodes];
+    }
+
+    upperBoundCosts = new double[nbNodes];
+    reachedStamp = new int[nbNodes];
+    settledStamp = new int[nbNodes];
+    toReachStamp = new int[nbNodes];
+    reachedNodes = new int[nbNodes];
+    settledNodes = new int[nbNodes];
+    nodesToReach = new int[nbNodes];
+
+    queue = new QuaternaryHeap(nbNodes);
+  }
+
+  /**
+   * Sets the view through which the adjacency lists are seen. The edges it masks are ignored.
+   *
+   * @param graphView The view, or null to use all the edges.
+   */
+  public void setGraphView(AdjacencyGraphView graphView) {
+    this.graphView = graphView;
+  }
+
+  /**
+   * Replaces the priority queue used by the algorithm.
+   *
+   * @param queue An empty priority queue, able to contain all the nodes of the graph.
+   */
+  public void setPriorityQueue(IndexedPriorityQueue queue) {
+    this.queue = queue;
+  }
+
   /**
    * Runs the Dijkstra algorithm to completion.
    *
@@ -119,8 +230,9 @@ public class BinaryHeapDijkstra {
    * @param demandList The row of the OD matrix having source as starting vertex
    */
   public void compute(int source, LinkedList<ODCell> demandList) {
-    setNodesToReach(demandList);
     initializeSingleSource(source);
+    setNodesToReach(demandList);
+    treeLimit = Double.POSITIVE_INFINITY;
 
     int min = extractMin();
 
@@ -128,17 +240,16 @@ public class BinaryHeapDijkstra {
       weights[min] = minWeight;
 
       // Speed-Up test
-      if (graph[min].isNodeToReach) {
+      if (toReachStamp[min] == generation) {
         nbNodesToReach--;
 
         if (nbNodesToReach == 0) {
+          treeLimit = minWeight;
           break;
         }
       }
 
-      for (AdjacencyNode cursor = graph[min]; cursor.nextNode != null; cursor = cursor.nextNode) {
-        relax(graph[min].virtualNodeNum, cursor.nextNode.virtualNodeNum, cursor.edgeWeight);
-      }
+      relaxEdges(min);
 
       min = extractMin();
     }
@@ -152,6 +263,7 @@ public class BinaryHeapDijkstra {
    */
   public void compute(int source, int goal) {
     initializeSingleSource(source);
+    treeLimit = Double.NaN;
 
     int min = extractMin();
 
@@ -161,68 +273,114 @@ public class BinaryHeapDijkstra {
         break;
       }
 
-      for (AdjacencyNode cursor = graph[min]; cursor.nextNode != null; cursor = cursor.nextNode) {
-        relax(graph[min].virtualNodeNum, cursor.nextNode.virtualNodeNum, cursor.edgeWeight);
-      }
+      relaxEdges(min);
 
       min = extractMin();
     }
   }
 
   /**
-   * This method lowers the value of a node in the binary heap and restores the heap property. The
-   * node is found in the heap using the nodePos array.
+   * Removes the node with the lowest shortest path estimate from the priority queue and marks it
+   * as settled. If the queue is empty, -1 is returned.
    *
-   * @param nodeNum int The number of the node to have its key decreased
-   * @param newVal double The new key value
+   * @return int The node number with the minimum shortest path estimate
    */
-  public void decreaseKey(int nodeNum, double newVal) {
-
-    int y = nodePos[nodeNum];
-    upperBoundCosts[y].weight = newVal;
-
-    int parent = y >> 1;
-
-    while (parent != 0 && upperBoundCosts[y].weight < upperBoundCosts[parent].weight) {
-      swap(y, parent);
-      y = parent;
-      parent = y >> 1;
+  public int extractMin() {
+    int min = queue.extractMin();
+    if (min != -1) {
+      settledStamp[min] = generation;
+      settledNodes[nbSettledNodes++] = min;
+      minWeight = upperBoundCosts[min];
     }
+    return min;
   }
 
   /**
-   * This method removes the minimum valued node form the binary heap, shifts the node at the bottom
-   * of the heap to the top and calls heapify on that node. If the heap is empty, -1 is returned.
+   * Returns the set of predecessors.
    *
-   * @return int The node number with the minimum shortest path estimate
+   * @return int[]
    */
-  public int extractMin() {
-    BinaryHeapNode min;
+  public int[] getPredecessors() {
+    return pi;
+  }
 
-    if (heapSize < 1) {
-      return -1;
-    }
+  /**
+   * Returns, for each node reached in the compressed graph, the index of the edge used to reach it
+   * from its predecessor. The virtual link can then be retrieved with {@link
+   * CompressedGraph#getVirtualLinkForEdge(int)}, without scanning the edges of the predecessor.
+   * Only relevant if pi[node] is not 0.
+   *
+   * @return int[], or null if the graph is in adjacency-list form.
+   */
+  public int[] getPredecessorEdges() {
+    return piEdge;
+  }
 
-    min = upperBoundCosts[1];
-    nodePos[upperBoundCosts[1].id] = -1; // node removed from node positions
-    upperBoundCosts[1] = upperBoundCosts[heapSize];
-    nodePos[upperBoundCosts[1].id] = 1; // largest value node now in position
-    // one
-    upperBoundCosts[heapSize] = null; // remove node
-    heapSize--;
-    heapify(1);
-    minWeight = min.weight;
+  /**
+   * Returns, for each node reached in the adjacency lists, the adjacency node that holds the edge
+   * used to reach it from its predecessor (its edge weight and virtual link). Only relevant if
+   * pi[node] is not 0.
+   *
+   * @return AdjacencyNode[], or null if the graph is in compressed form.
+   */
+  public AdjacencyNode[] getPredecessorAdjacencyNodes() {
+    return piAdjacencyNode;
+  }
 
-    return min.id;
+  /**
+   * Returns the nodes settled during the last computation, in the order they were settled. As a
+   * node is always settled after its predecessor, scanning this array backwards visits the shortest
+   * path tree from its leaves to its root.
+   *
+   * @return int[], of which only the first getNbSettledNodes() elements are relevant.
+   */
+  public int[] getSettledNodes() {
+    return settledNodes;
   }
 
   /**
-   * Returns the set of predecessors.
+   * Returns the number of nodes settled during the last computation.
    *
-   * @return int[]
+   * @return int
    */
-  public int[] getPredecessors() {
-    return pi;
+  public int getNbSettledNodes() {
+    return nbSettledNodes;
+  }
+
+  /**
+   * Returns a compact copy of the tree computed by the last call to {@link #compute(int,
+   * LinkedList)} or {@link #update(int, LinkedList, ShortestPathTree, int[])}, that can be kept to
+   * update it later.
+   *
+   * @return The tree, or null if the last computation didn't build a tree on a compressed graph.
+   */
+  public ShortestPathTree getTree() {
+    if (compressedGraph == null || Double.isNaN(treeLimit)) {
+      return null;
+    }
+
+    int size = 0;
+    for (int i = 0; i < nbSettledNodes; i++) {
+      if (upperBoundCosts[settledNodes[i]] <= treeLimit) {
+        size++;
+      }
+    }
+
+    int[] nodes = new int[size];
+    int[] edges = new int[size];
+    double[] nodeWeights = new double[size];
+    int n = 0;
+    for (int i = 0; i < nbSettledNodes; i++) {
+      int node = settledNodes[i];
+      if (upperBoundCosts[node] <= treeLimit) {
+        nodes[n] = node;
+        edges[n] = pi[node] == 0 ? -1 : piEdge[node];
+        nodeWeights[n] = upperBoundCosts[node];
+        n++;
+      }
+    }
+
+    return new ShortestPathTree(nodes, edges, nodeWeights, treeLimit);
   }
 
   /**
@@ -235,92 +393,321 @@ public class BinaryHeapDijkstra {
   }
 
   /**
-   * Heapify is a process that causes an input node to be swapped with the smaller of its children
-   * continually until either it reaches the bottom of the tree or is less than or equal to its
-   * children. Once the node "runs down" the tree, the heap property is restored for that node with
-   * respect to the node original position and its new children, if any.
+   * Initialize the shortest-path estimates and predecessor function. The predecessor function is
+   * left at the default of all zeros. Because there is no zero node in the graph, zero denotes a
+   * null value for a predecessor. The nodes reached from the previous source are reset to an
+   * infinite cost and the source node is inserted in the priority queue with a cost of zero.
    *
-   * @param i int the index in the binary heap array of the node to perform heapify on
+   * @param source The number identifier of the source node
    */
-  public void heapify(int i) {
-    int l = i << 1;
+  public void initializeSingleSource(int source) {
+    resetNodes();
+    reach(source, 0);
+    queue.insertOrDecrease(source, priority(source, 0));
+  }
 
-    int r = l + 1;
-    int smallest;
+  /** Resets the nodes reached from the previous source and starts a new generation. */
+  private void resetNodes() {
+    for (int i = 0; i < nbReachedNodes; i++) {
+      int node = reachedNodes[i];
+      pi[node] = 0;
+      weights[node] = Double.MAX_VALUE;
+      if (piAdjacencyNode != null) {
+        piAdjacencyNode[node] = null;
+      }
+    }
+    nbReachedNodes = 0;
+    nbSettledNodes = 0;
+
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      Arrays.fill(reachedStamp, 0);
+      Arrays.fill(settledStamp, 0);
+      Arrays.fill(toReachStamp, 0);
+      if (treeStamp != null) {
+        Arrays.fill(treeStamp, 0);
+        Arrays.fill(affectedStamp, 0);
+        Arrays.fill(orderStamp, 0);
+      }
+      generation = 1;
+    }
 
-    if (l <= heapSize && upperBoundCosts[l].weight < upperBoundCosts[i].weight) {
-      smallest = l;
-    } else {
-      smallest = i;
+    queue.clear();
+  }
+
+  /**
+   * Returns the key used to order a node in the priority queue.
+   *
+   * @param node The node number.
+   * @param weight The shortest path estimate of the node.
+   * @return The shortest path estimate.
+   */
+  double priority(int node, double weight) {
+    return weight;
+  }
+
+  /** Records a new shortest path estimate for a node. */
+  private void reach(int node, double weight) {
+    if (reachedStamp[node] != generation) {
+      reachedStamp[node] = generation;
+      reachedNodes[nbReachedNodes++] = node;
     }
+    upperBoundCosts[node] = weight;
+  }
 
-    if (r <= heapSize && upperBoundCosts[r].weight < upperBoundCosts[smallest].weight) {
-      smallest = r;
+  /**
+   * Test if shortest path to v can be improved by going through u, and if so, updating its
+   * shortest path estimate and pi[v]. w is the cost from u to v. If v is already settled, there is
+   * no need to do the relaxation.
+   *
+   * @param u Vertex relaxing from
+   * @param v Vertex relaxing to
+   * @param w double The cost from u to v
+   * @return True if the shortest path estimate of v was improved.
+   */
+  public boolean relax(int u, int v, double w) {
+    if (settledStamp[v] == generation) {
+      return false;
     }
 
-    if (smallest != i) {
-      swap(i, smallest);
-      heapify(smallest);
+    double newWeight = weights[u] + w;
+    double currentWeight =
+        reachedStamp[v] == generation ? upperBoundCosts[v] : Double.MAX_VALUE;
+
+    if (newWeight < currentWeight) {
+      reach(v, newWeight);
+      pi[v] = u;
+      queue.insertOrDecrease(v, priority(v, newWeight));
+      return true;
     }
+    return false;
   }
 
   /**
-   * Initialize the shortest-path estimates and predecessor function. The predecessor function is
-   * left at the default of all zeros. Because there is no zero node in the graph, zero denotes a
-   * null value for a predecessor. The source node upperBoundCosts value is initially set to
-   * cost zero and all other nodes are set to have cost equal to the maximum double floating point
-   * precision value to represent infinity.
+   * Relaxes all the edges leaving a given node.
    *
-   * @param source The number identifier of the source node
+   * @param u The node the edges are leaving from.
    */
-  public void initializeSingleSource(int source) {
-    Arrays.fill(pi, 0);
-    Arrays.fill(weights, Double.MAX_VALUE);
+  void relaxEdges(int u) {
+    if (compressedGraph != null) {
+      int[] edgeStart = compressedGraph.getEdgeStarts();
+      int[] edgeTarget = compressedGraph.getEdgeTargets();
+      for (int edge = edgeStart[u]; edge < edgeStart[u + 1]; edge++) {
+        int v = edgeTarget[edge];
+        if (relax(u, v, edgeWeights[edge])) {
+          piEdge[v] = edge;
+        }
+      }
+    } else {
+      for (AdjacencyNode cursor = graph[u]; cursor.nextNode != null; cursor = cursor.nextNode) {
+        if (graphView != null && graphView.isMasked(cursor)) {
+          continue;
+        }
+        int v = cursor.nextNode.virtualNodeNum;
+        if (relax(u, v, cursor.edgeWeight)) {
+          piAdjacencyNode[v] = cursor;
+        }
+      }
+    }
+  }
+
+  /**
+   * Updates a shortest path tree computed from the same source with previous edge weights,
+   * following the principle of the dynamic algorithm of Ramalingam and Reps. The nodes which path
+   * from the source uses an edge which weight changed are removed from the tree and get a new
+   * estimate through the other nodes. The edges which weight changed can also offer shortcuts to
+   * the nodes that stay in the tree. A Dijkstra search is then only run from the nodes which
+   * estimate changed, until all the destinations are reached.
+   *
+   * <p>The tree is not updated if too many nodes depend on a changed edge, or if a path through the
+   * nodes the previous search didn't reach could be shorter. In these cases, {@link #compute(int,
+   * LinkedList)} must be called. The priority of the nodes must be their weight, which excludes
+   * the AStar algorithm.
+   *
+   * @param source Loading virtual node num used as source vertex
+   * @param demandList The row of the OD matrix having source as starting vertex
+   * @param tree The tree computed from this source with the previous edge weights.
+   * @param changedEdges The edges which weight changed since the tree was computed.
+   * @return True if the tree was updated.
+   */
+  public boolean update(
+      int source, LinkedList<ODCell> demandList, ShortestPathTree tree, int[] changedEdges) {
+    if (compressedGraph == null
+        || tree.nodes.length == 0
+        || tree.nodes[0] != source
+        || changedEdges.length > 2 * tree.nodes.length) {
+      return false;
+    }
+
+    if (treeStamp == null) {
+      treeStamp = new int[nbNodes];
+      affectedStamp = new int[nbNodes];
+      orderStamp = new int[nbNodes];
+      firstChild = new int[nbNodes];
+      nextSibling = new int[nbNodes];
+    }
+
+    resetNodes();
+    setNodesToReach(demandList);
+    treeLimit = Double.NaN;
+
+    int[] edgeSource = compressedGraph.getEdgeSources();
+    int[] edgeTarget = compressedGraph.getEdgeTargets();
 
-    for (int i = 0; i < upperBoundCosts.length; i++) {
-      upperBoundCosts[i] = stock[i];
+    // Mark the nodes of the tree and the nodes reached through a changed edge
+    for (int i = 0; i < tree.nodes.length; i++) {
+      treeStamp[tree.nodes[i]] = generation;
+      piEdge[tree.nodes[i]] = tree.edges[i];
+    }
+    for (int edge : changedEdges) {
+      int v = edgeTarget[edge];
+      if (treeStamp[v] == generation && piEdge[v] == edge) {
+        affectedStamp[v] = generation;
+      }
     }
 
-    upperBoundCosts[1].init(source, 0);
-    nodePos[source] = 1;
+    // The whole subtree of these nodes is affected
+    int nbAffectedNodes = 0;
+    for (int i = 1; i < tree.nodes.length; i++) {
+      int node = tree.nodes[i];
+      if (affectedStamp[node] == generation
+          || affectedStamp[edgeSource[tree.edges[i]]] == generation) {
+        affectedStamp[node] = generation;
+        nbAffectedNodes++;
+      }
+    }
+    if (2 * nbAffectedNodes > tree.nodes.length) {
+      return false;
+    }
 
-    // BHNodes greater than source
-    int i = 2;
+    // The other nodes keep their weight and predecessor
+    for (int i = 0; i < tree.nodes.length; i++) {
+      int node = tree.nodes[i];
+      if (affectedStamp[node] != generation) {
+        reach(node, tree.weights[i]);
+        weights[node] = tree.weights[i];
+        if (i > 0) {
+          pi[node] = edgeSource[tree.edges[i]];
+        }
+      }
+    }
 
-    for (int nextNodeNum = source + 1; nextNodeNum < graph.length; i++, nextNodeNum++) {
-      upperBoundCosts[i].init(nextNodeNum, Double.MAX_VALUE);
-      nodePos[nextNodeNum] = i;
+    // New estimate of the affected nodes, and shortcuts offered by the changed edges
+    int[] reverseEdgeStart = compressedGraph.getReverseEdgeStarts();
+    int[] reverseEdges = compressedGraph.getReverseEdges();
+    for (int i = 1; i < tree.nodes.length; i++) {
+      int v = tree.nodes[i];
+      if (affectedStamp[v] == generation) {
+        for (int j = reverseEdgeStart[v]; j < reverseEdgeStart[v + 1]; j++) {
+          relaxFromTree(reverseEdges[j], edgeSource, edgeTarget);
+        }
+      }
+    }
+    for (int edge : changedEdges) {
+      relaxFromTree(edge, edgeSource, edgeTarget);
     }
 
-    // BHNodes less than source
-    for (int nextNodeNum = 1; nextNodeNum < source; i++, nextNodeNum++) {
-      upperBoundCosts[i].init(nextNodeNum, Double.MAX_VALUE);
-      nodePos[nextNodeNum] = i;
+    // Propagate the new estimates until all the destinations are reached
+    double bound = getNodesToReachBound();
+    double stopWeight = Double.POSITIVE_INFINITY;
+    int min = extractMin();
+    while (min != -1) {
+      if (minWeight > bound) {
+        stopWeight = minWeight;
+        break;
+      }
+      weights[min] = minWeight;
+      relaxEdges(min);
+      if (toReachStamp[min] == generation) {
+        bound = getNodesToReachBound();
+      }
+      min = extractMin();
     }
 
-    heapSize = upperBoundCosts.length - 1;
+    // Paths through the nodes the previous search didn't reach could be shorter
+    bound = getNodesToReachBound();
+    if (bound > tree.limit) {
+      return false;
+    }
+
+    if (!orderTree(source)) {
+      return false;
+    }
+    treeLimit = Math.min(stopWeight, tree.limit);
+
+    return true;
   }
 
   /**
-   * Test if shortest path to v can be improved by going through u, and if so, updating
-   * upperBoundCosts[v] and pi[v]. w is the cost from u to v. if nodePos[v] is -1, then the shortest
-   * path to v has already been found and there is no need to do the relaxation.
+   * Returns the highest shortest path estimate of the nodes to reach.
    *
-   * @param u Vertex relaxing from
-   * @param v Vertex relaxing to
-   * @param w double The cost from u to v
+   * @return The highest estimate, or Double.MAX_VALUE if a node to reach is not reached.
    */
-  public void relax(int u, int v, double w) {
+  private double getNodesToReachBound() {
+    double bound = 0;
+    for (int i = 0; i < nbNodesToReach; i++) {
+      int node = nodesToReach[i];
+      if (reachedStamp[node] != generation) {
+        return Double.MAX_VALUE;
+      }
+      bound = Math.max(bound, upperBoundCosts[node]);
+    }
+    return bound;
+  }
 
-    if (nodePos[v] == -1) {
-      return;
+  /**
+   * Orders the nodes reached during an update from the source, so that each node comes after its
+   * predecessor in the settled nodes.
+   *
+   * @param source The source of the tree.
+   * @return False if a reached node to reach can't be joined from the source.
+   */
+  private boolean orderTree(int source) {
+    for (int i = 0; i < nbReachedNodes; i++) {
+      firstChild[reachedNodes[i]] = 0;
+    }
+    for (int i = 0; i < nbReachedNodes; i++) {
+      int node = reachedNodes[i];
+      int predecessor = pi[node];
+      if (predecessor != 0) {
+        nextSibling[node] = firstChild[predecessor];
+        firstChild[predecessor] = node;
+      }
     }
 
-    if (upperBoundCosts[nodePos[v]].weight > weights[u] + w) {
-      decreaseKey(v, weights[u] + w);
-      pi[v] = u;
+    nbSettledNodes = 0;
+    settledNodes[nbSettledNodes++] = source;
+    orderStamp[source] = generation;
+    for (int i = 0; i < nbSettledNodes; i++) {
+      for (int child = firstChild[settledNodes[i]]; child != 0; child = nextSibling[child]) {
+        settledNodes[nbSettledNodes++] = child;
+        orderStamp[child] = generation;
+      }
+    }
+
+    for (int i = 0; i < nbNodesToReach; i++) {
+      int node = nodesToReach[i];
+      if (pi[node] != 0 && orderStamp[node] != generation) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-      heapify(nodePos[v]);
+  /**
+   * Relaxes an edge during an update, if it leaves a node that kept its place in the tree.
+   *
+   * @param edge The edge to relax.
+   * @param edgeSource The source node of each edge.
+   * @param edgeTarget The target node of each edge.
+   */
+  private void relaxFromTree(int edge, int[] edgeSource, int[] edgeTarget) {
+    int u = edgeSource[edge];
+    if (treeStamp[u] == generation && affectedStamp[u] != generation) {
+      int v = edgeTarget[edge];
+      if (relax(u, v, edgeWeights[edge])) {
+        piEdge[v] = edge;
+      }
     }
   }
 
@@ -330,10 +717,6 @@ public class BinaryHeapDijkstra {
    * @param demandList OD matrix row from current source
    */
   private void setNodesToReach(LinkedList<ODCell> demandList) {
-    for (int i = 1; i < graph.length; i++) {
-      graph[i].isNodeToReach = false;
-    }
-
     Iterator<ODCell> it = demandList.iterator();
 
     nbNodesToReach = 0;
@@ -345,27 +728,10 @@ public class BinaryHeapDijkstra {
               .getVirtualNodeLists()[
               virtualNet.getNodeIndexInVirtualNodeList(demand.getDestinationNodeId(), true)]
               .getUnloadingVirtualNodeId();
-      if (!graph[index].isNodeToReach) {
-        graph[index].isNodeToReach = true;
-        nbNodesToReach++;
+      if (toReachStamp[index] != generation) {
+        toReachStamp[index] = generation;
+        nodesToReach[nbNodesToReach++] = index;
       }
     }
   }
-
-  /**
-   * The method is used by heapify and decreaseKey to switch the positions of two nodes in the
-   * binary heap.
-   *
-   * @param a int Index of node to be swapped in the binary heap array
-   * @param b int Index of other node to be swapped in the binary heap array
-   */
-  public void swap(int a, int b) {
-    BinaryHeapNode temp = upperBoundCosts[a];
-    upperBoundCosts[a] = upperBoundCosts[b];
-    upperBoundCosts[b] = temp;
-
-    int tempInt = nodePos[upperBoundCosts[a].id];
-    nodePos[upperBoundCosts[a].id] = nodePos[upperBoundCosts[b].id];
-    nodePos[upperBoundCosts[b].id] = tempInt;
-  }
 }
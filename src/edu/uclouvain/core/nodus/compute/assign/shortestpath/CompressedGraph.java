@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNode;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNodeList;
+import java.util.Iterator;
+
+/**
+ * Compressed Sparse Row (CSR) representation of a virtual network. The topology (edges leaving
+ * each virtual node, their end node and the virtual link they refer to) is stored in a few
+ * primitive arrays, built once for the virtual network and shared by all the groups and threads.
+ * The weights of the edges, which depend on the group, are kept in a separate array that can be
+ * generated for each group with {@link #generateEdgeWeights(byte)}.
+ *
+ * <p>The edges leaving virtual node <code>n</code> are stored at the positions <code>
+ * edgeStart[n]</code> (included) to <code>edgeStart[n + 1]</code> (excluded) of the edge arrays.
+ * They are kept in the same order as in the virtual link list of the virtual node.
+ *
+ * @author Bart Jourquin
+ */
+public class CompressedGraph {
+
+  /** Index of the first edge of each virtual node. Has nbNodes + 1 elements. */
+  private int[] edgeStart;
+
+  /** Virtual node at the beginning of each edge. */
+  private int[] edgeSource;
+
+  /** Virtual node at the end of each edge. */
+  private int[] edgeTarget;
+
+  /** Virtual link each edge refers to. */
+  private int[] edgeLinkId;
+
+  /** Number of edges in the graph. */
+  private int nbEdges;
+
+  /** Edges entering each node, grouped by end node. Built on demand. */
+  private int[] reverseEdges = null;
+
+  /** Index, in reverseEdges, of the first edge entering each node. Has nbNodes + 1 elements. */
+  private int[] reverseEdgeStart = null;
+
+  /** Number of nodes in the graph. Node 0 is not used, as virtual node IDs start at 1. */
+  private int nbNodes;
+
+  /** The virtual links, indexed by their ID. */
+  private VirtualLink[] virtualLinks;
+
+  /**
+   * Builds the compressed graph of a generated virtual network.
+   *
+   * @param vnl The virtual node lists of the virtual network.
+   * @param nbNodes The number of virtual nodes, including the unused node 0.
+   * @param nbLinks The number of virtual links, including the unused link 0.
+   */
+  public CompressedGraph(VirtualNodeList[] vnl, int nbNodes, int nbLinks) {
+    this.nbNodes = nbNodes;
+    edgeStart = new int[nbNodes + 1];
+    virtualLinks = new VirtualLink[nbLinks];
+
+    // Count the edges leaving each node
+    for (VirtualNodeList element : vnl) {
+      Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+      while (nodeLit.hasNext()) {
+        VirtualNode vn = nodeLit.next();
+        edgeStart[vn.getId() + 1] = vn.getVirtualLinkList().size();
+      }
+    }
+
+    for (int i = 1; i <= nbNodes; i++) {
+      edgeStart[i] += edgeStart[i - 1];
+    }
+    nbEdges = edgeStart[nbNodes];
+
+    edgeSource = new int[nbEdges];
+    edgeTarget = new int[nbEdges];
+    edgeLinkId = new int[nbEdges];
+
+    // Fill the edges, in the order of the virtual link lists
+    for (VirtualNodeList element : vnl) {
+      Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+      while (nodeLit.hasNext()) {
+        VirtualNode vn = nodeLit.next();
+        int edge = edgeStart[vn.getId()];
+
+        Iterator<VirtualLink> linkLit = vn.getVirtualLinkList().iterator();
+        while (linkLit.hasNext()) {
+          VirtualLink vl = linkLit.next();
+          edgeSource[edge] = vn.getId();
+          edgeTarget[edge] = vl.getEndVirtualNode().getId();
+          edgeLinkId[edge] = vl.getId();
+          virtualLinks[vl.getId()] = vl;
+          edge++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the weights of all the edges for a given group. Edges that refer to a virtual link
+   * which is excluded for this group (negative cost) get an infinite weight, so that they are never
+   * used by the shortest path algorithms.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @return An array of weights, indexed by edge.
+   */
+  public double[] generateEdgeWeights(byte groupIndex) {
+    return generateEdgeWeights(groupIndex, null);
+  }
+
+  /**
+   * Fills an array with the weights of all the edges for a given group, as {@link
+   * #generateEdgeWeights(byte)} does. The array is reused if it has the right size.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @param weights The array to fill, or null.
+   * @return The filled array, or a new one if the given array was null or too small.
+   */
+  public double[] generateEdgeWeights(byte groupIndex, double[] weights) {
+    if (weights == null || weights.length != nbEdges) {
+      weights = new double[nbEdges];
+    }
+    for (int edge = 0; edge < nbEdges; edge++) {
+      double cost = virtualLinks[edgeLinkId[edge]].getCost(groupIndex);
+      if (cost < 0) {
+        weights[edge] = Double.POSITIVE_INFINITY;
+      } else {
+        weights[edge] = cost;
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * Returns the virtual link that joins two virtual nodes, or null if they are not adjacent.
+   *
+   * @param from The virtual node at the beginning of the virtual link.
+   * @param to The virtual node at the end of the virtual link.
+   * @return The virtual link or null.
+   */
+  public VirtualLink findVirtualLink(int from, int to) {
+    for (int edge = edgeStart[from]; edge < edgeStart[from + 1]; edge++) {
+      if (edgeTarget[edge] == to) {
+        return virtualLinks[edgeLinkId[edge]];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the ID of the virtual link each edge refers to.
+   *
+   * @return An array of virtual link IDs, indexed by edge.
+   */
+  public int[] getEdgeLinkIds() {
+    return edgeLinkId;
+  }
+
+  /**
+   * Returns the index of the first edge of each virtual node. The last element of the array is the
+   * number of edges.
+   *
+   * @return An array of nbNodes + 1 edge indexes.
+   */
+  public int[] getEdgeStarts() {
+    return edgeStart;
+  }
+
+  /**
+   * Returns the virtual node at the beginning of each edge.
+   *
+   * @return An array of virtual node IDs, indexed by edge.
+   */
+  public int[] getEdgeSources() {
+    return edgeSource;
+  }
+
+  /**
+   * Returns the virtual node at the end of each edge.
+   *
+   * @return An array of virtual node IDs, indexed by edge.
+   */
+  public int[] getEdgeTargets() {
+    return edgeTarget;
+  }
+
+  /**
+   * Returns the edges entering each virtual node. The edges entering virtual node <code>n</code>
+   * are stored at the positions <code>getReverseEdgeStarts()[n]</code> (included) to <code>
+   * getReverseEdgeStarts()[n + 1]</code> (excluded). The reverse structure is built the first time
+   * it is requested, as only some algorithms need it.
+   *
+   * @return An array of edge indexes, grouped by end node.
+   */
+  public int[] getReverseEdges() {
+    buildReverseEdges();
+    return reverseEdges;
+  }
+
+  /**
+   * Returns the index, in {@link #getReverseEdges()}, of the first edge entering each virtual node.
+   * The last element of the array is the number of edges.
+   *
+   * @return An array of nbNodes + 1 indexes.
+   */
+  public int[] getReverseEdgeStarts() {
+    buildReverseEdges();
+    return reverseEdgeStart;
+  }
+
+  /** Builds the lists of edges entering each node, if not yet done. */
+  private synchronized void buildReverseEdges() {
+    if (reverseEdges != null) {
+      return;
+    }
+
+    int[] start = new int[nbNodes + 1];
+    for (int edge = 0; edge < nbEdges; edge++) {
+      start[edgeTarget[edge] + 1]++;
+    }
+    for (int i = 1; i <= nbNodes; i++) {
+      start[i] += start[i - 1];
+    }
+
+    int[] position = new int[nbNodes];
+    System.arraycopy(start, 0, position, 0, nbNodes);
+    int[] edges = new int[nbEdges];
+    for (int edge = 0; edge < nbEdges; edge++) {
+      edges[position[edgeTarget[edge]]++] = edge;
+    }
+
+    reverseEdgeStart = start;
+    reverseEdges = edges;
+  }
+
+  /**
+   * Returns the number of edges in the graph.
+   *
+   * @return The number of edges.
+   */
+  public int getNbEdges() {
+    return nbEdges;
+  }
+
+  /**
+   * Returns the number of virtual links, including the unused link 0.
+   *
+   * @return The number of virtual links.
+   */
+  public int getNbLinks() {
+    return virtualLinks.length;
+  }
+
+  /**
+   * Returns the number of nodes in the graph, including the unused node 0.
+   *
+   * @return The number of nodes.
+   */
+  public int getNbNodes() {
+    return nbNodes;
+  }
+
+  /**
+   * Returns the virtual link with the given ID.
+   *
+   * @param virtualLinkId The ID of the virtual link.
+   * @return The virtual link.
+   */
+  public VirtualLink getVirtualLink(int virtualLinkId) {
+    return virtualLinks[virtualLinkId];
+  }
+
+  /**
+   * Returns the virtual link an edge refers to.
+   *
+   * @param edge The index of the edge.
+   * @return The virtual link.
+   */
+  public VirtualLink getVirtualLinkForEdge(int edge) {
+    return virtualLinks[edgeLinkId[edge]];
+  }
+}
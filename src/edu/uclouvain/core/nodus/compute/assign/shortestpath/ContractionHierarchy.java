@@ -0,0 +1,636 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+
+/**
+ * Contraction hierarchy built on the compressed graph of a virtual network, for a given set of
+ * (fixed) edge weights. The nodes are contracted one at a time, in an order based on the number of
+ * shortcuts their contraction requires, and shortcuts are added between their neighbors when no
+ * witness path exists. A shortest path query is then answered by two small searches that only
+ * follow edges towards higher ranked nodes, from the origin and (backwards) from the destination.
+ *
+ * <p>This is worth its preprocessing time for workloads that compute a large number of
+ * point-to-point or many-to-many costs on a network whose costs don't change, such as distance
+ * skims. The hierarchy itself is immutable and can be shared by several threads, each of them
+ * using its own {@link Query}.
+ *
+ * @author Bart Jourquin
+ */
+public class ContractionHierarchy {
+
+  /** Maximum number of nodes settled by a witness search. */
+  private static final int MAX_WITNESS_SETTLED_NODES = 500;
+
+  /** The graph the hierarchy is built on. */
+  private CompressedGraph graph;
+
+  /** Number of nodes in the graph. */
+  private int nbNodes;
+
+  /** Rank of each node in the contraction order. */
+  private int[] rank;
+
+  /** Number of edges (original edges and shortcuts). */
+  private int nbEdges = 0;
+
+  /** Begin node of each edge. */
+  private int[] edgeFrom;
+
+  /** End node of each edge. */
+  private int[] edgeTo;
+
+  /** Weight of each edge. */
+  private double[] edgeWeight;
+
+  /** First of the two edges a shortcut replaces, or -1 for an original edge. */
+  private int[] edgeChild1;
+
+  /** Second of the two edges a shortcut replaces, or -1 for an original edge. */
+  private int[] edgeChild2;
+
+  /** Index in the compressed graph of an original edge, or -1 for a shortcut. */
+  private int[] edgeOriginal;
+
+  /** Index of the first upward edge of each node. */
+  private int[] upStart;
+
+  /** Edges leaving each node towards a higher ranked node. */
+  private int[] upEdges;
+
+  /** Index of the first downward edge of each node. */
+  private int[] downStart;
+
+  /** Edges entering each node from a higher ranked node. */
+  private int[] downEdges;
+
+  /* Dynamic adjacency lists used during the contraction */
+  private int[][] outEdges;
+  private int[] outSize;
+  private int[][] inEdges;
+  private int[] inSize;
+  private boolean[] isContracted;
+
+  /* State of the witness searches */
+  private QuaternaryHeap witnessQueue;
+  private double[] witnessDistance;
+  private int[] witnessStamp;
+  private int witnessGeneration = 0;
+
+  /**
+   * Builds the contraction hierarchy of a graph. Edges with an infinite weight are ignored.
+   *
+   * @param graph The compressed graph.
+   * @param edgeWeights The weights of the edges of the graph.
+   */
+  public ContractionHierarchy(CompressedGraph graph, double[] edgeWeights) {
+    this.graph = graph;
+    nbNodes = graph.getNbNodes();
+    int capacity = Math.max(16, graph.getNbEdges() * 2);
+    edgeFrom = new int[capacity];
+    edgeTo = new int[capacity];
+    edgeWeight = new double[capacity];
+    edgeChild1 = new int[capacity];
+    edgeChild2 = new int[capacity];
+    edgeOriginal = new int[capacity];
+
+    outEdges = new int[nbNodes][];
+    outSize = new int[nbNodes];
+    inEdges = new int[nbNodes][];
+    inSize = new int[nbNodes];
+    isContracted = new boolean[nbNodes];
+
+    // Original edges (only the cheapest of parallel edges is kept)
+    int[] edgeStart = graph.getEdgeStarts();
+    int[] edgeTarget = graph.getEdgeTargets();
+    for (int u = 1; u < nbNodes; u++) {
+      for (int edge = edgeStart[u]; edge < edgeStart[u + 1]; edge++) {
+        int v = edgeTarget[edge];
+        if (v != u && edgeWeights[edge] != Double.POSITIVE_INFINITY) {
+          int e = addOrUpdateEdge(u, v, edgeWeights[edge], -1, -1);
+          if (e != -1) {
+            edgeOriginal[e] = edge;
+          }
+        }
+      }
+    }
+
+    witnessQueue = new QuaternaryHeap(nbNodes);
+    witnessDistance = new double[nbNodes];
+    witnessStamp = new int[nbNodes];
+
+    contract();
+
+    buildSearchGraphs();
+
+    // Release the contraction structures
+    outEdges = null;
+    inEdges = null;
+    outSize = null;
+    inSize = null;
+    isContracted = null;
+    witnessQueue = null;
+    witnessDistance = null;
+    witnessStamp = null;
+  }
+
+  /**
+   * Adds an edge, or updates an existing edge between the same nodes if the new weight is lower.
+   *
+   * @return The index of the new or updated edge, or -1 if the existing edge was kept.
+   */
+  private int addOrUpdateEdge(int from, int to, double weight, int child1, int child2) {
+    for (int i = 0; i < outSize[from]; i++) {
+      int e = outEdges[from][i];
+      if (edgeTo[e] == to) {
+        if (weight < edgeWeight[e]) {
+          edgeWeight[e] = weight;
+          edgeChild1[e] = child1;
+          edgeChild2[e] = child2;
+          edgeOriginal[e] = -1;
+          return e;
+        }
+        return -1;
+      }
+    }
+
+    if (nbEdges == edgeFrom.length) {
+      int capacity = nbEdges * 2;
+      edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+      edgeTo = Arrays.copyOf(edgeTo, capacity);
+      edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+      edgeChild1 = Arrays.copyOf(edgeChild1, capacity);
+      edgeChild2 = Arrays.copyOf(edgeChild2, capacity);
+      edgeOriginal = Arrays.copyOf(edgeOriginal, capacity);
+    }
+    int e = nbEdges++;
+    edgeFrom[e] = from;
+    edgeTo[e] = to;
+    edgeWeight[e] = weight;
+    edgeChild1[e] = child1;
+    edgeChild2[e] = child2;
+    edgeOriginal[e] = -1;
+
+    outEdges[from] = append(outEdges[from], outSize[from]++, e);
+    inEdges[to] = append(inEdges[to], inSize[to]++, e);
+    return e;
+  }
+
+  private static int[] append(int[] list, int size, int value) {
+    if (list == null) {
+      list = new int[4];
+    } else if (size == list.length) {
+      list = Arrays.copyOf(list, size * 2);
+    }
+    list[size] = value;
+    return list;
+  }
+
+  /** Contracts all the nodes, updating their priority lazily. */
+  private void contract() {
+    rank = new int[nbNodes];
+    int[] contractedNeighbors = new int[nbNodes];
+
+    PriorityQueue<long[]> queue =
+        new PriorityQueue<>(Math.max(1, nbNodes), (a, b) -> Long.compare(a[0], b[0]));
+    for (int node = 1; node < nbNodes; node++) {
+      queue.add(new long[] {priority(node, contractedNeighbors), node});
+    }
+
+    int order = 1;
+    while (!queue.isEmpty()) {
+      int node = (int) queue.poll()[1];
+      if (isContracted[node]) {
+        continue;
+      }
+
+      // Lazy update: contract the node only if it is still the best candidate
+      long p = priority(node, contractedNeighbors);
+      if (!queue.isEmpty() && p > queue.peek()[0]) {
+        queue.add(new long[] {p, node});
+        continue;
+      }
+
+      contractNode(node, false);
+      isContracted[node] = true;
+      rank[node] = order++;
+
+      for (int i = 0; i < outSize[node]; i++) {
+        contractedNeighbors[edgeTo[outEdges[node][i]]]++;
+      }
+      for (int i = 0; i < inSize[node]; i++) {
+        contractedNeighbors[edgeFrom[inEdges[node][i]]]++;
+      }
+    }
+  }
+
+  /** Returns the contraction priority of a node (edge difference plus contracted neighbors). */
+  private long priority(int node, int[] contractedNeighbors) {
+    int nbRemovedEdges = 0;
+    for (int i = 0; i < outSize[node]; i++) {
+      if (!isContracted[edgeTo[outEdges[node][i]]]) {
+        nbRemovedEdges++;
+      }
+    }
+    for (int i = 0; i < inSize[node]; i++) {
+      if (!isContracted[edgeFrom[inEdges[node][i]]]) {
+        nbRemovedEdges++;
+      }
+    }
+    return contractNode(node, true) - nbRemovedEdges + contractedNeighbors[node];
+  }
+
+  /**
+   * Contracts a node, adding a shortcut between each pair of its remaining neighbors for which no
+   * witness path exists.
+   *
+   * @param node The node to contract.
+   * @param simulate If true, the shortcuts are only counted.
+   * @return The number of shortcuts.
+   */
+  private int contractNode(int node, boolean simulate) {
+    int nbShortcuts = 0;
+
+    for (int i = 0; i < inSize[node]; i++) {
+      int inEdge = inEdges[node][i];
+      int u = edgeFrom[inEdge];
+      if (isContracted[u]) {
+        continue;
+      }
+
+      double maxOutWeight = 0;
+      for (int j = 0; j < outSize[node]; j++) {
+        int outEdge = outEdges[node][j];
+        int w = edgeTo[outEdge];
+        if (!isContracted[w] && w != u) {
+          maxOutWeight = Math.max(maxOutWeight, edgeWeight[outEdge]);
+        }
+      }
+
+      witnessSearch(u, node, edgeWeight[inEdge] + maxOutWeight);
+
+      for (int j = 0; j < outSize[node]; j++) {
+        int outEdge = outEdges[node][j];
+        int w = edgeTo[outEdge];
+        if (isContracted[w] || w == u) {
+          continue;
+        }
+        double weight = edgeWeight[inEdge] + edgeWeight[outEdge];
+        if (witnessStamp[w] != witnessGeneration || witnessDistance[w] > weight) {
+          nbShortcuts++;
+          if (!simulate) {
+            addOrUpdateEdge(u, w, weight, inEdge, outEdge);
+          }
+        }
+      }
+    }
+    return nbShortcuts;
+  }
+
+  /** Limited Dijkstra search from a node, that avoids the node being contracted. */
+  private void witnessSearch(int source, int avoidedNode, double maxWeight) {
+    witnessGeneration++;
+    witnessQueue.clear();
+    witnessStamp[source] = witnessGeneration;
+    witnessDistance[source] = 0;
+    witnessQueue.insertOrDecrease(source, 0);
+
+    int nbSettled = 0;
+    int u = witnessQueue.extractMin();
+    while (u != -1 && nbSettled++ < MAX_WITNESS_SETTLED_NODES) {
+      double d = witnessDistance[u];
+      if (d > maxWeight) {
+        break;
+      }
+      for (int i = 0; i < outSize[u]; i++) {
+        int e = outEdges[u][i];
+        int v = edgeTo[e];
+        if (v == avoidedNode || isContracted[v]) {
+          continue;
+        }
+        double newDistance = d + edgeWeight[e];
+        if (witnessStamp[v] != witnessGeneration || newDistance < witnessDistance[v]) {
+          witnessStamp[v] = witnessGeneration;
+          witnessDistance[v] = newDistance;
+          witnessQueue.insertOrDecrease(v, newDistance);
+        }
+      }
+      u = witnessQueue.extractMin();
+    }
+  }
+
+  /** Builds the upward and downward search graphs in compressed form. */
+  private void buildSearchGraphs() {
+    upStart = new int[nbNodes + 1];
+    downStart = new int[nbNodes + 1];
+    for (int e = 0; e < nbEdges; e++) {
+      if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+        upStart[edgeFrom[e] + 1]++;
+      } else {
+        downStart[edgeTo[e] + 1]++;
+      }
+    }
+    for (int i = 1; i <= nbNodes; i++) {
+      upStart[i] += upStart[i - 1];
+      downStart[i] += downStart[i - 1];
+    }
+
+    upEdges = new int[upStart[nbNodes]];
+    downEdges = new int[downStart[nbNodes]];
+    int[] upPos = Arrays.copyOf(upStart, nbNodes);
+    int[] downPos = Arrays.copyOf(downStart, nbNodes);
+    for (int e = 0; e < nbEdges; e++) {
+      if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+        upEdges[upPos[edgeFrom[e]]++] = e;
+      } else {
+        downEdges[downPos[edgeTo[e]]++] = e;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of shortcuts added to the graph.
+   *
+   * @return The number of shortcuts.
+   */
+  public int getNbShortcuts() {
+    int nbShortcuts = 0;
+    for (int e = 0; e < nbEdges; e++) {
+      if (edgeOriginal[e] == -1) {
+        nbShortcuts++;
+      }
+    }
+    return nbShortcuts;
+  }
+
+  /**
+   * Creates a new query object. A query is not thread safe, but several queries can be used
+   * concurrently on the same hierarchy.
+   *
+   * @return A new query.
+   */
+  public Query newQuery() {
+    return new Query();
+  }
+
+  /** Search state for the queries on a contraction hierarchy. */
+  public class Query {
+
+    private QuaternaryHeap queue = new QuaternaryHeap(nbNodes);
+
+    private double[] forwardDistance = new double[nbNodes];
+    private double[] backwardDistance = new double[nbNodes];
+    private int[] forwardStamp = new int[nbNodes];
+    private int[] backwardStamp = new int[nbNodes];
+    private int[] forwardEdge = new int[nbNodes];
+    private int[] backwardEdge = new int[nbNodes];
+    private int generation = 0;
+
+    /** Nodes settled by the last upward search. */
+    private int[] settledNodes = new int[nbNodes];
+    private int nbSettledNodes;
+
+    /** Node at which the forward and backward searches of the last query met, or -1. */
+    private int meetingNode = -1;
+
+    private Query() {}
+
+    /**
+     * Returns the cost of the shortest path between two nodes.
+     *
+     * @param source The origin node.
+     * @param target The destination node.
+     * @return The cost, or Double.MAX_VALUE if the destination can't be reached.
+     */
+    public double distance(int source, int target) {
+      generation++;
+      if (generation == Integer.MAX_VALUE) {
+        Arrays.fill(forwardStamp, 0);
+        Arrays.fill(backwardStamp, 0);
+        generation = 1;
+      }
+
+      upwardSearch(source, true, Double.MAX_VALUE);
+      double best = Double.MAX_VALUE;
+      meetingNode = -1;
+
+      // Backward search, stopped as soon as it can't improve the best known cost
+      queue.clear();
+      backwardStamp[target] = generation;
+      backwardDistance[target] = 0;
+      backwardEdge[target] = -1;
+      queue.insertOrDecrease(target, 0);
+      int v = queue.extractMin();
+      while (v != -1) {
+        double d = backwardDistance[v];
+        if (d >= best) {
+          break;
+        }
+        if (forwardStamp[v] == generation && forwardDistance[v] + d < best) {
+          best = forwardDistance[v] + d;
+          meetingNode = v;
+        }
+        relaxBackward(v, d);
+        v = queue.extractMin();
+      }
+      return best;
+    }
+
+    /**
+     * Returns the virtual links of the shortest path between two nodes, in the order they are
+     * used.
+     *
+     * @param source The origin node.
+     * @param target The destination node.
+     * @return The list of virtual links, or null if the destination can't be reached.
+     */
+    public LinkedList<VirtualLink> path(int source, int target) {
+      if (distance(source, target) == Double.MAX_VALUE) {
+        return null;
+      }
+
+      LinkedList<VirtualLink> path = new LinkedList<>();
+
+      // From the meeting node back to the source
+      LinkedList<Integer> forwardPart = new LinkedList<>();
+      for (int node = meetingNode; forwardEdge[node] != -1; node = edgeFrom[forwardEdge[node]]) {
+        forwardPart.addFirst(forwardEdge[node]);
+      }
+      for (int e : forwardPart) {
+        unpack(e, path);
+      }
+
+      // From the meeting node to the target
+      for (int node = meetingNode; backwardEdge[node] != -1; node = edgeTo[backwardEdge[node]]) {
+        unpack(backwardEdge[node], path);
+      }
+      return path;
+    }
+
+    /**
+     * Returns the costs of the shortest paths between a set of origins and a set of destinations.
+     * A backward upward search is run from each destination, and its results are stored in a
+     * bucket at each settled node. A forward upward search from each origin then scans the buckets
+     * of the nodes it settles.
+     *
+     * @param sources The origin nodes.
+     * @param targets The destination nodes.
+     * @return A matrix of costs, indexed by origin and destination. Double.MAX_VALUE is used for
+     *     the unreachable destinations.
+     */
+    public double[][] distances(int[] sources, int[] targets) {
+      // Backward searches, collecting the (target, cost) entries of each settled node
+      int nbEntries = 0;
+      int[] entryNode = new int[16];
+      int[] entryTarget = new int[16];
+      double[] entryDistance = new double[16];
+      for (int t = 0; t < targets.length; t++) {
+        generation++;
+        upwardSearch(targets[t], false, Double.MAX_VALUE);
+        for (int i = 0; i < nbSettledNodes; i++) {
+          if (nbEntries == entryNode.length) {
+            entryNode = Arrays.copyOf(entryNode, nbEntries * 2);
+            entryTarget = Arrays.copyOf(entryTarget, nbEntries * 2);
+            entryDistance = Arrays.copyOf(entryDistance, nbEntries * 2);
+          }
+          int node = settledNodes[i];
+          entryNode[nbEntries] = node;
+          entryTarget[nbEntries] = t;
+          entryDistance[nbEntries++] = backwardDistance[node];
+        }
+      }
+
+      // Sort the entries in buckets, by node
+      int[] bucketStart = new int[nbNodes + 1];
+      for (int i = 0; i < nbEntries; i++) {
+        bucketStart[entryNode[i] + 1]++;
+      }
+      for (int i = 1; i <= nbNodes; i++) {
+        bucketStart[i] += bucketStart[i - 1];
+      }
+      int[] bucketTarget = new int[nbEntries];
+      double[] bucketDistance = new double[nbEntries];
+      int[] pos = Arrays.copyOf(bucketStart, nbNodes);
+      for (int i = 0; i < nbEntries; i++) {
+        int p = pos[entryNode[i]]++;
+        bucketTarget[p] = entryTarget[i];
+        bucketDistance[p] = entryDistance[i];
+      }
+
+      // Forward searches
+      double[][] result = new double[sources.length][targets.length];
+      for (int s = 0; s < sources.length; s++) {
+        double[] row = result[s];
+        Arrays.fill(row, Double.MAX_VALUE);
+        generation++;
+        upwardSearch(sources[s], true, Double.MAX_VALUE);
+        for (int i = 0; i < nbSettledNodes; i++) {
+          int node = settledNodes[i];
+          double d = forwardDistance[node];
+          for (int b = bucketStart[node]; b < bucketStart[node + 1]; b++) {
+            double total = d + bucketDistance[b];
+            if (total < row[bucketTarget[b]]) {
+              row[bucketTarget[b]] = total;
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    /** Complete search on the upward (forward) or downward (backward) edges. */
+    private void upwardSearch(int source, boolean forward, double maxDistance) {
+      double[] distance = forward ? forwardDistance : backwardDistance;
+      int[] stamp = forward ? forwardStamp : backwardStamp;
+      int[] edge = forward ? forwardEdge : backwardEdge;
+
+      queue.clear();
+      nbSettledNodes = 0;
+      stamp[source] = generation;
+      distance[source] = 0;
+      edge[source] = -1;
+      queue.insertOrDecrease(source, 0);
+
+      int u = queue.extractMin();
+      while (u != -1) {
+        double d = distance[u];
+        if (d > maxDistance) {
+          break;
+        }
+        settledNodes[nbSettledNodes++] = u;
+        if (forward) {
+          relaxForward(u, d);
+        } else {
+          relaxBackward(u, d);
+        }
+        u = queue.extractMin();
+      }
+    }
+
+    private void relaxForward(int u, double d) {
+      for (int i = upStart[u]; i < upStart[u + 1]; i++) {
+        int e = upEdges[i];
+        int v = edgeTo[e];
+        double newDistance = d + edgeWeight[e];
+        if (forwardStamp[v] != generation || newDistance < forwardDistance[v]) {
+          forwardStamp[v] = generation;
+          forwardDistance[v] = newDistance;
+          forwardEdge[v] = e;
+          queue.insertOrDecrease(v, newDistance);
+        }
+      }
+    }
+
+    private void relaxBackward(int v, double d) {
+      for (int i = downStart[v]; i < downStart[v + 1]; i++) {
+        int e = downEdges[i];
+        int u = edgeFrom[e];
+        double newDistance = d + edgeWeight[e];
+        if (backwardStamp[u] != generation || newDistance < backwardDistance[u]) {
+          backwardStamp[u] = generation;
+          backwardDistance[u] = newDistance;
+          backwardEdge[u] = e;
+          queue.insertOrDecrease(u, newDistance);
+        }
+      }
+    }
+
+    /** Replaces an edge by the virtual links of the original edges it represents. */
+    private void unpack(int edge, LinkedList<VirtualLink> path) {
+      LinkedList<Integer> stack = new LinkedList<>();
+      stack.push(edge);
+      while (!stack.isEmpty()) {
+        int e = stack.pop();
+        if (edgeOriginal[e] != -1) {
+          path.add(graph.getVirtualLinkForEdge(edgeOriginal[e]));
+        } else {
+          stack.push(edgeChild2[e]);
+          stack.push(edgeChild1[e]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+/**
+ * Priority queue of node numbers used by the shortest path algorithms. Each node can be present
+ * at most once in the queue, and its key can only be decreased while it is in the queue.
+ *
+ * <p>Implementations must be able to empty the queue in constant time, so that a new shortest path
+ * tree can be computed without paying for the size of the whole graph.
+ *
+ * @author Bart Jourquin
+ */
+public interface IndexedPriorityQueue {
+
+  /** Removes all the nodes from the queue. */
+  void clear();
+
+  /**
+   * Inserts a node in the queue, or decreases its key if it is already present. Nothing is done if
+   * the node was already extracted since the last call to {@link #clear()}, or if the new key is
+   * not lower than the current one.
+   *
+   * @param node The node number.
+   * @param key The key (priority) of the node.
+   */
+  void insertOrDecrease(int node, double key);
+
+  /**
+   * Removes the node with the lowest key from the queue.
+   *
+   * @return The node number, or -1 if the queue is empty.
+   */
+  int extractMin();
+
+  /**
+   * Tests if the queue is empty.
+   *
+   * @return True if there is no node left in the queue.
+   */
+  boolean isEmpty();
+}
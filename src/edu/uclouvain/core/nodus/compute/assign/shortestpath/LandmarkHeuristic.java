@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * Landmark based lower bounds (ALT: A*, Landmarks and Triangle inequality) for point-to-point
+ * shortest path queries. A small set of landmarks is selected in the graph, and the shortest path
+ * costs from and to each landmark are computed once. The triangle inequality then gives, for any
+ * node v and goal t, the lower bounds d(L, t) - d(L, v) and d(v, L) - d(t, L) of the cost from v
+ * to t. Contrary to a geographic distance, these bounds are expressed in cost units.
+ *
+ * <p>The distances are computed on the original weights of the edges (see {@link
+ * AdjacencyNode#originalEdgeWeight}). The bounds remain valid as long as the weights are only
+ * increased, which is the case in the multi-flow assignments.
+ *
+ * @author Bart Jourquin
+ */
+public class LandmarkHeuristic {
+
+  /** Cost used for the nodes that are not connected to a landmark. */
+  private static final double UNREACHABLE = Double.MAX_VALUE;
+
+  /** Shortest path costs from each landmark to each node. */
+  private double[][] fromLandmark;
+
+  /** Shortest path costs from each node to each landmark. */
+  private double[][] toLandmark;
+
+  /** The selected landmarks. */
+  private int[] landmarks;
+
+  /**
+   * Selects the landmarks and computes the distances from and to them. The landmarks are selected
+   * one at a time, each new landmark being the node that is the farthest from the already selected
+   * ones.
+   *
+   * @param graph The graph, in adjacency-list form.
+   * @param nbLandmarks The number of landmarks to select.
+   */
+  public LandmarkHeuristic(AdjacencyNode[] graph, int nbLandmarks) {
+    int nbNodes = graph.length;
+
+    // Forward and backward compressed representations of the graph
+    int[] outDegree = new int[nbNodes + 1];
+    int[] inDegree = new int[nbNodes + 1];
+    int nbEdges = 0;
+    for (int i = 1; i < nbNodes; i++) {
+      if (graph[i] == null) {
+        continue;
+      }
+      for (AdjacencyNode cursor = graph[i]; cursor.nextNode != null; cursor = cursor.nextNode) {
+        outDegree[i + 1]++;
+        inDegree[cursor.nextNode.virtualNodeNum + 1]++;
+        nbEdges++;
+      }
+    }
+    for (int i = 1; i <= nbNodes; i++) {
+      outDegree[i] += outDegree[i - 1];
+      inDegree[i] += inDegree[i - 1];
+    }
+    int[] forwardStart = outDegree;
+    int[] backwardStart = inDegree;
+    int[] forwardTarget = new int[nbEdges];
+    int[] backwardTarget = new int[nbEdges];
+    double[] forwardWeight = new double[nbEdges];
+    double[] backwardWeight = new double[nbEdges];
+    int[] forwardPos = Arrays.copyOf(forwardStart, nbNodes);
+    int[] backwardPos = Arrays.copyOf(backwardStart, nbNodes);
+    for (int i = 1; i < nbNodes; i++) {
+      if (graph[i] == null) {
+        continue;
+      }
+      for (AdjacencyNode cursor = graph[i]; cursor.nextNode != null; cursor = cursor.nextNode) {
+        int j = cursor.nextNode.virtualNodeNum;
+        forwardTarget[forwardPos[i]] = j;
+        forwardWeight[forwardPos[i]++] = cursor.originalEdgeWeight;
+        backwardTarget[backwardPos[j]] = i;
+        backwardWeight[backwardPos[j]++] = cursor.originalEdgeWeight;
+      }
+    }
+
+    // Select the landmarks, starting from the node the farthest from the first connected node
+    QuaternaryHeap queue = new QuaternaryHeap(nbNodes);
+    landmarks = new int[nbLandmarks];
+    fromLandmark = new double[nbLandmarks][];
+    toLandmark = new double[nbLandmarks][];
+
+    double[] minDistance = new double[nbNodes];
+    int start = 1;
+    while (start < nbNodes && forwardStart[start + 1] == forwardStart[start]) {
+      start++;
+    }
+    if (start < nbNodes) {
+      double[] distance = new double[nbNodes];
+      computeDistances(start, forwardStart, forwardTarget, forwardWeight, queue, distance);
+      for (int i = 1; i < nbNodes; i++) {
+        if (distance[i] != UNREACHABLE) {
+          minDistance[i] = distance[i];
+        }
+      }
+    }
+
+    int nbSelected = 0;
+    while (nbSelected < nbLandmarks) {
+      // Farthest node that has incoming and outgoing edges (unreachable nodes first)
+      int landmark = -1;
+      double farthest = -UNREACHABLE;
+      for (int i = 1; i < nbNodes; i++) {
+        if (forwardStart[i + 1] > forwardStart[i]
+            && backwardStart[i + 1] > backwardStart[i]
+            && minDistance[i] > farthest) {
+          farthest = minDistance[i];
+          landmark = i;
+        }
+      }
+      if (landmark == -1 || farthest == 0) {
+        break;
+      }
+
+      landmarks[nbSelected] = landmark;
+      fromLandmark[nbSelected] = new double[nbNodes];
+      toLandmark[nbSelected] = new double[nbNodes];
+      computeDistances(
+          landmark, forwardStart, forwardTarget, forwardWeight, queue, fromLandmark[nbSelected]);
+      computeDistances(
+          landmark, backwardStart, backwardTarget, backwardWeight, queue, toLandmark[nbSelected]);
+
+      for (int i = 1; i < nbNodes; i++) {
+        double d = fromLandmark[nbSelected][i];
+        if (nbSelected == 0 || d < minDistance[i]) {
+          minDistance[i] = d;
+        }
+      }
+      nbSelected++;
+    }
+
+    if (nbSelected < nbLandmarks) {
+      landmarks = Arrays.copyOf(landmarks, nbSelected);
+      fromLandmark = Arrays.copyOf(fromLandmark, nbSelected);
+      toLandmark = Arrays.copyOf(toLandmark, nbSelected);
+    }
+  }
+
+  /** Computes the shortest path costs from a source to all the nodes of a compressed graph. */
+  private static void computeDistances(
+      int source,
+      int[] edgeStart,
+      int[] edgeTarget,
+      double[] edgeWeight,
+      QuaternaryHeap queue,
+      double[] distance) {
+    Arrays.fill(distance, UNREACHABLE);
+    queue.clear();
+    distance[source] = 0;
+    queue.insertOrDecrease(source, 0);
+
+    int u = queue.extractMin();
+    while (u != -1) {
+      for (int edge = edgeStart[u]; edge < edgeStart[u + 1]; edge++) {
+        int v = edgeTarget[edge];
+        double d = distance[u] + edgeWeight[edge];
+        if (d < distance[v]) {
+          distance[v] = d;
+          queue.insertOrDecrease(v, d);
+        }
+      }
+      u = queue.extractMin();
+    }
+  }
+
+  /**
+   * Returns the selected landmarks.
+   *
+   * @return An array of node numbers.
+   */
+  public int[] getLandmarks() {
+    return landmarks;
+  }
+
+  /**
+   * Returns a lower bound of the cost of the shortest path from a node to a goal. The returned
+   * value is very large if the triangle inequality proves that the goal cannot be reached.
+   *
+   * @param node The node number.
+   * @param goal The goal node number.
+   * @return The lower bound.
+   */
+  public double lowerBound(int node, int goal) {
+    double bound = 0;
+    for (int l = 0; l < landmarks.length; l++) {
+      double[] from = fromLandmark[l];
+      if (from[node] != UNREACHABLE) {
+        bound = Math.max(bound, from[goal] - from[node]);
+      }
+      double[] to = toLandmark[l];
+      if (to[goal] != UNREACHABLE) {
+        bound = Math.max(bound, to[node] - to[goal]);
+      }
+    }
+    return bound;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary heap stored in parallel primitive arrays. Compared to a binary heap, the tree is
+ * half as deep, which reduces the number of moves in decreaseKey operations, the most frequent
+ * ones in the algorithm of Dijkstra, while the four children of a node are contiguous in memory.
+ *
+ * <p>The position of the nodes in the heap is stamped with a generation number, so that the queue
+ * can be emptied in constant time by just incrementing the generation.
+ *
+ * @author Bart Jourquin
+ */
+public class QuaternaryHeap implements IndexedPriorityQueue {
+
+  /** Node stored at each position of the heap. */
+  private int[] heapNodes;
+
+  /** Key of the node stored at each position of the heap. */
+  private double[] heapKeys;
+
+  /** Position of each node in the heap, or -1 if the node was extracted. */
+  private int[] position;
+
+  /** Generation in which the position of each node was set. */
+  private int[] positionStamp;
+
+  /** Current generation. */
+  private int generation = 1;
+
+  /** Number of nodes in the heap. */
+  private int size = 0;
+
+  /**
+   * Allocates a heap that can contain the given number of nodes.
+   *
+   * @param capacity The number of nodes in the graph.
+   */
+  public QuaternaryHeap(int capacity) {
+    heapNodes = new int[capacity];
+    heapKeys = new double[capacity];
+    position = new int[capacity];
+    positionStamp = new int[capacity];
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      Arrays.fill(positionStamp, 0);
+      generation = 1;
+    }
+  }
+
+  @Override
+  public void insertOrDecrease(int node, double key) {
+    int pos;
+    if (positionStamp[node] != generation) {
+      positionStamp[node] = generation;
+      pos = size++;
+    } else {
+      pos = position[node];
+      if (pos < 0 || key >= heapKeys[pos]) {
+        return;
+      }
+    }
+    siftUp(pos, node, key);
+  }
+
+  @Override
+  public int extractMin() {
+    if (size == 0) {
+      return -1;
+    }
+
+    int min = heapNodes[0];
+    position[min] = -1;
+    size--;
+    if (size > 0) {
+      siftDown(0, heapNodes[size], heapKeys[size]);
+    }
+    return min;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Moves a node up from a given position until its parent has a lower key, and stores it. */
+  private void siftUp(int pos, int node, double key) {
+    while (pos > 0) {
+      int parent = (pos - 1) >> 2;
+      if (heapKeys[parent] <= key) {
+        break;
+      }
+      heapNodes[pos] = heapNodes[parent];
+      heapKeys[pos] = heapKeys[parent];
+      position[heapNodes[pos]] = pos;
+      pos = parent;
+    }
+    heapNodes[pos] = node;
+    heapKeys[pos] = key;
+    position[node] = pos;
+  }
+
+  /** Moves a node down from a given position until its children have higher keys, and stores it. */
+  private void siftDown(int pos, int node, double key) {
+    while (true) {
+      int firstChild = (pos << 2) + 1;
+      if (firstChild >= size) {
+        break;
+      }
+
+      // Find the smallest of the (up to) four children
+      int lastChild = Math.min(firstChild + 4, size);
+      int smallest = firstChild;
+      double smallestKey = heapKeys[firstChild];
+      for (int child = firstChild + 1; child < lastChild; child++) {
+        if (heapKeys[child] < smallestKey) {
+          smallest = child;
+          smallestKey = heapKeys[child];
+        }
+      }
+
+      if (key <= smallestKey) {
+        break;
+      }
+      heapNodes[pos] = heapNodes[smallest];
+      heapKeys[pos] = smallestKey;
+      position[heapNodes[pos]] = pos;
+      pos = smallest;
+    }
+    heapNodes[pos] = node;
+    heapKeys[pos] = key;
+    position[node] = pos;
+  }
+}
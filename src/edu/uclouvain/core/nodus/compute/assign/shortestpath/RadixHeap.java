@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * Radix heap (bucket queue) for the algorithm of Dijkstra. The keys are scaled and rounded to
+ * integers, and the nodes are stored in 65 buckets according to the highest bit that differs
+ * between their key and the last extracted one. Extracting the minimum only redistributes the
+ * content of one bucket, which is cheaper than maintaining a heap on large graphs.
+ *
+ * <p>The queue is monotone: a key can never be lower than the last extracted one, which is always
+ * the case for the algorithm of Dijkstra with non-negative costs (but not for AStar). As the costs
+ * are rounded to a precision of 1 / scale for ordering purposes, the scale must be chosen large
+ * enough to separate the costs of the competing paths.
+ *
+ * <p>Decreasing a key inserts a new entry for the node; the outdated entries are skipped when
+ * their bucket is visited. The entries and key of each node are stamped with a generation number,
+ * so that the queue can be emptied in constant time.
+ *
+ * @author Bart Jourquin
+ */
+public class RadixHeap implements IndexedPriorityQueue {
+
+  /** Number of buckets (one per possible highest differing bit, plus one for equal keys). */
+  private static final int NB_BUCKETS = 65;
+
+  /** Nodes stored in each bucket. */
+  private int[][] bucketNodes = new int[NB_BUCKETS][];
+
+  /** Scaled keys of the nodes stored in each bucket. */
+  private long[][] bucketKeys = new long[NB_BUCKETS][];
+
+  /** Number of entries in each bucket. */
+  private int[] bucketSize = new int[NB_BUCKETS];
+
+  /** Current scaled key of each node. */
+  private long[] bestKey;
+
+  /** Generation in which each node was inserted. */
+  private int[] stamp;
+
+  /** True if the node was extracted during the current generation. */
+  private boolean[] extracted;
+
+  /** Current generation. */
+  private int generation = 1;
+
+  /** Last extracted scaled key. */
+  private long lastKey = 0;
+
+  /** Number of nodes in the queue (outdated entries excluded). */
+  private int size = 0;
+
+  /** Factor applied to the keys before rounding them. */
+  private double scale;
+
+  /**
+   * Allocates a radix heap for a graph with the given number of nodes.
+   *
+   * @param capacity The number of nodes in the graph.
+   * @param scale The factor applied to the costs before rounding them to integers.
+   */
+  public RadixHeap(int capacity, double scale) {
+    this.scale = scale;
+    bestKey = new long[capacity];
+    stamp = new int[capacity];
+    extracted = new boolean[capacity];
+    for (int i = 0; i < NB_BUCKETS; i++) {
+      bucketNodes[i] = new int[16];
+      bucketKeys[i] = new long[16];
+    }
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(bucketSize, 0);
+    size = 0;
+    lastKey = 0;
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      Arrays.fill(stamp, 0);
+      generation = 1;
+    }
+  }
+
+  @Override
+  public void insertOrDecrease(int node, double key) {
+    long scaledKey = Math.max(lastKey, Math.round(key * scale));
+    if (stamp[node] != generation) {
+      stamp[node] = generation;
+      extracted[node] = false;
+      size++;
+    } else if (extracted[node] || scaledKey >= bestKey[node]) {
+      return;
+    }
+    bestKey[node] = scaledKey;
+    push(bucketIndex(scaledKey), node, scaledKey);
+  }
+
+  @Override
+  public int extractMin() {
+    if (size == 0) {
+      return -1;
+    }
+
+    while (true) {
+      if (bucketSize[0] == 0) {
+        redistribute();
+      }
+
+      int n = --bucketSize[0];
+      int node = bucketNodes[0][n];
+      if (isValid(node, bucketKeys[0][n])) {
+        extracted[node] = true;
+        size--;
+        return node;
+      }
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Finds the first non empty bucket, sets the last key to the smallest key it contains and
+   * redistributes its valid entries over the lower buckets.
+   */
+  private void redistribute() {
+    int b = 1;
+    while (bucketSize[b] == 0) {
+      b++;
+    }
+
+    int[] nodes = bucketNodes[b];
+    long[] keys = bucketKeys[b];
+    int n = bucketSize[b];
+    bucketSize[b] = 0;
+
+    long min = Long.MAX_VALUE;
+    for (int i = 0; i < n; i++) {
+      if (keys[i] < min && isValid(nodes[i], keys[i])) {
+        min = keys[i];
+      }
+    }
+    if (min == Long.MAX_VALUE) {
+      // Only outdated entries in this bucket
+      return;
+    }
+
+    lastKey = min;
+    for (int i = 0; i < n; i++) {
+      if (isValid(nodes[i], keys[i])) {
+        push(bucketIndex(keys[i]), nodes[i], keys[i]);
+      }
+    }
+  }
+
+  /** Returns the bucket in which a scaled key must be stored. */
+  private int bucketIndex(long scaledKey) {
+    return 64 - Long.numberOfLeadingZeros(scaledKey ^ lastKey);
+  }
+
+  /** Returns true if an entry is the current one for its node. */
+  private boolean isValid(int node, long scaledKey) {
+    return !extracted[node] && bestKey[node] == scaledKey;
+  }
+
+  /** Adds an entry in a bucket, growing it if needed. */
+  private void push(int bucket, int node, long scaledKey) {
+    int n = bucketSize[bucket];
+    if (n == bucketNodes[bucket].length) {
+      bucketNodes[bucket] = Arrays.copyOf(bucketNodes[bucket], n * 2);
+      bucketKeys[bucket] = Arrays.copyOf(bucketKeys[bucket], n * 2);
+    }
+    bucketNodes[bucket][n] = node;
+    bucketKeys[bucket][n] = scaledKey;
+    bucketSize[bucket] = n + 1;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+/**
+ * Compact copy of a shortest path tree computed by {@link BinaryHeapDijkstra} on a compressed
+ * graph, that can be kept between the iterations of an assignment.
+ *
+ * <p>The tree contains the nodes which shortest path weight is known, in an order in which each
+ * node comes after its predecessor, with the edge used to reach them and their weight. As the
+ * search stops once all the destinations are reached, the tree may only cover a part of the graph.
+ * In that case, all the nodes that are not in the tree have a shortest path weight of at least
+ * {@link #getLimit()}.
+ *
+ * @author Bart Jourquin
+ */
+public class ShortestPathTree {
+
+  /** Edge used to reach each node of the tree from its predecessor, or -1 for the source. */
+  final int[] edges;
+
+  /** Weight limit of the tree. Infinite if all the reachable nodes are in the tree. */
+  final double limit;
+
+  /** Nodes of the tree, each of them after its predecessor. */
+  final int[] nodes;
+
+  /** Shortest path weight of each node of the tree. */
+  final double[] weights;
+
+  /**
+   * Creates a tree.
+   *
+   * @param nodes The nodes of the tree, each of them after its predecessor.
+   * @param edges The edge used to reach each node, or -1 for the source.
+   * @param weights The shortest path weight of each node.
+   * @param limit The weight under which all the nodes of the graph are in the tree.
+   */
+  ShortestPathTree(int[] nodes, int[] edges, double[] weights, double limit) {
+    this.nodes = nodes;
+    this.edges = edges;
+    this.weights = weights;
+    this.limit = limit;
+  }
+
+  /**
+   * Returns the weight under which all the nodes of the graph are in the tree.
+   *
+   * @return The limit, or infinity if the tree covers all the nodes reachable from its source.
+   */
+  public double getLimit() {
+    return limit;
+  }
+
+  /**
+   * Returns the approximate number of bytes used by the tree.
+   *
+   * @return The size of the tree, in bytes.
+   */
+  public long getMemorySize() {
+    return 64L + 16L * nodes.length;
+  }
+
+  /**
+   * Returns the number of nodes in the tree.
+   *
+   * @return The number of nodes.
+   */
+  public int size() {
+    return nodes.length;
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import edu.uclouvain.core.nodus.compute.od.ODCell;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the shortest path tree of each origin between the iterations of an equilibrium assignment.
+ * As only the costs of the loaded virtual links change from one iteration to the next, most trees
+ * can be updated (see {@link BinaryHeapDijkstra#update(int, LinkedList, ShortestPathTree, int[])})
+ * instead of being computed from scratch, and the trees of the origins that don't use any of these
+ * links are simply reused.
+ *
+ * <p>For each OD class and group, the cache also keeps a copy of the edge weights the trees were
+ * computed with, in order to find the edges which weight changed when the costs are computed
+ * again. Only the trees computed with the previous costs can be updated.
+ *
+ * <p>The memory used by the cache is bounded. As the origins are assigned in the same order at each
+ * iteration, a least recently used policy would evict the trees just before they are needed.
+ * Once the bound is reached, new trees are thus simply not kept, and a tree that grows beyond the
+ * available memory is evicted. The cache can be shared by several threads, as long as the trees of
+ * an origin are only computed by one thread at a time.
+ *
+ * @author Bart Jourquin
+ */
+public class ShortestPathTreeCache {
+
+  /** A tree and the version of the costs it was computed with. */
+  private static class CachedTree {
+    final ShortestPathTree tree;
+    final int costsVersion;
+
+    CachedTree(ShortestPathTree tree, int costsVersion) {
+      this.tree = tree;
+      this.costsVersion = costsVersion;
+    }
+  }
+
+  /** The edge weights of a version of the costs, and the edges changed since the previous one. */
+  private static class EdgeWeights {
+    final int[] changedEdges;
+    final int costsVersion;
+    final int previousCostsVersion;
+    final double[] weights;
+
+    EdgeWeights(double[] weights, int costsVersion, int previousCostsVersion, int[] changedEdges) {
+      this.weights = weights;
+      this.costsVersion = costsVersion;
+      this.previousCostsVersion = previousCostsVersion;
+      this.changedEdges = changedEdges;
+    }
+  }
+
+  private static final int[] noChangedEdges = new int[0];
+
+  /** Edge weights kept for each OD class and group. */
+  private ConcurrentHashMap<Integer, EdgeWeights> edgeWeights = new ConcurrentHashMap<>();
+
+  private long maxMemorySize;
+
+  private AtomicLong memorySize = new AtomicLong();
+
+  private ConcurrentHashMap<Long, CachedTree> trees = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxMemorySize The maximum number of bytes the cache can use.
+   */
+  public ShortestPathTreeCache(long maxMemorySize) {
+    this.maxMemorySize = maxMemorySize;
+  }
+
+  /**
+   * Computes the shortest path tree of an origin, updating the tree kept for it if possible. The
+   * new tree is then kept in the cache.
+   *
+   * @param shortestPath The algorithm, which edge weights are those of the current costs.
+   * @param odClass The OD class.
+   * @param groupIndex The index of the group.
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   * @param source The loading virtual node of the origin.
+   * @param demandList The demand of the origin.
+   * @param costsVersion The version of the current costs.
+   * @param weights The current weights of the edges.
+   */
+  public void computeTree(
+      BinaryHeapDijkstra shortestPath,
+      byte odClass,
+      byte groupIndex,
+      int nodeIndex,
+      int source,
+      LinkedList<ODCell> demandList,
+      int costsVersion,
+      double[] weights) {
+
+    EdgeWeights current = getEdgeWeights(odClass, groupIndex, costsVersion, weights);
+    long key = ((long) (odClass & 0xff) << 40) | ((long) (groupIndex & 0xff) << 32) | nodeIndex;
+
+    // Update the tree computed with the previous costs, if any
+    boolean isUpdated = false;
+    CachedTree cached = trees.get(key);
+    if (cached != null) {
+      int[] changedEdges = null;
+      if (cached.costsVersion == current.costsVersion) {
+        changedEdges = noChangedEdges;
+      } else if (cached.costsVersion == current.previousCostsVersion) {
+        changedEdges = current.changedEdges;
+      }
+      if (changedEdges != null) {
+        isUpdated = shortestPath.update(source, demandList, cached.tree, changedEdges);
+      }
+    }
+
+    if (!isUpdated) {
+      shortestPath.compute(source, demandList);
+    }
+
+    ShortestPathTree tree = shortestPath.getTree();
+    if (tree != null) {
+      keep(key, cached, new CachedTree(tree, current.costsVersion));
+    }
+  }
+
+  /**
+   * Returns the edge weights kept for an OD class and group, replacing them by a copy of the
+   * current ones if the costs changed.
+   */
+  private EdgeWeights getEdgeWeights(
+      byte odClass, byte groupIndex, int costsVersion, double[] weights) {
+    Integer key = (odClass & 0xff) << 8 | (groupIndex & 0xff);
+    EdgeWeights kept = edgeWeights.get(key);
+    if (kept != null && kept.costsVersion == costsVersion) {
+      return kept;
+    }
+
+    synchronized (this) {
+      kept = edgeWeights.get(key);
+      if (kept != null && kept.costsVersion == costsVersion) {
+        return kept;
+      }
+
+      EdgeWeights current;
+      if (kept == null) {
+        memorySize.addAndGet(8L * weights.length);
+        current = new EdgeWeights(weights.clone(), costsVersion, -1, noChangedEdges);
+      } else {
+        int nbChangedEdges = 0;
+        for (int edge = 0; edge < weights.length; edge++) {
+          if (weights[edge] != kept.weights[edge]) {
+            nbChangedEdges++;
+          }
+        }
+        int[] changedEdges = new int[nbChangedEdges];
+        nbChangedEdges = 0;
+        for (int edge = 0; edge < weights.length; edge++) {
+          if (weights[edge] != kept.weights[edge]) {
+            changedEdges[nbChangedEdges++] = edge;
+          }
+        }
+        memorySize.addAndGet(4L * (changedEdges.length - kept.changedEdges.length));
+        current =
+            new EdgeWeights(weights.clone(), costsVersion, kept.costsVersion, changedEdges);
+      }
+      edgeWeights.put(key, current);
+      return current;
+    }
+  }
+
+  /** Keeps a tree in place of the previous one, if the memory bound allows it. */
+  private void keep(long key, CachedTree previous, CachedTree cached) {
+    long delta = cached.tree.getMemorySize();
+    if (previous != null) {
+      delta -= previous.tree.getMemorySize();
+    }
+
+    if (memorySize.addAndGet(delta) <= maxMemorySize) {
+      trees.put(key, cached);
+      return;
+    }
+
+    // Not enough memory: the previous tree of the origin is evicted
+    memorySize.addAndGet(-cached.tree.getMemorySize());
+    if (previous != null) {
+      trees.remove(key);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import edu.uclouvain.core.nodus.compute.od.ODCell;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNetwork;
+import java.util.LinkedList;
+
+/**
+ * Time dependent variant of the algorithm of Dijkstra on a compressed graph. The trip leaves the
+ * source at a given departure time. Each edge is weighted by its weight during the time slice in
+ * which it is entered, and the time at which each node is reached is propagated along the edges
+ * using their FIFO travel time functions (see {@link TimeDependentEdgeWeights}).
+ *
+ * <p>A trip is thus routed once through the costs of all the time slices it crosses, instead of
+ * being stopped at the end of each time slice and routed again from where it stands.
+ *
+ * @author Bart Jourquin
+ */
+public class TimeDependentDijkstra extends BinaryHeapDijkstra {
+
+  /** Time at which each node is reached, in seconds after midnight. */
+  private double[] arrivalTimes;
+
+  private TimeDependentEdgeWeights timeDependentWeights;
+
+  /**
+   * Initializes the data structures.
+   *
+   * @param graph The compressed graph.
+   * @param timeDependentWeights The weights and travel times of the edges for each time slice.
+   * @param virtualNet VirtualNetwork
+   */
+  public TimeDependentDijkstra(
+      CompressedGraph graph,
+      TimeDependentEdgeWeights timeDependentWeights,
+      VirtualNetwork virtualNet) {
+    super(graph, null, virtualNet);
+    this.timeDependentWeights = timeDependentWeights;
+    arrivalTimes = new double[nbNodes];
+  }
+
+  /**
+   * Computes the shortest paths from a source for a trip that leaves it at a given time. The
+   * search stops once all the destinations are reached.
+   *
+   * @param source Loading virtual node num used as source vertex
+   * @param departureTime The time the trip leaves the source, in seconds after midnight.
+   * @param demandList The OD cells that leave the source at this time.
+   */
+  public void compute(int source, double departureTime, LinkedList<ODCell> demandList) {
+    arrivalTimes[source] = departureTime;
+    compute(source, demandList);
+  }
+
+  /**
+   * Returns the time at which each node is reached by the last computed paths. Only relevant for
+   * the nodes reached by these paths.
+   *
+   * @return double[], in seconds after midnight.
+   */
+  public double[] getArrivalTimes() {
+    return arrivalTimes;
+  }
+
+  /**
+   * Relaxes the edges leaving a node, using their weights during the time slice in which the node
+   * is reached.
+   *
+   * @param u The node the edges are leaving from.
+   */
+  @Override
+  void relaxEdges(int u) {
+    int[] edgeStart = compressedGraph.getEdgeStarts();
+    int[] edgeTarget = compressedGraph.getEdgeTargets();
+    double time = arrivalTimes[u];
+    int timeSlice = timeDependentWeights.getTimeSlice(time);
+    for (int edge = edgeStart[u]; edge < edgeStart[u + 1]; edge++) {
+      int v = edgeTarget[edge];
+      if (relax(u, v, timeDependentWeights.getWeight(edge, timeSlice))) {
+        piEdge[v] = edge;
+        arrivalTimes[v] = timeDependentWeights.getArrivalTime(edge, time);
+      }
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.shortestpath;
+
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.Arrays;
+
+/**
+ * Weights and travel times of the edges of a compressed graph for each time slice of a time
+ * dependent assignment, for a given group of commodities.
+ *
+ * <p>The weights and travel times of the first time slice are kept for all the edges. For the other
+ * time slices, only the edges which values differ from the first time slice are kept, as most of
+ * the cost functions don't depend on the time.
+ *
+ * <p>The travel time of an edge is a piecewise-linear function of the time it is entered: an
+ * edge is traversed at the speed of each time slice it is crossing, as if its travel time was
+ * the one of the time slice during the whole traversal. This function satisfies the FIFO property:
+ * entering an edge later never allows to leave it earlier. Before the first time slice and after
+ * the last one, the values of the first and last time slices are used.
+ *
+ * @author Bart Jourquin
+ */
+public class TimeDependentEdgeWeights {
+
+  /** Travel times of the edges during the first time slice. */
+  private double[] baseTravelTimes;
+
+  /** Weights of the edges during the first time slice. */
+  private double[] baseWeights;
+
+  /** Edges which travel time differs from the first time slice, per time slice. */
+  private int[][] changedTravelTimeEdges;
+
+  /** Travel times of the changed edges, per time slice. */
+  private double[][] changedTravelTimes;
+
+  /** Edges which weight differs from the first time slice, per time slice. */
+  private int[][] changedWeightEdges;
+
+  /** Weights of the changed edges, per time slice. */
+  private double[][] changedWeights;
+
+  private CompressedGraph graph;
+
+  private int nbTimeSlices;
+
+  /** Start time of the first time slice, in seconds after midnight. */
+  private double startTime;
+
+  /** Duration of a time slice, in seconds. */
+  private double timeSliceDuration;
+
+  /**
+   * Initializes the weights of the edges of a compressed graph for a set of time slices.
+   *
+   * @param graph The compressed graph.
+   * @param startTime The start time of the first time slice, in minutes after midnight.
+   * @param timeSliceDuration The duration of a time slice, in minutes.
+   * @param nbTimeSlices The number of time slices.
+   */
+  public TimeDependentEdgeWeights(
+      CompressedGraph graph, int startTime, int timeSliceDuration, int nbTimeSlices) {
+    this.graph = graph;
+    this.startTime = startTime * 60.0;
+    this.timeSliceDuration = timeSliceDuration * 60.0;
+    this.nbTimeSlices = nbTimeSlices;
+    changedWeightEdges = new int[nbTimeSlices][];
+    changedWeights = new double[nbTimeSlices][];
+    changedTravelTimeEdges = new int[nbTimeSlices][];
+    changedTravelTimes = new double[nbTimeSlices][];
+  }
+
+  /**
+   * Returns the time at which an edge entered at a given time is left.
+   *
+   * @param edge The edge.
+   * @param time The time the edge is entered, in seconds after midnight.
+   * @return The time the edge is left, in seconds after midnight.
+   */
+  public double getArrivalTime(int edge, double time) {
+    int timeSlice = getTimeSlice(time);
+    double remaining = 1.0;
+    while (true) {
+      double travelTime = getTravelTime(edge, timeSlice);
+      if (travelTime <= 0) {
+        return time;
+      }
+
+      // Leave the edge during this time slice, or cross the end of the time slice
+      double end = startTime + (timeSlice + 1) * timeSliceDuration;
+      if (timeSlice == nbTimeSlices - 1 || time + remaining * travelTime <= end) {
+        return time + remaining * travelTime;
+      }
+      remaining -= (end - time) / travelTime;
+      time = end;
+      timeSlice++;
+    }
+  }
+
+  /**
+   * Returns the time slice a given time belongs to.
+   *
+   * @param time The time, in seconds after midnight.
+   * @return The time slice, bounded by the first and last time slices.
+   */
+  public int getTimeSlice(double time) {
+    int timeSlice = (int) Math.floor((time - startTime) / timeSliceDuration);
+    if (timeSlice < 0) {
+      return 0;
+    }
+    return Math.min(timeSlice, nbTimeSlices - 1);
+  }
+
+  /**
+   * Returns the travel time of an edge during a time slice.
+   *
+   * @param edge The edge.
+   * @param timeSlice The time slice.
+   * @return The travel time, in seconds.
+   */
+  public double getTravelTime(int edge, int timeSlice) {
+    return getValue(
+        baseTravelTimes, changedTravelTimeEdges[timeSlice], changedTravelTimes[timeSlice], edge);
+  }
+
+  /** Returns the value of an edge, from the changed values if it is one of them. */
+  private static double getValue(double[] base, int[] changedEdges, double[] changed, int edge) {
+    if (changedEdges != null) {
+      int i = Arrays.binarySearch(changedEdges, edge);
+      if (i >= 0) {
+        return changed[i];
+      }
+    }
+    return base[edge];
+  }
+
+  /**
+   * Returns the weight of an edge during a time slice.
+   *
+   * @param edge The edge.
+   * @param timeSlice The time slice.
+   * @return The weight, infinite if the edge can't be used.
+   */
+  public double getWeight(int edge, int timeSlice) {
+    return getValue(baseWeights, changedWeightEdges[timeSlice], changedWeights[timeSlice], edge);
+  }
+
+  /**
+   * Records the weights and travel times of the edges for a time slice, from the costs and
+   * durations currently computed for the virtual links. The first time slice must be recorded
+   * first. The time slices which are not recorded keep the values of the first time slice.
+   *
+   * @param timeSlice The time slice.
+   * @param groupIndex The index of the group of commodities.
+   * @param hasDurationFunctions If true, the travel times are the durations computed for the
+   *     virtual links. Otherwise, they are the default durations of the moving virtual links.
+   */
+  public void setTimeSlice(int timeSlice, byte groupIndex, boolean hasDurationFunctions) {
+    double[] weights = graph.generateEdgeWeights(groupIndex);
+    double[] travelTimes = new double[weights.length];
+    for (int edge = 0; edge < travelTimes.length; edge++) {
+      VirtualLink vl = graph.getVirtualLinkForEdge(edge);
+      double travelTime;
+      if (hasDurationFunctions) {
+        travelTime = vl.getDuration(groupIndex);
+      } else {
+        travelTime = vl.getDefaultDuration();
+      }
+      travelTimes[edge] = Math.max(0, travelTime);
+    }
+
+    if (timeSlice == 0) {
+      baseWeights = weights;
+      baseTravelTimes = travelTimes;
+      return;
+    }
+
+    changedWeightEdges[timeSlice] = getChangedEdges(baseWeights, weights);
+    changedWeights[timeSlice] = getValues(weights, changedWeightEdges[timeSlice]);
+    changedTravelTimeEdges[timeSlice] = getChangedEdges(baseTravelTimes, travelTimes);
+    changedTravelTimes[timeSlice] = getValues(travelTimes, changedTravelTimeEdges[timeSlice]);
+  }
+
+  /** Returns the edges which value differs from the base value, in increasing order, or null. */
+  private static int[] getChangedEdges(double[] base, double[] values) {
+    int n = 0;
+    for (int edge = 0; edge < values.length; edge++) {
+      if (values[edge] != base[edge]) {
+        n++;
+      }
+    }
+    if (n == 0) {
+      return null;
+    }
+
+    int[] changedEdges = new int[n];
+    n = 0;
+    for (int edge = 0; edge < values.length; edge++) {
+      if (values[edge] != base[edge]) {
+        changedEdges[n++] = edge;
+      }
+    }
+    return changedEdges;
+  }
+
+  /** Returns the values of a set of edges. */
+  private static double[] getValues(double[] values, int[] edges) {
+    if (edges == null) {
+      return null;
+    }
+    double[] v = new double[edges.length];
+    for (int i = 0; i < edges.length; i++) {
+      v[i] = values[edges[i]];
+    }
+    return v;
+  }
+}
@@ -23,15 +23,21 @@ package edu.uclouvain.core.nodus.compute.assign.workers;
 
 import com.bbn.openmap.Environment;
 import com.bbn.openmap.util.I18n;
+import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.NodusMapPanel;
 import edu.uclouvain.core.nodus.NodusProject;
 import edu.uclouvain.core.nodus.compute.assign.Assignment;
 import edu.uclouvain.core.nodus.compute.assign.AssignmentParameters;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapDijkstra;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.CompressedGraph;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.ShortestPathTreeCache;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
 import edu.uclouvain.core.nodus.compute.virtual.PathWriter;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualNetwork;
 import edu.uclouvain.core.nodus.utils.WorkQueue;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -66,9 +72,42 @@ public abstract class AssignmentWorker extends Thread {
   /** List of the demands to be assigned. */
   LinkedList<ODCell> demandList;
 
-  /** The graph on which the shortest paths are computed. */
+  /** The graph on which the shortest paths are computed (multi-flow assignments). */
   AdjacencyNode[] graph;
 
+  /** The compressed graph on which the shortest paths are computed. */
+  CompressedGraph compressedGraph;
+
+  /** The weights of the edges of the compressed graph for the current group. */
+  double[] edgeWeights;
+
+  /** The group the edge weights were generated for, or -1. */
+  private int edgeWeightsGroup = -1;
+
+  /** The version of the costs the edge weights were generated for. */
+  private int edgeWeightsVersion = -1;
+
+  /** Index, in the virtual node lists, of the first origin to assign. */
+  int firstNodeIndex;
+
+  /** Index of the origin after the last one to assign. */
+  int lastNodeIndex;
+
+  /** Accumulator of the volumes of the current chunk of origins, or null for a complete group. */
+  private LinkVolumeAccumulator linkVolumes = null;
+
+  /** Accumulator reused for all the chunks of origins processed by this worker. */
+  private LinkVolumeAccumulator chunkAccumulator = null;
+
+  /** Demand accumulated at each node of a shortest path tree, used by loadTree. */
+  private double[] treeFlows = null;
+
+  /** Cost of the demand on its shortest paths, for the current job. */
+  private double shortestPathsCost;
+
+  /** Demand assigned on its shortest paths, for the current job. */
+  private double shortestPathsDemand;
+
   /** The index of the group to assign. */
   byte groupIndex;
 
@@ -106,6 +145,212 @@ public abstract class AssignmentWorker extends Thread {
     this.workQueue = queue;
   }
 
+  /**
+   * Adds a quantity to the auxiliary volume of a virtual link for the current group. For a chunk
+   * of origins, the quantity is accumulated locally and merged later.
+   *
+   * @param vl The virtual link.
+   * @param qty The quantity to add.
+   */
+  void addAuxiliaryVolume(VirtualLink vl, double qty) {
+    if (linkVolumes != null) {
+      linkVolumes.addAuxiliaryVolume(vl.getId(), qty);
+    } else {
+      vl.addAuxiliaryVolume(groupIndex, qty);
+    }
+  }
+
+  /**
+   * Adds the cost of the demand of an OD pair on its shortest path, used to measure the convergence
+   * of the equilibrium assignments.
+   *
+   * @param qty The quantity of the demand.
+   * @param cost The cost of the shortest path.
+   */
+  void addShortestPathCost(double qty, double cost) {
+    shortestPathsCost += qty * cost;
+    shortestPathsDemand += qty;
+  }
+
+  /**
+   * Adds a quantity to the current volume of a virtual link for the current group. For a chunk of
+   * origins, the quantity is accumulated locally and merged later.
+   *
+   * @param vl The virtual link.
+   * @param qty The quantity to add.
+   */
+  void addVolume(VirtualLink vl, double qty) {
+    if (linkVolumes != null) {
+      linkVolumes.addVolume(vl.getId(), qty);
+    } else {
+      vl.addVolume(groupIndex, qty);
+    }
+  }
+
+  /**
+   * Computes the shortest path tree of an origin for the demand list. If the assignment keeps the
+   * trees between its iterations, the tree computed at the previous iteration is updated instead
+   * when possible.
+   *
+   * @param shortestPath The shortest path algorithm.
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   */
+  void computeShortestPaths(BinaryHeapDijkstra shortestPath, int nodeIndex) {
+    int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+    ShortestPathTreeCache cache = assignment.getShortestPathTreeCache();
+    if (cache == null) {
+      shortestPath.compute(beginNode, demandList);
+    } else {
+      cache.computeTree(
+          shortestPath,
+          odClass,
+          groupIndex,
+          nodeIndex,
+          beginNode,
+          demandList,
+          edgeWeightsVersion,
+          edgeWeights);
+    }
+  }
+
+  /**
+   * Loads the demand of an origin on its shortest path tree. The demand is first accumulated at
+   * the destination nodes, and then pushed up the tree once, visiting the settled nodes in reverse
+   * order. This costs a time proportional to the number of settled nodes instead of the sum of the
+   * lengths of the paths, but the detailed paths are not available. It is therefore used when the
+   * paths must not be saved.
+   *
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   * @param shortestPath The shortest path tree computed from the origin.
+   * @param factor The factor applied to the quantities of the demand.
+   * @param auxiliary If true, the demand is added to the auxiliary volumes.
+   * @return True on success.
+   */
+  boolean loadTree(
+      int nodeIndex, BinaryHeapDijkstra shortestPath, double factor, boolean auxiliary) {
+    if (treeFlows == null) {
+      treeFlows = new double[compressedGraph.getNbNodes()];
+    }
+
+    int[] pi = shortestPath.getPredecessors();
+    int[] piEdge = shortestPath.getPredecessorEdges();
+    double[] weights = shortestPath.getWeights();
+    int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+
+    // Accumulate the demand at the destination nodes
+    Iterator<ODCell> it = demandList.iterator();
+    while (it.hasNext()) {
+      ODCell demand = it.next();
+      int destinationNodeIndex =
+          virtualNet.getNodeIndexInVirtualNodeList(demand.getDestinationNodeId(), true);
+      int endNode =
+          virtualNet.getVirtualNodeLists()[destinationNodeIndex].getUnloadingVirtualNodeId();
+
+      if (pi[endNode] == 0) {
+        logLostPath(nodeIndex, destinationNodeIndex);
+        continue;
+      }
+
+      // The total cost of a path must be strictly positive
+      if (weights[endNode] == 0.0) {
+        setErrorMessage(
+            i18n.get(
+                AssignmentWorker.class,
+                "Cost_must_be_positive",
+                "The total cost for all paths must be strictly positive"));
+        resetTreeFlows(shortestPath);
+        return false;
+      }
+
+      double qty = demand.getQuantity() * factor;
+      // The quantity can be a NaN in the Multinomial logit modal split function
+      if (!Double.isNaN(qty)) {
+        treeFlows[endNode] += qty;
+        addShortestPathCost(qty, weights[endNode]);
+      }
+    }
+
+    // Push the flows up the tree, from the leaves to the origin
+    int[] settledNodes = shortestPath.getSettledNodes();
+    for (int i = shortestPath.getNbSettledNodes() - 1; i >= 0; i--) {
+      int node = settledNodes[i];
+      double flow = treeFlows[node];
+      if (flow == 0.0 || node == beginNode) {
+        continue;
+      }
+      treeFlows[node] = 0.0;
+      treeFlows[pi[node]] += flow;
+
+      VirtualLink vl = compressedGraph.getVirtualLinkForEdge(piEdge[node]);
+      if (auxiliary) {
+        addAuxiliaryVolume(vl, flow);
+      } else {
+        addVolume(vl, flow);
+      }
+    }
+    treeFlows[beginNode] = 0.0;
+
+    return true;
+  }
+
+  /** Clears the flows accumulated on a shortest path tree. */
+  private void resetTreeFlows(BinaryHeapDijkstra shortestPath) {
+    int[] settledNodes = shortestPath.getSettledNodes();
+    for (int i = 0; i < shortestPath.getNbSettledNodes(); i++) {
+      treeFlows[settledNodes[i]] = 0.0;
+    }
+  }
+
+  /**
+   * Prints the SQL statement that removes an OD pair for which no path was found, if the lost
+   * paths must be logged.
+   *
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   * @param destinationNodeIndex The index of the destination in the virtual node lists.
+   */
+  void logLostPath(int nodeIndex, int destinationNodeIndex) {
+    if (assignmentParameters.isLogLostPaths()) {
+      System.out.println(
+          "delete from "
+              + assignmentParameters.getODMatrix()
+              + " where "
+              + NodusC.DBF_GROUP
+              + "="
+              + currentGroup
+              + " and "
+              + NodusC.DBF_ORIGIN
+              + "="
+              + virtualNet.getVirtualNodeLists()[nodeIndex].getRealNodeId()
+              + " and "
+              + NodusC.DBF_DESTINATION
+              + "="
+              + virtualNet.getVirtualNodeLists()[destinationNodeIndex].getRealNodeId()
+              + ";");
+    }
+  }
+
+  /**
+   * Prepares the compressed graph and the edge weights for the current group. They are kept if
+   * the previous job of this worker was for the same group and costs, which is the case when the
+   * origins of a group are split in several chunks. As the workers can be kept alive during a
+   * whole assignment, the edge weights array is reused when the costs change.
+   *
+   * @return True if new edge weights were generated.
+   */
+  boolean prepareCompressedGraph() {
+    int costsVersion = virtualNet.getCostsVersion();
+    if (compressedGraph != null
+        && edgeWeightsGroup == groupIndex
+        && edgeWeightsVersion == costsVersion) {
+      return false;
+    }
+    compressedGraph = virtualNet.getCompressedGraph();
+    edgeWeights = virtualNet.generateEdgeWeights(groupIndex, edgeWeights);
+    edgeWeightsGroup = groupIndex;
+    edgeWeightsVersion = costsVersion;
+    return true;
+  }
+
   /** Give the signal to this worker to stop. */
   public void requestCancel() {
     canceled = true;
@@ -161,7 +406,9 @@ public abstract class AssignmentWorker extends Thread {
 
   /**
    * Main entry point of the worker. Fetches the assignment parameters and runs it. It also cancels
-   * all the assignment workers of the assignment if the Esc key was pressed on the MapBean.
+   * all the assignment workers of the assignment if the Esc key was pressed on the MapBean. The
+   * worker runs until it retrieves the end-of-stream marker, so that it can be kept alive for
+   * several iterations of an assignment.
    */
   @Override
   public void run() {
@@ -174,39 +421,84 @@ public abstract class AssignmentWorker extends Thread {
         if (x == WorkQueue.NO_MORE_WORK) {
           break;
         }
-        AssignmentWorkerParameters awp = (AssignmentWorkerParameters) x;
-
-        assignment = awp.getAssignment();
-
-        virtualNet = assignment.getVNet();
 
-        nodusProject = assignment.getNodusProjectl();
-        nodusMapPanel = nodusProject.getNodusMapPanel();
-        pathWriter = assignment.getPathWriter();
-        assignmentParameters = assignment.getAssignmentParameters();
-
-        iteration = awp.getIterationAsInt();
-        loadFactor = awp.getLoadFactor();
-        groupIndex = awp.getGroupIndex();
-        odClass = awp.getODClass();
-
-        currentGroup = virtualNet.getGroups()[groupIndex];
-
-        // Start the real work
-        if (!doAssignment()) {
+        try {
+          runJob((AssignmentWorkerParameters) x);
+        } catch (RuntimeException e) {
+          if (linkVolumes != null) {
+            linkVolumes.reset();
+          }
+          if (assignment != null) {
+            setErrorMessage(e.toString());
+          }
           cancelAssignmentWorkers();
+          e.printStackTrace();
+        } finally {
+          workQueue.workDone();
         }
       }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       cancelAssignmentWorkers();
       e.printStackTrace();
-    } catch (RuntimeException e) {
-      if (assignment != null) {
-        setErrorMessage(e.toString());
+    }
+  }
+
+  /**
+   * Runs a job fetched from the work queue.
+   *
+   * @param awp The parameters of the job.
+   */
+  private void runJob(AssignmentWorkerParameters awp) {
+    assignment = awp.getAssignment();
+
+    virtualNet = assignment.getVNet();
+
+    nodusProject = assignment.getNodusProjectl();
+    nodusMapPanel = nodusProject.getNodusMapPanel();
+    pathWriter = assignment.getPathWriter();
+    assignmentParameters = assignment.getAssignmentParameters();
+
+    iteration = awp.getIterationAsInt();
+    loadFactor = awp.getLoadFactor();
+    groupIndex = awp.getGroupIndex();
+    odClass = awp.getODClass();
+
+    currentGroup = virtualNet.getGroups()[groupIndex];
+
+    // Range of origins to assign
+    firstNodeIndex = awp.getFirstNodeIndex();
+    if (awp.isOriginChunk()) {
+      lastNodeIndex = awp.getLastNodeIndex();
+      if (chunkAccumulator == null) {
+        chunkAccumulator = new LinkVolumeAccumulator(virtualNet.getCompressedGraph().getNbLinks());
+      }
+      linkVolumes = chunkAccumulator;
+    } else {
+      lastNodeIndex = virtualNet.getVirtualNodeLists().length;
+      linkVolumes = null;
+    }
+
+    shortestPathsCost = 0.0;
+    shortestPathsDemand = 0.0;
+
+    // Start the real work
+    if (!doAssignment()) {
+      if (linkVolumes != null) {
+        linkVolumes.reset();
       }
       cancelAssignmentWorkers();
-      e.printStackTrace();
+      return;
+    }
+
+    if (linkVolumes != null) {
+      linkVolumes.flush(awp);
+    }
+
+    if (shortestPathsDemand > 0.0 && assignment.getConvergenceMonitor() != null) {
+      assignment
+          .getConvergenceMonitor()
+          .addShortestPathsCost(shortestPathsCost, shortestPathsDemand);
     }
   }
 
@@ -22,6 +22,8 @@
 package edu.uclouvain.core.nodus.compute.assign.workers;
 
 import edu.uclouvain.core.nodus.compute.assign.Assignment;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.CompressedGraph;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
 
 /**
  * The worker (thread) specific assignment parameters.
@@ -36,6 +38,21 @@ public class AssignmentWorkerParameters {
   private double loadFactor;
   private byte odClass;
 
+  /** Index, in the virtual node lists, of the first origin to assign. */
+  private int firstNodeIndex = 0;
+
+  /** Index of the origin after the last one to assign, or -1 to assign all the origins. */
+  private int lastNodeIndex = -1;
+
+  /** IDs of the virtual links loaded by a chunk of origins. */
+  private int[] chunkLinkIds = null;
+
+  /** Volumes assigned to the virtual links by a chunk of origins. */
+  private double[] chunkVolumes = null;
+
+  /** True if the volumes of the chunk are auxiliary volumes. */
+  private boolean chunkAuxiliary = false;
+
   /**
    * Initializes the AssignmentWorker specific parameters.
    *
@@ -143,4 +160,63 @@ public class AssignmentWorkerParameters {
   byte getODClass() {
     return odClass;
   }
+
+  /**
+   * Restricts the job to a chunk of the origins of the group. The volumes computed for the chunk
+   * are kept in these parameters until they are merged into the virtual links.
+   *
+   * @param firstNodeIndex Index, in the virtual node lists, of the first origin to assign.
+   * @param lastNodeIndex Index of the origin after the last one to assign.
+   */
+  public void setOriginRange(int firstNodeIndex, int lastNodeIndex) {
+    this.firstNodeIndex = firstNodeIndex;
+    this.lastNodeIndex = lastNodeIndex;
+  }
+
+  /**
+   * Returns true if this job only assigns a chunk of the origins of the group.
+   *
+   * @return True for a chunk of origins.
+   */
+  public boolean isOriginChunk() {
+    return lastNodeIndex >= 0;
+  }
+
+  int getFirstNodeIndex() {
+    return firstNodeIndex;
+  }
+
+  int getLastNodeIndex() {
+    return lastNodeIndex;
+  }
+
+  void setChunkVolumes(int[] linkIds, double[] volumes, boolean auxiliary) {
+    chunkLinkIds = linkIds;
+    chunkVolumes = volumes;
+    chunkAuxiliary = auxiliary;
+  }
+
+  /**
+   * Adds the volumes computed for a chunk of origins to the virtual links. Must be called once all
+   * the workers are done, in the order the chunks were created, so that the result doesn't depend
+   * on the scheduling of the threads.
+   */
+  public void mergeChunkVolumes() {
+    if (chunkLinkIds == null) {
+      return;
+    }
+
+    CompressedGraph graph = assignment.getVNet().getCompressedGraph();
+    for (int i = 0; i < chunkLinkIds.length; i++) {
+      VirtualLink vl = graph.getVirtualLink(chunkLinkIds[i]);
+      if (chunkAuxiliary) {
+        vl.addAuxiliaryVolume(groupIndex, chunkVolumes[i]);
+      } else {
+        vl.addVolume(groupIndex, chunkVolumes[i]);
+      }
+    }
+
+    chunkLinkIds = null;
+    chunkVolumes = null;
+  }
 }
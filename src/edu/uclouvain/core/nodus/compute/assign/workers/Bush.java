@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.workers;
+
+import java.util.Arrays;
+
+/**
+ * Acyclic sub-network of the virtual network used to carry the demand of a group from one origin,
+ * as used by the origin-based (bush-based) equilibrium assignment. The bush is stored as a list of
+ * edges of the compressed graph, with two flows for each edge: the flow of the current solution
+ * and the flow proposed by the current iteration. Once the step between both solutions is known,
+ * the proposed flows are combined with the current ones.
+ *
+ * @author Bart Jourquin
+ */
+public class Bush {
+
+  /** Flows below this value are considered as null. */
+  private static final double MIN_FLOW = 1e-10;
+
+  /** Edges of the compressed graph. */
+  int[] edges = new int[16];
+
+  /** Flows of the current solution. */
+  double[] flows = new double[16];
+
+  int nbEdges = 0;
+
+  /** Flows proposed by the current iteration. */
+  double[] newFlows = new double[16];
+
+  /**
+   * Adds an edge to the bush.
+   *
+   * @param edge The edge of the compressed graph.
+   * @param flow The flow of the current solution.
+   * @param newFlow The flow proposed by the current iteration.
+   * @return The index of the edge in the bush.
+   */
+  int add(int edge, double flow, double newFlow) {
+    if (nbEdges == edges.length) {
+      int newLength = 2 * nbEdges;
+      edges = Arrays.copyOf(edges, newLength);
+      flows = Arrays.copyOf(flows, newLength);
+      newFlows = Arrays.copyOf(newFlows, newLength);
+    }
+    edges[nbEdges] = edge;
+    flows[nbEdges] = flow;
+    newFlows[nbEdges] = newFlow;
+    return nbEdges++;
+  }
+
+  /**
+   * Combines the proposed flows with the current ones: (1 - lambda) * current flow + lambda *
+   * proposed flow.
+   *
+   * @param lambda The step, in [0, 1].
+   */
+  public void commit(double lambda) {
+    for (int i = 0; i < nbEdges; i++) {
+      double flow = (1 - lambda) * flows[i] + lambda * newFlows[i];
+      if (flow < MIN_FLOW) {
+        flow = 0.0;
+      }
+      flows[i] = flow;
+      newFlows[i] = 0.0;
+    }
+  }
+
+  /** Removes the edges that don't carry any flow in the current solution. */
+  void removeUnusedEdges() {
+    int n = 0;
+    for (int i = 0; i < nbEdges; i++) {
+      if (flows[i] > 0.0) {
+        edges[n] = edges[i];
+        flows[n] = flows[i];
+        n++;
+      }
+    }
+    nbEdges = n;
+  }
+
+  /**
+   * Returns the number of edges in the bush.
+   *
+   * @return The number of edges.
+   */
+  public int getNbEdges() {
+    return nbEdges;
+  }
+}
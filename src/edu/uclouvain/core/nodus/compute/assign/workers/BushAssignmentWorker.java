@@ -0,0 +1,806 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.workers;
+
+import edu.uclouvain.core.nodus.compute.assign.Assignment;
+import edu.uclouvain.core.nodus.compute.assign.BushAssignment;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapDijkstra;
+import edu.uclouvain.core.nodus.compute.od.ODCell;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import edu.uclouvain.core.nodus.utils.WorkQueue;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Origin-based equilibrium assignment worker, inspired by the Algorithm B of <i>Dial R.B., A
+ * path-based user-equilibrium traffic assignment algorithm that obviates path storage and
+ * enumeration, Transportation Research Part B, Vol 40, pp. 917-936, 2006.</i>
+ *
+ * <p>The demand of a group leaving an origin is carried by an acyclic bush. At each iteration,
+ * the bush is first extended with the edges of the shortest path tree that keep it acyclic. Flow
+ * is then shifted, inside the bush, from the longest used segments to the shortest ones. The size
+ * of each shift is given by a Newton step, using the derivatives of the link costs when they are
+ * known. The costs of the links of the bush are updated after each shift, but the shifts made in
+ * the other bushes are only taken into account at the next iteration. The new flows of the bush
+ * are added to the auxiliary volumes.
+ *
+ * <p>Once the assignment converged, the flows of the bushes are decomposed in paths if the
+ * detailed paths must be saved.
+ *
+ * @author Bart Jourquin
+ */
+public class BushAssignmentWorker extends AssignmentWorker {
+
+  /** Maximum number of flow shifting passes over a bush at each iteration. */
+  private static final int MAX_SHIFT_PASSES = 5;
+
+  /** Paths carrying a smaller share of the demand of an OD pair are not saved. */
+  private static final double MIN_PATH_SHARE = 0.01;
+
+  /** Relative cost difference under which two segments are considered as equivalent. */
+  private static final double SHIFT_PRECISION = 1e-9;
+
+  private BushAssignment bushAssignment;
+
+  /** The bush being processed. */
+  private Bush bush;
+
+  /** Nodes of the current bush, in topological order once sorted. */
+  private int[] bushNodes;
+
+  /** Derivative of the cost of each edge of the current bush. */
+  private double[] edgeCostDerivatives = new double[16];
+
+  /** Cost of each edge of the current bush, updated after each flow shift. */
+  private double[] edgeCosts = new double[16];
+
+  /** Index in the current bush of each edge of the compressed graph, or -1. */
+  private int[] edgePositions;
+
+  private int[] edgeLinkIds;
+
+  private int[] edgeSources;
+
+  private int[] edgeTargets;
+
+  /** First incoming and outgoing edge of each node of the current bush, or -1. */
+  private int[] firstIn;
+
+  private int[] firstOut;
+
+  /** Stamp used to mark the nodes of the current bush. */
+  private int generation = 0;
+
+  private int[] inDegree;
+
+  /** Flow entering each node of the current bush. */
+  private double[] inflows;
+
+  /** Cost derivatives of the current group, indexed by virtual link ID. */
+  private double[] linkCostDerivatives;
+
+  /** Longest used path cost and its last edge, for each node of the current bush. */
+  private double[] maxCosts;
+
+  private int[] maxPredecessors;
+
+  /** Shortest path cost and its last edge, for each node of the current bush. */
+  private double[] minCosts;
+
+  private int[] minPredecessors;
+
+  private int nbBushNodes;
+
+  /** Next incoming and outgoing edge of the same node, for each edge of the current bush. */
+  private int[] nextIn = new int[16];
+
+  private int[] nextOut = new int[16];
+
+  private int[] nodeStamps;
+
+  /** Edges of the paths found by the flow decomposition. */
+  private ArrayList<int[]> paths = new ArrayList<>();
+
+  /** Edges of the path being explored by the flow decomposition, from the destination. */
+  private int[] pathEdges = new int[64];
+
+  /** Share of the demand carried by the paths found by the flow decomposition. */
+  private ArrayList<Double> pathShares = new ArrayList<>();
+
+  /** Position of each node of the current bush in the topological order. */
+  private int[] positions;
+
+  private BinaryHeapDijkstra shortestPath;
+
+  /** Nodes of the shortest path being added to the bush. */
+  private int[] sortedNodes;
+
+  /** Cost of the flows of the bushes, for the origins assigned by this job. */
+  private double totalCost;
+
+  /**
+   * Initializes an Assignment Worker.
+   *
+   * @param queue The WorkQueue the assignment will run in.
+   */
+  public BushAssignmentWorker(WorkQueue queue) {
+    super(queue);
+  }
+
+  /**
+   * Runs an iteration of the origin-based assignment, or writes the paths of the final solution.
+   *
+   * @return True on success.
+   */
+  @Override
+  boolean doAssignment() {
+    bushAssignment = (BushAssignment) assignment;
+
+    // Initialize the compressed graph and the edge weights for current group
+    if (prepareCompressedGraph()) {
+      if (shortestPath == null) {
+        shortestPath = new BinaryHeapDijkstra(compressedGraph, edgeWeights, virtualNet);
+      } else {
+        shortestPath.setEdgeWeights(edgeWeights);
+      }
+    }
+    initializeArrays();
+
+    boolean writingPaths = bushAssignment.isWritingPaths();
+    if (!writingPaths) {
+      linkCostDerivatives = bushAssignment.getCostDerivatives(odClass, groupIndex);
+    }
+    Bush[] bushes = bushAssignment.getBushes(odClass, groupIndex);
+    totalCost = 0.0;
+
+    // Scan the nodes of the range of origins to assign
+    for (int nodeIndex = firstNodeIndex; nodeIndex < lastNodeIndex; nodeIndex++) {
+      if (virtualNet.getVirtualNodeLists()[nodeIndex].hasDemandForGroup(
+          virtualNet.getGroups()[groupIndex], odClass)) {
+        String s = null;
+        if (virtualNet.getNbODClasses() > 1) {
+          s =
+              MessageFormat.format(
+                  i18n.get(Assignment.class, "Assignment_for_class", "Assignment for class {0}"),
+                  odClass);
+        } else {
+          s = i18n.get(Assignment.class, "Assignment", "Assignment");
+        }
+
+        if (!updateProgress(s)) {
+          return false;
+        }
+      }
+
+      // This worker could also have been stopped by another thread
+      if (isCancelled()) {
+        return false;
+      }
+
+      // Get the demand associated to this node for the current group
+      demandList =
+          virtualNet.getVirtualNodeLists()[nodeIndex].getDemandForGroup(
+              virtualNet.getGroups()[groupIndex], odClass);
+
+      if (demandList == null) {
+        continue;
+      }
+
+      bush = bushes[nodeIndex];
+      if (writingPaths) {
+        if (bush != null && !savePaths(nodeIndex)) {
+          return false;
+        }
+        continue;
+      }
+
+      // Compute all the shortest paths in the virtual network starting from here
+      int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+      shortestPath.compute(beginNode, demandList);
+
+      boolean success;
+      if (bush == null) {
+        bush = new Bush();
+        bushes[nodeIndex] = bush;
+        success = createBush(nodeIndex);
+      } else {
+        success = updateBush(nodeIndex);
+      }
+
+      // Reset the positions of the edges of the bush
+      for (int i = 0; i < bush.nbEdges; i++) {
+        edgePositions[bush.edges[i]] = -1;
+      }
+
+      if (!success) {
+        return false;
+      }
+
+      // Load the new flows of the bush
+      for (int i = 0; i < bush.nbEdges; i++) {
+        if (bush.newFlows[i] > 0.0) {
+          VirtualLink vl = compressedGraph.getVirtualLinkForEdge(bush.edges[i]);
+          addAuxiliaryVolume(vl, bush.newFlows[i]);
+        }
+      }
+    }
+
+    if (!writingPaths) {
+      bushAssignment.getConvergenceMonitor().addTotalCost(totalCost);
+    }
+
+    return true;
+  }
+
+  /**
+   * Adds an edge to the current bush. Its end nodes must already be marked.
+   *
+   * @param edge The edge of the compressed graph.
+   * @param flow The flow of the current solution.
+   * @return The index of the edge in the bush.
+   */
+  private int addEdge(int edge, double flow) {
+    int i = bush.add(edge, flow, flow);
+    ensureCapacity();
+    edgePositions[edge] = i;
+
+    int source = edgeSources[edge];
+    nextOut[i] = firstOut[source];
+    firstOut[source] = i;
+    int target = edgeTargets[edge];
+    nextIn[i] = firstIn[target];
+    firstIn[target] = i;
+
+    return i;
+  }
+
+  /** Makes sure the arrays indexed by the edges of the current bush are large enough. */
+  private void ensureCapacity() {
+    int length = bush.edges.length;
+    if (nextIn.length < length) {
+      edgeCostDerivatives = Arrays.copyOf(edgeCostDerivatives, length);
+      edgeCosts = Arrays.copyOf(edgeCosts, length);
+      nextIn = Arrays.copyOf(nextIn, length);
+      nextOut = Arrays.copyOf(nextOut, length);
+    }
+  }
+
+  /**
+   * Creates the bush of an origin from its shortest path tree, and loads the demand on it.
+   *
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   * @return True on success.
+   */
+  private boolean createBush(int nodeIndex) {
+    int[] pi = shortestPath.getPredecessors();
+    int[] piEdge = shortestPath.getPredecessorEdges();
+    double[] weights = shortestPath.getWeights();
+    int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+
+    Iterator<ODCell> it = demandList.iterator();
+    while (it.hasNext()) {
+      ODCell demand = it.next();
+      int destinationNodeIndex =
+          virtualNet.getNodeIndexInVirtualNodeList(demand.getDestinationNodeId(), true);
+      int endNode =
+          virtualNet.getVirtualNodeLists()[destinationNodeIndex].getUnloadingVirtualNodeId();
+
+      if (pi[endNode] == 0) {
+        logLostPath(nodeIndex, destinationNodeIndex);
+        continue;
+      }
+
+      // The total cost of a path must be strictly positive
+      if (weights[endNode] == 0.0) {
+        setErrorMessage(
+            i18n.get(
+                AssignmentWorker.class,
+                "Cost_must_be_positive",
+                "The total cost for all paths must be strictly positive"));
+        return false;
+      }
+
+      // The quantity can be a NaN in the Multinomial logit modal split function
+      double qty = demand.getQuantity();
+      if (Double.isNaN(qty)) {
+        continue;
+      }
+
+      int node = endNode;
+      while (node != beginNode) {
+        int edge = piEdge[node];
+        int i = edgePositions[edge];
+        if (i == -1) {
+          i = bush.add(edge, 0.0, 0.0);
+          edgePositions[edge] = i;
+        }
+        bush.newFlows[i] += qty;
+        node = pi[node];
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Extends the bush of an origin with its shortest path tree and shifts its flows towards the
+   * shortest segments. Also accumulates the terms of the relative gap for the current solution.
+   *
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   * @return True on success.
+   */
+  private boolean updateBush(int nodeIndex) {
+    int[] pi = shortestPath.getPredecessors();
+    int[] piEdge = shortestPath.getPredecessorEdges();
+    double[] weights = shortestPath.getWeights();
+    int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+
+    bush.removeUnusedEdges();
+    ensureCapacity();
+
+    // Relative gap terms
+    for (int i = 0; i < bush.nbEdges; i++) {
+      totalCost += bush.flows[i] * edgeWeights[bush.edges[i]];
+    }
+
+    // Index the bush and compute the cost of its longest paths
+    generation++;
+    nbBushNodes = 0;
+    markNode(beginNode);
+    int nbEdges = bush.nbEdges;
+    bush.nbEdges = 0;
+    for (int i = 0; i < nbEdges; i++) {
+      int edge = bush.edges[i];
+      markNode(edgeSources[edge]);
+      markNode(edgeTargets[edge]);
+      addEdge(edge, bush.flows[i]);
+    }
+    for (int i = 0; i < bush.nbEdges; i++) {
+      edgeCosts[i] = edgeWeights[bush.edges[i]];
+    }
+    if (!sortNodes()) {
+      return false;
+    }
+    computePathCosts(beginNode);
+
+    // Add the edges of the shortest paths that keep the bush acyclic
+    double[] potentials = maxCosts;
+    Iterator<ODCell> it = demandList.iterator();
+    while (it.hasNext()) {
+      ODCell demand = it.next();
+      int destinationNodeIndex =
+          virtualNet.getNodeIndexInVirtualNodeList(demand.getDestinationNodeId(), true);
+      int endNode =
+          virtualNet.getVirtualNodeLists()[destinationNodeIndex].getUnloadingVirtualNodeId();
+
+      double qty = demand.getQuantity();
+      if (pi[endNode] == 0 || Double.isNaN(qty)) {
+        continue;
+      }
+      addShortestPathCost(qty, weights[endNode]);
+
+      // Nodes of the shortest path, from the destination to the origin
+      int nbPathNodes = 0;
+      for (int node = endNode; node != beginNode; node = pi[node]) {
+        sortedNodes[nbPathNodes++] = node;
+      }
+
+      // Edges that lead to a node with a higher potential, or to a new node
+      for (int k = nbPathNodes - 1; k >= 0; k--) {
+        int node = sortedNodes[k];
+        int edge = piEdge[node];
+        if (edgePositions[edge] != -1) {
+          continue;
+        }
+        double potential = potentials[edgeSources[edge]] + edgeWeights[edge];
+        if (markNode(node)) {
+          potentials[node] = potential;
+          addEdge(edge, 0.0);
+        } else if (potential < potentials[node]) {
+          addEdge(edge, 0.0);
+        }
+      }
+    }
+
+    if (!sortNodes()) {
+      return false;
+    }
+
+    // Shift the flows, updating the costs of the bush
+    for (int i = 0; i < bush.nbEdges; i++) {
+      int edge = bush.edges[i];
+      bush.newFlows[i] = bush.flows[i];
+      edgeCosts[i] = edgeWeights[edge];
+      edgeCostDerivatives[i] = linkCostDerivatives[edgeLinkIds[edge]];
+    }
+    for (int pass = 0; pass < MAX_SHIFT_PASSES; pass++) {
+      computePathCosts(beginNode);
+      if (!shiftFlows()) {
+        break;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Computes the cost of the shortest and longest used paths from the origin to each node of the
+   * current bush, visiting the nodes in topological order.
+   *
+   * @param beginNode The origin of the bush.
+   */
+  private void computePathCosts(int beginNode) {
+    for (int k = 0; k < nbBushNodes; k++) {
+      int node = bushNodes[k];
+      minCosts[node] = Double.POSITIVE_INFINITY;
+      maxCosts[node] = Double.NEGATIVE_INFINITY;
+      minPredecessors[node] = -1;
+      maxPredecessors[node] = -1;
+    }
+    minCosts[beginNode] = 0.0;
+    maxCosts[beginNode] = 0.0;
+
+    for (int k = 0; k < nbBushNodes; k++) {
+      int node = bushNodes[k];
+      for (int i = firstOut[node]; i != -1; i = nextOut[i]) {
+        int target = edgeTargets[bush.edges[i]];
+        double cost = minCosts[node] + edgeCosts[i];
+        if (cost < minCosts[target]) {
+          minCosts[target] = cost;
+          minPredecessors[target] = i;
+        }
+        if (bush.newFlows[i] > 0.0) {
+          cost = maxCosts[node] + edgeCosts[i];
+          if (cost > maxCosts[target]) {
+            maxCosts[target] = cost;
+            maxPredecessors[target] = i;
+          }
+        }
+      }
+    }
+  }
+
+  /** Initializes the arrays indexed by node or edge of the compressed graph. */
+  private void initializeArrays() {
+    int nbNodes = compressedGraph.getNbNodes();
+    if (nodeStamps != null && nodeStamps.length == nbNodes) {
+      return;
+    }
+    edgeLinkIds = compressedGraph.getEdgeLinkIds();
+    edgeSources = compressedGraph.getEdgeSources();
+    edgeTargets = compressedGraph.getEdgeTargets();
+    edgePositions = new int[compressedGraph.getNbEdges()];
+    Arrays.fill(edgePositions, -1);
+
+    bushNodes = new int[nbNodes];
+    firstIn = new int[nbNodes];
+    firstOut = new int[nbNodes];
+    inDegree = new int[nbNodes];
+    inflows = new double[nbNodes];
+    maxCosts = new double[nbNodes];
+    maxPredecessors = new int[nbNodes];
+    minCosts = new double[nbNodes];
+    minPredecessors = new int[nbNodes];
+    nodeStamps = new int[nbNodes];
+    positions = new int[nbNodes];
+    sortedNodes = new int[nbNodes];
+  }
+
+  /**
+   * Marks a node as belonging to the current bush.
+   *
+   * @param node The node.
+   * @return True if the node was not yet in the bush.
+   */
+  private boolean markNode(int node) {
+    if (nodeStamps[node] == generation) {
+      return false;
+    }
+    nodeStamps[node] = generation;
+    firstIn[node] = -1;
+    firstOut[node] = -1;
+    bushNodes[nbBushNodes++] = node;
+    return true;
+  }
+
+  /**
+   * Finds the paths that carry the flow of the current bush from the origin to a node, walking
+   * back from the node. At each node, the flow is split among the incoming edges in proportion of
+   * their flow.
+   *
+   * @param node The node reached by the exploration.
+   * @param beginNode The origin of the bush.
+   * @param share The share of the flow carried by the explored path.
+   * @param depth The number of edges of the explored path.
+   */
+  private void explorePaths(int node, int beginNode, double share, int depth) {
+    if (node == beginNode) {
+      paths.add(Arrays.copyOf(pathEdges, depth));
+      pathShares.add(share);
+      return;
+    }
+
+    if (depth == pathEdges.length) {
+      pathEdges = Arrays.copyOf(pathEdges, 2 * depth);
+    }
+    for (int i = firstIn[node]; i != -1; i = nextIn[i]) {
+      double edgeShare = share * bush.flows[i] / inflows[node];
+      if (edgeShare >= MIN_PATH_SHARE) {
+        pathEdges[depth] = i;
+        explorePaths(edgeSources[bush.edges[i]], beginNode, edgeShare, depth + 1);
+      }
+    }
+  }
+
+  /**
+   * Decomposes the flows of the current bush in paths and saves them.
+   *
+   * @param nodeIndex The index of the origin in the virtual node lists.
+   * @return True on success.
+   */
+  private boolean savePaths(int nodeIndex) {
+    int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+
+    // Index the edges that carry some flow
+    generation++;
+    nbBushNodes = 0;
+    bush.removeUnusedEdges();
+    ensureCapacity();
+    for (int i = 0; i < bush.nbEdges; i++) {
+      int edge = bush.edges[i];
+      if (markNode(edgeSources[edge])) {
+        inflows[edgeSources[edge]] = 0.0;
+      }
+      if (markNode(edgeTargets[edge])) {
+        inflows[edgeTargets[edge]] = 0.0;
+      }
+      int target = edgeTargets[edge];
+      nextIn[i] = firstIn[target];
+      firstIn[target] = i;
+      inflows[target] += bush.flows[i];
+    }
+
+    Iterator<ODCell> it = demandList.iterator();
+    while (it.hasNext()) {
+      ODCell demand = it.next();
+      int destinationNodeIndex =
+          virtualNet.getNodeIndexInVirtualNodeList(demand.getDestinationNodeId(), true);
+      int endNode =
+          virtualNet.getVirtualNodeLists()[destinationNodeIndex].getUnloadingVirtualNodeId();
+
+      double qty = demand.getQuantity();
+      if (Double.isNaN(qty)) {
+        continue;
+      }
+      if (nodeStamps[endNode] != generation || !(inflows[endNode] > 0.0)) {
+        logLostPath(nodeIndex, destinationNodeIndex);
+        continue;
+      }
+
+      paths.clear();
+      pathShares.clear();
+      explorePaths(endNode, beginNode, 1.0, 0);
+
+      double totalShare = 0.0;
+      for (double share : pathShares) {
+        totalShare += share;
+      }
+      for (int p = 0; p < paths.size(); p++) {
+        if (!savePath(demand, qty * pathShares.get(p) / totalShare, paths.get(p))) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Saves a detailed path.
+   *
+   * @param demand The OD cell the path belongs to.
+   * @param qty The quantity carried by the path.
+   * @param edges The indexes, in the current bush, of the edges of the path, from the destination.
+   * @return True on success.
+   */
+  private boolean savePath(ODCell demand, double qty, int[] edges) {
+    int pathIndex = getNewPathIndex();
+    PathWeights pathCosts = new PathWeights();
+    int nbTranshipments = 0;
+    byte loadingMode = 0;
+    byte loadingMeans = 0;
+    byte unloadingMode = 0;
+    byte unloadingMeans = 0;
+
+    for (int i : edges) {
+      VirtualLink vl = compressedGraph.getVirtualLinkForEdge(bush.edges[i]);
+
+      switch (vl.getType()) {
+        case VirtualLink.TYPE_LOAD:
+          pathCosts.ldCost += vl.getCost(groupIndex);
+          pathCosts.ldDuration += vl.getDuration(groupIndex);
+          loadingMode = vl.getEndVirtualNode().getMode();
+          loadingMeans = vl.getEndVirtualNode().getMeans();
+          break;
+        case VirtualLink.TYPE_UNLOAD:
+          pathCosts.ulCost += vl.getCost(groupIndex);
+          pathCosts.ulDuration += vl.getDuration(groupIndex);
+          unloadingMode = vl.getBeginVirtualNode().getMode();
+          unloadingMeans = vl.getBeginVirtualNode().getMeans();
+          break;
+        case VirtualLink.TYPE_TRANSIT:
+          pathCosts.trCost += vl.getCost(groupIndex);
+          pathCosts.trDuration += vl.getDuration(groupIndex);
+          break;
+        case VirtualLink.TYPE_TRANSHIP:
+          pathCosts.tpCost += vl.getCost(groupIndex);
+          pathCosts.tpDuration += vl.getDuration(groupIndex);
+          nbTranshipments++;
+          break;
+        case VirtualLink.TYPE_STOP:
+          pathCosts.stpCost += vl.getCost(groupIndex);
+          pathCosts.stpDuration += vl.getDuration(groupIndex);
+          break;
+        case VirtualLink.TYPE_SWITCH:
+          pathCosts.swCost += vl.getCost(groupIndex);
+          pathCosts.swDuration += vl.getDuration(groupIndex);
+          break;
+        case VirtualLink.TYPE_MOVE:
+          pathCosts.mvCost += vl.getCost(groupIndex);
+          if (assignmentParameters.hasDurationFunctions()) {
+            pathCosts.mvDuration += vl.getDuration(groupIndex);
+          } else {
+            pathCosts.mvDuration += vl.getDefaultDuration();
+          }
+          pathCosts.length += vl.getLength();
+          pathWriter.savePathLink(vl, pathIndex);
+          break;
+        default:
+          break;
+      }
+    }
+
+    return pathWriter.savePathHeader(
+        iteration,
+        demand,
+        qty,
+        pathCosts,
+        loadingMode,
+        loadingMeans,
+        unloadingMode,
+        unloadingMeans,
+        nbTranshipments,
+        pathIndex);
+  }
+
+  /**
+   * Shifts flow from the longest used segment to the shortest one that end at each node of the
+   * current bush, visiting the nodes in reverse topological order. The size of a shift is given by
+   * a Newton step on the difference between the costs of both segments, and is limited by the
+   * smallest flow of the longest segment.
+   *
+   * @return True if some flow was shifted.
+   */
+  private boolean shiftFlows() {
+    boolean shifted = false;
+
+    for (int k = nbBushNodes - 1; k > 0; k--) {
+      int node = bushNodes[k];
+      if (maxPredecessors[node] == -1 || maxPredecessors[node] == minPredecessors[node]) {
+        continue;
+      }
+
+      // Walk back both paths until they meet
+      int minNode = node;
+      int maxNode = node;
+      double minSegmentCost = 0.0;
+      double maxSegmentCost = 0.0;
+      double derivative = 0.0;
+      double maxShift = Double.POSITIVE_INFINITY;
+      do {
+        if (positions[minNode] >= positions[maxNode]) {
+          int i = minPredecessors[minNode];
+          minSegmentCost += edgeCosts[i];
+          derivative += edgeCostDerivatives[i];
+          minNode = edgeSources[bush.edges[i]];
+        } else {
+          int i = maxPredecessors[maxNode];
+          maxSegmentCost += edgeCosts[i];
+          derivative += edgeCostDerivatives[i];
+          maxShift = Math.min(maxShift, bush.newFlows[i]);
+          maxNode = edgeSources[bush.edges[i]];
+        }
+      } while (minNode != maxNode);
+
+      double difference = maxSegmentCost - minSegmentCost;
+      if (!(maxShift > 0.0) || !(difference > SHIFT_PRECISION * maxSegmentCost)) {
+        continue;
+      }
+
+      double shift = maxShift;
+      if (derivative > 0.0) {
+        shift = Math.min(difference / derivative, maxShift);
+      }
+
+      // Move the flow and update the costs
+      for (int n = node; n != minNode; ) {
+        int i = minPredecessors[n];
+        bush.newFlows[i] += shift;
+        edgeCosts[i] += edgeCostDerivatives[i] * shift;
+        n = edgeSources[bush.edges[i]];
+      }
+      for (int n = node; n != minNode; ) {
+        int i = maxPredecessors[n];
+        bush.newFlows[i] = Math.max(0.0, bush.newFlows[i] - shift);
+        edgeCosts[i] -= edgeCostDerivatives[i] * shift;
+        n = edgeSources[bush.edges[i]];
+      }
+      shifted = true;
+    }
+
+    return shifted;
+  }
+
+  /**
+   * Sorts the nodes of the current bush in topological order.
+   *
+   * @return False if the bush contains a cycle.
+   */
+  private boolean sortNodes() {
+    for (int k = 0; k < nbBushNodes; k++) {
+      inDegree[bushNodes[k]] = 0;
+    }
+    for (int i = 0; i < bush.nbEdges; i++) {
+      inDegree[edgeTargets[bush.edges[i]]]++;
+    }
+
+    int nbSortedNodes = 0;
+    for (int k = 0; k < nbBushNodes; k++) {
+      if (inDegree[bushNodes[k]] == 0) {
+        sortedNodes[nbSortedNodes++] = bushNodes[k];
+      }
+    }
+    for (int k = 0; k < nbSortedNodes; k++) {
+      int node = sortedNodes[k];
+      positions[node] = k;
+      for (int i = firstOut[node]; i != -1; i = nextOut[i]) {
+        int target = edgeTargets[bush.edges[i]];
+        if (--inDegree[target] == 0) {
+          sortedNodes[nbSortedNodes++] = target;
+        }
+      }
+    }
+
+    if (nbSortedNodes != nbBushNodes) {
+      setErrorMessage(
+          i18n.get(BushAssignmentWorker.class, "Cyclic_bush", "An origin bush contains a cycle"));
+      return false;
+    }
+
+    int[] tmp = bushNodes;
+    bushNodes = sortedNodes;
+    sortedNodes = tmp;
+    return true;
+  }
+}
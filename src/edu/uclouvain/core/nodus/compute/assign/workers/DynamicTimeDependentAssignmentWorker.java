@@ -21,36 +21,45 @@
 
 package edu.uclouvain.core.nodus.compute.assign.workers;
 
-import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.compute.assign.Assignment;
-import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
-import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapDijkstra;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.TimeDependentDijkstra;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.TimeDependentEdgeWeights;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
 import edu.uclouvain.core.nodus.utils.WorkQueue;
 import java.text.MessageFormat;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.TreeMap;
 
 /**
  * The DynamicTimeDependentAssignment assigns a time dependent OD matrix. It is based on an
- * All-Or-Nothing assignment. At the end of each period (time slice), the algorithm compute the
- * location of each route at the end of the period and relocated the associated demand to this
- * location. At the beginning of the following period, the assignment starts the assignment of the
- * demand that starts at that time, plus the "relocated" demands which are not yet at their final
- * destination. After each iteration (period), the costs on the network are recomputed. If the costs
- * are volume/capacity dependent, this allows for dynamic route changes occurring during the trip.
+ * All-Or-Nothing assignment. The demand of an origin is grouped by departure time, and each group
+ * is routed once with a time dependent shortest path algorithm, which uses the costs of the time
+ * slice in which each virtual link is entered. The volume is then assigned on each virtual link
+ * for the time slice during which it is entered. The parts of the trips that are not completed at
+ * the end of the last time slice are not assigned.
  *
  * @author Bart Jourquin
  */
 public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
 
-  private BinaryHeapDijkstra shortestPath;
+  private TimeDependentDijkstra shortestPath;
+
+  /** End of the last time slice, in seconds after midnight. */
   float assignmentEndTime;
+
+  /** Start of the first time slice, in seconds after midnight. */
   float assignmentStartTime;
-  int currentTimeSlice;
 
-  LinkedList<DemandToRelocate> demandsToRelocate;
+  /** Edges of the current path, from the origin to the destination. */
+  private int[] pathEdges = new int[256];
+
+  /** Weights and travel times of the edges for each group and time slice. */
+  private TimeDependentEdgeWeights[] timeDependentWeights;
+
+  /** Weights and travel times of the edges of the current group. */
+  private TimeDependentEdgeWeights weights;
 
   /**
    * Initializes an Assignment Worker.
@@ -69,41 +78,36 @@ public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
   @Override
   boolean doAssignment() {
 
-    // Initialize the adjacency list for current group
-    graph = virtualNet.generateAdjacencyList(groupIndex);
-    shortestPath = new BinaryHeapDijkstra(graph, virtualNet);
-
-    // List of OD pairs that will be relocated after the assignment of this time slice
-    demandsToRelocate = new LinkedList<>();
+    // Initialize the compressed graph and the time dependent weights for current group
+    compressedGraph = virtualNet.getCompressedGraph();
+    weights = timeDependentWeights[groupIndex];
+    shortestPath = new TimeDependentDijkstra(compressedGraph, weights, virtualNet);
+
+    String s;
+    if (virtualNet.getNbODClasses() > 1) {
+      s =
+          MessageFormat.format(
+              i18n.get(Assignment.class, "Assignment_for_class", "Assignment for class {0}"),
+              odClass);
+    } else {
+      s = i18n.get(Assignment.class, "Assignment", "Assignment");
+    }
 
     // Scan all the nodes
     for (int nodeIndex = 0; nodeIndex < virtualNet.getVirtualNodeLists().length; nodeIndex++) {
 
-      // Update progress bar
-      if (virtualNet.getVirtualNodeLists()[nodeIndex].hasDemandForGroup(
-          virtualNet.getGroups()[groupIndex], odClass)) {
-        String s = null;
-        if (virtualNet.getNbODClasses() > 1) {
-          s =
-              MessageFormat.format(
-                  i18n.get(
-                      Assignment.class,
-                      "Assignment_for_period_and_class",
-                      "Assignment for period {0} and class {1}"),
-                  currentTimeSlice,
-                  odClass);
-        } else {
-          s =
-              i18n.get(
-                  Assignment.class,
-                  "Assignment_for_period",
-                  "Assignment for time period {0}",
-                  currentTimeSlice);
-        }
+      // Get the demand associated to this node for the current group
+      demandList =
+          virtualNet.getVirtualNodeLists()[nodeIndex].getDemandForGroup(
+              virtualNet.getGroups()[groupIndex], odClass);
 
-        if (!updateProgress(s)) {
-          return false;
-        }
+      if (demandList == null) {
+        continue;
+      }
+
+      // Update progress bar
+      if (!updateProgress(s)) {
+        return false;
       }
 
       // This worker could also have been stopped by another thread
@@ -111,87 +115,53 @@ public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
         return false;
       }
 
-      /*
-       * In this assignment procedure, several demand lists can be associated to a same real node.
-       * This is due to the relocation of the OD pairs during assignment.
-       */
-
-      int nbDemandLists = virtualNet.getVirtualNodeLists()[nodeIndex].getNbDemandLists();
-
-      for (int demandListIndex = 0; demandListIndex < nbDemandLists; demandListIndex++) {
-
-        // Get the demand associated to this node for the current group
-        demandList =
-            virtualNet
-                .getVirtualNodeLists()[nodeIndex]
-                .getDemandForGroup(
-                    demandListIndex, virtualNet.getGroups()[groupIndex], odClass);
-
-        if (demandList != null) {
-          // Compute all the shortest paths in the virtual network starting from here
-          // (not a loading node)
-          int beginNode =
-              virtualNet
-                  .getVirtualNodeLists()[nodeIndex]
-                  .getLoadingVirtualNodeId(demandListIndex);
-          shortestPath.compute(beginNode, demandList);
-
-          // Build all the relevant detailed paths
-          if (!readPaths(demandListIndex, nodeIndex)) {
-            return false;
-          }
+      // Group the demand by departure time. Demand that leaves after the last time slice is ignored
+      TreeMap<Integer, LinkedList<ODCell>> departures = new TreeMap<>();
+      Iterator<ODCell> it = demandList.iterator();
+      while (it.hasNext()) {
+        ODCell demand = it.next();
+        int departureTime = getDepartureTime(demand);
+        if (departureTime < assignmentEndTime) {
+          departures.computeIfAbsent(departureTime, k -> new LinkedList<>()).add(demand);
         }
       }
-    }
 
-    // Relocate all the demands to move
-    Iterator<DemandToRelocate> it = demandsToRelocate.iterator();
-    while (it.hasNext()) {
-      DemandToRelocate dtm = it.next();
-      virtualNet.getVirtualNodeLists()[dtm.getToNodeIndex()].relocateDemand(
-          dtm.getDemand(), dtm.getToVirtualNodeId());
-      virtualNet.getVirtualNodeLists()[dtm.getFromNodeIndex()].removeDemand(
-          dtm.getFromDemandListIndex(), dtm.getDemand());
+      // Route each group of OD cells once through the time dependent costs
+      int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
+      for (Integer departureTime : departures.keySet()) {
+        LinkedList<ODCell> departureList = departures.get(departureTime);
+        shortestPath.compute(beginNode, departureTime, departureList);
+
+        // Build all the relevant detailed paths
+        if (!readPaths(nodeIndex, departureList)) {
+          return false;
+        }
+      }
     }
 
     return true;
   }
 
-  private boolean readPaths(int demandListIndex, int nodeIndex) {
+  /** Returns the time an OD cell leaves its origin, in seconds after midnight. */
+  private int getDepartureTime(ODCell demand) {
+    if (demand.getStartingTime() < 0) {
+      return (int) assignmentStartTime;
+    }
+    return demand.getStartingTime();
+  }
+
+  private boolean readPaths(int nodeIndex, LinkedList<ODCell> departureList) {
 
     int[] pi = shortestPath.getPredecessors();
-    int beginNode =
-        virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId(demandListIndex);
+    int[] piEdge = shortestPath.getPredecessorEdges();
+    int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
 
     // Scan the demand list
-    Iterator<ODCell> it = demandList.iterator();
+    Iterator<ODCell> it = departureList.iterator();
 
     while (it.hasNext()) {
       ODCell demand = it.next();
 
-      // Not yet started ?
-      if (demand.getStartingTime() > assignmentStartTime) {
-        continue;
-      }
-
-      // Already arrived ?
-      if (demand.getRelocatedOriginNodeId() == demand.getDestinationNodeId()) {
-        continue;
-      }
-
-      /*
-       * Give an index to this OD pair for the detailed paths if needed
-       */
-      int currentPathIndex = 0;
-      if (pathWriter.isSavePaths()) {
-        if (demand.getPathIndex() == -1) {
-          demand.setPathIndex(getNewPathIndex());
-        }
-        currentPathIndex = demand.getPathIndex();
-      }
-
-      LinkedList<VirtualLink> orderedLinkList = new LinkedList<>();
-
       // Build path from end to begin node
       int destinationNodeIndex =
           virtualNet.getNodeIndexInVirtualNodeList(demand.getDestinationNodeId(), true);
@@ -208,142 +178,106 @@ public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
       byte unloadingMode = 0;
       byte unloadingMeans = 0;
 
-      // Get starting time of route in seconds
-      int odStartingTime = demand.getRelocatedStartingTime();
-      int currentTime = odStartingTime;
-
+      /*
+       * As the path is build in the reverse order (starting from destination), the used edges are
+       * stored from the end of the array
+       */
+      int first = pathEdges.length;
       while (currentNode != beginNode) {
         // Predecessor
         int predecessor = pi[currentNode];
         if (predecessor == 0) {
-          if (assignmentParameters.isLogLostPaths()) {
-            System.out.println(
-                "delete from "
-                    + assignmentParameters.getODMatrix()
-                    + " where "
-                    + NodusC.DBF_GROUP
-                    + "="
-                    + currentGroup
-                    + " and "
-                    + NodusC.DBF_ORIGIN
-                    + "="
-                    + virtualNet.getVirtualNodeLists()[nodeIndex].getRealNodeId()
-                    + " and "
-                    + NodusC.DBF_DESTINATION
-                    + "="
-                    + virtualNet.getVirtualNodeLists()[destinationNodeIndex].getRealNodeId()
-                    + ";");
-          }
+          logLostPath(nodeIndex, destinationNodeIndex);
           isPathFound = false;
 
           break;
         } else {
-          AdjacencyNode an = graph[predecessor];
-
-          while (an.endVirtualNode != currentNode) {
-            an = an.nextNode;
+          if (first == 0) {
+            int[] edges = new int[2 * pathEdges.length];
+            System.arraycopy(pathEdges, 0, edges, pathEdges.length, pathEdges.length);
+            first = pathEdges.length;
+            pathEdges = edges;
           }
-
-          /*
-           * As the path is build in the reverse order (starting from destination), the used links
-           * must be saved in order to compute the time of arrival in each link later
-           */
-          orderedLinkList.addFirst(an.virtualLink);
+          pathEdges[--first] = piEdge[currentNode];
 
           // Go to next chunk in the path
           currentNode = predecessor;
         }
       }
 
-      // Now, rebuild the path in the correct order
-      Iterator<VirtualLink> pathIterator = orderedLinkList.iterator();
-      while (pathIterator.hasNext()) {
-
-        VirtualLink vl = pathIterator.next();
-
-        // Compute the arrival time at the end of this link
-
-        if (vl.getType() == VirtualLink.TYPE_MOVE) {
-
-          currentTime += (int) (vl.getLength() * 3600) / vl.getSpeed();
-
-          // Stop if current time is out of time slice
-          if (currentTime > assignmentEndTime) {
-
-            // Relocate the demand to the new origin in the virtual network structure
-            // for the next time slice
-            int newNodeIndex =
-                virtualNet.getNodeIndexInVirtualNodeList(
-                    vl.getBeginVirtualNode().getRealNodeId(false), false);
-            if (newNodeIndex != -1) {
-              DemandToRelocate dtm =
-                  new DemandToRelocate(
-                      demandListIndex,
-                      nodeIndex,
-                      newNodeIndex,
-                      vl.getBeginVirtualNode().getId(),
-                      demand);
-              demandsToRelocate.add(dtm);
-            } else {
-              System.err.println("This should never happen !");
-            }
-            pathWasTruncated = true;
-            break;
-          }
+      if (!isPathFound) {
+        continue;
+      }
 
-          // Update the OD cell : this OD pair has at least reached this node
-          demand.setRelocatedOriginNodeId(vl.getEndVirtualNode().getRealNodeId(false));
-          demand.setRelocatedStartingTime(currentTime);
+      // Give an index to this OD pair for the detailed paths if needed
+      int pathIndex = 0;
+      if (pathWriter.isSavePaths()) {
+        pathIndex = getNewPathIndex();
+      }
+
+      // Now, follow the path in the correct order, computing the time each link is entered
+      double currentTime = getDepartureTime(demand);
+      for (int i = first; i < pathEdges.length; i++) {
+        int edge = pathEdges[i];
+        VirtualLink vl = compressedGraph.getVirtualLinkForEdge(edge);
+
+        // Stop if the link is entered after the last time slice
+        if (currentTime >= assignmentEndTime) {
+          pathWasTruncated = true;
+          break;
         }
 
+        int timeSlice = weights.getTimeSlice(currentTime);
+        double cost = weights.getWeight(edge, timeSlice);
+        double duration = weights.getTravelTime(edge, timeSlice);
+
         switch (vl.getType()) {
           case VirtualLink.TYPE_LOAD:
-            pathCosts.ldCost += vl.getCost(groupIndex);
-            pathCosts.ldDuration += vl.getDuration(groupIndex);
+            pathCosts.ldCost += cost;
+            pathCosts.ldDuration += duration;
             loadingMode = vl.getEndVirtualNode().getMode();
             loadingMeans = vl.getEndVirtualNode().getMeans();
             break;
           case VirtualLink.TYPE_UNLOAD:
-            pathCosts.ulCost += vl.getCost(groupIndex);
-            pathCosts.ulDuration += vl.getDuration(groupIndex);
+            pathCosts.ulCost += cost;
+            pathCosts.ulDuration += duration;
             unloadingMode = vl.getBeginVirtualNode().getMode();
             unloadingMeans = vl.getBeginVirtualNode().getMeans();
             break;
           case VirtualLink.TYPE_TRANSIT:
-            pathCosts.trCost += vl.getCost(groupIndex);
-            pathCosts.trDuration += vl.getDuration(groupIndex);
+            pathCosts.trCost += cost;
+            pathCosts.trDuration += duration;
             break;
           case VirtualLink.TYPE_TRANSHIP:
-            pathCosts.tpCost += vl.getCost(groupIndex);
-            pathCosts.tpDuration += vl.getDuration(groupIndex);
+            pathCosts.tpCost += cost;
+            pathCosts.tpDuration += duration;
             nbTranshipments++;
             break;
           case VirtualLink.TYPE_STOP:
-            pathCosts.stpCost += vl.getCost(groupIndex);
-            pathCosts.stpDuration += vl.getDuration(groupIndex);
+            pathCosts.stpCost += cost;
+            pathCosts.stpDuration += duration;
             break;
           case VirtualLink.TYPE_SWITCH:
-            pathCosts.swCost += vl.getCost(groupIndex);
-            pathCosts.swDuration += vl.getDuration(groupIndex);
+            pathCosts.swCost += cost;
+            pathCosts.swDuration += duration;
             break;
           case VirtualLink.TYPE_MOVE:
-            pathCosts.mvCost += vl.getCost(groupIndex);
-            if (assignmentParameters.hasDurationFunctions()) {
-              pathCosts.mvDuration += vl.getDuration(groupIndex);
-            } else {
-              pathCosts.mvDuration += vl.getDefaultDuration();
-            }
+            pathCosts.mvCost += cost;
+            pathCosts.mvDuration += duration;
             pathCosts.length += vl.getLength();
-            pathWriter.savePathLink(vl, currentPathIndex);
+            pathWriter.savePathLink(vl, pathIndex);
             break;
           default:
             break;
         }
-        vl.addVolume(groupIndex, currentTimeSlice, demand.getQuantity());
+        vl.addVolume(groupIndex, timeSlice, demand.getQuantity());
+
+        // Compute the time at which the end of this link is reached
+        currentTime = weights.getArrivalTime(edge, currentTime);
       }
 
       // The total cost of a path must be strictly positive
-      if (isPathFound && !pathWasTruncated && pathCosts.getCost() == 0.0) {
+      if (!pathWasTruncated && pathCosts.getCost() == 0.0) {
         setErrorMessage(
             i18n.get(
                 AssignmentWorker.class,
@@ -353,7 +287,7 @@ public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
       }
 
       // Save the header of this detailed path if needed
-      if (isPathFound && pathCosts.getCost() > 0.0 && pathWriter.isSavePaths()) {
+      if (pathCosts.getCost() > 0.0 && pathWriter.isSavePaths()) {
         if (!pathWriter.savePathHeader(
             1,
             demand,
@@ -364,7 +298,7 @@ public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
             unloadingMode,
             unloadingMeans,
             nbTranshipments,
-            demand.getPathIndex())) {
+            pathIndex)) {
           return false;
         }
       }
@@ -373,67 +307,19 @@ public class DynamicTimeDependentAssignmentWorker extends AssignmentWorker {
   }
 
   /**
-   * Initializes the time parameters for a give period.
-   *
-   * @param currentTimeSlice Period concerned by these parameters.
-   * @param sliceStartTime Starting time of the period, expressed in minutes after midnight.
-   * @param sliceDuration Duration of the period, expressed in minutes.
-   */
-  public void setTimeParameters(int currentTimeSlice, int sliceStartTime, int sliceDuration) {
-    this.currentTimeSlice = currentTimeSlice;
-    this.assignmentStartTime = sliceStartTime * 60;
-    this.assignmentEndTime = this.assignmentStartTime + sliceDuration * 60;
-  }
-
-  /**
-   * Initializes the time parameters for a byte-indexed period.
+   * Sets the weights and travel times of the edges, per group and time slice, and the time window
+   * of the assignment.
    *
-   * @param currentTimeSlice Period concerned by these parameters.
-   * @param sliceStartTime Starting time of the period, expressed in minutes after midnight.
-   * @param sliceDuration Duration of the period, expressed in minutes.
+   * @param timeDependentWeights The weights and travel times of the edges, per group.
+   * @param assignmentStartTime Start of the first time slice, in minutes after midnight.
+   * @param assignmentEndTime End of the last time slice, in minutes after midnight.
    */
-  public void setTimeParameters(byte currentTimeSlice, int sliceStartTime, int sliceDuration) {
-    setTimeParameters((int) currentTimeSlice, sliceStartTime, sliceDuration);
-  }
-
-  private class DemandToRelocate {
-    private ODCell demand;
-    private int fromDemandListIndex;
-    private int fromNodeIndex;
-    private int toNodeIndex;
-    private int toVirtualNodeId;
-
-    DemandToRelocate(
-        int fromDemandListIndex,
-        int fromNodeIndex,
-        int toNodeIndex,
-        int toVirtualNodeId,
-        ODCell demand) {
-      this.fromDemandListIndex = fromDemandListIndex;
-      this.fromNodeIndex = fromNodeIndex;
-      this.toNodeIndex = toNodeIndex;
-      this.demand = demand;
-      this.toVirtualNodeId = toVirtualNodeId;
-    }
-
-    public ODCell getDemand() {
-      return demand;
-    }
-
-    public int getFromDemandListIndex() {
-      return fromDemandListIndex;
-    }
-
-    public int getFromNodeIndex() {
-      return fromNodeIndex;
-    }
-
-    public int getToNodeIndex() {
-      return toNodeIndex;
-    }
-
-    public int getToVirtualNodeId() {
-      return toVirtualNodeId;
-    }
+  public void setTimeParameters(
+      TimeDependentEdgeWeights[] timeDependentWeights,
+      int assignmentStartTime,
+      int assignmentEndTime) {
+    this.timeDependentWeights = timeDependentWeights;
+    this.assignmentStartTime = assignmentStartTime * 60;
+    this.assignmentEndTime = assignmentEndTime * 60;
   }
 }
@@ -26,10 +26,11 @@ import edu.uclouvain.core.nodus.compute.assign.Assignment;
 import edu.uclouvain.core.nodus.compute.assign.modalsplit.ModalSplitMethod;
 import edu.uclouvain.core.nodus.compute.assign.modalsplit.Path;
 import edu.uclouvain.core.nodus.compute.assign.modalsplit.PathsForMode;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyGraphView;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapAStar;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.LandmarkHeuristic;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
-import edu.uclouvain.core.nodus.compute.virtual.PathODCell;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualNode;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualNodeList;
@@ -59,6 +60,9 @@ import java.util.List;
  */
 public class ExactMFAssignmentWorker extends AssignmentWorker {
 
+  /** Number of landmarks used to guide the AStar searches. */
+  private static final int NB_LANDMARKS = 8;
+
   byte maxDetourReferenceMode = -1;
 
   /** This value is used when the "force modal split is used". */
@@ -68,6 +72,15 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
 
   private BinaryHeapAStar shortestPath;
 
+  /** Mode/means restrictions and cost markups applied to the graph. */
+  private AdjacencyGraphView graphView;
+
+  /** Virtual links used by the alternative paths of the current OD cell. */
+  private PathLinkList pathLinks;
+
+  /** Alternative paths already found for the current OD cell. */
+  private PathSet pathSet;
+
   /**
    * Two hash tables. The first will contain the OD pairs between which at least one path was found,
    * the second the pairs between which, during an iteration, no path was found. All the pairs which
@@ -103,6 +116,11 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
     graph = virtualNet.generateAdjacencyList(groupIndex);
 
     shortestPath = new BinaryHeapAStar(graph);
+    shortestPath.setLandmarks(new LandmarkHeuristic(graph, NB_LANDMARKS));
+    graphView = new AdjacencyGraphView();
+    shortestPath.setGraphView(graphView);
+    pathLinks = new PathLinkList();
+    pathSet = new PathSet();
     availableModeMeans = virtualNet.getAvailableModeMeans(groupIndex);
     paths = new Path[assignmentParameters.getNbIterations() * availableModeMeans.length];
 
@@ -146,6 +164,7 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
         Iterator<ODCell> it = demandList.iterator();
         while (it.hasNext()) {
           int currentPathPropertiesIndex = 0;
+          pathSet.clear();
 
           // Get demand and num of unloading virtual node
           ODCell demand = it.next();
@@ -181,18 +200,7 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
              * Only open graph to current mode/means combination
              */
             if (canLoadToCurrentModeMeansFromThisNode) {
-              for (int i = 1; i < graph.length; i++) {
-                AdjacencyNode current = graph[i];
-                while (current != null && current.virtualLink != null) {
-                  if (current.virtualLink.getType() == VirtualLink.TYPE_LOAD) {
-                    if (current.virtualLink.getEndVirtualNode().getModeMeansKey()
-                        != availableModeMean) {
-                      current.edgeWeight = Double.POSITIVE_INFINITY;
-                    }
-                  }
-                  current = current.nextNode;
-                }
-              }
+              graphView.openModeMeans(availableModeMean);
             }
 
             for (int alternativePath = 0;
@@ -216,36 +224,18 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
               }
 
               /*
-               * Increase the costs in the adjacency list to make the already used links more
+               * Increase the costs of the links used by the previous paths to make them more
                *  expensive (not for last iteration).
                */
               double costMarkup = 1 + assignmentParameters.getCostMarkup();
               if (alternativePath < assignmentParameters.getNbIterations() - 1) {
-                for (int i = 1; i < graph.length; i++) {
-                  AdjacencyNode current = graph[i];
-                  while (current != null) {
-
-                    if (current.inCurrentTree) {
-                      // Increase cost on used link if not yet done
-                      current.edgeWeight *= costMarkup;
-                    }
-                    current = current.nextNode;
-                  }
-                }
+                graphView.markUpTree(costMarkup);
               }
               currentPathPropertiesIndex++;
             } // Next alternative path
 
             // Reset the original weights of the links to prepare next OD matrix cell
-            for (int i = 1; i < graph.length; i++) {
-              AdjacencyNode current = graph[i];
-
-              while (current != null) {
-                current.edgeWeight = current.originalEdgeWeight;
-                current.inCurrentTree = false;
-                current = current.nextNode;
-              }
-            }
+            graphView.reset();
           } // Next mode/means
 
           // Log lost paths if needed
@@ -290,19 +280,8 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
             pathHeaders.clear();
           }
 
-          // Update volume on virtual links
-          for (int i = 1; i < graph.length; i++) {
-            AdjacencyNode current = graph[i];
-
-            while (current != null) {
-              VirtualLink vl = current.virtualLink;
-              if (vl != null) {
-                vl.spreadFlowOverPaths(groupIndex, paths);
-              }
-
-              current = current.nextNode;
-            }
-          }
+          // Update volume on the virtual links used by the paths
+          pathLinks.spreadVolume(groupIndex, paths);
         } // end of the demand cell
       } // end of demand list
     } // Next node
@@ -327,19 +306,6 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
 
       if (paths[index].isValid) {
 
-        /*
-         * If the same path is found several times in the set of alternatives, just keep one
-         * instance.
-         */
-        if (index > 0) {
-          for (int j = 0; j < index; j++) {
-            if (paths[index].detailedPathKey == paths[j].detailedPathKey) {
-              // Mark cell
-              paths[index].isValid = false;
-            }
-          }
-        }
-
         /*
          * Keep the cheapest intermodal path, if any. Used later if intermodal solutions
          * have to be kept only if they are the cheapest transport solution.
@@ -500,6 +466,7 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
     int beginNode = virtualNodeList[nodeIndex].getLoadingVirtualNodeId();
     Path path = new Path();
     int[] pi = shortestPath.getPredecessors();
+    AdjacencyNode[] piAdjacencyNode = shortestPath.getPredecessorAdjacencyNodes();
     while (currentNode != beginNode) {
       // Predecessor
       int predecessor = pi[currentNode];
@@ -517,22 +484,17 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
 
         break;
       } else {
-        AdjacencyNode an = graph[predecessor];
-
-        while (an.endVirtualNode != currentNode) {
-          an = an.nextNode;
-        }
+        AdjacencyNode an = piAdjacencyNode[currentNode];
 
         // Mark this link as being included in the path for this iteration
-        an.inCurrentTree = true;
+        graphView.addToTree(an);
         VirtualLink vl = an.virtualLink;
 
         /*
          * Performance issue: all the used virtual links are put in a list in order not to need a
          * browse through the complete virtual network to find them when needed
          */
-        // PathODCell pathODCell = new PathODCell(iteration, demand.getQuantity());
-        vl.addCell(groupIndex, new PathODCell(iteration, demand.getQuantity()));
+        pathLinks.add(vl, iteration, 0, demand.getQuantity());
 
         if (vl.getType() == VirtualLink.TYPE_TRANSHIP) {
           intermodalModeKey *=
@@ -586,8 +548,8 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
             break;
         }
 
-        // Build the key that represents this path
-        path.detailedPathKey += vl.getId();
+        // Build the sequence of links that represents this path
+        pathSet.addLink(vl.getId());
 
         currentNode = predecessor;
       }
@@ -610,8 +572,10 @@ public class ExactMFAssignmentWorker extends AssignmentWorker {
       return null;
     }
 
-    // Associate the key with the length to maximize chances to have a unique key
-    path.detailedPathKey *= path.weights.getLength();
+    // If the same path was already found for this OD cell, just keep one instance
+    if (!pathSet.endPath(0)) {
+      path.isValid = false;
+    }
 
     // Save the header of this detailed path if needed
     if (isPathFound) {
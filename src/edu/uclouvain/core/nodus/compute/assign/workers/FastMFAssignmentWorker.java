@@ -26,10 +26,10 @@ import edu.uclouvain.core.nodus.compute.assign.Assignment;
 import edu.uclouvain.core.nodus.compute.assign.modalsplit.ModalSplitMethod;
 import edu.uclouvain.core.nodus.compute.assign.modalsplit.Path;
 import edu.uclouvain.core.nodus.compute.assign.modalsplit.PathsForMode;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyGraphView;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapDijkstra;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
-import edu.uclouvain.core.nodus.compute.virtual.PathODCell;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualNode;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualNodeList;
@@ -59,6 +59,15 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
 
   private BinaryHeapDijkstra shortestPath;
 
+  /** Mode/means restrictions and cost markups applied to the graph. */
+  private AdjacencyGraphView graphView;
+
+  /** Virtual links used by the alternative paths of the current origin. */
+  private PathLinkList pathLinks;
+
+  /** Alternative paths already found for the OD cells of the current origin. */
+  private PathSet pathSet;
+
   private int[] availableModeMeans;
 
   private ODCell demand;
@@ -97,6 +106,10 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
     // Initialize
     graph = virtualNet.generateAdjacencyList(groupIndex);
     shortestPath = new BinaryHeapDijkstra(graph, virtualNet);
+    graphView = new AdjacencyGraphView();
+    shortestPath.setGraphView(graphView);
+    pathLinks = new PathLinkList();
+    pathSet = new PathSet();
     availableModeMeans = virtualNet.getAvailableModeMeans(groupIndex);
 
     maxDetourReferenceMode = assignmentParameters.getMaxDetourReferenceMode();
@@ -145,6 +158,7 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
          */
         int beginNode = vnl[nodeIndex].getLoadingVirtualNodeId();
         int currentPathPropertiesIndex = 0;
+        pathSet.clear();
 
         /*
          * Compute "iteration" alternative paths for each mode/means combination
@@ -174,18 +188,7 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
            * Only open graph to current mode/means combination
            */
           if (canLoadToCurrentModeMeansFromThisNode) {
-            for (int i = 1; i < graph.length; i++) {
-              AdjacencyNode current = graph[i];
-              while (current != null && current.virtualLink != null) {
-                if (current.virtualLink.getType() == VirtualLink.TYPE_LOAD) {
-                  if (current.virtualLink.getEndVirtualNode().getModeMeansKey()
-                      != availableModeMean) {
-                    current.edgeWeight = Double.POSITIVE_INFINITY;
-                  }
-                }
-                current = current.nextNode;
-              }
-            }
+            graphView.openModeMeans(availableModeMean);
           }
 
           /*
@@ -217,53 +220,20 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
               }
 
               /*
-               * Increase the costs in the adjacency list to make the already used links more
+               * Increase the costs of the links used by the current tree to make them more
                * expensive (not for last iteration).
                */
               double costMarkup = 1 + assignmentParameters.getCostMarkup();
               if (alternativePath < assignmentParameters.getNbIterations() - 1) {
-                for (int i = 1; i < graph.length; i++) {
-                  AdjacencyNode current = graph[i];
-                  while (current != null) {
-
-                    if (current.inCurrentTree) {
-
-                      /*
-                       * Increase cost on used link if not yet done
-                       */
-                      if (!current.isIncreased) {
-                        current.edgeWeight *= costMarkup;
-                        current.isIncreased = true;
-                      }
-                    }
-                    current = current.nextNode;
-                  } // Next adjacency node for graph[i]
-                } // next i
-
-                /*
-                 * Reset the "increased" flag for next iteration
-                 */
-                for (int i = 1; i < graph.length; i++) {
-                  AdjacencyNode current = graph[i];
-                  while (current != null) {
-                    current.isIncreased = false;
-                    current.inCurrentTree = false;
-                    current = current.nextNode;
-                  }
-                }
+                graphView.markUpTree(costMarkup);
+                graphView.clearTree();
               } // End if not last iteration (cost increase)
             }
             currentPathPropertiesIndex++;
           } // end of iteration
 
           // Reset the original weights on the links to prepare next mode/means combination
-          for (int i = 1; i < graph.length; i++) {
-            AdjacencyNode current = graph[i];
-            while (current != null) {
-              current.edgeWeight = current.originalEdgeWeight;
-              current = current.nextNode;
-            }
-          }
+          graphView.reset();
         } // end of iteration for current mode/means combination
 
         // Log lost paths if needed
@@ -316,17 +286,9 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
         }
         pathHeaders.clear();
 
-        // Now update the volume on the virtual links, using the just computed weights
-        for (int i = 1; i < graph.length; i++) {
-          AdjacencyNode current = graph[i];
-          while (current != null) {
-            VirtualLink vl = current.virtualLink;
-            if (vl != null) {
-              vl.spreadVolumeOverPaths(groupIndex, paths);
-            }
-            current = current.nextNode;
-          }
-        }
+        // Now update the volume on the virtual links used by the paths, using the just computed
+        // weights
+        pathLinks.spreadVolume(groupIndex, paths);
       } // end of demand list
     } // Next node
 
@@ -348,20 +310,6 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
 
       if (paths[index][currentPath].isValid) {
 
-        /*
-         * If the same path is found several times in the set of alternatives, just keep one
-         * instance. To achieve this, just put an infinite cost on the additional instance.
-         */
-        if (index > 0) {
-          for (int j = 0; j < index; j++) {
-            if (paths[index][currentPath].detailedPathKey
-                == paths[j][currentPath].detailedPathKey) {
-              // Mark cell
-              paths[index][currentPath].isValid = false;
-            }
-          }
-        }
-
         /* Keep the cheapest intermodal path, if any. Used later if intermodal solutions
          * have to be kept only if they are the cheapest transport solution.
          */
@@ -484,6 +432,7 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
       int nodeIndex, int nbOD, int iteration, LinkedList<MFPathHeader> pathHeaders) {
     VirtualNodeList[] virtualNodeList = virtualNet.getVirtualNodeLists();
     int[] pi = shortestPath.getPredecessors();
+    AdjacencyNode[] piAdjacencyNode = shortestPath.getPredecessorAdjacencyNodes();
     int beginNode = virtualNodeList[nodeIndex].getLoadingVirtualNodeId();
     byte[] groups = virtualNet.getGroups();
     int indexInODRow = 0;
@@ -533,7 +482,6 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
       }
 
       int intermodalModeKey = 1;
-      PathODCell pathODCell = new PathODCell(iteration, indexInODRow, demand.getQuantity());
       while (currentNode != beginNode) {
         // Predecessor
         int predecessor = pi[currentNode];
@@ -551,18 +499,14 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
 
           break;
         } else {
-          AdjacencyNode an = graph[predecessor];
-
-          while (an.endVirtualNode != currentNode) {
-            an = an.nextNode;
-          }
+          AdjacencyNode an = piAdjacencyNode[currentNode];
 
           // Mark this link as being included in the path for this iteration
-          an.inCurrentTree = true;
+          graphView.addToTree(an);
 
           VirtualLink vl = an.virtualLink;
 
-          vl.addCell(groupIndex, pathODCell);
+          pathLinks.add(vl, iteration, indexInODRow, demand.getQuantity());
 
           // Detect if this is an intermodal path
           if (vl.getType() == VirtualLink.TYPE_TRANSHIP) {
@@ -617,8 +561,8 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
               break;
           }
 
-          // Build the key that represents this path
-          paths[indexInODRow].detailedPathKey += vl.getId();
+          // Build the sequence of links that represents this path
+          pathSet.addLink(vl.getId());
 
           currentNode = predecessor;
         }
@@ -645,8 +589,11 @@ public class FastMFAssignmentWorker extends AssignmentWorker {
       // paths[indexInODRow].weight = weight;
       paths[indexInODRow].weights = pathCosts;
       // paths[indexInODRow].length = length;
-      // Associate the key with the length to maximize chances to have a unique key
-      paths[indexInODRow].detailedPathKey *= pathCosts.getLength();
+
+      // If the same path was already found for this OD cell, just keep one instance
+      if (!pathSet.endPath(indexInODRow)) {
+        paths[indexInODRow].isValid = false;
+      }
 
       indexInODRow++;
 
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.workers;
+
+import java.util.Arrays;
+
+/**
+ * Thread-local accumulator of the volumes assigned to the virtual links by a worker that processes
+ * a chunk of the origins of a group. The volumes are accumulated in a dense array indexed by
+ * virtual link ID, and the links that received a volume are recorded, so that the accumulator can
+ * be compacted and reset in a time proportional to the number of loaded links.
+ *
+ * @author Bart Jourquin
+ */
+class LinkVolumeAccumulator {
+
+  /** Volume accumulated on each virtual link. */
+  private double[] volumes;
+
+  /** True for the virtual links that are recorded in loadedLinks. */
+  private boolean[] isLoaded;
+
+  /** IDs of the virtual links that received a volume, in the order they were first loaded. */
+  private int[] loadedLinks;
+
+  /** Number of virtual links in loadedLinks. */
+  private int nbLoadedLinks = 0;
+
+  /** True if the accumulated volumes are auxiliary volumes. */
+  private boolean auxiliary = false;
+
+  /**
+   * Initializes an accumulator for a virtual network.
+   *
+   * @param nbLinks The number of virtual links, including the unused link 0.
+   */
+  LinkVolumeAccumulator(int nbLinks) {
+    volumes = new double[nbLinks];
+    isLoaded = new boolean[nbLinks];
+    loadedLinks = new int[nbLinks];
+  }
+
+  /**
+   * Adds a quantity to the auxiliary volume of a virtual link.
+   *
+   * @param virtualLinkId The ID of the virtual link.
+   * @param qty The quantity to add.
+   */
+  void addAuxiliaryVolume(int virtualLinkId, double qty) {
+    auxiliary = true;
+    add(virtualLinkId, qty);
+  }
+
+  /**
+   * Adds a quantity to the current volume of a virtual link.
+   *
+   * @param virtualLinkId The ID of the virtual link.
+   * @param qty The quantity to add.
+   */
+  void addVolume(int virtualLinkId, double qty) {
+    // Same safeguard as in VirtualLink, as the sum would otherwise become NaN
+    if (Double.isNaN(qty)) {
+      qty = 0.0;
+    }
+    add(virtualLinkId, qty);
+  }
+
+  private void add(int virtualLinkId, double qty) {
+    if (!isLoaded[virtualLinkId]) {
+      isLoaded[virtualLinkId] = true;
+      loadedLinks[nbLoadedLinks++] = virtualLinkId;
+    }
+    volumes[virtualLinkId] += qty;
+  }
+
+  /**
+   * Copies the accumulated volumes into the parameters of the job that computed them and resets
+   * the accumulator.
+   *
+   * @param awp The parameters of the job.
+   */
+  void flush(AssignmentWorkerParameters awp) {
+    int[] linkIds = Arrays.copyOf(loadedLinks, nbLoadedLinks);
+    double[] linkVolumes = new double[nbLoadedLinks];
+    for (int i = 0; i < nbLoadedLinks; i++) {
+      linkVolumes[i] = volumes[linkIds[i]];
+    }
+    awp.setChunkVolumes(linkIds, linkVolumes, auxiliary);
+    reset();
+  }
+
+  /** Discards the accumulated volumes. */
+  void reset() {
+    for (int i = 0; i < nbLoadedLinks; i++) {
+      volumes[loadedLinks[i]] = 0;
+      isLoaded[loadedLinks[i]] = false;
+    }
+    nbLoadedLinks = 0;
+    auxiliary = false;
+  }
+}
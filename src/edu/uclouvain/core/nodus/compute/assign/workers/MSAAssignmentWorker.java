@@ -21,9 +21,7 @@
 
 package edu.uclouvain.core.nodus.compute.assign.workers;
 
-import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.compute.assign.Assignment;
-import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapDijkstra;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
@@ -60,12 +58,17 @@ public class MSAAssignmentWorker extends AssignmentWorker {
   @Override
   boolean doAssignment() {
 
-    // Initialize the adjacency list for current group
-    graph = virtualNet.generateAdjacencyList(groupIndex);
-    shortestPath = new BinaryHeapDijkstra(graph, virtualNet);
+    // Initialize the compressed graph and the edge weights for current group
+    if (prepareCompressedGraph()) {
+      if (shortestPath == null) {
+        shortestPath = new BinaryHeapDijkstra(compressedGraph, edgeWeights, virtualNet);
+      } else {
+        shortestPath.setEdgeWeights(edgeWeights);
+      }
+    }
 
-    // Scan all the nodes
-    for (int nodeIndex = 0; nodeIndex < virtualNet.getVirtualNodeLists().length; nodeIndex++) {
+    // Scan the nodes of the range of origins to assign
+    for (int nodeIndex = firstNodeIndex; nodeIndex < lastNodeIndex; nodeIndex++) {
 
       // Update progress bar
       if (virtualNet.getVirtualNodeLists()[nodeIndex].hasDemandForGroup(
@@ -97,11 +100,14 @@ public class MSAAssignmentWorker extends AssignmentWorker {
 
       if (demandList != null) {
         // Compute all the shortest paths in the virtual network starting from here
-        int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
-        shortestPath.compute(beginNode, demandList);
+        computeShortestPaths(shortestPath, nodeIndex);
 
-        // Build all the relevant detailed paths
-        if (!readPaths(nodeIndex)) {
+        // Build all the relevant detailed paths, or just load the shortest path tree
+        if (pathWriter.isSavePaths()) {
+          if (!readPaths(nodeIndex)) {
+            return false;
+          }
+        } else if (!loadTree(nodeIndex, shortestPath, 1.0, true)) {
           return false;
         }
       }
@@ -120,6 +126,7 @@ public class MSAAssignmentWorker extends AssignmentWorker {
   private boolean readPaths(int nodeIndex) {
 
     int[] pi = shortestPath.getPredecessors();
+    int[] piEdge = shortestPath.getPredecessorEdges();
     int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
 
     // Scan the demand list
@@ -148,37 +155,14 @@ public class MSAAssignmentWorker extends AssignmentWorker {
         int predecessor = pi[currentNode];
 
         if (predecessor == 0) {
-          if (assignmentParameters.isLogLostPaths()) {
-            System.out.println(
-                "delete from "
-                    + assignmentParameters.getODMatrix()
-                    + " where "
-                    + NodusC.DBF_GROUP
-                    + "="
-                    + currentGroup
-                    + " and "
-                    + NodusC.DBF_ORIGIN
-                    + "="
-                    + virtualNet.getVirtualNodeLists()[nodeIndex].getRealNodeId()
-                    + " and "
-                    + NodusC.DBF_DESTINATION
-                    + "="
-                    + virtualNet.getVirtualNodeLists()[destinationNodeIndex].getRealNodeId()
-                    + ";");
-          }
+          logLostPath(nodeIndex, destinationNodeIndex);
           isPathFound = false;
 
           break;
         } else {
-          AdjacencyNode an = graph[predecessor];
+          VirtualLink vl = compressedGraph.getVirtualLinkForEdge(piEdge[currentNode]);
 
-          while (an.endVirtualNode != currentNode) {
-            an = an.nextNode;
-          }
-
-          an.virtualLink.addAuxiliaryVolume(groupIndex, demand.getQuantity());
-
-          VirtualLink vl = an.virtualLink;
+          addAuxiliaryVolume(vl, demand.getQuantity());
 
           switch (vl.getType()) {
             case VirtualLink.TYPE_LOAD:
@@ -239,6 +223,10 @@ public class MSAAssignmentWorker extends AssignmentWorker {
         return false;
       }
 
+      if (isPathFound) {
+        addShortestPathCost(demand.getQuantity(), pathCosts.getCost());
+      }
+
       // Save the header of this detailed path if needed
       if (isPathFound && pathWriter.isSavePaths()) {
         if (!pathWriter.savePathHeader(
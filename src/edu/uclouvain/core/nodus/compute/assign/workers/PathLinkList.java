@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.workers;
+
+import edu.uclouvain.core.nodus.compute.assign.modalsplit.Path;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.Arrays;
+
+/**
+ * Records the virtual links used by the alternative paths computed by the multi-flow assignments
+ * for an origin (fast multi-flow) or an OD cell (exact multi-flow). Once the modal split is known,
+ * the demand is spread over these links only, instead of scanning the whole virtual network. The
+ * entries are kept in parallel arrays that are reused for all the origins.
+ *
+ * @author Bart Jourquin
+ */
+class PathLinkList {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Alternative path each entry belongs to. */
+  private int[] alternativePaths = new int[INITIAL_CAPACITY];
+
+  /** Index of the OD cell in the current OD matrix line (0 for the exact multi-flow). */
+  private int[] indexesInODLine = new int[INITIAL_CAPACITY];
+
+  /** Virtual link used by the path. */
+  private VirtualLink[] links = new VirtualLink[INITIAL_CAPACITY];
+
+  /** Total quantity of the OD cell. */
+  private double[] quantities = new double[INITIAL_CAPACITY];
+
+  /** Number of entries. */
+  private int size = 0;
+
+  /**
+   * Records that a virtual link is used by an alternative path.
+   *
+   * @param vl The virtual link.
+   * @param alternativePath The # of the path alternative.
+   * @param indexInODLine The index of the OD cell in the current OD matrix line.
+   * @param quantity The quantity to spread over all the alternative paths of the OD cell.
+   */
+  void add(VirtualLink vl, int alternativePath, int indexInODLine, double quantity) {
+    if (size == links.length) {
+      int capacity = 2 * size;
+      links = Arrays.copyOf(links, capacity);
+      alternativePaths = Arrays.copyOf(alternativePaths, capacity);
+      indexesInODLine = Arrays.copyOf(indexesInODLine, capacity);
+      quantities = Arrays.copyOf(quantities, capacity);
+    }
+    links[size] = vl;
+    alternativePaths[size] = alternativePath;
+    indexesInODLine[size] = indexInODLine;
+    quantities[size] = quantity;
+    size++;
+  }
+
+  /** Removes all the entries. */
+  private void clear() {
+    Arrays.fill(links, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Assigns to each recorded virtual link the market share of the demand of the valid paths that
+   * use it, and removes all the entries. Used by the exact multi-flow assignment.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @param paths The alternative paths of the OD cell.
+   */
+  void spreadVolume(byte groupIndex, Path[] paths) {
+    for (int i = 0; i < size; i++) {
+      Path path = paths[alternativePaths[i]];
+      if (path.isValid) {
+        links[i].addVolume(groupIndex, quantities[i] * path.marketShare);
+      }
+    }
+    clear();
+  }
+
+  /**
+   * Assigns to each recorded virtual link the market share of the demand of the valid paths that
+   * use it, and removes all the entries. Used by the fast multi-flow assignment.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @param paths The alternative paths of the OD cells of the origin.
+   */
+  void spreadVolume(byte groupIndex, Path[][] paths) {
+    for (int i = 0; i < size; i++) {
+      Path path = paths[alternativePaths[i]][indexesInODLine[i]];
+      if (path.isValid) {
+        links[i].addVolume(groupIndex, quantities[i] * path.marketShare);
+      }
+    }
+    clear();
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.assign.workers;
+
+import java.util.Arrays;
+
+/**
+ * Set of the alternative paths computed by the multi-flow assignments for the OD cells of an origin
+ * (fast multi-flow) or for a single OD cell (exact multi-flow), used to detect the paths that were
+ * already found.
+ *
+ * <p>Each path is stored once, as the sequence of the IDs of its virtual links, in a single array.
+ * The paths are interned in an open addressing hash table, using a 64-bit hash of the OD cell and
+ * of the link sequence. As the sequences are compared when two hashes are equal, distinct paths are
+ * never taken for duplicates. The arrays are reused for all the origins.
+ *
+ * @author Bart Jourquin
+ */
+class PathSet {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /** Start of the current path in the link array. */
+  private int currentPathStart = 0;
+
+  /** 64-bit hash of each path. */
+  private long[] hashes = new long[INITIAL_CAPACITY];
+
+  /** Number of links in each path. */
+  private int[] lengths = new int[INITIAL_CAPACITY];
+
+  /** IDs of the virtual links of all the paths. */
+  private int[] links = new int[INITIAL_CAPACITY * 16];
+
+  /** Number of link IDs stored. */
+  private int nbLinks = 0;
+
+  /** Number of paths stored. */
+  private int nbPaths = 0;
+
+  /** Index of the OD cell of each path. */
+  private int[] odIndexes = new int[INITIAL_CAPACITY];
+
+  /** Start of each path in the link array. */
+  private int[] starts = new int[INITIAL_CAPACITY];
+
+  /** Hash table of the paths. Contains the index of a path + 1, or 0 for a free slot. */
+  private int[] table = new int[2 * INITIAL_CAPACITY];
+
+  /**
+   * Adds a virtual link to the path being built.
+   *
+   * @param linkId The ID of the virtual link.
+   */
+  void addLink(int linkId) {
+    if (nbLinks == links.length) {
+      links = Arrays.copyOf(links, 2 * nbLinks);
+    }
+    links[nbLinks++] = linkId;
+  }
+
+  /** Removes all the paths. */
+  void clear() {
+    Arrays.fill(table, 0);
+    nbPaths = 0;
+    nbLinks = 0;
+    currentPathStart = 0;
+  }
+
+  /**
+   * Ends the path being built and adds it to the set, unless the same sequence of virtual links was
+   * already found for the same OD cell.
+   *
+   * @param odIndex The index of the OD cell of the path.
+   * @return True if the path is new, false if it is a duplicate.
+   */
+  boolean endPath(int odIndex) {
+    int length = nbLinks - currentPathStart;
+    long hash = hash(odIndex, currentPathStart, length);
+
+    int mask = table.length - 1;
+    int slot = (int) (hash ^ (hash >>> 32)) & mask;
+    while (table[slot] != 0) {
+      int path = table[slot] - 1;
+      if (hashes[path] == hash
+          && odIndexes[path] == odIndex
+          && lengths[path] == length
+          && Arrays.equals(
+              links,
+              starts[path],
+              starts[path] + length,
+              links,
+              currentPathStart,
+              currentPathStart + length)) {
+        // Duplicate: forget its links
+        nbLinks = currentPathStart;
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (nbPaths == starts.length) {
+      int capacity = 2 * nbPaths;
+      starts = Arrays.copyOf(starts, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      odIndexes = Arrays.copyOf(odIndexes, capacity);
+      hashes = Arrays.copyOf(hashes, capacity);
+    }
+    starts[nbPaths] = currentPathStart;
+    lengths[nbPaths] = length;
+    odIndexes[nbPaths] = odIndex;
+    hashes[nbPaths] = hash;
+    table[slot] = ++nbPaths;
+    currentPathStart = nbLinks;
+
+    // Keep the load factor of the table under 1/2
+    if (2 * nbPaths > table.length) {
+      rehash();
+    }
+    return true;
+  }
+
+  /** Computes the hash of the OD cell and of a sequence of links. */
+  private long hash(int odIndex, int start, int length) {
+    long h = odIndex * MULTIPLIER + length;
+    for (int i = start; i < start + length; i++) {
+      h = (h + links[i]) * MULTIPLIER;
+      h ^= h >>> 29;
+    }
+
+    // Final mix (MurmurHash3)
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /** Doubles the size of the hash table. */
+  private void rehash() {
+    table = new int[2 * table.length];
+    int mask = table.length - 1;
+    for (int path = 0; path < nbPaths; path++) {
+      long hash = hashes[path];
+      int slot = (int) (hash ^ (hash >>> 32)) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = path + 1;
+    }
+  }
+}
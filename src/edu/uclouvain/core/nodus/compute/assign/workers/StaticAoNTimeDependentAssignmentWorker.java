@@ -23,7 +23,6 @@ package edu.uclouvain.core.nodus.compute.assign.workers;
 
 import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.compute.assign.Assignment;
-import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.BinaryHeapDijkstra;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
@@ -66,9 +65,10 @@ public class StaticAoNTimeDependentAssignmentWorker extends AssignmentWorker {
   @Override
   boolean doAssignment() {
 
-    // Initialize the adjacency list for current group
-    graph = virtualNet.generateAdjacencyList(groupIndex);
-    shortestPath = new BinaryHeapDijkstra(graph, virtualNet);
+    // Initialize the compressed graph and the edge weights for current group
+    compressedGraph = virtualNet.getCompressedGraph();
+    edgeWeights = virtualNet.generateEdgeWeights(groupIndex);
+    shortestPath = new BinaryHeapDijkstra(compressedGraph, edgeWeights, virtualNet);
 
     // Scan all the nodes
     for (int nodeIndex = 0; nodeIndex < virtualNet.getVirtualNodeLists().length; nodeIndex++) {
@@ -119,6 +119,7 @@ public class StaticAoNTimeDependentAssignmentWorker extends AssignmentWorker {
   /** Build all the paths starting from the origin node. */
   private boolean readPaths(int nodeIndex) {
     int[] pi = shortestPath.getPredecessors();
+    int[] piEdge = shortestPath.getPredecessorEdges();
     int beginNode = virtualNet.getVirtualNodeLists()[nodeIndex].getLoadingVirtualNodeId();
 
     // Scan the demand list
@@ -176,17 +177,13 @@ public class StaticAoNTimeDependentAssignmentWorker extends AssignmentWorker {
 
           break;
         } else {
-          AdjacencyNode an = graph[predecessor];
-
-          while (an.endVirtualNode != currentNode) {
-            an = an.nextNode;
-          }
+          VirtualLink vl = compressedGraph.getVirtualLinkForEdge(piEdge[currentNode]);
 
           /*
            * As the path is build in the reverse order (starting from destination), the used links
            * must be saved in order to compute the time of arrival in each link later
            */
-          orderedLinkList.addFirst(an.virtualLink);
+          orderedLinkList.addFirst(vl);
 
           // Go to next chunk in the path
           currentNode = predecessor;
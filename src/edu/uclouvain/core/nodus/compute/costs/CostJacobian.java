@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.costs;
+
+import edu.uclouvain.core.nodus.compute.real.RealLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Jacobian of the link costs with respect to the link volumes, built once per iteration by the
+ * conjugate Frank-Wolfe assignments. It can only be built if the cost of each virtual link is
+ * either independent of the volume or has a standard BPR or CONICAL form (see {@link
+ * VolumeDelayBatch}).
+ *
+ * <p>The cost of a virtual link depends on the passenger car units of the direction of its real
+ * link, which is itself the sum of the volumes of the moving virtual links along this direction
+ * multiplied by their passenger car units per unit of volume. The jacobian is thus stored as two
+ * lists of terms attached to the real link directions: the derivatives of the costs with respect
+ * to the passenger car units, and the derivatives of the passenger car units with respect to the
+ * volumes.
+ *
+ * @author Bart Jourquin
+ */
+public class CostJacobian {
+
+  /** Volumes of the groups on the virtual links, such as the target of a search direction. */
+  public interface LinkVolumes {
+
+    /**
+     * Returns the volume of a group on a virtual link.
+     *
+     * @param vl The virtual link.
+     * @param groupIndex The index of the group of commodities.
+     * @return The volume.
+     */
+    double get(VirtualLink vl, byte groupIndex);
+  }
+
+  /** Terms attached to the real link directions. */
+  private static class Terms {
+    double[] derivative = new double[16];
+    byte[] groupIndex = new byte[16];
+    int nbTerms = 0;
+    int[] slot = new int[16];
+    VirtualLink[] virtualLinks = new VirtualLink[16];
+
+    void add(VirtualLink vl, byte groupIndex, int slot, double derivative) {
+      if (nbTerms == this.slot.length) {
+        int newLength = 2 * nbTerms;
+        this.derivative = Arrays.copyOf(this.derivative, newLength);
+        this.groupIndex = Arrays.copyOf(this.groupIndex, newLength);
+        this.slot = Arrays.copyOf(this.slot, newLength);
+        virtualLinks = Arrays.copyOf(virtualLinks, newLength);
+      }
+      virtualLinks[nbTerms] = vl;
+      this.groupIndex[nbTerms] = groupIndex;
+      this.slot[nbTerms] = slot;
+      this.derivative[nbTerms] = derivative;
+      nbTerms++;
+    }
+  }
+
+  /** Derivatives of the costs of the virtual links with respect to the passenger car units. */
+  private Terms costTerms = new Terms();
+
+  /** Index of the first slot of each real link (two slots per real link, one per direction). */
+  private HashMap<RealLink, Integer> realLinkSlots = new HashMap<>();
+
+  /** Derivatives of the passenger car units with respect to the volumes of the moving links. */
+  private Terms volumeTerms = new Terms();
+
+  /**
+   * Adds the derivative of the cost of a virtual link with respect to the passenger car units of
+   * its real link.
+   *
+   * @param vl The virtual link.
+   * @param rl The real link the volume is read from.
+   * @param groupIndex The index of the group of commodities.
+   * @param derivative The derivative of the cost.
+   */
+  void addCostDerivative(VirtualLink vl, RealLink rl, byte groupIndex, double derivative) {
+    if (derivative == 0.0 || Double.isNaN(derivative) || Double.isInfinite(derivative)) {
+      return;
+    }
+    costTerms.add(vl, groupIndex, getSlot(vl, rl, true), derivative);
+  }
+
+  /**
+   * Adds the derivative of the passenger car units of a real link with respect to the volume of a
+   * group on a moving virtual link. It is ignored if no cost depends on this real link.
+   *
+   * @param vl The moving virtual link.
+   * @param rl The real link of the virtual link.
+   * @param groupIndex The index of the group of commodities.
+   * @param derivative The passenger car units per unit of volume.
+   */
+  public void addVolumeDerivative(VirtualLink vl, RealLink rl, byte groupIndex, double derivative) {
+    if (derivative == 0.0) {
+      return;
+    }
+    int slot = getSlot(vl, rl, false);
+    if (slot != -1) {
+      volumeTerms.add(vl, groupIndex, slot, derivative);
+    }
+  }
+
+  /**
+   * Returns the product d1' * J * d2, where J is the jacobian of the link costs.
+   *
+   * @param d1 The volumes on the left side of the product.
+   * @param d2 The volumes on the right side of the product.
+   * @return The product.
+   */
+  public double product(LinkVolumes d1, LinkVolumes d2) {
+    // Derivative of d1' * costs, per real link direction
+    double[] slotDerivative = new double[2 * realLinkSlots.size()];
+    for (int i = 0; i < costTerms.nbTerms; i++) {
+      slotDerivative[costTerms.slot[i]] +=
+          d1.get(costTerms.virtualLinks[i], costTerms.groupIndex[i]) * costTerms.derivative[i];
+    }
+
+    double product = 0.0;
+    for (int i = 0; i < volumeTerms.nbTerms; i++) {
+      product +=
+          slotDerivative[volumeTerms.slot[i]]
+              * volumeTerms.derivative[i]
+              * d2.get(volumeTerms.virtualLinks[i], volumeTerms.groupIndex[i]);
+    }
+    return product;
+  }
+
+  /**
+   * Returns the slot of the direction of a real link a virtual link is moving along, or -1 if the
+   * real link has no slot and must not be added.
+   */
+  private int getSlot(VirtualLink vl, RealLink rl, boolean add) {
+    Integer slot = realLinkSlots.get(rl);
+    if (slot == null) {
+      if (!add) {
+        return -1;
+      }
+      slot = 2 * realLinkSlots.size();
+      realLinkSlots.put(rl, slot);
+    }
+    if (vl.getBeginVirtualNode().getRealNodeId(false) == rl.getOriginNodeId()) {
+      return slot;
+    }
+    return slot + 1;
+  }
+}
@@ -32,8 +32,11 @@ import edu.uclouvain.core.nodus.NodusC;
 import edu.uclouvain.core.nodus.NodusProject;
 import edu.uclouvain.core.nodus.compute.real.RealLink;
 import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualNode;
 import edu.uclouvain.core.nodus.database.JDBCUtils;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -41,11 +44,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.Vector;
 import parsii.eval.Expression;
 import parsii.eval.Function;
 import parsii.eval.Parser;
 import parsii.eval.Scope;
+import parsii.eval.Variable;
 import parsii.tokenizer.ParseException;
 
 // TODO (services) Add the cost functions for stops and switch in example.
@@ -221,6 +224,69 @@ public class CostParser {
     return value;
   }
 
+  /**
+   * BPR volume-delay function: 1 + beta * (volume / capacity)^alpha.
+   *
+   * @param volume The volume (PCU's).
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   * @param beta The beta parameter.
+   * @return The delay factor.
+   */
+  public static double bpr(double volume, double capacity, double alpha, double beta) {
+    double volumeOverCapacity = safeDivide(volume, capacity);
+    return 1 + beta * Math.pow(volumeOverCapacity, alpha);
+  }
+
+  /**
+   * Conical (Spiess) volume-delay function: 2 + sqrt(alpha^2 * (1 - volume / capacity)^2 + beta^2)
+   * - alpha * (1 - volume / capacity) - beta, with beta = (2 * alpha - 1) / (2 * alpha - 2).
+   *
+   * @param volume The volume (PCU's).
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   * @return The delay factor.
+   */
+  public static double conical(double volume, double capacity, double alpha) {
+    double beta = safeDivide(2 * alpha - 1, 2 * alpha - 2);
+    double x = safeDivide(volume, capacity);
+
+    return 2
+        + Math.sqrt(Math.pow(alpha, 2) * Math.pow(1 - x, 2) + Math.pow(beta, 2))
+        - alpha * (1 - x)
+        - beta;
+  }
+
+  /**
+   * Derivative of the BPR volume-delay function with respect to the volume.
+   *
+   * @param volume The volume (PCU's).
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   * @param beta The beta parameter.
+   * @return The derivative of the delay factor.
+   */
+  public static double bprDerivative(double volume, double capacity, double alpha, double beta) {
+    double volumeOverCapacity = safeDivide(volume, capacity);
+    return safeDivide(beta * alpha * Math.pow(volumeOverCapacity, alpha - 1), capacity);
+  }
+
+  /**
+   * Derivative of the conical volume-delay function with respect to the volume.
+   *
+   * @param volume The volume (PCU's).
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   * @return The derivative of the delay factor.
+   */
+  public static double conicalDerivative(double volume, double capacity, double alpha) {
+    double beta = safeDivide(2 * alpha - 1, 2 * alpha - 2);
+    double x = safeDivide(volume, capacity);
+
+    double root = Math.sqrt(Math.pow(alpha, 2) * Math.pow(1 - x, 2) + Math.pow(beta, 2));
+    return safeDivide(alpha - Math.pow(alpha, 2) * (1 - x) / root, capacity);
+  }
+
   /** Returns {@link Double#NaN} for invalid divisions so the parser can surface a clear error. */
   private static double safeDivide(double numerator, double denominator) {
     if (denominator == 0.0) {
@@ -229,8 +295,157 @@ public class CostParser {
     return numerator / denominator;
   }
 
+  /** BPR function, registered once so that the parsed expressions can be recognized. */
+  private static final Function bprFunction =
+      new Function() {
+        @Override
+        public int getNumberOfArguments() {
+          return 4;
+        }
+
+        @Override
+        public double eval(List<Expression> args) {
+          return bpr(
+              args.get(0).evaluate(),
+              args.get(1).evaluate(),
+              args.get(2).evaluate(),
+              args.get(3).evaluate());
+        }
+
+        @Override
+        public boolean isNaturalFunction() {
+          return true;
+        }
+      };
+
+  /** CONICAL function, registered once so that the parsed expressions can be recognized. */
+  private static final Function conicalFunction =
+      new Function() {
+        @Override
+        public int getNumberOfArguments() {
+          return 3;
+        }
+
+        @Override
+        public double eval(List<Expression> args) {
+          return conical(args.get(0).evaluate(), args.get(1).evaluate(), args.get(2).evaluate());
+        }
+
+        @Override
+        public boolean isNaturalFunction() {
+          return true;
+        }
+      };
+
+  /**
+   * Slots of the generic cost functions (for instance "mv?2,1"), shared by all the cost parsers. The
+   * '?' stands for the separator, which depends on the cost or duration nature of the function.
+   */
+  private static final HashMap<String, Integer> functionSlots = new HashMap<>();
+
+  /** Names of the generic cost functions, indexed by slot. */
+  private static final ArrayList<String> slotNames = new ArrayList<>();
+
+  /**
+   * Returns the slot of the generic cost function of a virtual link, registering it if needed.
+   *
+   * @param vl A virtual link.
+   * @return The slot of the generic cost function of the virtual link.
+   */
+  private static synchronized int getFunctionSlot(VirtualLink vl) {
+    VirtualNode begin = vl.getBeginVirtualNode();
+    VirtualNode end = vl.getEndVirtualNode();
+    String name;
+
+    switch (vl.getType()) {
+      case VirtualLink.TYPE_LOAD:
+        name = "ld?" + end.getMode() + "," + end.getMeans();
+        break;
+      case VirtualLink.TYPE_UNLOAD:
+        name = "ul?" + begin.getMode() + "," + begin.getMeans();
+        break;
+      case VirtualLink.TYPE_MOVE:
+        name = "mv?" + begin.getMode() + "," + begin.getMeans();
+        break;
+      case VirtualLink.TYPE_TRANSHIP:
+        name =
+            "tp?"
+                + begin.getMode()
+                + ","
+                + begin.getMeans()
+                + '-'
+                + end.getMode()
+                + ","
+                + end.getMeans();
+        break;
+      case VirtualLink.TYPE_SWITCH:
+        name =
+            "sw?"
+                + begin.getMode()
+                + ","
+                + begin.getMeans()
+                + '-'
+                + end.getMode()
+                + ","
+                + end.getMeans();
+        break;
+      case VirtualLink.TYPE_TRANSIT:
+        name = "tr?" + begin.getMode() + "," + begin.getMeans();
+        break;
+      case VirtualLink.TYPE_STOP:
+        name = "stp?" + begin.getMode() + "," + begin.getMeans();
+        break;
+      default:
+        name = "?";
+        break;
+    }
+
+    Integer slot = functionSlots.get(name);
+    if (slot == null) {
+      slot = slotNames.size();
+      slotNames.add(name);
+      functionSlots.put(name, slot);
+    }
+    return slot;
+  }
+
+  /**
+   * Returns the name of the generic cost function stored in a slot.
+   *
+   * @param slot The slot of the function.
+   * @param separator '.' for a cost function, '@' for a duration function.
+   * @return The name of the function.
+   */
+  private static synchronized String getFunctionName(int slot, char separator) {
+    return slotNames.get(slot).replace('?', separator);
+  }
+
+  /** A cost function resolved for this parser, and compiled once for all the virtual links. */
+  private static class CompiledFunction {
+    /** The compiled expression, or null if the function is undefined or cannot be parsed. */
+    Expression expression;
+
+    /** The formula of the function. */
+    String formula;
+
+    /** The cause of the error if the formula cannot be parsed, or null. */
+    String parseError;
+
+    /** The standard volume-delay form of a moving function, or null if it has no such form. */
+    VolumeDelayForm volumeDelayForm;
+
+    /** True if the function refers to the volume. */
+    boolean volumeDependent;
+  }
+
   private byte classNum;
 
+  /** Compiled cost functions, indexed by function slot. */
+  private CompiledFunction[] compiledCosts = new CompiledFunction[0];
+
+  /** Compiled duration functions, indexed by function slot. */
+  private CompiledFunction[] compiledDurations = new CompiledFunction[0];
+
   /** Cost functions files. Normally a property file which extension is ".cost" */
   private Properties costFunctions;
 
@@ -242,19 +457,17 @@ public class CostParser {
 
   private String errorMessage = null;
 
-  /** For Parsii. */
-  private Expression expression;
+  private Variable frequencyVariable;
 
   private byte groupNum;
 
-  private boolean hasMoveVariables = false;
-
   private boolean initialized = false;
 
-  /**
-   * Vector containing all the link field names (columns names in the corresponding dbfTableModel).
-   */
-  private Vector<String>[] linkFieldName;
+  /** Parser variables bound to the numeric fields of the link layers, indexed by column. */
+  private Variable[][] linkFieldVariable;
+
+  /** Parser variables that represent the link layers. */
+  private Variable[] linkLayerVariable;
 
   /** Links graphic lists used to store/retrieve/update volumes. */
   private EsriGraphicList[] links;
@@ -268,10 +481,11 @@ public class CostParser {
   /** Nodus Link layers. */
   private NodusEsriLayer[] linksEsriLayer;
 
-  /**
-   * Vector containing all the node field names (columns names in the corresponding dbfTableModel).
-   */
-  private Vector<String>[] nodeFieldName;
+  /** Parser variables bound to the numeric fields of the node layers, indexed by column. */
+  private Variable[][] nodeFieldVariable;
+
+  /** Parser variables that represent the node layers. */
+  private Variable[] nodeLayerVariable;
 
   /**
    * DbfTableModel (see OpenMap documentation for more details) containing the .dbf data of all the
@@ -282,7 +496,15 @@ public class CostParser {
   /** Nodus Node layers. */
   private NodusEsriLayer[] nodesEsriLayer;
 
-  private String previousLayerVariableName;
+  private Variable lengthVariable;
+
+  /** Scope of the moving cost functions, which also know the LENGTH and VOLUME variables. */
+  private Scope moveScope;
+
+  /** Scope of the other cost functions, which also know the TRANSHIP variable. */
+  private Scope nodeScope;
+
+  private Variable previousLayerVariable;
 
   private NodusProject project = null;
 
@@ -294,6 +516,12 @@ public class CostParser {
 
   private int timeSlice;
 
+  private Variable transhipVariable;
+
+  private Variable upStreamVariable;
+
+  private Variable volumeVariable;
+
   /**
    * Initializes a new cost parser for a given group, class and time slice.
    *
@@ -345,7 +573,6 @@ public class CostParser {
     // Get the nodes and link layers
     nodesEsriLayer = project.getNodeLayers();
     linksEsriLayer = project.getLinkLayers();
-    previousLayerVariableName = nodesEsriLayer[0].getLayerVariableName();
 
     // Get the table models for nodes and links
     nodesDbf = new DbfTableModel[nodesEsriLayer.length];
@@ -369,51 +596,73 @@ public class CostParser {
       links[i] = linksEsriLayer[i].getEsriGraphicList();
     }
 
-    /* All the numeric fields in the DbfTableModels are potential variables.
-     * Create tables with the names of these variables
-     */
-    nodeFieldName = new Vector[nodesDbf.length];
+    // Initialize the variables that represent the layers
+    nodeLayerVariable = new Variable[nodesEsriLayer.length];
+    for (int i = 0; i < nodesEsriLayer.length; i++) {
+      nodeLayerVariable[i] = scope.create(nodesEsriLayer[i].getLayerVariableName());
+      nodeLayerVariable[i].setValue(0.0);
+    }
 
-    for (int i = 0; i < nodesDbf.length; i++) {
-      nodeFieldName[i] = new Vector<>(nodesDbf[i].getColumnCount());
+    linkLayerVariable = new Variable[linksEsriLayer.length];
+    for (int i = 0; i < linksEsriLayer.length; i++) {
+      linkLayerVariable[i] = scope.create(linksEsriLayer[i].getLayerVariableName());
+      linkLayerVariable[i].setValue(0.0);
+    }
+    previousLayerVariable = nodeLayerVariable[0];
 
-      for (int j = 0; j < nodesDbf[i].getColumnCount(); j++) {
-        if (nodesDbf[i].getType(j) == DbfTableModel.TYPE_NUMERIC) {
-          nodeFieldName[i].add(j, nodesDbf[i].getColumnName(j).toUpperCase());
-        } else {
-          nodeFieldName[i].add(j, null);
-        }
-      }
+    if (initialiseVariables()) {
+      initialized = true;
     }
 
-    linkFieldName = new Vector[linksDbf.length];
+    /* The moving cost functions are the only ones that know the LENGTH and VOLUME variables,
+     * while TRANSHIP is only known by the other functions. Each kind of function is thus compiled
+     * in its own scope, on top of the scope that contains the variables shared by all the functions.
+     */
+    moveScope = new Scope().withParent(scope).withStrictLookup(true);
+    lengthVariable = moveScope.create(NodusC.VARNAME_LENGTH);
+    volumeVariable = moveScope.create(NodusC.VARNAME_VOLUME);
+    nodeScope = new Scope().withParent(scope).withStrictLookup(true);
+    transhipVariable = nodeScope.create(NodusC.VARNAME_TRANSHIP);
 
-    for (int i = 0; i < linksDbf.length; i++) {
-      linkFieldName[i] = new Vector<>(linksDbf[i].getColumnCount());
+    upStreamVariable = scope.create(NodusC.VARNAME_UPSTREAM);
+    frequencyVariable = scope.create(NodusC.VARNAME_FREQUENCY);
 
-      for (int j = 0; j < linksDbf[i].getColumnCount(); j++) {
-        if (linksDbf[i].getType(j) == DbfTableModel.TYPE_NUMERIC) {
-          linkFieldName[i].add(j, linksDbf[i].getColumnName(j).toUpperCase());
-        } else {
-          linkFieldName[i].add(j, null);
-        }
-      }
+    /* All the numeric fields in the DbfTableModels are potential variables.
+     * Bind them once to parser variables, indexed by column.
+     */
+    nodeFieldVariable = new Variable[nodesDbf.length][];
+    for (int i = 0; i < nodesDbf.length; i++) {
+      nodeFieldVariable[i] = getFieldVariables(nodesDbf[i], nodeScope);
     }
 
-    // Initialize the variables that represent the layers
-    for (NodusEsriLayer element : nodesEsriLayer) {
-      setVariable(element.getLayerVariableName(), 0.0);
+    linkFieldVariable = new Variable[linksDbf.length][];
+    for (int i = 0; i < linksDbf.length; i++) {
+      linkFieldVariable[i] = getFieldVariables(linksDbf[i], moveScope);
     }
 
-    for (NodusEsriLayer element : linksEsriLayer) {
-      setVariable(element.getLayerVariableName(), 0.0);
-    }
+    registerFunctions();
+  }
 
-    if (initialiseVariables()) {
-      initialized = true;
+  /**
+   * Returns the parser variables bound to the numeric fields of a DbfTableModel. A field that has
+   * the same name as a variable of the given local scope is bound to this variable.
+   *
+   * @param dbf The DbfTableModel of a layer.
+   * @param localScope The scope of the cost functions related to this layer.
+   * @return The variables, indexed by column, with null for non numeric columns.
+   */
+  private Variable[] getFieldVariables(DbfTableModel dbf, Scope localScope) {
+    Variable[] variables = new Variable[dbf.getColumnCount()];
+    for (int j = 0; j < variables.length; j++) {
+      if (dbf.getType(j) == DbfTableModel.TYPE_NUMERIC) {
+        String name = dbf.getColumnName(j).toUpperCase();
+        variables[j] = localScope.find(name);
+        if (variables[j] == null) {
+          variables[j] = scope.create(name);
+        }
+      }
     }
-
-    registerFunctions();
+    return variables;
   }
 
   /** Some user defined functions, such as volume-delay functions. */
@@ -449,67 +698,13 @@ public class CostParser {
 
     // BPR Volume delay function : 1 + beta * (VOLUME / CAPACITY)^alpha
     // Call BPR(VOLUME, CAPACITY, alpha, beta)
-    Parser.registerFunction(
-        "BPR",
-        new Function() {
-          @Override
-          public int getNumberOfArguments() {
-            return 4;
-          }
-
-          @Override
-          public double eval(List<Expression> args) {
-
-            double volume = args.get(0).evaluate();
-            double capacity = args.get(1).evaluate();
-            double alpha = args.get(2).evaluate();
-            double beta = args.get(3).evaluate();
-            double volumeOverCapacity = safeDivide(volume, capacity);
-
-            double delay = 1 + beta * Math.pow(volumeOverCapacity, alpha);
-            return delay;
-          }
-
-          @Override
-          public boolean isNaturalFunction() {
-            return true;
-          }
-        });
+    Parser.registerFunction("BPR", bprFunction);
 
     // Conical (Spiess) Volume delay function :
     // 2 + sqrt(alpha^2 * (1-(VOLUME/CAPACITY))^2 + beta^2) - alpha*(1-(VOLUME/CAPACITY)) - beta)
     // with beta = (2*alpha-1)/(2*alpha-2)
     // Call CONICAL(VOLUME, CAPACITY, alpha)
-    Parser.registerFunction(
-        "CONICAL",
-        new Function() {
-          @Override
-          public int getNumberOfArguments() {
-            return 3;
-          }
-
-          @Override
-          public double eval(List<Expression> args) {
-
-            double volume = args.get(0).evaluate();
-            double capacity = args.get(1).evaluate();
-            double alpha = args.get(2).evaluate();
-            double beta = safeDivide(2 * alpha - 1, 2 * alpha - 2);
-            double x = safeDivide(volume, capacity);
-
-            double delay =
-                2
-                    + Math.sqrt(Math.pow(alpha, 2) * Math.pow(1 - x, 2) + Math.pow(beta, 2))
-                    - alpha * (1 - x)
-                    - beta;
-            return delay;
-          }
-
-          @Override
-          public boolean isNaturalFunction() {
-            return true;
-          }
-        });
+    Parser.registerFunction("CONICAL", conicalFunction);
 
     // Compute the travel duration (hours) for a given length (km) and speed (km/h).
     // Call HOURS (LENGTH, SPEED)
@@ -594,128 +789,161 @@ public class CostParser {
    */
   public double compute(VirtualLink vl, boolean computeDuration) {
 
-    int type = vl.getType();
+    // Get the compiled function for this virtual link
+    CompiledFunction function = getCompiledFunction(vl, computeDuration);
+    if (function.expression == null) {
+      if (function.parseError != null) {
+        errorMessage = vl.toString() + ": " + function.formula + '\n' + function.parseError;
+        return PARSER_ERROR;
+      }
+      return UNDEFINED_FUNCTION;
+    }
 
-    // Load the layer variable name (set to 1 for current layer)
-    String layerVariableName;
+    loadVariables(vl);
 
-    if (type == VirtualLink.TYPE_MOVE) {
-      layerVariableName = linksEsriLayer[vl.getLayerIndex()].getLayerVariableName();
-    } else {
-      layerVariableName = nodesEsriLayer[vl.getLayerIndex()].getLayerVariableName();
-    }
+    return checkValue(vl, function.formula, function.expression.evaluate());
+  }
 
-    if (!layerVariableName.equals(previousLayerVariableName)) {
-      setVariable(previousLayerVariableName, 0.0);
-      setVariable(layerVariableName, 1.0);
-      previousLayerVariableName = layerVariableName;
+  /**
+   * Adds a virtual link to a batch of costs. If its cost function has a standard volume-delay form,
+   * its volume independent terms are evaluated and stored in the batch. If its cost doesn't depend
+   * on the volume, the cost is stored in the batch. Otherwise, the virtual link is added to the
+   * batch as a link which cost must be computed by the parser.
+   *
+   * @param vl A virtual link.
+   * @param batch The batch to fill.
+   * @return The computed cost. This function also can return PARSER_ERROR if and error occurred
+   *     during parsing or UNDEFINED_FUNCTION if no cost function was defined for this virtual link.
+   */
+  public double addToBatch(VirtualLink vl, VolumeDelayBatch batch) {
+    CompiledFunction function = getCompiledFunction(vl, false);
+    VolumeDelayForm form = function.volumeDelayForm;
+    if (form == null) {
+      double cost = compute(vl, false);
+      if (cost != PARSER_ERROR && !function.volumeDependent) {
+        batch.addStaticLink(vl, cost);
+      } else {
+        batch.addOtherLink(vl);
+      }
+      return cost;
     }
 
-    char separator = '.';
-    if (computeDuration) {
-      separator = '@';
+    loadVariables(vl);
+    double cost = checkValue(vl, function.formula, function.expression.evaluate());
+    if (cost == PARSER_ERROR) {
+      return cost;
     }
 
-    // Build cost function
-    String costFunctionName = "";
-
-    switch (type) {
-      case VirtualLink.TYPE_LOAD:
-        costFunctionName =
-            "ld"
-                + separator
-                + vl.getEndVirtualNode().getMode()
-                + ","
-                + vl.getEndVirtualNode().getMeans();
-
-        break;
+    double volume = volumeVariable.getValue();
+    double offset = form.offset.evaluate();
+    double factor = form.factor.evaluate();
+    double capacity = form.capacity.evaluate();
+    double alpha = form.alpha.evaluate();
+    double formCost;
+    if (form.conical) {
+      formCost = offset + factor * conical(volume, capacity, alpha);
+    } else {
+      double beta = form.beta.evaluate();
+      formCost = offset + factor * bpr(volume, capacity, alpha, beta);
+    }
 
-      case VirtualLink.TYPE_UNLOAD:
-        costFunctionName =
-            "ul"
-                + separator
-                + vl.getBeginVirtualNode().getMode()
-                + ","
-                + vl.getBeginVirtualNode().getMeans();
+    // Keep the parser for this link if the standard form doesn't give the same cost
+    if (Math.abs(formCost - cost) > 1e-9 * Math.max(1.0, cost)) {
+      batch.addOtherLink(vl);
+      return cost;
+    }
 
-        break;
+    RealLink rl = getRealLink(vl);
+    if (form.conical) {
+      batch.addConical(vl, rl, offset, factor, capacity, alpha);
+    } else {
+      batch.addBpr(vl, rl, offset, factor, capacity, alpha, form.beta.evaluate());
+    }
+    return cost;
+  }
 
-      case VirtualLink.TYPE_MOVE:
-        costFunctionName =
-            "mv"
-                + separator
-                + vl.getBeginVirtualNode().getMode()
-                + ","
-                + vl.getBeginVirtualNode().getMeans();
+  /**
+   * Adds a moving virtual link to a set of volume dependent links if its cost or duration function
+   * refers to the volume. The costs of the other virtual links never change during an assignment.
+   *
+   * @param vl A virtual link which costs were just computed.
+   * @param dependentLinks The set of volume dependent links to fill.
+   */
+  public void addIfVolumeDependent(VirtualLink vl, VolumeDependentLinks dependentLinks) {
+    if (vl.getType() != VirtualLink.TYPE_MOVE) {
+      return;
+    }
 
-        break;
+    if (getCompiledFunction(vl, false).volumeDependent
+        || getCompiledFunction(vl, true).volumeDependent) {
+      RealLink rl = getRealLink(vl);
+      dependentLinks.add(vl, rl, rl.getCurrentPassengerCarUnits(vl));
+    }
+  }
 
-      case VirtualLink.TYPE_TRANSHIP:
-        costFunctionName =
-            "tp"
-                + separator
-                + vl.getBeginVirtualNode().getMode()
-                + ","
-                + vl.getBeginVirtualNode().getMeans()
-                + '-'
-                + vl.getEndVirtualNode().getMode()
-                + ","
-                + vl.getEndVirtualNode().getMeans();
+  /**
+   * Returns a computed value, or PARSER_ERROR if it is not a valid cost or duration.
+   *
+   * @param vl The virtual link the value was computed for.
+   * @param formula The formula used to compute the value.
+   * @param value The computed value.
+   * @return The value or PARSER_ERROR.
+   */
+  private double checkValue(VirtualLink vl, String formula, double value) {
+    if (Double.isNaN(value)) {
+      errorMessage = vl.toString() + ": " + formula + " =  NaN\n";
+      return PARSER_ERROR;
+    }
 
-        break;
+    if (Double.isInfinite(value)) {
+      errorMessage = vl.toString() + ": " + formula + " =  Infinity\n";
+      return PARSER_ERROR;
+    }
 
-      case VirtualLink.TYPE_SWITCH:
-        costFunctionName =
-            "sw"
-                + separator
-                + vl.getBeginVirtualNode().getMode()
-                + ","
-                + vl.getBeginVirtualNode().getMeans()
-                + '-'
-                + vl.getEndVirtualNode().getMode()
-                + ","
-                + vl.getEndVirtualNode().getMeans();
-        break;
+    // The cost must be positive
+    if (value < 0) {
+      errorMessage =
+          formula + '\n' + i18n.get(CostParser.class, "Result_is_negative", "Result is negative");
+      return PARSER_ERROR;
+    }
 
-      case VirtualLink.TYPE_TRANSIT:
-        costFunctionName =
-            "tr"
-                + separator
-                + vl.getBeginVirtualNode().getMode()
-                + ","
-                + vl.getBeginVirtualNode().getMeans();
+    // A correct cost or duration was computed
+    return value;
+  }
 
-        break;
+  /**
+   * Forces the values of the variables to be reloaded for the next virtual link. This must be
+   * called before a parser is reused for new volumes, as the variables are only reloaded when the
+   * real link or node changes.
+   */
+  public void reset() {
+    currentLink = -1;
+    currentNode = -1;
+    currentType = VirtualLink.TYPE_MOVE;
+  }
 
-      case VirtualLink.TYPE_STOP:
-        costFunctionName =
-            "stp"
-                + separator
-                + vl.getBeginVirtualNode().getMode()
-                + ","
-                + vl.getBeginVirtualNode().getMeans();
+  /**
+   * Loads the values of the variables related to a virtual link in the parser.
+   *
+   * @param vl A virtual link.
+   */
+  private void loadVariables(VirtualLink vl) {
 
-        break;
-      default:
-        break;
-    }
+    int type = vl.getType();
 
-    String defaultFormula;
+    // Load the layer variable (set to 1 for current layer)
+    Variable layerVariable;
 
-    // At least the generic function must exists
-    // Test the existence of time specific cost function
-    if (timeSlice != -1) {
-      String s = "t" + timeSlice + "." + new String(costFunctionName);
-      defaultFormula = (String) costFunctions.get(s);
-      if (defaultFormula == null) {
-        defaultFormula = (String) costFunctions.get(costFunctionName);
-      }
+    if (type == VirtualLink.TYPE_MOVE) {
+      layerVariable = linkLayerVariable[vl.getLayerIndex()];
     } else {
-      defaultFormula = (String) costFunctions.get(costFunctionName);
+      layerVariable = nodeLayerVariable[vl.getLayerIndex()];
     }
 
-    if (defaultFormula == null) {
-      return UNDEFINED_FUNCTION;
+    if (layerVariable != previousLayerVariable) {
+      previousLayerVariable.setValue(0.0);
+      layerVariable.setValue(1.0);
+      previousLayerVariable = layerVariable;
     }
 
     // Set shp/dbf related variables in parser
@@ -724,7 +952,7 @@ public class CostParser {
     boolean reloadVariables = false;
 
     // Up or Downstream ?
-    setVariable(NodusC.VARNAME_UPSTREAM, vl.getUpStream());
+    upStreamVariable.setValue(vl.getUpStream() ? 1 : 0);
 
     if (currentType != type) {
       reloadVariables = true;
@@ -742,71 +970,124 @@ public class CostParser {
             currentNode = vl.getBeginVirtualNode().getRealNodeId(false);
           }
         }
+      } else if (vl.getBeginVirtualNode().getRealNodeId(false) != currentNode) {
+        // Same type of operation, but at another node
+        reloadVariables = true;
+        currentNode = vl.getBeginVirtualNode().getRealNodeId(false);
       }
     }
     if (vl.getBeginVirtualNode().getService() != vl.getEndVirtualNode().getService()) {
-      setVariable(
-          NodusC.VARNAME_FREQUENCY,
+      frequencyVariable.setValue(
           project.getServiceHandler().frequencyByService(vl.getEndVirtualNode().getService()));
     } else {
-      setVariable(NodusC.VARNAME_FREQUENCY, 0);
+      frequencyVariable.setValue(0);
     }
 
     List<Object> values = null;
     if (reloadVariables) {
       int layerIndex = vl.getLayerIndex();
-      Vector<?> fieldName = null;
+      Variable[] fieldVariable = null;
       int indexInLayer = vl.getIndexInLayer();
       if (type == VirtualLink.TYPE_MOVE) {
-        fieldName = linkFieldName[layerIndex];
+        fieldVariable = linkFieldVariable[layerIndex];
         values = linksDbf[layerIndex].getRecord(indexInLayer);
 
         // Get RealLink object
-        OMGraphic omg = links[layerIndex].getOMGraphicAt(indexInLayer);
-        RealLink rl = (RealLink) omg.getAttribute(0);
+        RealLink rl = getRealLink(vl);
 
         // Get length
-        setVariable(NodusC.VARNAME_LENGTH, rl.getLength());
-        // setVariable(NodusC.VARNAME_DURATION, rl.getDuration());
-
-        // Remove the tranship variable if exists
-        if (!hasMoveVariables) {
-          scope.remove(NodusC.VARNAME_TRANSHIP);
-        }
-
-        hasMoveVariables = true;
+        lengthVariable.setValue(rl.getLength());
 
         /*
          * Get (oriented) volume for the real link associated to this virtual link.
          * The volume is a number of passenger car units (PCU's)
          */
-        setVariable(NodusC.VARNAME_VOLUME, rl.getCurrentPassengerCarUnits(vl));
+        volumeVariable.setValue(rl.getCurrentPassengerCarUnits(vl));
 
       } else {
-        fieldName = nodeFieldName[layerIndex];
+        fieldVariable = nodeFieldVariable[layerIndex];
         values = nodesDbf[layerIndex].getRecord(indexInLayer);
 
         // Get Tranship field
-        setVariable(NodusC.VARNAME_TRANSHIP, (double) values.get(NodusC.DBF_IDX_TRANSHIP));
-
-        // No VOLUME or LENGTH variable for nodes
-        if (hasMoveVariables) {
-          scope.remove(NodusC.VARNAME_VOLUME);
-          scope.remove(NodusC.VARNAME_LENGTH);
-          hasMoveVariables = false;
-        }
+        transhipVariable.setValue((double) values.get(NodusC.DBF_IDX_TRANSHIP));
       }
 
       // dbf fields
-      for (int i = 0; i < fieldName.size(); i++) {
-        String name = (String) fieldName.get(i);
-
-        if (name != null) {
-          double d = JDBCUtils.getDouble(values.get(i));
-          setVariable(name, d);
+      for (int i = 0; i < fieldVariable.length; i++) {
+        if (fieldVariable[i] != null) {
+          fieldVariable[i].setValue(JDBCUtils.getDouble(values.get(i)));
         }
       }
     } // if reloadVariables
+  }
+
+  /**
+   * Returns the cost or duration function of a virtual link, compiled the first time a virtual link
+   * with the same generic function is met by this parser.
+   *
+   * @param vl A virtual link.
+   * @param computeDuration If true, return the duration function, else the cost function.
+   * @return The compiled function.
+   */
+  private CompiledFunction getCompiledFunction(VirtualLink vl, boolean computeDuration) {
+    int slot = vl.getCostFunctionSlot();
+    if (slot == -1) {
+      slot = getFunctionSlot(vl);
+      vl.setCostFunctionSlot(slot);
+    }
+
+    CompiledFunction[] compiled = computeDuration ? compiledDurations : compiledCosts;
+    if (slot >= compiled.length) {
+      compiled = Arrays.copyOf(compiled, slot + 1);
+      if (computeDuration) {
+        compiledDurations = compiled;
+      } else {
+        compiledCosts = compiled;
+      }
+    }
+
+    if (compiled[slot] == null) {
+      compiled[slot] = compileFunction(slot, vl.getType(), computeDuration);
+    }
+    return compiled[slot];
+  }
+
+  /**
+   * Resolves the most specific formula of a generic cost function for the scenario, group, OD
+   * class and time slice of this parser, and compiles it.
+   *
+   * @param slot The slot of the generic cost function.
+   * @param type The type of the virtual links the function applies to.
+   * @param computeDuration If true, compile the duration function, else the cost function.
+   * @return The compiled function. Its expression is null if the function is undefined or if it
+   *     cannot be parsed.
+   */
+  private CompiledFunction compileFunction(int slot, int type, boolean computeDuration) {
+    CompiledFunction function = new CompiledFunction();
+
+    char separator = '.';
+    if (computeDuration) {
+      separator = '@';
+    }
+
+    String costFunctionName = getFunctionName(slot, separator);
+    String defaultFormula;
+
+    // At least the generic function must exists
+    // Test the existence of time specific cost function
+    if (timeSlice != -1) {
+      String s = "t" + timeSlice + "." + costFunctionName;
+      defaultFormula = (String) costFunctions.get(s);
+      if (defaultFormula == null) {
+        defaultFormula = (String) costFunctions.get(costFunctionName);
+      }
+    } else {
+      defaultFormula = (String) costFunctions.get(costFunctionName);
+    }
+
+    if (defaultFormula == null) {
+      return function;
+    }
 
     /* Cost functions can exist for a given scenario, group and class.
      * Test the different possibilities
@@ -860,40 +1141,28 @@ public class CostParser {
     }
 
     if (costFunctionFormula.compareTo("null") == 0) {
-      return UNDEFINED_FUNCTION;
+      return function;
     }
 
-    // Now we have a cost function to parse
+    // Now we have a cost function to compile
+    function.formula = costFunctionFormula;
     try {
-      expression = Parser.parse(costFunctionFormula, scope);
+      if (type == VirtualLink.TYPE_MOVE) {
+        function.expression = Parser.parse(costFunctionFormula, moveScope);
+      } else {
+        function.expression = Parser.parse(costFunctionFormula, nodeScope);
+      }
     } catch (ParseException e) {
-      errorMessage = vl.toString() + ": " + costFunctionFormula + '\n' + e.toString();
-      return PARSER_ERROR;
-    }
-    double value = -1.0;
-    value = expression.evaluate();
-
-    if (Double.isNaN(value)) {
-      errorMessage = vl.toString() + ": " + costFunctionFormula + " =  NaN\n";
-      return PARSER_ERROR;
-    }
-
-    if (Double.isInfinite(value)) {
-      errorMessage = vl.toString() + ": " + costFunctionFormula + " =  Infinity\n";
-      return PARSER_ERROR;
+      function.parseError = e.toString();
+      return function;
     }
 
-    // The cost must be positive
-    if (value < 0) {
-      errorMessage =
-          costFunctionFormula
-              + '\n'
-              + i18n.get(CostParser.class, "Result_is_negative", "Result is negative");
-      return PARSER_ERROR;
+    if (type == VirtualLink.TYPE_MOVE) {
+      function.volumeDependent = VolumeDelayForm.dependsOnVolume(function.expression);
+      function.volumeDelayForm =
+          VolumeDelayForm.analyze(function.expression, bprFunction, conicalFunction);
     }
-
-    // A correct cost or duration was computed
-    return value;
+    return function;
   }
 
   /**
@@ -965,6 +1234,17 @@ public class CostParser {
     return propValue;
   }
 
+  /**
+   * Returns the real link a moving virtual link is generated from.
+   *
+   * @param vl A moving virtual link.
+   * @return The real link.
+   */
+  private RealLink getRealLink(VirtualLink vl) {
+    OMGraphic omg = links[vl.getLayerIndex()].getOMGraphicAt(vl.getIndexInLayer());
+    return (RealLink) omg.getAttribute(0);
+  }
+
   /**
    * Returns the variable name of a property without its group, class or scenario attributes.
    *
@@ -1126,15 +1406,6 @@ public class CostParser {
     return initialized;
   }
 
-  /** Create or update a variable in the parser. */
-  private void setVariable(String name, boolean upStream) {
-    double value = 0;
-    if (upStream) {
-      value = 1;
-    }
-    scope.create(name).setValue(value);
-  }
-
   /** Create or update a variable in the parser. */
   private void setVariable(String name, double value) {
     scope.create(name).setValue(value);
@@ -86,6 +86,18 @@ public class CostParserWorker extends Thread {
     canceled = true;
   }
 
+  /**
+   * Cancels all the workers of the pool.
+   *
+   * @param errorMessage error message to display.
+   */
+  private void cancelAll(String errorMessage) {
+    this.errorMessage = errorMessage;
+    for (CostParserWorker element : costWorker) {
+      element.cancel(errorMessage);
+    }
+  }
+
   /**
    * Real work starts here. Creates a costParser and computes the cost for a given group and class.
    * Returns false if something went wrong during parsing.
@@ -103,6 +115,21 @@ public class CostParserWorker extends Thread {
 
     costParser = cwp.getCostParser();
 
+    // Reuse the costs batch if it was already filled
+    VolumeDelayBatch batch = null;
+    if (withFirstDerivative) {
+      batch = cwp.getVolumeDelayBatch();
+      if (batch != null && batch.isBuilt()) {
+        return computeBatchCosts(cwp, batch);
+      }
+    }
+
+    // Only recompute the volume dependent costs if the static ones are already computed
+    VolumeDependentLinks dependentLinks = cwp.getVolumeDependentLinks();
+    if (dependentLinks != null && dependentLinks.isBuilt()) {
+      return computeVolumeDependentCosts(cwp, dependentLinks);
+    }
+
     // Scan the VNL structure
     for (int i = 0; i < vnl.length; i++) {
 
@@ -144,7 +171,12 @@ public class CostParserWorker extends Thread {
           if (!isVirtualLinkExcluded(i, vl, scenario, groupNum)) {
 
             // Compute costs
-            double cost = costParser.compute(vl, false);
+            double cost;
+            if (batch != null) {
+              cost = costParser.addToBatch(vl, batch);
+            } else {
+              cost = costParser.compute(vl, false);
+            }
             if (cost == CostParser.PARSER_ERROR) {
               return false;
             }
@@ -163,6 +195,10 @@ public class CostParserWorker extends Thread {
 
             vl.setDuration(groupIndex, duration);
 
+            if (dependentLinks != null) {
+              costParser.addIfVolumeDependent(vl, dependentLinks);
+            }
+
             if (withFirstDerivative) {
               firstDerivative +=
                   (vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex))
@@ -172,6 +208,103 @@ public class CostParserWorker extends Thread {
         }
       }
     }
+
+    if (batch != null) {
+      batch.build();
+    }
+    if (dependentLinks != null) {
+      dependentLinks.build();
+    }
+    return true;
+  }
+
+  /**
+   * Recomputes the costs and durations of the volume dependent virtual links of a group which
+   * volume changed since the previous computation. The costs of the other virtual links are kept.
+   *
+   * @param cwp The parameters needed to achieve the work.
+   * @param dependentLinks The volume dependent virtual links of the group.
+   * @return True on success.
+   */
+  private boolean computeVolumeDependentCosts(
+      CostParserWorkerParameters cwp, VolumeDependentLinks dependentLinks) {
+    byte groupIndex = cwp.getGroupIndex();
+
+    String msg = i18n.get(CostParserWorker.class, "Computing_costs", "Computing costs");
+    if (!cwp.getNodusProject().getNodusMapPanel().updateProgress(msg)) {
+      return false;
+    }
+
+    for (int i = 0; i < dependentLinks.getNbLinks(); i++) {
+      if (canceled) {
+        return false;
+      }
+
+      if (!dependentLinks.updateVolume(i)) {
+        continue;
+      }
+      VirtualLink vl = dependentLinks.getVirtualLink(i);
+
+      double cost = costParser.compute(vl, false);
+      if (cost == CostParser.PARSER_ERROR) {
+        return false;
+      }
+      vl.setCost(groupIndex, cost);
+
+      double duration = costParser.compute(vl, true);
+      if (duration == CostParser.PARSER_ERROR) {
+        return false;
+      }
+
+      // Duration functions are not mandatory
+      if (duration == CostParser.UNDEFINED_FUNCTION) {
+        duration = 0.0;
+      }
+      vl.setDuration(groupIndex, duration);
+    }
+    return true;
+  }
+
+  /**
+   * Recomputes the costs of a group using a batch filled during a previous call. Only the costs
+   * and the first derivative of the objective function are computed.
+   *
+   * @param cwp The parameters needed to achieve the work.
+   * @param batch The filled batch of costs.
+   * @return True on success.
+   */
+  private boolean computeBatchCosts(CostParserWorkerParameters cwp, VolumeDelayBatch batch) {
+    byte groupIndex = cwp.getGroupIndex();
+
+    String msg = i18n.get(CostParserWorker.class, "Computing_costs", "Computing costs");
+    if (!cwp.getNodusProject().getNodusMapPanel().updateProgress(msg)) {
+      return false;
+    }
+
+    // Virtual links with a standard volume-delay function
+    VirtualLink invalidLink = batch.computeCosts(groupIndex);
+    if (invalidLink != null) {
+      // Let the parser report the error
+      costParser.compute(invalidLink, false);
+      return false;
+    }
+    firstDerivative += batch.getFirstDerivative(groupIndex);
+
+    // Other virtual links
+    for (VirtualLink vl : batch.getOtherLinks()) {
+      if (canceled) {
+        return false;
+      }
+
+      double cost = costParser.compute(vl, false);
+      if (cost == CostParser.PARSER_ERROR) {
+        return false;
+      }
+      vl.setCost(groupIndex, cost);
+
+      firstDerivative +=
+          (vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex)) * cost;
+    }
     return true;
   }
 
@@ -265,7 +398,18 @@ public class CostParserWorker extends Thread {
     }
   }
 
-  /** Main entry point of the worker thread. Listens until no more tasks are in queue. */
+  /**
+   * Prepares the worker for a new series of jobs, as the worker threads are kept alive between two
+   * computations of the costs.
+   */
+  public void reset() {
+    firstDerivative = 0.0;
+  }
+
+  /**
+   * Main entry point of the worker thread. Listens until the end-of-stream marker is retrieved, so
+   * that the worker can handle several series of jobs.
+   */
   @Override
   public void run() {
     try {
@@ -281,13 +425,19 @@ public class CostParserWorker extends Thread {
         costWorker = cwp.getCostWorkers();
         withFirstDerivative = cwp.isWithFirstDerivative();
 
+        // The parser may have been used by a previous job
+        cwp.getCostParser().reset();
+
         // Start the real work
-        if (!computeCosts(cwp) && !isCancelled()) {
-          errorMessage = costParser.getErrorMessage();
-          // Cancel all workers
-          for (CostParserWorker element : costWorker) {
-            element.cancel(errorMessage);
+        try {
+          if (!computeCosts(cwp) && !isCancelled()) {
+            cancelAll(costParser.getErrorMessage());
           }
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+          cancelAll(e.toString());
+        } finally {
+          workQueue.workDone();
         }
       }
     } catch (InterruptedException e) {
@@ -39,6 +39,8 @@ public class CostParserWorkerParameters {
   private int scenario;
   private byte odClass;
   private VirtualNetwork virtualnetwork;
+  private VolumeDelayBatch volumeDelayBatch = null;
+  private VolumeDependentLinks volumeDependentLinks = null;
   private boolean withFirstDerivative;
   
   /**
@@ -162,6 +164,26 @@ public class CostParserWorkerParameters {
     return scenario;
   }
   
+  /**
+   * Returns the batch used to recompute the costs of this group, or null if the costs must be
+   * computed by the parser for all the virtual links.
+   *
+   * @return The batch of costs.
+   */
+  public VolumeDelayBatch getVolumeDelayBatch() {
+    return volumeDelayBatch;
+  }
+
+  /**
+   * Returns the volume dependent virtual links of this group, or null if the costs must be computed
+   * for all the virtual links.
+   *
+   * @return The volume dependent virtual links.
+   */
+  public VolumeDependentLinks getVolumeDependentLinks() {
+    return volumeDependentLinks;
+  }
+
   /**
    * Returns the virtual network structure.
    *
@@ -171,6 +193,26 @@ public class CostParserWorkerParameters {
     return virtualnetwork;
   }
 
+  /**
+   * Sets the batch used to recompute the costs of this group. The batch is filled by the worker
+   * the first time it is used.
+   *
+   * @param volumeDelayBatch The batch of costs.
+   */
+  public void setVolumeDelayBatch(VolumeDelayBatch volumeDelayBatch) {
+    this.volumeDelayBatch = volumeDelayBatch;
+  }
+
+  /**
+   * Sets the volume dependent virtual links of this group. The set is filled by the worker the
+   * first time it is used, and only these virtual links are recomputed afterwards.
+   *
+   * @param volumeDependentLinks The volume dependent virtual links.
+   */
+  public void setVolumeDependentLinks(VolumeDependentLinks volumeDependentLinks) {
+    this.volumeDependentLinks = volumeDependentLinks;
+  }
+
   /**
    * Returns true if the first derivative of the objective function must be computed. Only for
    * Frank-Wolfe assignments.
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.costs;
+
+import edu.uclouvain.core.nodus.compute.real.RealLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Link level data extracted once per Frank-Wolfe iteration, used to evaluate the first derivative
+ * of the objective function for any value of lambda without the cost parser. It can only be built
+ * if the cost of each virtual link is either independent of the volume or has a standard BPR or
+ * CONICAL form (see {@link VolumeDelayBatch}).
+ *
+ * <p>For a given lambda, the projected volumes of the moving virtual links are converted in
+ * passenger car units exactly as {@link VirtualLink#projectedVolumesToVehicles(byte, int, double,
+ * double, double)} does, but in primitive arrays indexed by real link direction. The costs of the
+ * congested links are then evaluated in tight loops. Only the virtual links with a non-zero
+ * projected volume or a non-zero descent direction are kept.
+ *
+ * @author Bart Jourquin
+ */
+public class LineSearchData {
+
+  /** Columns of the virtual links that share the same volume-delay function. */
+  private static class Columns {
+    double[] alpha = new double[16];
+    double[] beta = new double[16];
+    double[] capacity = new double[16];
+    double[] factor = new double[16];
+    int nbLinks = 0;
+    double[] offset = new double[16];
+    int[] slot = new int[16];
+    double[] weight = new double[16];
+
+    void add(
+        int slot,
+        double weight,
+        double offset,
+        double factor,
+        double capacity,
+        double alpha,
+        double beta) {
+      if (nbLinks == this.slot.length) {
+        int newLength = 2 * nbLinks;
+        this.alpha = Arrays.copyOf(this.alpha, newLength);
+        this.beta = Arrays.copyOf(this.beta, newLength);
+        this.capacity = Arrays.copyOf(this.capacity, newLength);
+        this.factor = Arrays.copyOf(this.factor, newLength);
+        this.offset = Arrays.copyOf(this.offset, newLength);
+        this.slot = Arrays.copyOf(this.slot, newLength);
+        this.weight = Arrays.copyOf(this.weight, newLength);
+      }
+      this.slot[nbLinks] = slot;
+      this.weight[nbLinks] = weight;
+      this.offset[nbLinks] = offset;
+      this.factor[nbLinks] = factor;
+      this.capacity[nbLinks] = capacity;
+      this.alpha[nbLinks] = alpha;
+      this.beta[nbLinks] = beta;
+      nbLinks++;
+    }
+  }
+
+  private Columns bpr = new Columns();
+
+  private Columns conical = new Columns();
+
+  /** Contribution of the virtual links with a volume independent cost to the first derivative. */
+  private double constantFirstDerivative = 0.0;
+
+  /** Auxiliary volume of each volume term. */
+  private double[] auxiliaryVolume = new double[16];
+
+  /** Average load of the vehicles of each volume term. */
+  private double[] averageLoad = new double[16];
+
+  /** Current volume of each volume term. */
+  private double[] currentVolume = new double[16];
+
+  private int nbVolumes = 0;
+
+  /** Passenger car units of the vehicles of each volume term. */
+  private double[] passengerCarUnits = new double[16];
+
+  /** Projected passenger car units, per real link direction. */
+  private int[] projectedPassengerCarUnits;
+
+  /** Index of the first slot of each real link (two slots per real link, one per direction). */
+  private HashMap<RealLink, Integer> realLinkSlots = new HashMap<>();
+
+  /** Real link direction the passenger car units of each volume term are added to. */
+  private int[] volumeSlot = new int[16];
+
+  /**
+   * Adds a virtual link which cost has the form offset + factor * BPR(VOLUME, capacity, alpha,
+   * beta).
+   *
+   * @param vl The virtual link.
+   * @param rl The real link the volume is read from.
+   * @param weight The descent direction (auxiliary volume - current volume) on the virtual link.
+   * @param offset The volume independent part of the cost.
+   * @param factor The factor applied to the BPR function.
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   * @param beta The beta parameter.
+   */
+  void addBpr(
+      VirtualLink vl,
+      RealLink rl,
+      double weight,
+      double offset,
+      double factor,
+      double capacity,
+      double alpha,
+      double beta) {
+    if (weight != 0.0) {
+      bpr.add(getSlot(vl, rl), weight, offset, factor, capacity, alpha, beta);
+    }
+  }
+
+  /**
+   * Adds a virtual link which cost has the form offset + factor * CONICAL(VOLUME, capacity,
+   * alpha).
+   *
+   * @param vl The virtual link.
+   * @param rl The real link the volume is read from.
+   * @param weight The descent direction (auxiliary volume - current volume) on the virtual link.
+   * @param offset The volume independent part of the cost.
+   * @param factor The factor applied to the CONICAL function.
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   */
+  void addConical(
+      VirtualLink vl,
+      RealLink rl,
+      double weight,
+      double offset,
+      double factor,
+      double capacity,
+      double alpha) {
+    if (weight != 0.0) {
+      conical.add(getSlot(vl, rl), weight, offset, factor, capacity, alpha, 0.0);
+    }
+  }
+
+  /**
+   * Adds a virtual link which cost doesn't depend on the volume.
+   *
+   * @param weight The descent direction (auxiliary volume - current volume) on the virtual link.
+   * @param cost The cost of the virtual link.
+   */
+  void addConstant(double weight, double cost) {
+    constantFirstDerivative += weight * cost;
+  }
+
+  /**
+   * Adds the volume of a group on a moving virtual link, which is converted in passenger car units
+   * on its real link.
+   *
+   * @param vl The moving virtual link.
+   * @param rl The real link of the virtual link.
+   * @param currentVolume The current volume of the group on the virtual link.
+   * @param auxiliaryVolume The auxiliary volume of the group on the virtual link.
+   * @param averageLoad The average load of the vehicles used by the group on this virtual link.
+   * @param passengerCarUnits The passenger car units of these vehicles.
+   */
+  public void addVolume(
+      VirtualLink vl,
+      RealLink rl,
+      double currentVolume,
+      double auxiliaryVolume,
+      double averageLoad,
+      double passengerCarUnits) {
+    if (currentVolume == 0.0 && auxiliaryVolume == 0.0) {
+      return;
+    }
+
+    if (nbVolumes == volumeSlot.length) {
+      int newLength = 2 * nbVolumes;
+      this.auxiliaryVolume = Arrays.copyOf(this.auxiliaryVolume, newLength);
+      this.averageLoad = Arrays.copyOf(this.averageLoad, newLength);
+      this.currentVolume = Arrays.copyOf(this.currentVolume, newLength);
+      this.passengerCarUnits = Arrays.copyOf(this.passengerCarUnits, newLength);
+      volumeSlot = Arrays.copyOf(volumeSlot, newLength);
+    }
+    volumeSlot[nbVolumes] = getSlot(vl, rl);
+    this.currentVolume[nbVolumes] = currentVolume;
+    this.auxiliaryVolume[nbVolumes] = auxiliaryVolume;
+    this.averageLoad[nbVolumes] = averageLoad;
+    this.passengerCarUnits[nbVolumes] = passengerCarUnits;
+    nbVolumes++;
+  }
+
+  /**
+   * Returns the first derivative of the objective function for the projected volumes
+   * (1 - lambda) * current volume + lambda * auxiliary volume.
+   *
+   * @param lambda The trial step, in [0, 1].
+   * @return The first derivative, or NaN if the cost of a virtual link is not valid (negative, NaN
+   *     or infinite) for these volumes.
+   */
+  public double getFirstDerivative(double lambda) {
+    // Passenger car units for the projected volumes
+    if (projectedPassengerCarUnits == null) {
+      projectedPassengerCarUnits = new int[2 * realLinkSlots.size()];
+    }
+    int[] pcu = projectedPassengerCarUnits;
+    Arrays.fill(pcu, 0);
+    for (int i = 0; i < nbVolumes; i++) {
+      double projectedVolume = (1.0 - lambda) * currentVolume[i] + lambda * auxiliaryVolume[i];
+      int nbVehicles = (int) Math.ceil(projectedVolume / averageLoad[i]);
+      pcu[volumeSlot[i]] += (int) Math.ceil(nbVehicles * passengerCarUnits[i]);
+    }
+
+    double firstDerivative = constantFirstDerivative;
+
+    int[] slot = bpr.slot;
+    double[] weight = bpr.weight;
+    double[] offset = bpr.offset;
+    double[] factor = bpr.factor;
+    double[] capacity = bpr.capacity;
+    double[] alpha = bpr.alpha;
+    double[] beta = bpr.beta;
+    for (int i = 0; i < bpr.nbLinks; i++) {
+      double cost =
+          offset[i] + factor[i] * CostParser.bpr(pcu[slot[i]], capacity[i], alpha[i], beta[i]);
+      if (!(cost >= 0) || Double.isInfinite(cost)) {
+        return Double.NaN;
+      }
+      firstDerivative += weight[i] * cost;
+    }
+
+    slot = conical.slot;
+    weight = conical.weight;
+    offset = conical.offset;
+    factor = conical.factor;
+    capacity = conical.capacity;
+    alpha = conical.alpha;
+    for (int i = 0; i < conical.nbLinks; i++) {
+      double cost = offset[i] + factor[i] * CostParser.conical(pcu[slot[i]], capacity[i], alpha[i]);
+      if (!(cost >= 0) || Double.isInfinite(cost)) {
+        return Double.NaN;
+      }
+      firstDerivative += weight[i] * cost;
+    }
+
+    return firstDerivative;
+  }
+
+  /** Returns the slot of the direction of a real link a virtual link is moving along. */
+  private int getSlot(VirtualLink vl, RealLink rl) {
+    Integer slot = realLinkSlots.get(rl);
+    if (slot == null) {
+      slot = 2 * realLinkSlots.size();
+      realLinkSlots.put(rl, slot);
+      projectedPassengerCarUnits = null;
+    }
+    if (vl.getBeginVirtualNode().getRealNodeId(false) == rl.getOriginNodeId()) {
+      return slot;
+    }
+    return slot + 1;
+  }
+}
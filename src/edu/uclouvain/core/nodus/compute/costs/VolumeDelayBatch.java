@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.costs;
+
+import edu.uclouvain.core.nodus.compute.real.RealLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Costs of the virtual links of a group and OD class, organized to be recomputed many times for
+ * different volumes, as during the line search of the Frank-Wolfe assignments. The virtual links
+ * which cost function has a standard BPR or CONICAL form (see {@link VolumeDelayForm}) are stored
+ * in primitive columns (offset, factor, capacity, alpha, beta), that are evaluated in tight loops.
+ * The cost of the virtual links which cost doesn't depend on the volume is computed once, and the
+ * cost of the other virtual links is computed by the cost parser.
+ *
+ * <p>A batch is filled by the cost parser worker the first time the costs are computed for its
+ * group, and reused afterwards.
+ *
+ * @author Bart Jourquin
+ */
+public class VolumeDelayBatch {
+
+  /** Columns of the virtual links that share the same volume-delay function. */
+  private static class Columns {
+    double[] alpha = new double[16];
+    double[] beta = new double[16];
+    double[] capacity = new double[16];
+    double[] cost;
+    double[] factor = new double[16];
+    int nbLinks = 0;
+    double[] offset = new double[16];
+    RealLink[] realLinks = new RealLink[16];
+    VirtualLink[] virtualLinks = new VirtualLink[16];
+    double[] volume;
+
+    void add(
+        VirtualLink vl,
+        RealLink rl,
+        double offset,
+        double factor,
+        double capacity,
+        double alpha,
+        double beta) {
+      if (nbLinks == virtualLinks.length) {
+        int newLength = 2 * nbLinks;
+        this.alpha = Arrays.copyOf(this.alpha, newLength);
+        this.beta = Arrays.copyOf(this.beta, newLength);
+        this.capacity = Arrays.copyOf(this.capacity, newLength);
+        this.factor = Arrays.copyOf(this.factor, newLength);
+        this.offset = Arrays.copyOf(this.offset, newLength);
+        realLinks = Arrays.copyOf(realLinks, newLength);
+        virtualLinks = Arrays.copyOf(virtualLinks, newLength);
+      }
+      virtualLinks[nbLinks] = vl;
+      realLinks[nbLinks] = rl;
+      this.offset[nbLinks] = offset;
+      this.factor[nbLinks] = factor;
+      this.capacity[nbLinks] = capacity;
+      this.alpha[nbLinks] = alpha;
+      this.beta[nbLinks] = beta;
+      nbLinks++;
+    }
+
+    void build() {
+      cost = new double[nbLinks];
+      volume = new double[nbLinks];
+    }
+
+    /** Loads the current volume (PCU's) of the real links in the volume column. */
+    void loadVolumes() {
+      for (int i = 0; i < nbLinks; i++) {
+        volume[i] = realLinks[i].getCurrentPassengerCarUnits(virtualLinks[i]);
+      }
+    }
+  }
+
+  private boolean built = false;
+
+  private Columns bpr = new Columns();
+
+  private Columns conical = new Columns();
+
+  /** Virtual links which cost is computed by the cost parser. */
+  private ArrayList<VirtualLink> otherLinks = new ArrayList<>();
+
+  private int nbStaticLinks = 0;
+
+  /** Cost of the virtual links which cost doesn't depend on the volume. */
+  private double[] staticCosts = new double[16];
+
+  /** Virtual links which cost doesn't depend on the volume. */
+  private VirtualLink[] staticLinks = new VirtualLink[16];
+
+  /**
+   * Adds a virtual link which cost has the form offset + factor * BPR(VOLUME, capacity, alpha,
+   * beta).
+   *
+   * @param vl The virtual link.
+   * @param rl The real link the volume is read from.
+   * @param offset The volume independent part of the cost.
+   * @param factor The factor applied to the BPR function.
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   * @param beta The beta parameter.
+   */
+  void addBpr(
+      VirtualLink vl,
+      RealLink rl,
+      double offset,
+      double factor,
+      double capacity,
+      double alpha,
+      double beta) {
+    bpr.add(vl, rl, offset, factor, capacity, alpha, beta);
+  }
+
+  /**
+   * Adds a virtual link which cost has the form offset + factor * CONICAL(VOLUME, capacity,
+   * alpha).
+   *
+   * @param vl The virtual link.
+   * @param rl The real link the volume is read from.
+   * @param offset The volume independent part of the cost.
+   * @param factor The factor applied to the CONICAL function.
+   * @param capacity The capacity.
+   * @param alpha The alpha parameter.
+   */
+  void addConical(
+      VirtualLink vl, RealLink rl, double offset, double factor, double capacity, double alpha) {
+    conical.add(vl, rl, offset, factor, capacity, alpha, 0.0);
+  }
+
+  /**
+   * Adds a virtual link which cost must be computed by the cost parser.
+   *
+   * @param vl The virtual link.
+   */
+  public void addOtherLink(VirtualLink vl) {
+    otherLinks.add(vl);
+  }
+
+  /**
+   * Adds a virtual link which cost doesn't depend on the volume.
+   *
+   * @param vl The virtual link.
+   * @param cost The cost of the virtual link.
+   */
+  void addStaticLink(VirtualLink vl, double cost) {
+    if (nbStaticLinks == staticLinks.length) {
+      staticCosts = Arrays.copyOf(staticCosts, 2 * nbStaticLinks);
+      staticLinks = Arrays.copyOf(staticLinks, 2 * nbStaticLinks);
+    }
+    staticLinks[nbStaticLinks] = vl;
+    staticCosts[nbStaticLinks] = cost;
+    nbStaticLinks++;
+  }
+
+  /** Marks the batch as complete. No virtual links can be added anymore. */
+  public void build() {
+    bpr.build();
+    conical.build();
+    otherLinks.trimToSize();
+    staticCosts = Arrays.copyOf(staticCosts, nbStaticLinks);
+    staticLinks = Arrays.copyOf(staticLinks, nbStaticLinks);
+    built = true;
+  }
+
+  /**
+   * Computes the costs of the virtual links with a standard volume-delay function for the current
+   * volumes and stores them in the virtual links.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @return The first virtual link which cost is not valid (negative, NaN or infinite), or null if
+   *     all the costs are valid.
+   */
+  public VirtualLink computeCosts(byte groupIndex) {
+    bpr.loadVolumes();
+    double[] cost = bpr.cost;
+    double[] volume = bpr.volume;
+    double[] offset = bpr.offset;
+    double[] factor = bpr.factor;
+    double[] capacity = bpr.capacity;
+    double[] alpha = bpr.alpha;
+    double[] beta = bpr.beta;
+    for (int i = 0; i < bpr.nbLinks; i++) {
+      cost[i] = offset[i] + factor[i] * CostParser.bpr(volume[i], capacity[i], alpha[i], beta[i]);
+    }
+
+    conical.loadVolumes();
+    cost = conical.cost;
+    volume = conical.volume;
+    offset = conical.offset;
+    factor = conical.factor;
+    capacity = conical.capacity;
+    alpha = conical.alpha;
+    for (int i = 0; i < conical.nbLinks; i++) {
+      cost[i] = offset[i] + factor[i] * CostParser.conical(volume[i], capacity[i], alpha[i]);
+    }
+
+    VirtualLink invalid = storeCosts(bpr, groupIndex);
+    if (invalid == null) {
+      invalid = storeCosts(conical, groupIndex);
+    }
+    if (invalid == null) {
+      for (int i = 0; i < nbStaticLinks; i++) {
+        staticLinks[i].setCost(groupIndex, staticCosts[i]);
+      }
+    }
+    return invalid;
+  }
+
+  /**
+   * Adds the virtual links of this batch to the data used by a Frank-Wolfe line search. The batch
+   * must not contain virtual links which cost must be computed by the cost parser.
+   *
+   * @param data The line search data to fill.
+   * @param groupIndex The index of the group of commodities.
+   */
+  public void fillLineSearchData(LineSearchData data, byte groupIndex) {
+    for (int i = 0; i < bpr.nbLinks; i++) {
+      VirtualLink vl = bpr.virtualLinks[i];
+      data.addBpr(
+          vl,
+          bpr.realLinks[i],
+          vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex),
+          bpr.offset[i],
+          bpr.factor[i],
+          bpr.capacity[i],
+          bpr.alpha[i],
+          bpr.beta[i]);
+    }
+    for (int i = 0; i < conical.nbLinks; i++) {
+      VirtualLink vl = conical.virtualLinks[i];
+      data.addConical(
+          vl,
+          conical.realLinks[i],
+          vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex),
+          conical.offset[i],
+          conical.factor[i],
+          conical.capacity[i],
+          conical.alpha[i]);
+    }
+    for (int i = 0; i < nbStaticLinks; i++) {
+      VirtualLink vl = staticLinks[i];
+      data.addConstant(
+          vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex), staticCosts[i]);
+    }
+  }
+
+  /**
+   * Stores the derivatives of the costs of the moving virtual links of this batch with respect to
+   * the passenger car units of their own real link, for the current volumes. The derivatives of
+   * the other virtual links are left unchanged.
+   *
+   * @param derivatives The derivatives, indexed by virtual link ID.
+   */
+  public void fillCostDerivatives(double[] derivatives) {
+    for (int i = 0; i < bpr.nbLinks; i++) {
+      VirtualLink vl = bpr.virtualLinks[i];
+      RealLink rl = bpr.realLinks[i];
+      if (rl == vl.getRealLink()) {
+        derivatives[vl.getId()] =
+            bpr.factor[i]
+                * CostParser.bprDerivative(
+                    rl.getCurrentPassengerCarUnits(vl), bpr.capacity[i], bpr.alpha[i], bpr.beta[i]);
+      }
+    }
+    for (int i = 0; i < conical.nbLinks; i++) {
+      VirtualLink vl = conical.virtualLinks[i];
+      RealLink rl = conical.realLinks[i];
+      if (rl == vl.getRealLink()) {
+        derivatives[vl.getId()] =
+            conical.factor[i]
+                * CostParser.conicalDerivative(
+                    rl.getCurrentPassengerCarUnits(vl), conical.capacity[i], conical.alpha[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds the derivatives of the costs of the virtual links of this batch, for the current volumes,
+   * to the jacobian used by the conjugate Frank-Wolfe assignments. The batch must not contain
+   * virtual links which cost must be computed by the cost parser.
+   *
+   * @param jacobian The jacobian to fill.
+   * @param groupIndex The index of the group of commodities.
+   */
+  public void fillCostJacobian(CostJacobian jacobian, byte groupIndex) {
+    for (int i = 0; i < bpr.nbLinks; i++) {
+      VirtualLink vl = bpr.virtualLinks[i];
+      RealLink rl = bpr.realLinks[i];
+      double derivative =
+          CostParser.bprDerivative(
+              rl.getCurrentPassengerCarUnits(vl), bpr.capacity[i], bpr.alpha[i], bpr.beta[i]);
+      jacobian.addCostDerivative(vl, rl, groupIndex, bpr.factor[i] * derivative);
+    }
+    for (int i = 0; i < conical.nbLinks; i++) {
+      VirtualLink vl = conical.virtualLinks[i];
+      RealLink rl = conical.realLinks[i];
+      double derivative =
+          CostParser.conicalDerivative(
+              rl.getCurrentPassengerCarUnits(vl), conical.capacity[i], conical.alpha[i]);
+      jacobian.addCostDerivative(vl, rl, groupIndex, conical.factor[i] * derivative);
+    }
+  }
+
+  /**
+   * Returns the first derivative of the objective function on the virtual links with a standard
+   * volume-delay function or a volume independent cost, for their current costs.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @return The contribution of these virtual links to the first derivative.
+   */
+  public double getFirstDerivative(byte groupIndex) {
+    double firstDerivative =
+        getFirstDerivative(bpr, groupIndex) + getFirstDerivative(conical, groupIndex);
+    for (int i = 0; i < nbStaticLinks; i++) {
+      VirtualLink vl = staticLinks[i];
+      firstDerivative +=
+          (vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex)) * staticCosts[i];
+    }
+    return firstDerivative;
+  }
+
+  private double getFirstDerivative(Columns columns, byte groupIndex) {
+    double firstDerivative = 0.0;
+    for (int i = 0; i < columns.nbLinks; i++) {
+      VirtualLink vl = columns.virtualLinks[i];
+      firstDerivative +=
+          (vl.getAuxiliaryVolume(groupIndex) - vl.getCurrentVolume(groupIndex)) * columns.cost[i];
+    }
+    return firstDerivative;
+  }
+
+  /**
+   * Returns the number of virtual links which cost is computed in the tight loops.
+   *
+   * @return The number of virtual links with a standard volume-delay function.
+   */
+  public int getNbStandardLinks() {
+    return bpr.nbLinks + conical.nbLinks;
+  }
+
+  /**
+   * Returns the virtual links which cost must be computed by the cost parser.
+   *
+   * @return The list of virtual links.
+   */
+  public ArrayList<VirtualLink> getOtherLinks() {
+    return otherLinks;
+  }
+
+  /**
+   * Tests if the batch contains virtual links which cost depends on the volume but must be computed
+   * by the cost parser.
+   *
+   * @return True if some costs can only be computed by the cost parser.
+   */
+  public boolean hasOtherLinks() {
+    return !otherLinks.isEmpty();
+  }
+
+  /**
+   * Tests if the batch was completely filled.
+   *
+   * @return True if the batch can be used.
+   */
+  public boolean isBuilt() {
+    return built;
+  }
+
+  private VirtualLink storeCosts(Columns columns, byte groupIndex) {
+    for (int i = 0; i < columns.nbLinks; i++) {
+      double cost = columns.cost[i];
+      if (!(cost >= 0) || Double.isInfinite(cost)) {
+        return columns.virtualLinks[i];
+      }
+      columns.virtualLinks[i].setCost(groupIndex, cost);
+    }
+    return null;
+  }
+}
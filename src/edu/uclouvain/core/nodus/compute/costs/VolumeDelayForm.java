@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.costs;
+
+import edu.uclouvain.core.nodus.NodusC;
+import java.lang.reflect.Field;
+import java.util.List;
+import parsii.eval.BinaryOperation;
+import parsii.eval.Constant;
+import parsii.eval.Expression;
+import parsii.eval.Function;
+import parsii.eval.FunctionCall;
+import parsii.eval.VariableReference;
+
+/**
+ * Standard form of a moving cost function that only depends on the volume through a BPR or
+ * CONICAL volume-delay function: <br>
+ * cost = offset + factor * VDF(VOLUME, capacity, alpha[, beta]) <br>
+ * where offset, factor, capacity, alpha and beta do not depend on the volume. Once these terms are
+ * evaluated for a virtual link, its cost can be computed for any volume without the parser.
+ *
+ * @author Bart Jourquin
+ */
+class VolumeDelayForm {
+
+  /** Parsii doesn't give access to the function of a function call. */
+  private static Field functionField;
+
+  static {
+    try {
+      functionField = FunctionCall.class.getDeclaredField("function");
+      functionField.setAccessible(true);
+    } catch (NoSuchFieldException | RuntimeException e) {
+      // No standard forms will be recognized
+      functionField = null;
+    }
+  }
+
+  /**
+   * Returns the standard form of an expression, or null if it doesn't fit the standard form.
+   *
+   * @param expression A compiled moving cost function.
+   * @param bpr The BPR function, as registered in the parser.
+   * @param conical The CONICAL function, as registered in the parser.
+   * @return The standard form, or null.
+   */
+  static VolumeDelayForm analyze(Expression expression, Function bpr, Function conical) {
+    if (functionField == null) {
+      return null;
+    }
+
+    if (expression instanceof FunctionCall) {
+      Function function = getFunction((FunctionCall) expression);
+      List<Expression> parameters = ((FunctionCall) expression).getParameters();
+      if (function != bpr && function != conical) {
+        return null;
+      }
+
+      // The volume must be passed as is, and the other parameters must not depend on it
+      if (!(parameters.get(0) instanceof VariableReference)
+          || !NodusC.VARNAME_VOLUME.equals(parameters.get(0).toString())) {
+        return null;
+      }
+      for (int i = 1; i < parameters.size(); i++) {
+        if (dependsOnVolume(parameters.get(i))) {
+          return null;
+        }
+      }
+
+      VolumeDelayForm form = new VolumeDelayForm();
+      form.conical = function == conical;
+      form.capacity = parameters.get(1);
+      form.alpha = parameters.get(2);
+      if (!form.conical) {
+        form.beta = parameters.get(3);
+      }
+      form.offset = new Constant(0.0);
+      form.factor = new Constant(1.0);
+      return form;
+    }
+
+    if (!(expression instanceof BinaryOperation)) {
+      return null;
+    }
+
+    BinaryOperation operation = (BinaryOperation) expression;
+    Expression left = operation.getLeft();
+    Expression right = operation.getRight();
+
+    // Find the side of the operation that contains the volume-delay function
+    VolumeDelayForm form = null;
+    Expression other = null;
+    boolean formAtLeft = true;
+    if (!dependsOnVolume(right)) {
+      form = analyze(left, bpr, conical);
+      other = right;
+    } else if (!dependsOnVolume(left)) {
+      form = analyze(right, bpr, conical);
+      other = left;
+      formAtLeft = false;
+    }
+    if (form == null) {
+      return null;
+    }
+
+    switch (operation.getOp()) {
+      case ADD:
+        form.offset = new BinaryOperation(BinaryOperation.Op.ADD, form.offset, other);
+        return form;
+      case SUBTRACT:
+        if (!formAtLeft) {
+          return null;
+        }
+        form.offset = new BinaryOperation(BinaryOperation.Op.SUBTRACT, form.offset, other);
+        return form;
+      case MULTIPLY:
+        form.offset = new BinaryOperation(BinaryOperation.Op.MULTIPLY, form.offset, other);
+        form.factor = new BinaryOperation(BinaryOperation.Op.MULTIPLY, form.factor, other);
+        return form;
+      case DIVIDE:
+        if (!formAtLeft) {
+          return null;
+        }
+        form.offset = new BinaryOperation(BinaryOperation.Op.DIVIDE, form.offset, other);
+        form.factor = new BinaryOperation(BinaryOperation.Op.DIVIDE, form.factor, other);
+        return form;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Tests if an expression refers to the volume. Unknown kinds of expressions are supposed to do.
+   *
+   * @param expression A parsii expression.
+   * @return True if the expression may depend on the volume.
+   */
+  static boolean dependsOnVolume(Expression expression) {
+    if (expression instanceof Constant) {
+      return false;
+    }
+    if (expression instanceof VariableReference) {
+      return NodusC.VARNAME_VOLUME.equals(expression.toString());
+    }
+    if (expression instanceof BinaryOperation) {
+      BinaryOperation operation = (BinaryOperation) expression;
+      return dependsOnVolume(operation.getLeft()) || dependsOnVolume(operation.getRight());
+    }
+    if (expression instanceof FunctionCall) {
+      for (Expression parameter : ((FunctionCall) expression).getParameters()) {
+        if (dependsOnVolume(parameter)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private static Function getFunction(FunctionCall functionCall) {
+    try {
+      return (Function) functionField.get(functionCall);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /** Alpha parameter of the volume-delay function. */
+  Expression alpha;
+
+  /** Beta parameter of the BPR function (null for the CONICAL function). */
+  Expression beta;
+
+  /** Capacity passed to the volume-delay function. */
+  Expression capacity;
+
+  /** True for a CONICAL function, false for a BPR function. */
+  boolean conical;
+
+  /** Factor applied to the volume-delay function. */
+  Expression factor;
+
+  /** Volume independent part of the cost. */
+  Expression offset;
+}
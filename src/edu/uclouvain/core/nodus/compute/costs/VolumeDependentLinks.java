@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.costs;
+
+import edu.uclouvain.core.nodus.compute.real.RealLink;
+import edu.uclouvain.core.nodus.compute.virtual.VirtualLink;
+import java.util.Arrays;
+
+/**
+ * Virtual links of a group which cost or duration function refers to the volume. It is filled by
+ * the cost parser worker the first time the costs of the group are computed. As the costs of all
+ * the other virtual links are static, the next computations only need to recompute the costs of
+ * these links, and only if the volume of their real link changed since their last computation.
+ *
+ * @author Bart Jourquin
+ */
+public class VolumeDependentLinks {
+
+  private boolean built = false;
+
+  /** Volume (PCU's) used for the last computation of the costs of each virtual link. */
+  private double[] lastVolume = new double[16];
+
+  private int nbLinks = 0;
+
+  private RealLink[] realLinks = new RealLink[16];
+
+  private VirtualLink[] virtualLinks = new VirtualLink[16];
+
+  /**
+   * Adds a volume dependent virtual link.
+   *
+   * @param vl The virtual link.
+   * @param rl The real link the volume is read from.
+   * @param volume The volume used to compute the current costs of the virtual link.
+   */
+  void add(VirtualLink vl, RealLink rl, double volume) {
+    if (nbLinks == virtualLinks.length) {
+      int newLength = 2 * nbLinks;
+      lastVolume = Arrays.copyOf(lastVolume, newLength);
+      realLinks = Arrays.copyOf(realLinks, newLength);
+      virtualLinks = Arrays.copyOf(virtualLinks, newLength);
+    }
+    virtualLinks[nbLinks] = vl;
+    realLinks[nbLinks] = rl;
+    lastVolume[nbLinks] = volume;
+    nbLinks++;
+  }
+
+  /** Marks the set as complete. No virtual links can be added anymore. */
+  public void build() {
+    built = true;
+  }
+
+  /**
+   * Returns the number of volume dependent virtual links.
+   *
+   * @return The number of virtual links.
+   */
+  public int getNbLinks() {
+    return nbLinks;
+  }
+
+  /**
+   * Returns a volume dependent virtual link.
+   *
+   * @param index The index of the virtual link in the set.
+   * @return The virtual link.
+   */
+  public VirtualLink getVirtualLink(int index) {
+    return virtualLinks[index];
+  }
+
+  /**
+   * Forces the next computation of the costs of all the virtual links, as when their costs were
+   * computed elsewhere for other volumes.
+   */
+  public void invalidateVolumes() {
+    Arrays.fill(lastVolume, 0, nbLinks, Double.NaN);
+  }
+
+  /**
+   * Tests if the set was completely filled.
+   *
+   * @return True if the set can be used.
+   */
+  public boolean isBuilt() {
+    return built;
+  }
+
+  /**
+   * Tests if the volume of a virtual link changed since the last computation of its costs, and
+   * records its current volume.
+   *
+   * @param index The index of the virtual link in the set.
+   * @return True if the costs of the virtual link must be recomputed.
+   */
+  public boolean updateVolume(int index) {
+    double volume = realLinks[index].getCurrentPassengerCarUnits(virtualLinks[index]);
+    if (volume == lastVolume[index]) {
+      return false;
+    }
+    lastVolume[index] = volume;
+    return true;
+  }
+}
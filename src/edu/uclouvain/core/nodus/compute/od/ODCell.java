@@ -33,20 +33,12 @@ public class ODCell {
   /** Group number to which this demand is related. */
   private int group;
 
-  /** Intermediate origin and time this OD pair (for dynamic assignments. */
-  private int relocatedOriginNodeId;
-
-  private int relocatedStartingTime;
-
   /** Class to which this OD pair belongs to. */
   private byte odClass = 0;
 
   /** Origin node number. */
   private int originNodeId;
 
-  /** Index used when detailed paths are saved. */
-  private int pathIndex = -1;
-
   /** Quantity to be transported. */
   private double quantity;
 
@@ -65,7 +57,7 @@ public class ODCell {
    */
   public ODCell(int group, int originNodeId, int destinationNodeId, double quantity) {
     this.group = group;
-    this.originNodeId = relocatedOriginNodeId = originNodeId;
+    this.originNodeId = originNodeId;
     this.destinationNodeId = destinationNodeId;
     this.quantity = quantity;
   }
@@ -100,7 +92,7 @@ public class ODCell {
   public ODCell(
       int group, int originNodeId, int destinationNodeId, double quantity, int startingTime) {
     this(group, originNodeId, destinationNodeId, quantity);
-    this.startingTime = this.relocatedStartingTime = startingTime * 60;
+    this.startingTime = startingTime * 60;
   }
 
   /**
@@ -123,7 +115,7 @@ public class ODCell {
       int startingTime,
       byte odClass) {
     this(group, originNodeId, destinationNodeId, quantity);
-    this.startingTime = this.relocatedStartingTime = startingTime * 60;
+    this.startingTime = startingTime * 60;
     this.odClass = odClass;
   }
 
@@ -154,25 +146,6 @@ public class ODCell {
     return group;
   }
 
-  /**
-   * Returns the ID of the real node to which the demand is relocated to during a time dependent
-   * assignment.
-   *
-   * @return The ID of the real node to which the demand was reallocated to.
-   */
-  public int getRelocatedOriginNodeId() {
-    return relocatedOriginNodeId;
-  }
-
-  /**
-   * Returns the starting time for a relocated demand during a time dependent assignment.
-   *
-   * @return The starting time for the relocated demand, expressed in seconds after midnight.
-   */
-  public int getRelocatedStartingTime() {
-    return relocatedStartingTime;
-  }
-
   /**
    * Returns the OD class this demand belongs to.
    *
@@ -191,16 +164,6 @@ public class ODCell {
     return originNodeId;
   }
 
-  /**
-   * Returns the path index this OD cell as allocated to. Used in the dynamic time dependent
-   * assignment.
-   *
-   * @return The path index.
-   */
-  public int getPathIndex() {
-    return pathIndex;
-  }
-
   /**
    * Returns the quantity to be transported.
    *
@@ -220,35 +183,6 @@ public class ODCell {
     return startingTime;
   }
 
-  /**
-   * Sets the real origin node ID to which this demand must be reallocated to.
-   *
-   * @param relocatedOriginNodeId The ID of the relocated node
-   */
-  public void setRelocatedOriginNodeId(int relocatedOriginNodeId) {
-    this.relocatedOriginNodeId = relocatedOriginNodeId;
-  }
-
-  /**
-   * Sets the starting time of the relocated demand.
-   *
-   * @param relocatedStartingTime The starting time of the relocated demand, expressed in second
-   *     after midnight.
-   */
-  public void setRelocatedStartingTime(int relocatedStartingTime) {
-    this.relocatedStartingTime = relocatedStartingTime;
-  }
-
-  /**
-   * Sets the index of the path this OD cell is assigned to during a dynamic time dependent
-   * assignment.
-   *
-   * @param pathIndex The path index this OD cell is assigned to.
-   */
-  public void setPathIndex(int pathIndex) {
-    this.pathIndex = pathIndex;
-  }
-
   /** Returns a string representation of this OD cell. */
   @Override
   public String toString() {
@@ -157,6 +157,24 @@ public class RealLink extends RealNetworkObject {
     return length;
   }
 
+  /**
+   * Returns the ID of the real node at the origin of this real link.
+   *
+   * @return The ID of the real node at origin.
+   */
+  public int getOriginNodeId() {
+    return originNode;
+  }
+
+  /**
+   * Returns the IDs of the services that use this real link.
+   *
+   * @return The list of service IDs, or null if no service uses this link.
+   */
+  public LinkedList<Integer> getServices() {
+    return services;
+  }
+
   /**
    * Returns the nominal speed on this real link (km/h).
    *
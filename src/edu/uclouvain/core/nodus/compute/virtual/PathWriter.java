@@ -693,4 +693,50 @@ public class PathWriter {
       System.err.println(e.toString());
     }
   }
+
+  /**
+   * Multiplies the volume of the detailed paths saved during a given iteration by a weight. This is
+   * used by the equilibrium assignment algorithms that combine the paths of all the iterations at
+   * once, instead of balancing them at each iteration.
+   *
+   * @param iteration The iteration the paths were saved during.
+   * @param weight The weight of the iteration in the final solution.
+   */
+  public void weightPaths(int iteration, double weight) {
+    if (closed) {
+      return;
+    }
+
+    // Be sure header table is updated
+    if (hasBatchSupport) {
+      if (!executeHeaderBatch(true)) {
+        return;
+      }
+    }
+
+    try (Statement stmt = con.createStatement()) {
+
+      /*
+       * Example: UPDATE HeaderTable set QTY = ROUND(QTY*weight,3) where iteration = it
+       */
+      String sqlStmt =
+          "UPDATE "
+              + JDBCUtils.getQuotedCompliantIdentifier(pathHeaderTableName)
+              + " SET "
+              + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_QUANTITY)
+              + " = ROUND("
+              + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_QUANTITY)
+              + "*"
+              + weight
+              + ",3) WHERE "
+              + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_ITERATION)
+              + " = "
+              + iteration;
+      stmt.executeUpdate(sqlStmt);
+
+      commitIfNeeded();
+    } catch (Exception e) {
+      System.err.println(e.toString());
+    }
+  }
 }
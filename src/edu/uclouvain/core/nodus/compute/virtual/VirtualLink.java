@@ -21,13 +21,13 @@
 
 package edu.uclouvain.core.nodus.compute.virtual;
 
-import edu.uclouvain.core.nodus.compute.assign.modalsplit.Path;
 import edu.uclouvain.core.nodus.compute.real.RealLink;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
- * This class holds all the information relative to a virtual link.
+ * This class holds all the information relative to a virtual link. The costs, durations, volumes
+ * and vehicles of the virtual links of a virtual network are kept in a columnar store shared by
+ * all its virtual links (see {@link VirtualLinkStates}).
  *
  * @author Bart Jourquin
  */
@@ -53,20 +53,11 @@ public class VirtualLink {
   /** Virtual link that represent an unloading operation. */
   public static final byte TYPE_UNLOAD = 3;
 
-  /** Auxiliary volumes on the virtual link, per group. */
-  private double[] auxiliaryVolume;
-
-  /** Auxiliary vehicles on the virtual link, per group. */
-  private int[] auxiliaryVehicles;
-
   /** Begin and end virtual nodes for this virtual link. */
   private VirtualNode beginVirtualNode;
 
-  /** Current volumes on the virtual link, per group and time slice. */
-  private double[][] currentVolume;
-
-  /** Current vehicles on the virtual link, per group and time slice. */
-  private int[][] currentVehicles;
+  /** Slot of the generic cost function of this virtual link in the cost parsers, or -1. */
+  private int costFunctionSlot = -1;
 
   /** Begin and end virtual nodes for this virtual link. */
   private VirtualNode endVirtualNode;
@@ -80,21 +71,15 @@ public class VirtualLink {
 
   private int layerIndex;
 
-  /* Number of groups in the OD matrix */
-  private byte nbGroups;
-
-  /* Used for the fast multiflow assignment */
-  private LinkedList<PathODCell>[] pathODCellList = null;
-
-  /**
-   * Current volume (per group) computed during the precedent iteration. Needed to compute the
-   * lambda parameter used in the equilibrium assignment algorithms
-   */
-  private double[] previousVolume;
-
   /* Real link the virtual link is generated from */
   private RealLink realLink;
 
+  /** Offset of the entries of this virtual link in the state store. */
+  private int stateOffset;
+
+  /** Store of the costs, durations, volumes and vehicles. */
+  private VirtualLinkStates states;
+
   private boolean upStream;
 
   /* Virtual link number */
@@ -103,12 +88,6 @@ public class VirtualLink {
   /** Type of virtual link. Can be TypeMOVE, TypeTRANSIT, TypeLOAD, TypeUNLOAD or TypeTRANSHIP */
   private byte virtualLinkType;
 
-  /* This variable will contain the cost computed for this particular virtual link */
-  private double[] cost = null;
-
-  /* This variable will contain the transit time computed for this particular virtual link */
-  private double[] duration = null;
-
   /**
    * Constructor for a non moving virtual link, given a virtual link number, the location of the
    * real node it is generated from in the Shape layers (layer index and index in layer),the two
@@ -182,21 +161,7 @@ public class VirtualLink {
    * @param volume Quantity to add.
    */
   public void addAuxiliaryVolume(byte groupIndex, double volume) {
-    auxiliaryVolume[groupIndex] += volume;
-  }
-
-  /**
-   * Adds a pathODCell to this virtual link.
-   *
-   * @param groupIndex Index of the group of commodities.
-   * @param pathODCell The pathODCell to add.
-   */
-  public void addCell(byte groupIndex, PathODCell pathODCell) {
-    if (pathODCellList[groupIndex] == null) {
-      pathODCellList[groupIndex] = new LinkedList<>();
-    }
-
-    pathODCellList[groupIndex].add(pathODCell);
+    states.auxiliaryVolume[stateOffset + groupIndex] += volume;
   }
 
   /**
@@ -213,7 +178,7 @@ public class VirtualLink {
       qty = 0.0;
     }
 
-    currentVolume[groupIndex][timeSlice] += qty;
+    states.addVolume(stateOffset + groupIndex, timeSlice, qty);
   }
 
   /**
@@ -245,18 +210,58 @@ public class VirtualLink {
    *     volume.
    */
   public void combineVolumes(byte groupIndex, double lambda) {
-    previousVolume[groupIndex] = currentVolume[groupIndex][0];
+    int index = stateOffset + groupIndex;
+    double volume = states.getVolume(index, 0);
+    states.previousVolume[index] = volume;
 
-    currentVolume[groupIndex][0] =
-        (1 - lambda) * currentVolume[groupIndex][0] + lambda * auxiliaryVolume[groupIndex];
+    states.setVolume(index, 0, (1 - lambda) * volume + lambda * states.auxiliaryVolume[index]);
 
-    auxiliaryVolume[groupIndex] = 0;
+    states.auxiliaryVolume[index] = 0;
 
     if (virtualLinkType == TYPE_MOVE) {
-      auxiliaryVehicles[groupIndex] = 0;
+      states.auxiliaryVehicles[index] = 0;
     }
   }
 
+  /**
+   * Returns the target volume of one of the last two search directions computed by a conjugate
+   * Frank-Wolfe assignment.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @param age 0 for the last search direction, 1 for the one before.
+   * @return The target volume of the search direction, or 0 if there is no such direction.
+   */
+  public double getDirectionVolume(byte groupIndex, int age) {
+    double[] directionVolume = states.getDirectionVolumeIfAllocated();
+    if (directionVolume == null) {
+      return 0;
+    }
+    return directionVolume[age * states.nbLinks * states.nbGroups + stateOffset + groupIndex];
+  }
+
+  /**
+   * Replaces the auxiliary volume by a combination of the all-or-nothing volume and the targets of
+   * the last two search directions: b0 * auxiliary volume + b1 * last target + b2 * previous
+   * target. The result becomes the last target, and the last target becomes the previous one.
+   *
+   * @param groupIndex The index of the group of commodities.
+   * @param b0 The weight of the all-or-nothing volume.
+   * @param b1 The weight of the last search direction.
+   * @param b2 The weight of the search direction before the last one.
+   */
+  public void setDirectionVolume(byte groupIndex, double b0, double b1, double b2) {
+    double[] directionVolume = states.getDirectionVolume();
+    int last = stateOffset + groupIndex;
+    int previous = states.nbLinks * states.nbGroups + last;
+    double target =
+        b0 * states.auxiliaryVolume[last]
+            + b1 * directionVolume[last]
+            + b2 * directionVolume[previous];
+    directionVolume[previous] = directionVolume[last];
+    directionVolume[last] = target;
+    states.auxiliaryVolume[last] = target;
+  }
+
   /**
    * Returns the auxiliary volume on this virtual link for a given group.
    *
@@ -264,7 +269,7 @@ public class VirtualLink {
    * @return The auxiliary volume associated to this virtual link.
    */
   public double getAuxiliaryVolume(byte groupIndex) {
-    return auxiliaryVolume[groupIndex];
+    return states.auxiliaryVolume[stateOffset + groupIndex];
   }
 
   /**
@@ -283,7 +288,7 @@ public class VirtualLink {
    * @return The current volume for the group of commodities.
    */
   public double getCurrentVolume(byte groupIndex) {
-    return currentVolume[groupIndex][0];
+    return getCurrentVolume(groupIndex, 0);
   }
 
   /**
@@ -294,7 +299,7 @@ public class VirtualLink {
    * @return The current volume for the group of commodities and time slice.
    */
   public double getCurrentVolume(byte groupIndex, int timeSlice) {
-    return currentVolume[groupIndex][timeSlice];
+    return states.getVolume(stateOffset + groupIndex, timeSlice);
   }
 
   /**
@@ -332,7 +337,7 @@ public class VirtualLink {
         || virtualLinkType == TYPE_LOAD
         || virtualLinkType == TYPE_UNLOAD
         || virtualLinkType == TYPE_TRANSIT) {
-      return currentVehicles[groupIndex][timeSlice];
+      return states.getVehicles(stateOffset + groupIndex, timeSlice);
     } else {
       return 0;
     }
@@ -401,6 +406,16 @@ public class VirtualLink {
     return virtualLinkId;
   }
 
+  /**
+   * Returns the slot of the generic cost function of this virtual link, shared by all the cost
+   * parsers, or -1 if it was not resolved yet.
+   *
+   * @return The cost function slot.
+   */
+  public int getCostFunctionSlot() {
+    return costFunctionSlot;
+  }
+
   /**
    * Returns the volume computed during the previous iteration.
    *
@@ -408,7 +423,21 @@ public class VirtualLink {
    * @return The volume computed at the previous iteration.
    */
   public double getPreviousVolume(byte groupIndex) {
-    return previousVolume[groupIndex];
+    return states.previousVolume[stateOffset + groupIndex];
+  }
+
+  /**
+   * Returns the real link this virtual link is generated from. Returns null if this is not a
+   * moving virtual link.
+   *
+   * @return The real link, or null.
+   */
+  public RealLink getRealLink() {
+    if (virtualLinkType != TYPE_MOVE) {
+      return null;
+    }
+
+    return realLink;
   }
 
   /**
@@ -449,7 +478,7 @@ public class VirtualLink {
    * @return The cost associated to the group.
    */
   public double getCost(byte groupIndex) {
-    return cost[groupIndex];
+    return states.cost[stateOffset + groupIndex];
   }
 
   /**
@@ -472,16 +501,17 @@ public class VirtualLink {
    * @return The transit time associated to the group.
    */
   public double getDuration(byte groupIndex) {
-    return duration[groupIndex];
+    return states.duration[stateOffset + groupIndex];
   }
 
   /**
-   * Returns the set of costs (one per group of commodities) associated to this virtual link.
+   * Returns a copy of the set of costs (one per group of commodities) associated to this virtual
+   * link.
    *
    * @return An array with the costs for all the groups of commodities.
    */
   public double[] getCosts() {
-    return cost;
+    return Arrays.copyOfRange(states.cost, stateOffset, stateOffset + states.nbGroups);
   }
 
   /**
@@ -501,14 +531,33 @@ public class VirtualLink {
    * @return True if there is a volume for at least one group of commodities.
    */
   public boolean hasVolume(int timeSlice) {
-    for (int i = 0; i < nbGroups; i++) {
-      if (currentVolume[i][timeSlice] > 0) {
+    for (int i = 0; i < states.nbGroups; i++) {
+      if (states.getVolume(stateOffset + i, timeSlice) > 0) {
         return true;
       }
     }
     return false;
   }
 
+  /**
+   * Returns the first time slice, starting from a given one, during which the current volume on
+   * this virtual link is positive for at least one group. Only the time slices with a volume are
+   * visited.
+   *
+   * @param timeSlice The first time slice to consider.
+   * @return The time slice, or -1 if there is none.
+   */
+  public int getNextTimeSliceWithVolume(int timeSlice) {
+    int next = -1;
+    for (int i = 0; i < states.nbGroups; i++) {
+      int t = states.getNextTimeSlice(stateOffset + i, timeSlice);
+      if (t != -1 && (next == -1 || t < next)) {
+        next = t;
+      }
+    }
+    return next;
+  }
+
   /**
    * Returns true if the current volume is positive during the given time slice.
    *
@@ -532,11 +581,12 @@ public class VirtualLink {
   public void volumesToVehicles(
       byte groupIndex, int timeSlice, double averageLoad, double passengerCarUnits) {
 
-    int nbVehicles = (int) Math.ceil(currentVolume[groupIndex][timeSlice] / averageLoad);
-    currentVehicles[groupIndex][timeSlice] = nbVehicles;
+    int index = stateOffset + groupIndex;
+    int nbVehicles = (int) Math.ceil(states.getVolume(index, timeSlice) / averageLoad);
+    states.setVehicles(index, timeSlice, nbVehicles);
 
-    int nbAuxiliaryVehicles = (int) Math.ceil(auxiliaryVolume[groupIndex] / averageLoad);
-    auxiliaryVehicles[groupIndex] = nbAuxiliaryVehicles;
+    int nbAuxiliaryVehicles = (int) Math.ceil(states.auxiliaryVolume[index] / averageLoad);
+    states.auxiliaryVehicles[index] = nbAuxiliaryVehicles;
 
     if (virtualLinkType == TYPE_MOVE) {
       realLink.addPassengerCarUnits(this, (int) Math.ceil(nbVehicles * passengerCarUnits));
@@ -559,122 +609,56 @@ public class VirtualLink {
   }
 
   /**
-   * Sets the number of groups of commodities the assignment has to handle. This method also
-   * initializes all internal data arrays.
+   * Sets the number of groups of commodities the assignment has to handle. This method allocates a
+   * state store for this virtual link only. The virtual links of a virtual network share the store
+   * of the network instead (see {@link #setStates(VirtualLinkStates)}).
    *
    * @param nbGroups Number of groups the assignment has to handle.
    * @param nbTimeSlices Number of time slices the assignment will cover.
    */
-  @SuppressWarnings("unchecked")
   public void setNbGroups(int nbGroups, int nbTimeSlices) {
-    cost = new double[nbGroups];
-    duration = new double[nbGroups];
-    currentVolume = new double[nbGroups][nbTimeSlices];
-    auxiliaryVolume = new double[nbGroups];
-    previousVolume = new double[nbGroups];
-    // withFlow = false;
-    this.nbGroups = (byte) nbGroups;
-
-    for (int i = 0; i < nbGroups; i++) {
-      cost[i] = -1;
-      duration[i] = 0;
-
-      for (int j = 0; j < nbTimeSlices; j++) {
-        currentVolume[i][j] = 0;
-      }
-      auxiliaryVolume[i] = previousVolume[i] = 0;
-    }
-
-    if (virtualLinkType == TYPE_MOVE
-        || virtualLinkType == TYPE_LOAD
-        || virtualLinkType == TYPE_UNLOAD
-        || virtualLinkType == TYPE_TRANSIT) {
-
-      currentVehicles = new int[nbGroups][nbTimeSlices];
-      auxiliaryVehicles = new int[nbGroups];
-
-      for (int i = 0; i < nbGroups; i++) {
-        for (int j = 0; j < nbTimeSlices; j++) {
-          currentVehicles[i][j] = 0;
-        }
-        auxiliaryVehicles[i] = 0;
-      }
-    }
-
-    pathODCellList = new LinkedList[nbGroups];
+    states = new VirtualLinkStates(1, nbGroups, nbTimeSlices);
+    stateOffset = 0;
   }
 
   /**
-   * Set the transit time of this virtual link for a given group index.
+   * Attaches this virtual link to the state store of its virtual network, in which its entries
+   * are located by its ID.
    *
-   * @param groupIndex Index of the group of commodities.
-   * @param duration Transit time (seconds) to associate to this virtual link.
+   * @param states The state store of the virtual network.
    */
-  public void setDuration(byte groupIndex, double duration) {
-    this.duration[groupIndex] = duration;
+  void setStates(VirtualLinkStates states) {
+    this.states = states;
+    stateOffset = virtualLinkId * states.nbGroups;
   }
 
   /**
-   * Set the cost of this virtual link for a given group index.
+   * Sets the slot of the generic cost function of this virtual link.
    *
-   * @param groupIndex Index of the group of commodities.
-   * @param cost Weight (cost) to associate to this virtual link.
+   * @param costFunctionSlot The slot, as assigned by the cost parser.
    */
-  public void setCost(byte groupIndex, double cost) {
-    this.cost[groupIndex] = cost;
+  public void setCostFunctionSlot(int costFunctionSlot) {
+    this.costFunctionSlot = costFunctionSlot;
   }
 
   /**
-   * For each path that makes use of this virtual link, assigns a marketShare of the demand. This is
-   * called by the exact multi-flow assignment algorithm once the modal split function has been
-   * called.
+   * Set the transit time of this virtual link for a given group index.
    *
-   * @param groupIndex The index of the group of commodities.
-   * @param path The set of path computed by the one of the exact multi-flow assignment algorithm.
+   * @param groupIndex Index of the group of commodities.
+   * @param duration Transit time (seconds) to associate to this virtual link.
    */
-  public void spreadFlowOverPaths(byte groupIndex, Path[] path) {
-    if (pathODCellList[groupIndex] == null) {
-      return;
-    }
-
-    Iterator<PathODCell> it = pathODCellList[groupIndex].iterator();
-    while (it.hasNext()) {
-      PathODCell pathODCell = it.next();
-
-      if (path[pathODCell.alternativePath].isValid) {
-        addVolume(groupIndex, pathODCell.quantity * path[pathODCell.alternativePath].marketShare);
-      }
-    }
-
-    pathODCellList[groupIndex].clear();
+  public void setDuration(byte groupIndex, double duration) {
+    states.duration[stateOffset + groupIndex] = duration;
   }
 
   /**
-   * For each path that makes use of this virtual link, assigns a marketShare of the demand. This is
-   * called by the exact multi-flow assignment algorithm once the modal split function has been
-   * called.
+   * Set the cost of this virtual link for a given group index.
    *
-   * @param groupIndex The index of the group of commodities.
-   * @param path The set of path computed by the one of the fast multi-flow assignment algorithm.
+   * @param groupIndex Index of the group of commodities.
+   * @param cost Weight (cost) to associate to this virtual link.
    */
-  public void spreadVolumeOverPaths(byte groupIndex, Path[][] path) {
-    if (pathODCellList[groupIndex] == null) {
-      return;
-    }
-
-    Iterator<PathODCell> it = pathODCellList[groupIndex].iterator();
-
-    while (it.hasNext()) {
-      PathODCell pathODCell = it.next();
-      if (path[pathODCell.alternativePath][pathODCell.indexInODLine].isValid) {
-        addVolume(
-            groupIndex,
-            pathODCell.quantity
-                * path[pathODCell.alternativePath][pathODCell.indexInODLine].marketShare);
-      }
-    }
-
-    pathODCellList[groupIndex].clear();
+  public void setCost(byte groupIndex, double cost) {
+    states.cost[stateOffset + groupIndex] = cost;
   }
 
   /** Returns a string representation of the virtual link. */
@@ -720,9 +704,10 @@ public class VirtualLink {
       return;
     }
 
+    int index = stateOffset + groupIndex;
     double projectedVolume =
-        (1.0 - lambda) * currentVolume[groupIndex][timeSlice]
-            + lambda * auxiliaryVolume[groupIndex];
+        (1.0 - lambda) * states.getVolume(index, timeSlice)
+            + lambda * states.auxiliaryVolume[index];
 
     int nbVehicles = (int) Math.ceil(projectedVolume / averageLoad);
     realLink.addPassengerCarUnits(this, (int) Math.ceil(nbVehicles * passengerCarUnits));
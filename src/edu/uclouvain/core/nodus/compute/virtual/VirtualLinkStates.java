@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.virtual;
+
+import java.util.Arrays;
+
+/**
+ * Columnar store of the assignment state of the virtual links of a virtual network: costs,
+ * durations, volumes and vehicles. Instead of a set of small arrays per virtual link, each variable
+ * is kept in a single flat array, indexed by virtual link, group and time slice (in that order).
+ * The {@link VirtualLink} objects only keep the offset of their entries in the store.
+ *
+ * <p>For a virtual link which offset is <code>o = id * nbGroups</code>, the value of a group
+ * <code>g</code> is at index <code>o + g</code>. As the virtual links are generated node by node, a
+ * sweep over the virtual network reads the arrays sequentially.
+ *
+ * <p>The current volumes and vehicles of the static assignments, which only have one time slice,
+ * are kept in the same way. In the time dependent assignments, most virtual links are only used
+ * during a few time slices. For each virtual link and group, only the time slices with a volume are
+ * thus kept, in increasing order, with their volume and vehicles. As the time slices are assigned
+ * in chronological order, new time slices are appended at the end of these lists. A list is only
+ * modified by the worker that assigns its group.
+ *
+ * @author Bart Jourquin
+ */
+class VirtualLinkStates {
+
+  /** Auxiliary vehicles, per virtual link and group. */
+  final int[] auxiliaryVehicles;
+
+  /** Auxiliary volumes, per virtual link and group. */
+  final double[] auxiliaryVolume;
+
+  /** Costs, per virtual link and group. */
+  final double[] cost;
+
+  /** Current vehicles, per virtual link and group, for a single time slice. */
+  private int[] currentVehicles = null;
+
+  /** Current volumes, per virtual link and group, for a single time slice. */
+  private double[] currentVolume = null;
+
+  /**
+   * Targets of the last two search directions of the conjugate Frank-Wolfe assignments, per
+   * virtual link and group. The targets of the last direction are followed by those of the
+   * previous one. Only allocated when such an assignment is used.
+   */
+  private volatile double[] directionVolume = null;
+
+  /** Durations, per virtual link and group. */
+  final double[] duration;
+
+  final int nbGroups;
+
+  final int nbLinks;
+
+  final int nbTimeSlices;
+
+  /** Volumes computed during the previous iteration, per virtual link and group. */
+  final double[] previousVolume;
+
+  /** Number of time slices with a volume, per virtual link and group, for several time slices. */
+  private int[] sliceCounts = null;
+
+  /** Time slices with a volume, in increasing order, per virtual link and group. */
+  private int[][] slices = null;
+
+  /** Vehicles of the time slices with a volume, per virtual link and group. */
+  private int[][] sliceVehicles = null;
+
+  /** Volumes of the time slices with a volume, per virtual link and group. */
+  private double[][] sliceVolumes = null;
+
+  /**
+   * Allocates the state of a set of virtual links.
+   *
+   * @param nbLinks The number of virtual links, which IDs must be lower than this number.
+   * @param nbGroups The number of groups of commodities.
+   * @param nbTimeSlices The number of time slices.
+   */
+  VirtualLinkStates(int nbLinks, int nbGroups, int nbTimeSlices) {
+    this.nbLinks = nbLinks;
+    this.nbGroups = nbGroups;
+    this.nbTimeSlices = nbTimeSlices;
+
+    int size = nbLinks * nbGroups;
+    cost = new double[size];
+    Arrays.fill(cost, -1);
+    duration = new double[size];
+    auxiliaryVolume = new double[size];
+    previousVolume = new double[size];
+    auxiliaryVehicles = new int[size];
+    if (nbTimeSlices == 1) {
+      currentVolume = new double[size];
+      currentVehicles = new int[size];
+    } else {
+      sliceCounts = new int[size];
+      slices = new int[size][];
+      sliceVolumes = new double[size][];
+      sliceVehicles = new int[size][];
+    }
+  }
+
+  /**
+   * Adds a quantity to the current volume of a virtual link and group during a time slice.
+   *
+   * @param index The index of the virtual link and group.
+   * @param timeSlice The time slice.
+   * @param qty The quantity to add.
+   */
+  void addVolume(int index, int timeSlice, double qty) {
+    if (currentVolume != null) {
+      currentVolume[index] += qty;
+    } else {
+      int slot = getSlot(index, timeSlice, true);
+      sliceVolumes[index][slot] += qty;
+    }
+  }
+
+  /** Returns the position of a time slice in the list of a virtual link and group, or -1. */
+  private int findSlot(int index, int timeSlice) {
+    int count = sliceCounts[index];
+    if (count == 0) {
+      return -1;
+    }
+
+    // Most lookups are for the last time slice
+    int[] s = slices[index];
+    if (s[count - 1] == timeSlice) {
+      return count - 1;
+    }
+    int slot = Arrays.binarySearch(s, 0, count, timeSlice);
+    return slot < 0 ? -1 : slot;
+  }
+
+  /**
+   * Returns the current vehicles of a virtual link and group during a time slice.
+   *
+   * @param index The index of the virtual link and group.
+   * @param timeSlice The time slice.
+   * @return The number of vehicles.
+   */
+  int getVehicles(int index, int timeSlice) {
+    if (currentVehicles != null) {
+      return currentVehicles[index];
+    }
+    int slot = findSlot(index, timeSlice);
+    return slot < 0 ? 0 : sliceVehicles[index][slot];
+  }
+
+  /**
+   * Returns the current volume of a virtual link and group during a time slice.
+   *
+   * @param index The index of the virtual link and group.
+   * @param timeSlice The time slice.
+   * @return The volume.
+   */
+  double getVolume(int index, int timeSlice) {
+    if (currentVolume != null) {
+      return currentVolume[index];
+    }
+    int slot = findSlot(index, timeSlice);
+    return slot < 0 ? 0 : sliceVolumes[index][slot];
+  }
+
+  /**
+   * Returns the first time slice, starting from a given one, during which a virtual link and group
+   * has a positive volume.
+   *
+   * @param index The index of the virtual link and group.
+   * @param timeSlice The first time slice to consider.
+   * @return The time slice, or -1 if there is none.
+   */
+  int getNextTimeSlice(int index, int timeSlice) {
+    if (currentVolume != null) {
+      return timeSlice == 0 && currentVolume[index] > 0 ? 0 : -1;
+    }
+    int[] s = slices[index];
+    int count = sliceCounts[index];
+    for (int slot = 0; slot < count; slot++) {
+      if (s[slot] >= timeSlice && sliceVolumes[index][slot] > 0) {
+        return s[slot];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the position of a time slice in the list of a virtual link and group, inserting it if
+   * needed.
+   */
+  private int getSlot(int index, int timeSlice, boolean insert) {
+    int slot = findSlot(index, timeSlice);
+    if (slot >= 0 || !insert) {
+      return slot;
+    }
+
+    int count = sliceCounts[index];
+    if (slices[index] == null) {
+      slices[index] = new int[2];
+      sliceVolumes[index] = new double[2];
+      sliceVehicles[index] = new int[2];
+    } else if (count == slices[index].length) {
+      int capacity = Math.min(2 * count, nbTimeSlices);
+      slices[index] = Arrays.copyOf(slices[index], capacity);
+      sliceVolumes[index] = Arrays.copyOf(sliceVolumes[index], capacity);
+      sliceVehicles[index] = Arrays.copyOf(sliceVehicles[index], capacity);
+    }
+
+    // Keep the time slices in increasing order
+    slot = count;
+    while (slot > 0 && slices[index][slot - 1] > timeSlice) {
+      slot--;
+    }
+    int n = count - slot;
+    System.arraycopy(slices[index], slot, slices[index], slot + 1, n);
+    System.arraycopy(sliceVolumes[index], slot, sliceVolumes[index], slot + 1, n);
+    System.arraycopy(sliceVehicles[index], slot, sliceVehicles[index], slot + 1, n);
+    slices[index][slot] = timeSlice;
+    sliceVolumes[index][slot] = 0;
+    sliceVehicles[index][slot] = 0;
+    sliceCounts[index] = count + 1;
+    return slot;
+  }
+
+  /**
+   * Sets the current vehicles of a virtual link and group during a time slice.
+   *
+   * @param index The index of the virtual link and group.
+   * @param timeSlice The time slice.
+   * @param vehicles The number of vehicles.
+   */
+  void setVehicles(int index, int timeSlice, int vehicles) {
+    if (currentVehicles != null) {
+      currentVehicles[index] = vehicles;
+    } else {
+      int slot = getSlot(index, timeSlice, vehicles != 0);
+      if (slot >= 0) {
+        sliceVehicles[index][slot] = vehicles;
+      }
+    }
+  }
+
+  /**
+   * Sets the current volume of a virtual link and group during a time slice.
+   *
+   * @param index The index of the virtual link and group.
+   * @param timeSlice The time slice.
+   * @param volume The volume.
+   */
+  void setVolume(int index, int timeSlice, double volume) {
+    if (currentVolume != null) {
+      currentVolume[index] = volume;
+    } else {
+      int slot = getSlot(index, timeSlice, volume != 0);
+      if (slot >= 0) {
+        sliceVolumes[index][slot] = volume;
+      }
+    }
+  }
+
+  /**
+   * Returns the array of the search direction targets, allocating it on first use.
+   *
+   * @return The targets of the last two search directions.
+   */
+  double[] getDirectionVolume() {
+    double[] volume = directionVolume;
+    if (volume == null) {
+      synchronized (this) {
+        volume = directionVolume;
+        if (volume == null) {
+          volume = new double[2 * nbLinks * nbGroups];
+          directionVolume = volume;
+        }
+      }
+    }
+    return volume;
+  }
+
+  /**
+   * Returns the array of the search direction targets, if already allocated.
+   *
+   * @return The targets of the last two search directions, or null.
+   */
+  double[] getDirectionVolumeIfAllocated() {
+    return directionVolume;
+  }
+}
@@ -36,19 +36,26 @@ import edu.uclouvain.core.nodus.NodusMapPanel;
 import edu.uclouvain.core.nodus.NodusProject;
 import edu.uclouvain.core.nodus.compute.assign.AssignmentParameters;
 import edu.uclouvain.core.nodus.compute.assign.shortestpath.AdjacencyNode;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.CompressedGraph;
+import edu.uclouvain.core.nodus.compute.assign.shortestpath.ContractionHierarchy;
+import edu.uclouvain.core.nodus.compute.costs.CostJacobian;
 import edu.uclouvain.core.nodus.compute.costs.CostParser;
 import edu.uclouvain.core.nodus.compute.costs.CostParserWorker;
 import edu.uclouvain.core.nodus.compute.costs.CostParserWorkerParameters;
+import edu.uclouvain.core.nodus.compute.costs.LineSearchData;
 import edu.uclouvain.core.nodus.compute.costs.VehiclesParser;
+import edu.uclouvain.core.nodus.compute.costs.VolumeDelayBatch;
+import edu.uclouvain.core.nodus.compute.costs.VolumeDependentLinks;
 import edu.uclouvain.core.nodus.compute.od.ODCell;
 import edu.uclouvain.core.nodus.compute.real.RealLink;
 import edu.uclouvain.core.nodus.compute.real.RealNetworkObject;
 import edu.uclouvain.core.nodus.database.JDBCUtils;
+import edu.uclouvain.core.nodus.services.ServiceHandler;
+import edu.uclouvain.core.nodus.services.TransportService;
 import edu.uclouvain.core.nodus.utils.RealLinkUtils;
 import edu.uclouvain.core.nodus.utils.WorkQueue;
-import java.text.DecimalFormat;
 import java.text.MessageFormat;
-import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -63,6 +70,26 @@ import javax.swing.JOptionPane;
  */
 public class VirtualNetwork {
 
+  /** Moving virtual links to generate for a real link, computed during the generation. */
+  private static class LinkExpansion {
+    int link;
+    byte[] means;
+    byte mode;
+    int node1;
+    int node2;
+    RealLink realLink;
+    short[] services;
+  }
+
+  /** Virtual links to generate between the virtual nodes of a real node. */
+  private static class NodeJunctions {
+    int[] beginNodes;
+    int[] endNodes;
+    int nbJunctions = 0;
+    VirtualNode[] nodes;
+    byte[] types;
+  }
+
   private class NodeLayerAndRowIndex {
 
     /** Index of the record inside the layer pointed by LayerIndex. */
@@ -88,6 +115,9 @@ public class VirtualNetwork {
     }
   }
 
+  /* Number of real links or nodes handled by a job during the parallel phases of the generation */
+  private static final int GENERATION_JOB_SIZE = 256;
+
   private static I18n i18n = Environment.getI18n();
 
   private int assignmentEndTime = -1;
@@ -99,8 +129,20 @@ public class VirtualNetwork {
 
   private Properties costFunctions = null;
 
-  /* Formater used in progress-bar display */
-  private NumberFormat formatter = new DecimalFormat("0.00000");
+  /* Incremented each time the costs are computed */
+  private volatile int costsVersion = 0;
+
+  /* Cost parsers kept between two computations of the costs, per OD class and group */
+  private CostParser[][] costParsers = null;
+
+  /* Scenario the cached cost parsers were created for */
+  private int costParsersScenario;
+
+  /* Queue of the persistent cost parser workers */
+  private WorkQueue costQueue = null;
+
+  /* Persistent cost parser workers */
+  private CostParserWorker[] costWorkers = null;
 
   /** Requests cancellation of every cost worker in the given pool. */
   private void cancelCostWorkers(CostParserWorker[] workers) {
@@ -117,50 +159,113 @@ public class VirtualNetwork {
   }
 
   /**
-   * Waits for every cost worker to finish. If interrupted, workers are canceled before this method
-   * returns false.
+   * Returns a cost parser for a group and OD class. The parsers are kept for the next computations
+   * of the costs when no time slice is used, as their compiled functions and variables remain
+   * valid for the whole assignment.
    */
-  private boolean waitForCostWorkers(CostParserWorker[] workers) {
-    if (workers == null) {
-      return true;
+  private CostParser getCostParser(int scenario, byte odClass, byte groupIndex, int timeSlice) {
+    boolean cached = timeSlice == -1 && odClass >= 0 && odClass < nbODClasses;
+    if (cached) {
+      if (costParsers == null || costParsersScenario != scenario) {
+        costParsers = new CostParser[nbODClasses][getNbGroups()];
+        costParsersScenario = scenario;
+      }
+      if (costParsers[odClass][groupIndex] != null) {
+        return costParsers[odClass][groupIndex];
+      }
     }
 
-    boolean interrupted = false;
+    CostParser costParser =
+        new CostParser(
+            costFunctions, nodusProject, scenario, groups[groupIndex], odClass, timeSlice);
+    if (cached && costParser.isInitialized()) {
+      costParsers[odClass][groupIndex] = costParser;
+    }
+    return costParser;
+  }
 
-    for (CostParserWorker worker : workers) {
-      if (worker == null) {
-        continue;
+  /**
+   * Returns the pool of cost parser workers, ready to handle a new series of jobs. The worker
+   * threads are kept alive between two computations of the costs. They are only created again if
+   * the number of threads changed or if the previous series was canceled.
+   */
+  private CostParserWorker[] startCostWorkers(int nbThreads) {
+    if (costWorkers != null && costWorkers.length == nbThreads) {
+      boolean reusable = true;
+      for (CostParserWorker worker : costWorkers) {
+        if (worker.isCancelled() || !worker.isAlive()) {
+          reusable = false;
+        }
       }
-
-      try {
-        worker.join();
-      } catch (InterruptedException e) {
-        interrupted = true;
-        break;
+      if (reusable) {
+        for (CostParserWorker worker : costWorkers) {
+          worker.reset();
+        }
+        return costWorkers;
       }
     }
 
-    if (!interrupted) {
-      return true;
+    stopCostWorkers();
+
+    costQueue = new WorkQueue();
+    costWorkers = new CostParserWorker[nbThreads];
+    for (int i = 0; i < costWorkers.length; i++) {
+      costWorkers[i] = new CostParserWorker(costQueue);
+      costWorkers[i].start();
     }
+    return costWorkers;
+  }
 
-    cancelCostWorkers(workers);
+  /** Stops the persistent cost parser workers, if any. */
+  private void stopCostWorkers() {
+    if (costWorkers == null) {
+      return;
+    }
 
-    for (CostParserWorker worker : workers) {
-      if (worker == null) {
-        continue;
-      }
+    for (int i = 0; i < costWorkers.length; i++) {
+      costQueue.addWork(WorkQueue.NO_MORE_WORK);
+    }
 
+    CostParserWorker[] workers = costWorkers;
+    costWorkers = null;
+    costQueue = null;
+
+    for (CostParserWorker worker : workers) {
       try {
         worker.join(1000);
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
-        return false;
+        return;
       }
     }
+  }
+
+  /**
+   * Waits until the cost workers completed the jobs added to their queue. If interrupted, workers
+   * are canceled before this method returns false.
+   */
+  private boolean waitForCostWorkers() {
+    try {
+      costQueue.waitForCompletion();
+      return true;
+    } catch (InterruptedException e) {
+      // Cancel the workers and let the next computation create new ones
+      CostParserWorker[] workers = costWorkers;
+      costWorkers = null;
+      costQueue = null;
+      cancelCostWorkers(workers);
+
+      for (CostParserWorker worker : workers) {
+        try {
+          worker.join(1000);
+        } catch (InterruptedException e2) {
+          break;
+        }
+      }
 
-    Thread.currentThread().interrupt();
-    return false;
+      Thread.currentThread().interrupt();
+      return false;
+    }
   }
 
   /*
@@ -169,6 +274,12 @@ public class VirtualNetwork {
    */
   private AdjacencyNode[][] graph = null;
 
+  /* Compressed (CSR) representation of the virtual network, shared by all the groups */
+  private CompressedGraph compressedGraph = null;
+
+  /* Contraction hierarchies built for the current costs, per group */
+  private ContractionHierarchy[] contractionHierarchies = null;
+
   /* Vector that will contain the groups to assign */
   private byte[] groups = null;
 
@@ -184,6 +295,9 @@ public class VirtualNetwork {
   /* Content of the .dbf tables associated to the link layers */
   private DbfTableModel[] linksDbf = null;
 
+  /* Columnar store of the costs, durations, volumes and vehicles of the virtual links */
+  private VirtualLinkStates linkStates = null;
+
   /* Set of Esri layers that contain the real links */
   private NodusEsriLayer[] linksEsriLayer;
 
@@ -199,6 +313,8 @@ public class VirtualNetwork {
   /* Number of real nodes in the project */
   private int nbRealNodes = 0;
 
+  private int nbThreads;
+
   private int nbTimeSlices = 1;
 
   /* Number of generated virtual links */
@@ -240,6 +356,12 @@ public class VirtualNetwork {
   /* Basic structure used for virtual networks. */
   private VirtualNodeList[] vnl = null;
 
+  /* Batches used to recompute the costs during the line searches, per OD class and group */
+  private VolumeDelayBatch[][] volumeDelayBatches = null;
+
+  /* Virtual links which costs depend on the volume, per group */
+  private VolumeDependentLinks[] volumeDependentLinks = null;
+
   /**
    * Initializes a new virtual network.
    *
@@ -251,6 +373,7 @@ public class VirtualNetwork {
     this.nodusMapPanel = nodusProject.getNodusMapPanel();
 
     scenario = ap.getScenario();
+    nbThreads = Math.max(1, ap.getThreads());
 
     // Get the cost functions
     costFunctions = ap.getCostFunctions();
@@ -327,6 +450,9 @@ public class VirtualNetwork {
    * objects.
    */
   public void dispose() {
+    stopCostWorkers();
+    costParsers = null;
+
     if (vnl != null) {
       for (VirtualNodeList virtualNodeList : vnl) {
         if (virtualNodeList == null) {
@@ -389,11 +515,15 @@ public class VirtualNetwork {
     nodesEsriLayer = null;
 
     availableModeMeans = null;
+    compressedGraph = null;
+    contractionHierarchies = null;
     costFunctions = null;
-    formatter = null;
+    volumeDelayBatches = null;
+    volumeDependentLinks = null;
     graph = null;
     groups = null;
     linesForModeMeans = null;
+    linkStates = null;
     nodusMapPanel = null;
     nodusProject = null;
     odClassHasDemand = null;
@@ -411,7 +541,7 @@ public class VirtualNetwork {
     scenario = 0;
     timeSliceDuration = 0;
   }
-  
+
   /**
    * Creates a queue of cost parser workers and a pool of threads that will handle these workers.
    *
@@ -429,24 +559,34 @@ public class VirtualNetwork {
       return false;
     }
 
-    // Create the work queue
-    WorkQueue queue = new WorkQueue();
+    // The costs will change
+    contractionHierarchies = null;
+    costsVersion++;
 
-    // Create a set of worker threads
-    CostParserWorker[] worker = new CostParserWorker[nbThreads];
-    for (int i = 0; i < worker.length; i++) {
-      worker[i] = new CostParserWorker(queue);
+    /* The costs of the virtual links are stored per group only. The static costs can thus only be
+     * kept between two computations if there is a single OD class and no time slices.
+     */
+    boolean keepStaticCosts = nbODClasses == 1 && timeSlice == -1;
+    if (!keepStaticCosts) {
+      volumeDependentLinks = null;
+    } else if (volumeDependentLinks == null) {
+      volumeDependentLinks = new VolumeDependentLinks[getNbGroups()];
     }
 
+    // Get the pool of worker threads
+    CostParserWorker[] worker = startCostWorkers(nbThreads);
+
     // long start = System.currentTimeMillis();
 
+    nodusMapPanel.startProgress(getNbGroups() * vnl.length);
+
     // Add the works to the queue
     for (byte groupIndex = 0; groupIndex < getNbGroups(); groupIndex++) {
-      CostParser costParser =
-          new CostParser(
-              costFunctions, nodusProject, scenario, groups[groupIndex], odClass, timeSlice);
+      CostParser costParser = getCostParser(scenario, odClass, groupIndex, timeSlice);
       if (!costParser.isInitialized()) {
         // Display the error message
+        waitForCostWorkers();
+        nodusMapPanel.stopProgress();
         JOptionPane.showMessageDialog(
             null, costParser.getErrorMessage(), NodusC.APPNAME, JOptionPane.ERROR_MESSAGE);
         return false;
@@ -455,23 +595,19 @@ public class VirtualNetwork {
       CostParserWorkerParameters cpp =
           new CostParserWorkerParameters(
               worker, nodusProject, scenario, odClass, groupIndex, this, costParser);
-      queue.addWork(cpp);
-    }
 
-    // Add special end-of-stream markers to terminate the workers
-    for (int i = 0; i < worker.length; i++) {
-      queue.addWork(WorkQueue.NO_MORE_WORK);
-    }
-
-    nodusMapPanel.startProgress(getNbGroups() * vnl.length);
-
-    // Start the threads on the now correctly initialized parsers
-    for (CostParserWorker element : worker) {
-      element.start();
+      // Only the volume dependent costs are recomputed after the first call
+      if (keepStaticCosts) {
+        if (volumeDependentLinks[groupIndex] == null) {
+          volumeDependentLinks[groupIndex] = new VolumeDependentLinks();
+        }
+        cpp.setVolumeDependentLinks(volumeDependentLinks[groupIndex]);
+      }
+      costQueue.addWork(cpp);
     }
 
     // Wait until all the works are completed
-    if (!waitForCostWorkers(worker)) {
+    if (!waitForCostWorkers()) {
       nodusMapPanel.stopProgress();
       return false;
     }
@@ -697,6 +833,245 @@ public class VirtualNetwork {
     return volumesToVehicles(vehiclesParser, (int) timeSlice);
   }
 
+  /**
+   * Creates the four virtual nodes and the two moving virtual links generated for a real link and a
+   * given means and service.
+   */
+  private void addMovingVirtualLinks(
+      int layerIndex, int row, LinkExpansion expansion, byte means, short service) {
+
+    // Virtual nodes
+    VirtualNodeList list1 = vnl[nodeIndex.get(expansion.node1).indexInVirtualNodeList];
+    double lat = list1.getGraphic().getLat();
+    double lon = list1.getGraphic().getLon();
+
+    VirtualNode n1p =
+        new VirtualNode(
+            nbVirtualNodes++,
+            expansion.node1,
+            expansion.link,
+            expansion.mode,
+            means,
+            service,
+            lat,
+            lon);
+    list1.addVirtualNode(n1p);
+
+    VirtualNode n1n =
+        new VirtualNode(
+            nbVirtualNodes++,
+            -expansion.node1,
+            expansion.link,
+            expansion.mode,
+            means,
+            service,
+            lat,
+            lon);
+    list1.addVirtualNode(n1n);
+
+    VirtualNodeList list2 = vnl[nodeIndex.get(expansion.node2).indexInVirtualNodeList];
+    lat = list2.getGraphic().getLat();
+    lon = list2.getGraphic().getLon();
+
+    VirtualNode n2p =
+        new VirtualNode(
+            nbVirtualNodes++,
+            expansion.node2,
+            expansion.link,
+            expansion.mode,
+            means,
+            service,
+            lat,
+            lon);
+    list2.addVirtualNode(n2p);
+
+    VirtualNode n2n =
+        new VirtualNode(
+            nbVirtualNodes++,
+            -expansion.node2,
+            expansion.link,
+            expansion.mode,
+            means,
+            service,
+            lat,
+            lon);
+    list2.addVirtualNode(n2n);
+
+    /*
+     * Moving virtual links are negative to positive oriented
+     */
+    n1n.add(new VirtualLink(nbVirtualLinks++, layerIndex, row, n1n, n2p, expansion.realLink));
+    n2n.add(new VirtualLink(nbVirtualLinks++, layerIndex, row, n2n, n1p, expansion.realLink));
+  }
+
+  /**
+   * Returns the means and services for which moving virtual links must be generated for a real
+   * link, or null if the real link must be ignored. Only reads shared data, and can thus be called
+   * by concurrent threads.
+   */
+  private LinkExpansion expandRealLink(int layerIndex, int row) {
+    EsriGraphicList egl = linksEsriLayer[layerIndex].getEsriGraphicList();
+    RealLink realLink = (RealLink) egl.getOMGraphicAt(row).getAttribute(0);
+
+    if (!realLink.isInHighlightedArea()) {
+      return null;
+    }
+
+    /* Get the relevant fields to build the virtual nodes */
+    List<Object> values = linksDbf[layerIndex].getRecord(row);
+
+    // Ignore not enabled links
+    int enabled = JDBCUtils.getInt(values.get(NodusC.DBF_IDX_ENABLED));
+    if (enabled == 0) {
+      return null;
+    }
+
+    LinkExpansion expansion = new LinkExpansion();
+    expansion.realLink = realLink;
+    expansion.link = JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NUM));
+    expansion.node1 = JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NODE1));
+    expansion.node2 = JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NODE2));
+    expansion.mode = JDBCUtils.getByte(values.get(NodusC.DBF_IDX_MODE));
+
+    byte means = JDBCUtils.getByte(values.get(NodusC.DBF_IDX_MEANS));
+    ServiceHandler serviceHandler = nodusProject.getServiceHandler();
+    LinkedList<Integer> services = serviceHandler.getServicesForLink(expansion.link);
+
+    /* iterate through all means of the link */
+    LinkedList<Integer> meansAndServices = new LinkedList<>();
+    for (byte k = 1; k <= means; k++) {
+      /*
+       * test the Mode Means is Line exclusive (if is exists lines for these mode and means, for
+       * instance the railroads) (if not exclusive the traffic don't need to follow the way of a
+       * line, for instance a car) then if is true, we make the virtual network with the line number
+       * and force the traffic to follow the lines. and if is false, we make the virtual network
+       * with a default number for line (default number = 0) so the traffic is free.
+       */
+      if (isServiceForModeMeans(expansion.mode, k)) {
+        /*
+         * A virtualLink is created for all the lines of the mode/means that use the link. No
+         * virtual link is created if the link has no line.
+         */
+        Iterator<Integer> it = services.iterator();
+        while (it.hasNext()) {
+          int service = it.next();
+          if (serviceHandler.getMeansForService(service) == k) {
+            meansAndServices.add(k << 16 | service & 0xffff);
+          }
+        }
+      } else {
+        /*
+         * A VirtualLink is created for the link, with not lines, because the mode means aren't
+         * exclusive line.
+         */
+        meansAndServices.add(k << 16);
+      }
+    }
+
+    expansion.means = new byte[meansAndServices.size()];
+    expansion.services = new short[meansAndServices.size()];
+    int k = 0;
+    for (int meansAndService : meansAndServices) {
+      expansion.means[k] = (byte) (meansAndService >> 16);
+      expansion.services[k] = (short) meansAndService;
+      k++;
+    }
+    return expansion;
+  }
+
+  /**
+   * Returns the transhipment, transit, stop and switch virtual links that must be generated between
+   * the virtual nodes of a real node. Only reads shared data, and can thus be called by concurrent
+   * threads.
+   */
+  private NodeJunctions getNodeJunctions(VirtualNodeList element) {
+    NodeJunctions junctions = new NodeJunctions();
+    VirtualNode[] nodes = element.getVirtualNodeList().toArray(new VirtualNode[0]);
+    junctions.nodes = nodes;
+
+    /*
+     * Transhipment, switch and service change links are only generated between the nodes at which
+     * the services stop
+     */
+    ServiceHandler serviceHandler = nodusProject.getServiceHandler();
+    boolean[] isStop = new boolean[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      isStop[i] =
+          serviceHandler.isNodeStopService(nodes[i].getRealNodeId(false), nodes[i].getService());
+    }
+
+    for (int i = 0; i < nodes.length; i++) {
+      VirtualNode beginNode = nodes[i];
+      boolean n1 = isStop[i] || beginNode.getService() == 0;
+
+      for (int j = i + 1; j < nodes.length; j++) {
+        VirtualNode endNode = nodes[j];
+
+        // These virtual links are always from + to -
+        if (beginNode.getSign() == endNode.getSign()) {
+          continue;
+        }
+
+        /*
+         * Transhipment links are generated for transhipment nodes only and Transit links are
+         * generated for same mode/means combinations
+         */
+        boolean n2 = isStop[j] || endNode.getService() == 0;
+
+        if (!(element.isTranshipmentNode() && n1 && n2
+            || beginNode.getModeMeansServiceKey() == endNode.getModeMeansServiceKey()
+            || beginNode.getModeMeansKey() == endNode.getModeMeansKey()
+                && element.isChangingServiceNode()
+                && n1
+                && n2)) {
+          continue;
+        }
+
+        // Find out which type of virtual link it is
+        byte type;
+
+        if (beginNode.getModeMeansServiceKey() == endNode.getModeMeansServiceKey()
+            && isStop[i]
+            && beginNode.getRealNodeId(false) == endNode.getRealNodeId(false)) {
+          type = VirtualLink.TYPE_STOP;
+        } else if (beginNode.getModeMeansServiceKey() == endNode.getModeMeansServiceKey()) {
+          type = VirtualLink.TYPE_TRANSIT;
+        } else if (beginNode.getModeMeansKey() == endNode.getModeMeansKey()) {
+          type = VirtualLink.TYPE_SWITCH;
+        } else {
+          type = VirtualLink.TYPE_TRANSHIP;
+        }
+
+        if (type != VirtualLink.TYPE_TRANSHIP
+            && type != VirtualLink.TYPE_SWITCH
+            && beginNode.getRealLinkId() == endNode.getRealLinkId()) {
+          continue;
+        }
+
+        // test if transit is allowed here
+        if (type == VirtualLink.TYPE_TRANSIT && !element.isTransitAllowed()) {
+          continue;
+        }
+
+        if (junctions.types == null) {
+          junctions.beginNodes = new int[nodes.length];
+          junctions.endNodes = new int[nodes.length];
+          junctions.types = new byte[nodes.length];
+        } else if (junctions.nbJunctions == junctions.types.length) {
+          int size = 2 * junctions.types.length;
+          junctions.beginNodes = Arrays.copyOf(junctions.beginNodes, size);
+          junctions.endNodes = Arrays.copyOf(junctions.endNodes, size);
+          junctions.types = Arrays.copyOf(junctions.types, size);
+        }
+        junctions.beginNodes[junctions.nbJunctions] = i;
+        junctions.endNodes[junctions.nbJunctions] = j;
+        junctions.types[junctions.nbJunctions] = type;
+        junctions.nbJunctions++;
+      }
+    }
+    return junctions;
+  }
+
   /**
    * Generates a Version 3 virtual network: <br>
    * - Version 1 : The one described in Jourquin B. and Beuthe M., Transportation Policy Analysis
@@ -709,6 +1084,10 @@ public class VirtualNetwork {
    * congress, Liverpool (UK), August 2008 and to the European Transport Conference, Leiden (The
    * Netherlands), 6-8 October, 2008.
    *
+   * <p>Unless disabled in the project, the generated network is saved in a snapshot, which is
+   * loaded instead of generating the network again as long as the real network, the services and
+   * the mode/means combinations for which services are generated did not change.
+   *
    * @return boolean True on success.
    */
   public boolean generate() {
@@ -725,177 +1104,101 @@ public class VirtualNetwork {
 
     initializeNodeIndexMap();
 
-    /* Generate the "moving" virtual links and their associated nodes */
+    // Load the snapshot of a previous generation if the network would be the same
+    VirtualNetworkSnapshot snapshot = null;
+    long snapshotKey = 0;
+    if (nodusProject.getLocalProperty(NodusC.PROP_VNET_SNAPSHOT, true)) {
+      snapshot =
+          new VirtualNetworkSnapshot(
+              nodusProject.getLocalProperty(NodusC.PROP_PROJECT_DOTPATH)
+                  + nodusProject.getLocalProperty(NodusC.PROP_PROJECT_DOTNAME)
+                  + NodusC.TYPE_VNET_SNAPSHOT);
+      snapshotKey = getSnapshotKey();
+      if (snapshot.load(snapshotKey, vnl, linksEsriLayer)) {
+        nbVirtualNodes = snapshot.getNbVirtualNodes();
+        nbVirtualLinks = snapshot.getNbVirtualLinks();
+        nodusMapPanel.stopProgress();
+        return true;
+      }
+    }
+
+    /*
+     * The index of the link numbers used by the service handler is built on first use, which must
+     * not happen concurrently
+     */
+    for (NodusEsriLayer element : linksEsriLayer) {
+      element.getNumIndex(0);
+    }
+
+    /*
+     * Find out, in parallel, the moving virtual links to generate for each real link. The virtual
+     * nodes and links are then created in the order of the real links, so that their IDs don't
+     * depend on the number of threads.
+     */
+    LinkExpansion[][] expansions = new LinkExpansion[nbLinkLayers][];
+    LinkedList<Runnable> jobs = new LinkedList<>();
     for (int i = 0; i < nbLinkLayers; i++) {
-      EsriGraphicList egl = linksEsriLayer[i].getEsriGraphicList();
+      final int layerIndex = i;
+      final LinkExpansion[] layerExpansions = new LinkExpansion[linksDbf[i].getRowCount()];
+      expansions[i] = layerExpansions;
+      for (int from = 0; from < layerExpansions.length; from += GENERATION_JOB_SIZE) {
+        final int first = from;
+        final int last = Math.min(from + GENERATION_JOB_SIZE, layerExpansions.length);
+        jobs.add(
+            () -> {
+              for (int j = first; j < last; j++) {
+                layerExpansions[j] = expandRealLink(layerIndex, j);
+              }
+            });
+      }
+    }
+    if (!runGenerationJobs(jobs)) {
+      nodusMapPanel.stopProgress();
+      return false;
+    }
 
-      for (int j = 0; j < linksDbf[i].getRowCount(); j++) {
+    /* Generate the "moving" virtual links and their associated nodes */
+    for (int i = 0; i < nbLinkLayers; i++) {
+      for (int j = 0; j < expansions[i].length; j++) {
         if (!nodusMapPanel.updateProgress(
             i18n.get(VirtualNetwork.class, "Moving_virtual_links", "Moving virtual links"))) {
           return false;
         }
 
-        RealLink realLink = (RealLink) egl.getOMGraphicAt(j).getAttribute(0);
-
-        if (!realLink.isInHighlightedArea()) {
+        LinkExpansion expansion = expansions[i][j];
+        if (expansion == null) {
           continue;
         }
+        expansions[i][j] = null;
 
-        /* Get the relevant fields to build the virtual nodes */
-        List<Object> values = linksDbf[i].getRecord(j);
-
-        // Ignore not enabled links
-        int enabled = Integer.valueOf(JDBCUtils.getInt(values.get(NodusC.DBF_IDX_ENABLED)));
-        if (enabled == 0) {
-          continue;
+        for (int k = 0; k < expansion.means.length; k++) {
+          addMovingVirtualLinks(i, j, expansion, expansion.means[k], expansion.services[k]);
         }
+      }
+    }
 
-        int link = JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NUM));
-
-        Integer node1 = Integer.valueOf(JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NODE1)));
-
-        Integer node2 = Integer.valueOf(JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NODE2)));
-
-        byte mode = JDBCUtils.getByte(values.get(NodusC.DBF_IDX_MODE));
-
-        byte means = JDBCUtils.getByte(values.get(NodusC.DBF_IDX_MEANS));
-        LinkedList<Integer> services =
-            nodusMapPanel.getNodusProject().getServiceHandler().getServicesForLink(link);
-
-        /* iterate through all means of the link */
-        for (byte k = 1; k <= means; k++) {
-          /*
-           * test the Mode Means is Line exclusive (if is exists lines for these mode and means,
-           * for instance the railroads) (if not exclusive the traffic don't need to follow the
-           * way of a line, for instance a car) then if is true, we make the virtual network with
-           * the line number and force the traffic to follow the lines. and if is false, we make
-           * the virtual network with a default number for line (default number = 0) so the
-           * traffic is free.
-           */
-          if (isServiceForModeMeans(mode, k)) {
-
-            if (services != null) {
-              /*
-               * test if the link has a line. If false a virtual Link is not created
-               * for this real link.
-               */
-              Iterator<Integer> it = services.iterator();
-              while (it.hasNext()) {
-                /*
-                 * A virtualLink is created for all thes line of the mode /means.
-                 */
-                int service = it.next();
-                int meansByService =
-                    nodusMapPanel.getNodusProject().getServiceHandler().getMeansForService(service);
-                // Virtual nodes
-                if (meansByService == k) {
-                  NodeLayerAndRowIndex idx = nodeIndex.get(node1);
-                  double lat = vnl[idx.indexInVirtualNodeList].getGraphic().getLat();
-                  double lon = vnl[idx.indexInVirtualNodeList].getGraphic().getLon();
-
-                  VirtualNode n1p =
-                      new VirtualNode(
-                          nbVirtualNodes++,
-                          node1.intValue(),
-                          link,
-                          mode,
-                          k,
-                          (short) service,
-                          lat,
-                          lon);
-                  vnl[idx.indexInVirtualNodeList].addVirtualNode(n1p);
-
-                  VirtualNode n1n =
-                      new VirtualNode(
-                          nbVirtualNodes++,
-                          -node1.intValue(),
-                          link,
-                          mode,
-                          k,
-                          (short) service,
-                          lat,
-                          lon);
-                  vnl[idx.indexInVirtualNodeList].addVirtualNode(n1n);
-
-                  idx = nodeIndex.get(node2);
-                  lat = vnl[idx.indexInVirtualNodeList].getGraphic().getLat();
-                  lon = vnl[idx.indexInVirtualNodeList].getGraphic().getLon();
-
-                  VirtualNode n2p =
-                      new VirtualNode(
-                          nbVirtualNodes++,
-                          node2.intValue(),
-                          link,
-                          mode,
-                          k,
-                          (short) service,
-                          lat,
-                          lon);
-                  vnl[idx.indexInVirtualNodeList].addVirtualNode(n2p);
-
-                  VirtualNode n2n =
-                      new VirtualNode(
-                          nbVirtualNodes++,
-                          -node2.intValue(),
-                          link,
-                          mode,
-                          k,
-                          (short) service,
-                          lat,
-                          lon);
-                  vnl[idx.indexInVirtualNodeList].addVirtualNode(n2n);
-
-                  /*
-                   * Moving virtual links are negative to positive oriented
-                   */
-                  n1n.add(new VirtualLink(nbVirtualLinks++, i, j, n1n, n2p, realLink));
-                  n2n.add(new VirtualLink(nbVirtualLinks++, i, j, n2n, n1p, realLink));
-                }
-              }
+    /*
+     * Find out, in parallel, the transhipment, transit, stop and switch virtual links to generate
+     * at each real node. They are then created in the order of the real nodes.
+     */
+    final NodeJunctions[] junctions = new NodeJunctions[vnl.length];
+    jobs = new LinkedList<>();
+    for (int from = 0; from < vnl.length; from += GENERATION_JOB_SIZE) {
+      final int first = from;
+      final int last = Math.min(from + GENERATION_JOB_SIZE, vnl.length);
+      jobs.add(
+          () -> {
+            for (int i = first; i < last; i++) {
+              junctions[i] = getNodeJunctions(vnl[i]);
             }
-          } else {
-            /*
-             * A VirtualLink is created for the link, with not lines, because the
-             * mode means aren't exclusive line.
-             */
-
-            // Virtual nodes
-            NodeLayerAndRowIndex idx = nodeIndex.get(node1);
-            double lat = vnl[idx.indexInVirtualNodeList].getGraphic().getLat();
-            double lon = vnl[idx.indexInVirtualNodeList].getGraphic().getLon();
-
-            VirtualNode n1p =
-                new VirtualNode(
-                    nbVirtualNodes++, node1.intValue(), link, mode, k, (short) 0, lat, lon);
-            vnl[idx.indexInVirtualNodeList].addVirtualNode(n1p);
-
-            VirtualNode n1n =
-                new VirtualNode(
-                    nbVirtualNodes++, -node1.intValue(), link, mode, k, (short) 0, lat, lon);
-            vnl[idx.indexInVirtualNodeList].addVirtualNode(n1n);
-
-            idx = nodeIndex.get(node2);
-            lat = vnl[idx.indexInVirtualNodeList].getGraphic().getLat();
-            lon = vnl[idx.indexInVirtualNodeList].getGraphic().getLon();
-
-            VirtualNode n2p =
-                new VirtualNode(
-                    nbVirtualNodes++, node2.intValue(), link, mode, k, (short) 0, lat, lon);
-            vnl[idx.indexInVirtualNodeList].addVirtualNode(n2p);
-
-            VirtualNode n2n =
-                new VirtualNode(
-                    nbVirtualNodes++, -node2.intValue(), link, mode, k, (short) 0, lat, lon);
-            vnl[idx.indexInVirtualNodeList].addVirtualNode(n2n);
-
-            n1n.add(new VirtualLink(nbVirtualLinks++, i, j, n1n, n2p, realLink));
-            n2n.add(new VirtualLink(nbVirtualLinks++, i, j, n2n, n1p, realLink));
-          }
-        }
-      }
+          });
+    }
+    if (!runGenerationJobs(jobs)) {
+      nodusMapPanel.stopProgress();
+      return false;
     }
 
-    for (VirtualNodeList element : vnl) {
+    for (int i = 0; i < vnl.length; i++) {
       if (!nodusMapPanel.updateProgress(
           i18n.get(
               VirtualNetwork.class, "Transhipment_virtual_links", "Transhipment virtual links"))) {
@@ -903,104 +1206,30 @@ public class VirtualNetwork {
         return false;
       }
 
-      LinkedList<VirtualNode> ll = element.getVirtualNodeList();
-      Iterator<VirtualNode> lit1 = ll.iterator();
-
-      while (lit1.hasNext()) {
-        VirtualNode beginNode = lit1.next();
-        Iterator<VirtualNode> lit2 = ll.listIterator(ll.indexOf(beginNode));
-
-        while (lit2.hasNext()) {
-          VirtualNode endNode = lit2.next();
-
-          // These virtual links are always from + to -
-          if (beginNode.getSign() != endNode.getSign()) {
-
-            /*
-             * Transhipment links are generated for transhipment nodes only and Transit
-             * links are generated for same mode/means combinations
-             */
-            boolean n1 =
-                nodusMapPanel
-                    .getNodusProject()
-                    .getServiceHandler()
-                    .isNodeStopService(beginNode.getRealNodeId(false), beginNode.getService());
-            if (beginNode.getService() == 0) {
-              n1 = true;
-            }
-
-            boolean n2 =
-                nodusMapPanel
-                    .getNodusProject()
-                    .getServiceHandler()
-                    .isNodeStopService(endNode.getRealNodeId(false), endNode.getService());
-            if (endNode.getService() == 0) {
-              n2 = true;
-            }
-
-            if (element.isTranshipmentNode() && n1 && n2
-                || beginNode.getModeMeansServiceKey() == endNode.getModeMeansServiceKey()
-                || beginNode.getModeMeansKey() == endNode.getModeMeansKey()
-                    && element.isChangingServiceNode()
-                    && n1
-                    && n2) {
-              NodeLayerAndRowIndex idx = nodeIndex.get(Integer.valueOf(element.getRealNodeId()));
-
-              // Find out which type of virtual link it is
-              byte type;
-
-              if (beginNode.getModeMeansServiceKey() == endNode.getModeMeansServiceKey()
-                  && nodusMapPanel
-                      .getNodusProject()
-                      .getServiceHandler()
-                      .isNodeStopService(beginNode.getRealNodeId(false), beginNode.getService())
-                  && beginNode.getRealNodeId(false) == endNode.getRealNodeId(false)) {
-                type = VirtualLink.TYPE_STOP;
-              } else if (beginNode.getModeMeansServiceKey() == endNode.getModeMeansServiceKey()) {
-                type = VirtualLink.TYPE_TRANSIT;
-              } else if (beginNode.getModeMeansKey() == endNode.getModeMeansKey()) {
-                type = VirtualLink.TYPE_SWITCH;
-              } else {
-                type = VirtualLink.TYPE_TRANSHIP;
-              }
+      NodeJunctions nodeJunctions = junctions[i];
+      junctions[i] = null;
+      if (nodeJunctions.nbJunctions == 0) {
+        continue;
+      }
 
-              if (type == VirtualLink.TYPE_TRANSHIP
-                  || type == VirtualLink.TYPE_SWITCH
-                  || beginNode.getRealLinkId() != endNode.getRealLinkId()) {
-
-                // test if transit is allowed here
-                boolean generateVirtualLink = true;
-                if (type == VirtualLink.TYPE_TRANSIT && !element.isTransitAllowed()) {
-                  generateVirtualLink = false;
-                }
-
-                if (generateVirtualLink) {
-                  if (beginNode.getSign() == VirtualNode.POSITIVE) {
-                    beginNode.add(
-                        new VirtualLink(
-                            nbVirtualLinks++,
-                            idx.layerIndex,
-                            idx.rowInLayer,
-                            beginNode,
-                            endNode,
-                            type));
-                  } else {
-                    endNode.add(
-                        new VirtualLink(
-                            nbVirtualLinks++,
-                            idx.layerIndex,
-                            idx.rowInLayer,
-                            endNode,
-                            beginNode,
-                            type));
-                  }
-                }
-              }
-            }
-          }
-        } // while (lit2.hasNext())
-      } // while (lit1.hasNext())
-    } // for (int i = 0 ; i < VN.length ; i++)
+      NodeLayerAndRowIndex idx = nodeIndex.get(Integer.valueOf(vnl[i].getRealNodeId()));
+      for (int n = 0; n < nodeJunctions.nbJunctions; n++) {
+        VirtualNode beginNode = nodeJunctions.nodes[nodeJunctions.beginNodes[n]];
+        VirtualNode endNode = nodeJunctions.nodes[nodeJunctions.endNodes[n]];
+        byte type = nodeJunctions.types[n];
+
+        // These virtual links are always from + to -
+        if (beginNode.getSign() == VirtualNode.POSITIVE) {
+          beginNode.add(
+              new VirtualLink(
+                  nbVirtualLinks++, idx.layerIndex, idx.rowInLayer, beginNode, endNode, type));
+        } else {
+          endNode.add(
+              new VirtualLink(
+                  nbVirtualLinks++, idx.layerIndex, idx.rowInLayer, endNode, beginNode, type));
+        }
+      }
+    }
 
     for (VirtualNodeList element : vnl) {
       if (!nodusMapPanel.updateProgress(
@@ -1085,6 +1314,17 @@ public class VirtualNetwork {
       }
     }
 
+    // Keep the generated network for the next generations
+    if (snapshot != null && !snapshot.save(snapshotKey, vnl, nbVirtualNodes, nbVirtualLinks)) {
+      System.err.println(
+          MessageFormat.format(
+              i18n.get(
+                  VirtualNetwork.class,
+                  "Snapshot_not_saved",
+                  "The virtual network snapshot could not be saved: {0}"),
+              snapshot.getErrorMessage()));
+    }
+
     // System.out.println(nbVirtualNodes + " " + nbVirtualLinks);
     // End of generation
     nodusMapPanel.stopProgress();
@@ -1108,16 +1348,12 @@ public class VirtualNetwork {
 
     // Initialize if needed
     if (graph == null) {
-
       graph = new AdjacencyNode[getNbGroups()][];
-      availableModeMeans = new int[getNbGroups()][];
     }
 
     // Create the adjacency vector
     graph[groupIndex] = new AdjacencyNode[nbNodes + 1];
 
-    byte[][] mm = new byte[NodusC.MAXMM][NodusC.MAXMM];
-    int nbAvailableModeMeans = 0;
     for (VirtualNodeList element : vnl) {
       // Iterate through all the virtual nodes generated for this real
       // node
@@ -1140,16 +1376,6 @@ public class VirtualNetwork {
             continue;
           }
 
-          // Keep the list of possible modes and means
-          if (vl.getType() == VirtualLink.TYPE_LOAD) {
-            int mode = vl.getEndVirtualNode().getMode();
-            int means = vl.getEndVirtualNode().getMeans();
-            if (mm[mode][means] == 0) {
-              mm[mode][means] = 1;
-              nbAvailableModeMeans++;
-            }
-          }
-
           // if (vl.getBeginNode() != vlorigin) {
           current.setNext(new AdjacencyNode(vl.getEndVirtualNode()), groupIndex, vl);
           current = current.nextNode;
@@ -1158,6 +1384,118 @@ public class VirtualNetwork {
       }
     }
 
+    updateAvailableModeMeans(groupIndex);
+
+    return graph[groupIndex];
+  }
+
+  /**
+   * Returns the weights of the edges of the compressed graph for a given group index. Together with
+   * {@link #getCompressedGraph()}, this is the structure that will be used by the shortest path
+   * algorithms. Excluded virtual links get an infinite weight.
+   *
+   * @param groupIndex The index of the group for which the weights must be generated.
+   * @return An array of weights, indexed by edge of the compressed graph.
+   */
+  public synchronized double[] generateEdgeWeights(byte groupIndex) {
+    return generateEdgeWeights(groupIndex, null);
+  }
+
+  /**
+   * Fills an array with the weights of the edges of the compressed graph for a given group, as
+   * {@link #generateEdgeWeights(byte)} does. The array is reused if it has the right size.
+   *
+   * @param groupIndex The index of the group.
+   * @param edgeWeights The array to fill, or null.
+   * @return The filled array.
+   */
+  public synchronized double[] generateEdgeWeights(byte groupIndex, double[] edgeWeights) {
+    edgeWeights = getCompressedGraph().generateEdgeWeights(groupIndex, edgeWeights);
+    updateAvailableModeMeans(groupIndex);
+    return edgeWeights;
+  }
+
+  /**
+   * Returns a number that changes each time the costs are computed, which allows the assignment
+   * workers to know if the edge weights they generated are still valid.
+   *
+   * @return The version of the costs.
+   */
+  public int getCostsVersion() {
+    return costsVersion;
+  }
+
+  /**
+   * Returns the compressed (CSR) graph of the generated virtual network. The graph is built the
+   * first time it is requested and shared by all the groups, as the topology of the virtual network
+   * doesn't depend on the group.
+   *
+   * @return The compressed graph.
+   */
+  public synchronized CompressedGraph getCompressedGraph() {
+    if (compressedGraph == null) {
+      compressedGraph = new CompressedGraph(vnl, nbVirtualNodes, nbVirtualLinks);
+    }
+    return compressedGraph;
+  }
+
+  /**
+   * Returns the contraction hierarchy of the virtual network for a given group, built on the
+   * current costs. It is built the first time it is requested and kept in memory until the costs
+   * are computed again. This is only worth its preprocessing time when a large number of shortest
+   * path costs must be computed on the same costs (distance skims for instance).
+   *
+   * @param groupIndex The index of the group.
+   * @return The contraction hierarchy.
+   */
+  public synchronized ContractionHierarchy getContractionHierarchy(byte groupIndex) {
+    if (contractionHierarchies == null) {
+      contractionHierarchies = new ContractionHierarchy[getNbGroups()];
+    }
+    if (contractionHierarchies[groupIndex] == null) {
+      CompressedGraph cg = getCompressedGraph();
+      contractionHierarchies[groupIndex] =
+          new ContractionHierarchy(cg, cg.generateEdgeWeights(groupIndex));
+    }
+    return contractionHierarchies[groupIndex];
+  }
+
+  /**
+   * Builds the list of mode/means combinations that can be reached by the not excluded loading
+   * virtual links of a given group.
+   *
+   * @param groupIndex The index of the group.
+   */
+  private void updateAvailableModeMeans(byte groupIndex) {
+    if (availableModeMeans == null) {
+      availableModeMeans = new int[getNbGroups()][];
+    }
+
+    byte[][] mm = new byte[NodusC.MAXMM][NodusC.MAXMM];
+    int nbAvailableModeMeans = 0;
+    for (VirtualNodeList element : vnl) {
+      // The loading virtual node is the last node of the list
+      if (!element.isLoadingUnloadingNode()) {
+        continue;
+      }
+
+      Iterator<VirtualLink> linkLit =
+          element.getVirtualNodeList().getLast().getVirtualLinkList().iterator();
+      while (linkLit.hasNext()) {
+        VirtualLink vl = linkLit.next();
+
+        // Keep the list of possible modes and means
+        if (vl.getType() == VirtualLink.TYPE_LOAD && vl.getCost(groupIndex) >= 0) {
+          int mode = vl.getEndVirtualNode().getMode();
+          int means = vl.getEndVirtualNode().getMeans();
+          if (mm[mode][means] == 0) {
+            mm[mode][means] = 1;
+            nbAvailableModeMeans++;
+          }
+        }
+      }
+    }
+
     // Build an array with all the available possible mode/means combinations
     availableModeMeans[groupIndex] = new int[nbAvailableModeMeans];
     int index = 0;
@@ -1169,8 +1507,6 @@ public class VirtualNetwork {
         }
       }
     }
-
-    return graph[groupIndex];
   }
 
   /**
@@ -1213,6 +1549,173 @@ public class VirtualNetwork {
     return groups;
   }
 
+  /**
+   * Extracts the link level data needed to evaluate the first derivative of the objective function
+   * of a Frank-Wolfe assignment for any lambda, for the current and auxiliary volumes. This is only
+   * possible once the costs were computed a first time by {@link
+   * #objectiveFunctionFirstDerivative(int, double, int)}, and if all the volume dependent costs
+   * have a standard BPR or CONICAL form.
+   *
+   * @param vehiclesParser The VehicleParser that holds the characteristics of the vehicles.
+   * @return The line search data, or null if the derivative must be computed by the cost parsers.
+   */
+  public LineSearchData getLineSearchData(VehiclesParser vehiclesParser) {
+    if (volumeDelayBatches == null) {
+      return null;
+    }
+    for (VolumeDelayBatch[] element : volumeDelayBatches) {
+      for (VolumeDelayBatch batch : element) {
+        if (batch == null || !batch.isBuilt() || batch.hasOtherLinks()) {
+          return null;
+        }
+      }
+    }
+
+    LineSearchData data = new LineSearchData();
+
+    // Volumes converted in passenger car units, as in projectedVolumesToVehicles
+    for (byte groupIndex = 0; groupIndex < getNbGroups(); groupIndex++) {
+      int group = groups[groupIndex];
+
+      for (VirtualNodeList element : vnl) {
+        for (VirtualNode vn : element.getVirtualNodeList()) {
+          for (VirtualLink vl : vn.getVirtualLinkList()) {
+            if (vl.getType() != VirtualLink.TYPE_MOVE) {
+              continue;
+            }
+
+            byte mode = vl.getBeginVirtualNode().getMode();
+            byte means = vl.getBeginVirtualNode().getMeans();
+            data.addVolume(
+                vl,
+                vl.getRealLink(),
+                vl.getCurrentVolume(groupIndex),
+                vl.getAuxiliaryVolume(groupIndex),
+                vehiclesParser.getAverageLoad(group, mode, means),
+                vehiclesParser.getPassengerCarUnits(group, mode, means));
+          }
+        }
+      }
+    }
+
+    // Costs
+    for (VolumeDelayBatch[] element : volumeDelayBatches) {
+      for (byte groupIndex = 0; groupIndex < getNbGroups(); groupIndex++) {
+        element[groupIndex].fillLineSearchData(data, groupIndex);
+      }
+    }
+
+    return data;
+  }
+
+  /**
+   * Returns the derivatives of the costs of the virtual links of a group with respect to the
+   * volume of this group on the link itself, for the current volumes. They are only known for the
+   * moving virtual links with a standard BPR or CONICAL cost function, once the costs were computed
+   * by the line search of an equilibrium assignment. The other derivatives are set to 0.
+   *
+   * @param odClass The OD class the costs are computed for.
+   * @param groupIndex The index of the group of commodities.
+   * @param vehiclesParser The VehicleParser that holds the characteristics of the vehicles.
+   * @param derivatives The array to fill, or null.
+   * @return The derivatives, indexed by virtual link ID.
+   */
+  public double[] getCostDerivatives(
+      byte odClass, byte groupIndex, VehiclesParser vehiclesParser, double[] derivatives) {
+    CompressedGraph cg = getCompressedGraph();
+    int nbLinks = cg.getNbLinks();
+    if (derivatives == null || derivatives.length != nbLinks) {
+      derivatives = new double[nbLinks];
+    } else {
+      Arrays.fill(derivatives, 0.0);
+    }
+
+    if (volumeDelayBatches == null) {
+      return derivatives;
+    }
+    VolumeDelayBatch batch = volumeDelayBatches[odClass][groupIndex];
+    if (batch == null || !batch.isBuilt()) {
+      return derivatives;
+    }
+    batch.fillCostDerivatives(derivatives);
+
+    // Derivatives with respect to the volume, as converted in PCU's by volumesToVehicles
+    int group = groups[groupIndex];
+    for (int id = 0; id < nbLinks; id++) {
+      if (derivatives[id] == 0.0) {
+        continue;
+      }
+      if (Double.isNaN(derivatives[id]) || Double.isInfinite(derivatives[id])) {
+        derivatives[id] = 0.0;
+        continue;
+      }
+      VirtualLink vl = cg.getVirtualLink(id);
+      byte mode = vl.getBeginVirtualNode().getMode();
+      byte means = vl.getBeginVirtualNode().getMeans();
+      derivatives[id] *=
+          vehiclesParser.getPassengerCarUnits(group, mode, means)
+              / vehiclesParser.getAverageLoad(group, mode, means);
+    }
+
+    return derivatives;
+  }
+
+  /**
+   * Builds the jacobian of the link costs for the current volumes, used by the conjugate
+   * Frank-Wolfe assignments. This is only possible if all the volume dependent costs have a
+   * standard BPR or CONICAL form.
+   *
+   * @param vehiclesParser The VehicleParser that holds the characteristics of the vehicles.
+   * @return The jacobian, or null if some costs must be computed by the cost parsers.
+   */
+  public CostJacobian getCostJacobian(VehiclesParser vehiclesParser) {
+    if (volumeDelayBatches == null) {
+      return null;
+    }
+    for (VolumeDelayBatch[] element : volumeDelayBatches) {
+      for (VolumeDelayBatch batch : element) {
+        if (batch == null || !batch.isBuilt() || batch.hasOtherLinks()) {
+          return null;
+        }
+      }
+    }
+
+    CostJacobian jacobian = new CostJacobian();
+
+    // Costs, summed over the OD classes
+    for (VolumeDelayBatch[] element : volumeDelayBatches) {
+      for (byte groupIndex = 0; groupIndex < getNbGroups(); groupIndex++) {
+        element[groupIndex].fillCostJacobian(jacobian, groupIndex);
+      }
+    }
+
+    // Passenger car units per unit of volume, as in volumesToVehicles
+    for (byte groupIndex = 0; groupIndex < getNbGroups(); groupIndex++) {
+      int group = groups[groupIndex];
+
+      for (VirtualNodeList element : vnl) {
+        for (VirtualNode vn : element.getVirtualNodeList()) {
+          for (VirtualLink vl : vn.getVirtualLinkList()) {
+            if (vl.getType() != VirtualLink.TYPE_MOVE) {
+              continue;
+            }
+
+            byte mode = vl.getBeginVirtualNode().getMode();
+            byte means = vl.getBeginVirtualNode().getMeans();
+            jacobian.addVolumeDerivative(
+                vl,
+                vl.getRealLink(),
+                groupIndex,
+                vehiclesParser.getPassengerCarUnits(group, mode, means)
+                    / vehiclesParser.getAverageLoad(group, mode, means));
+          }
+        }
+      }
+    }
+
+    return jacobian;
+  }
+
   /**
    * Returns the number of groups to assign.
    *
@@ -1298,6 +1801,77 @@ public class VirtualNetwork {
     return nodesEsriLayer;
   }
 
+  /**
+   * Returns the key of the data the virtual network is generated from, used to identify its
+   * snapshots: the nodes and links of the real network, the services and the mode/means
+   * combinations for which services are generated.
+   */
+  private long getSnapshotKey() {
+    long key = 0;
+
+    for (int i = 0; i < nodesDbf.length; i++) {
+      key = VirtualNetworkSnapshot.mix(key, nodesDbf[i].getRowCount());
+      for (int j = 0; j < nodesDbf[i].getRowCount(); j++) {
+        List<Object> values = nodesDbf[i].getRecord(j);
+        key = VirtualNetworkSnapshot.mix(key, JDBCUtils.getInt(values.get(NodusC.DBF_IDX_NUM)));
+        key =
+            VirtualNetworkSnapshot.mix(key, JDBCUtils.getInt(values.get(NodusC.DBF_IDX_TRANSHIP)));
+      }
+    }
+
+    final int[] linkFields = {
+      NodusC.DBF_IDX_ENABLED,
+      NodusC.DBF_IDX_NUM,
+      NodusC.DBF_IDX_NODE1,
+      NodusC.DBF_IDX_NODE2,
+      NodusC.DBF_IDX_MODE,
+      NodusC.DBF_IDX_MEANS
+    };
+    for (int i = 0; i < nbLinkLayers; i++) {
+      EsriGraphicList egl = linksEsriLayer[i].getEsriGraphicList();
+      key = VirtualNetworkSnapshot.mix(key, linksDbf[i].getRowCount());
+      for (int j = 0; j < linksDbf[i].getRowCount(); j++) {
+        RealLink realLink = (RealLink) egl.getOMGraphicAt(j).getAttribute(0);
+        key = VirtualNetworkSnapshot.mix(key, realLink.isInHighlightedArea() ? 1 : 0);
+
+        List<Object> values = linksDbf[i].getRecord(j);
+        for (int field : linkFields) {
+          key = VirtualNetworkSnapshot.mix(key, JDBCUtils.getInt(values.get(field)));
+        }
+
+        LinkedList<Integer> services = realLink.getServices();
+        if (services != null) {
+          key = VirtualNetworkSnapshot.mix(key, services.size());
+          for (int service : services) {
+            key = VirtualNetworkSnapshot.mix(key, service);
+          }
+        }
+      }
+    }
+
+    ServiceHandler serviceHandler = nodusProject.getServiceHandler();
+    Iterator<String> it = serviceHandler.getServiceNamesIterator();
+    while (it.hasNext()) {
+      TransportService service = serviceHandler.getService(it.next());
+      key = VirtualNetworkSnapshot.mix(key, service.getId());
+      key = VirtualNetworkSnapshot.mix(key, service.getMeans());
+      key = VirtualNetworkSnapshot.mix(key, service.getNbStops());
+      for (int stop : service.getStopNodes()) {
+        key = VirtualNetworkSnapshot.mix(key, stop);
+      }
+    }
+
+    for (int mode = 0; mode < NodusC.MAXMM; mode++) {
+      for (int means = 0; means < NodusC.MAXMM; means++) {
+        if (linesForModeMeans[mode][means]) {
+          key = VirtualNetworkSnapshot.mix(key, mode << 8 | means);
+        }
+      }
+    }
+
+    return key;
+  }
+
   /**
    * Duration of a time slice, expressed in minutes.
    *
@@ -1404,32 +1978,29 @@ public class VirtualNetwork {
 
     nodusMapPanel.startProgress(vnl.length * getNbGroups() * nbODClasses);
 
-    System.out.println(
-        MessageFormat.format(
-            i18n.get(
-                VirtualNetwork.class,
-                "Last_lambda_descent",
-                "Iteration {0}: Last lambda descent={1}"),
-            iteration,
-            formatter.format(approachedLambda)));
+    if (volumeDelayBatches == null) {
+      volumeDelayBatches = new VolumeDelayBatch[nbODClasses][getNbGroups()];
+    }
 
-    for (byte odClass = 0; odClass < nbODClasses; odClass++) {
+    // The volume dependent costs will be computed for other volumes
+    if (volumeDependentLinks != null) {
+      for (VolumeDependentLinks element : volumeDependentLinks) {
+        if (element != null) {
+          element.invalidateVolumes();
+        }
+      }
+    }
 
-      // Create the work queue
-      WorkQueue queue = new WorkQueue();
+    for (byte odClass = 0; odClass < nbODClasses; odClass++) {
 
-      // Create a set of worker threads
-      CostParserWorker[] worker = new CostParserWorker[threads];
-      for (int i = 0; i < worker.length; i++) {
-        worker[i] = new CostParserWorker(queue);
-      }
+      // Get the pool of worker threads
+      CostParserWorker[] worker = startCostWorkers(threads);
 
       // Add the works to the queue
       for (byte groupIndex = 0; groupIndex < getNbGroups(); groupIndex++) {
-        CostParser costParser =
-            new CostParser(
-                costFunctions, nodusProject, scenario, groups[groupIndex], odClass, (byte) -1);
+        CostParser costParser = getCostParser(scenario, odClass, groupIndex, -1);
         if (!costParser.isInitialized()) {
+          waitForCostWorkers();
           nodusMapPanel.stopProgress();
           // Display the error message
           JOptionPane.showMessageDialog(
@@ -1440,21 +2011,17 @@ public class VirtualNetwork {
         CostParserWorkerParameters cpp =
             new CostParserWorkerParameters(
                 worker, nodusProject, scenario, odClass, groupIndex, this, costParser, true);
-        queue.addWork(cpp);
-      }
 
-      // Add special end-of-stream markers to terminate the workers
-      for (int i = 0; i < worker.length; i++) {
-        queue.addWork(WorkQueue.NO_MORE_WORK);
-      }
-
-      // Start the threads on the now correctly initialized parsers
-      for (CostParserWorker element : worker) {
-        element.start();
+        // The costs of the congested links are recomputed in batch after the first call
+        if (volumeDelayBatches[odClass][groupIndex] == null) {
+          volumeDelayBatches[odClass][groupIndex] = new VolumeDelayBatch();
+        }
+        cpp.setVolumeDelayBatch(volumeDelayBatches[odClass][groupIndex]);
+        costQueue.addWork(cpp);
       }
 
       // Wait until all the works are completed
-      if (!waitForCostWorkers(worker)) {
+      if (!waitForCostWorkers()) {
         nodusMapPanel.stopProgress();
         return Double.NaN;
       }
@@ -1510,6 +2077,44 @@ public class VirtualNetwork {
     }
   }
 
+  /**
+   * Runs the jobs of a parallel phase of the generation with a set of worker threads, and waits
+   * until they are completed.
+   *
+   * @param jobs The jobs to run.
+   * @return True if all the jobs succeeded.
+   */
+  private boolean runGenerationJobs(LinkedList<Runnable> jobs) {
+    WorkQueue queue = new WorkQueue();
+    VirtualNetworkGenerationWorker[] workers =
+        new VirtualNetworkGenerationWorker[Math.min(nbThreads, Math.max(1, jobs.size()))];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new VirtualNetworkGenerationWorker(queue);
+      workers[i].start();
+    }
+
+    for (Runnable job : jobs) {
+      queue.addWork(job);
+    }
+    for (int i = 0; i < workers.length; i++) {
+      queue.addWork(WorkQueue.NO_MORE_WORK);
+    }
+
+    boolean success = true;
+    for (VirtualNetworkGenerationWorker worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      if (worker.hasFailed()) {
+        success = false;
+      }
+    }
+    return success;
+  }
+
   /**
    * Sets the specific parameters for time dependent assignments.
    *
@@ -1546,6 +2151,7 @@ public class VirtualNetwork {
     }
 
     this.groups = groups;
+    linkStates = new VirtualLinkStates(nbVirtualLinks, groups.length, nbTimeSlices);
 
     for (VirtualNodeList element : vnl) {
       // Iterate through all the virtual nodes generated for this real
@@ -1561,7 +2167,7 @@ public class VirtualNetwork {
 
         while (linkLit.hasNext()) {
           VirtualLink vl = linkLit.next();
-          vl.setNbGroups(groups.length, nbTimeSlices);
+          vl.setStates(linkStates);
         }
       }
     }
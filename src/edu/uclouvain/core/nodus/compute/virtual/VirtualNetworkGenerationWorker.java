@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.virtual;
+
+import edu.uclouvain.core.nodus.utils.WorkQueue;
+
+/**
+ * Thread that runs the jobs of the parallel phases of the generation of a virtual network. Each
+ * job is a Runnable fetched from a WorkQueue, which only writes in its own part of the data
+ * structures, so that the generated network doesn't depend on the number of threads.
+ *
+ * @author Bart Jourquin
+ */
+class VirtualNetworkGenerationWorker extends Thread {
+
+  /* Will be true if a job failed */
+  private volatile boolean failed = false;
+
+  /* Queue of jobs to run */
+  private WorkQueue workQueue;
+
+  /**
+   * Constructor.
+   *
+   * @param queue The queue of jobs to run.
+   */
+  VirtualNetworkGenerationWorker(WorkQueue queue) {
+    workQueue = queue;
+  }
+
+  /**
+   * Returns true if one of the jobs run by this worker failed.
+   *
+   * @return True on failure.
+   */
+  boolean hasFailed() {
+    return failed;
+  }
+
+  /** Runs the jobs until the end-of-stream marker is fetched. */
+  @Override
+  public void run() {
+    while (true) {
+      Object job;
+      try {
+        job = workQueue.getWork();
+      } catch (InterruptedException e) {
+        failed = true;
+        return;
+      }
+
+      if (job == WorkQueue.NO_MORE_WORK) {
+        return;
+      }
+
+      try {
+        ((Runnable) job).run();
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+        failed = true;
+      } finally {
+        workQueue.workDone();
+      }
+    }
+  }
+}
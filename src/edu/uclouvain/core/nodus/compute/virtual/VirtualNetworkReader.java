@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.virtual;
+
+import com.bbn.openmap.Environment;
+import com.bbn.openmap.util.I18n;
+import edu.uclouvain.core.nodus.NodusC;
+import edu.uclouvain.core.nodus.NodusProject;
+import edu.uclouvain.core.nodus.database.JDBCUtils;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Reads the volumes assigned in a scenario, as saved by the {@link VirtualNetworkWriter}, into
+ * the current volumes of the virtual links of a new virtual network. An equilibrium assignment can
+ * so start from the solution of a closely related scenario instead of an empty network.
+ *
+ * <p>The records of the table are matched with the virtual links using the same elements as when
+ * scenarios are compared (node, link, mode, means and service at both ends). The groups are
+ * matched by their number. Only the results of a static assignment can be read.
+ *
+ * @author Bart Jourquin
+ */
+public class VirtualNetworkReader {
+
+  private static I18n i18n = Environment.getI18n();
+
+  private String errorMessage = null;
+
+  private int nbMatchedRecords = 0;
+
+  private int nbRecords = 0;
+
+  private NodusProject nodusProject;
+
+  private VirtualNetwork virtualNet;
+
+  /**
+   * Initializes a reader for a virtual network.
+   *
+   * @param nodusProject The Nodus project.
+   * @param vnet The virtual network which volumes must be initialized.
+   */
+  public VirtualNetworkReader(NodusProject nodusProject, VirtualNetwork vnet) {
+    this.nodusProject = nodusProject;
+    virtualNet = vnet;
+  }
+
+  /**
+   * Returns the message that explains why the volumes could not be read.
+   *
+   * @return The error message, or null.
+   */
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /** Returns the key of a virtual link, made of the elements saved for its two ends. */
+  private static String getKey(
+      int node1,
+      int link1,
+      int mode1,
+      int means1,
+      int service1,
+      int node2,
+      int link2,
+      int mode2,
+      int means2,
+      int service2) {
+    return node1
+        + ":"
+        + link1
+        + ":"
+        + mode1
+        + ":"
+        + means1
+        + ":"
+        + service1
+        + "-"
+        + node2
+        + ":"
+        + link2
+        + ":"
+        + mode2
+        + ":"
+        + means2
+        + ":"
+        + service2;
+  }
+
+  /**
+   * Returns the number of records of the table that correspond to a virtual link of the network.
+   *
+   * @return The number of matched records.
+   */
+  public int getNbMatchedRecords() {
+    return nbMatchedRecords;
+  }
+
+  /**
+   * Returns the number of records read from the table.
+   *
+   * @return The number of records.
+   */
+  public int getNbRecords() {
+    return nbRecords;
+  }
+
+  /**
+   * Adds the volumes saved for a scenario to the current volumes of the virtual links. The number
+   * of vehicles must then be computed by the caller.
+   *
+   * @param scenario The ID of the scenario to read.
+   * @return True on success.
+   */
+  public boolean loadVolumes(int scenario) {
+    String tableName =
+        nodusProject.getLocalProperty(NodusC.PROP_PROJECT_DOTNAME) + NodusC.SUFFIX_VNET;
+    tableName = nodusProject.getLocalProperty(NodusC.PROP_VNET_TABLE, tableName) + scenario;
+    tableName = JDBCUtils.getCompliantIdentifier(tableName);
+
+    if (!JDBCUtils.tableExists(tableName)) {
+      errorMessage =
+          MessageFormat.format(
+              i18n.get(
+                  VirtualNetworkReader.class,
+                  "No_virtual_network",
+                  "No assigned virtual network found for scenario {0}"),
+              scenario);
+      return false;
+    }
+
+    // Quantity fields of the groups of the virtual network that are present in the table
+    byte[] groups = virtualNet.getGroups();
+    boolean[] hasGroup = new boolean[groups.length];
+    try (ResultSet col = JDBCUtils.getColumns(tableName)) {
+      while (col.next()) {
+        String c = col.getString(4).toLowerCase();
+        for (int k = 0; k < groups.length; k++) {
+          if (c.equals(NodusC.DBF_QUANTITY + groups[k])) {
+            hasGroup[k] = true;
+          }
+        }
+      }
+    } catch (SQLException ex) {
+      errorMessage = ex.toString();
+      return false;
+    }
+
+    String sqlStmt =
+        "SELECT "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_NODE1)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_LINK1)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_MODE1)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_MEANS1)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_SERVICE1)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_NODE2)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_LINK2)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_MODE2)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_MEANS2)
+            + ", "
+            + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_SERVICE2);
+    for (int k = 0; k < groups.length; k++) {
+      if (hasGroup[k]) {
+        sqlStmt += ", " + JDBCUtils.getQuotedCompliantIdentifier(NodusC.DBF_QUANTITY + groups[k]);
+      }
+    }
+    sqlStmt += " FROM " + JDBCUtils.getQuotedCompliantIdentifier(tableName);
+
+    // Read the volumes of all the records
+    HashMap<String, double[]> volumes = new HashMap<>();
+    Connection con = nodusProject.getMainJDBCConnection();
+    try (Statement stmt = con.createStatement();
+        ResultSet rs = stmt.executeQuery(sqlStmt)) {
+      while (rs.next()) {
+        String key =
+            getKey(
+                JDBCUtils.getInt(rs.getObject(1)),
+                JDBCUtils.getInt(rs.getObject(2)),
+                JDBCUtils.getInt(rs.getObject(3)),
+                JDBCUtils.getInt(rs.getObject(4)),
+                JDBCUtils.getInt(rs.getObject(5)),
+                JDBCUtils.getInt(rs.getObject(6)),
+                JDBCUtils.getInt(rs.getObject(7)),
+                JDBCUtils.getInt(rs.getObject(8)),
+                JDBCUtils.getInt(rs.getObject(9)),
+                JDBCUtils.getInt(rs.getObject(10)));
+
+        double[] qty = new double[groups.length];
+        int idx = 11;
+        for (int k = 0; k < groups.length; k++) {
+          if (hasGroup[k]) {
+            qty[k] = JDBCUtils.getDouble(rs.getObject(idx++));
+          }
+        }
+
+        // A virtual link is saved once per time slice in dynamic assignments
+        if (volumes.put(key, qty) != null) {
+          errorMessage =
+              MessageFormat.format(
+                  i18n.get(
+                      VirtualNetworkReader.class,
+                      "Not_static",
+                      "Scenario {0} is not the result of a static assignment"),
+                  scenario);
+          return false;
+        }
+        nbRecords++;
+      }
+    } catch (SQLException ex) {
+      errorMessage = ex.toString();
+      return false;
+    }
+
+    // Initialize the current volumes of the matching virtual links
+    for (VirtualNodeList element : virtualNet.getVirtualNodeLists()) {
+      Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+
+      while (nodeLit.hasNext()) {
+        VirtualNode vn = nodeLit.next();
+        Iterator<VirtualLink> linkLit = vn.getVirtualLinkList().iterator();
+
+        while (linkLit.hasNext()) {
+          VirtualLink vl = linkLit.next();
+          VirtualNode begin = vl.getBeginVirtualNode();
+          VirtualNode end = vl.getEndVirtualNode();
+          String key =
+              getKey(
+                  begin.getRealNodeId(true),
+                  begin.getRealLinkId(),
+                  begin.getMode(),
+                  begin.getMeans(),
+                  begin.getService(),
+                  end.getRealNodeId(true),
+                  end.getRealLinkId(),
+                  end.getMode(),
+                  end.getMeans(),
+                  end.getService());
+
+          double[] qty = volumes.get(key);
+          if (qty != null) {
+            for (byte k = 0; k < (byte) groups.length; k++) {
+              vl.addVolume(k, qty[k]);
+            }
+            nbMatchedRecords++;
+          }
+        }
+      }
+    }
+
+    return true;
+  }
+}
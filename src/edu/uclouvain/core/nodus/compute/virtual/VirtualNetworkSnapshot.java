@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 1991-2026 Université catholique de Louvain
+ *
+ * <p>Center for Operations Research and Econometrics (CORE)
+ *
+ * <p>http://www.uclouvain.be
+ *
+ * <p>This file is part of Nodus.
+ *
+ * <p>Nodus is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * <p>You should have received a copy of the GNU General Public License along with this program. If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package edu.uclouvain.core.nodus.compute.virtual;
+
+import com.bbn.openmap.layer.shape.NodusEsriLayer;
+import com.bbn.openmap.omGraphics.OMPoint;
+import edu.uclouvain.core.nodus.compute.real.RealLink;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of the topology of a generated virtual network: the virtual nodes of each real
+ * node, their virtual links, and the loading and unloading virtual nodes. A snapshot is saved
+ * after each generation, and the next generations read it instead of generating the network
+ * again, as long as the data the network is generated from did not change.
+ *
+ * <p>The snapshot is identified by a key computed by the virtual network from this data (see
+ * {@link #mix(long, long)}). The costs, volumes and exclusions are not part of the snapshot, as
+ * they are computed or loaded for each assignment.
+ *
+ * @author Bart Jourquin
+ */
+class VirtualNetworkSnapshot {
+
+  /* "NVNS", for "Nodus Virtual Network Snapshot" */
+  private static final int MAGIC = 0x4e564e53;
+
+  private static final int VERSION = 2;
+
+  /* Size of the header: magic, version, key and the numbers of lists, nodes and links */
+  private static final int HEADER_SIZE = 28;
+
+  /* Minimum size of the record of a virtual link */
+  private static final int LINK_RECORD_SIZE = 17;
+
+  /* Minimum size of the record of a virtual node */
+  private static final int NODE_RECORD_SIZE = 16;
+
+  /* Size of the trailer: number of records and checksum */
+  private static final int TRAILER_SIZE = 12;
+
+  private String errorMessage = null;
+
+  private File file;
+
+  private int nbVirtualLinks;
+
+  private int nbVirtualNodes;
+
+  /**
+   * Initializes a snapshot.
+   *
+   * @param fileName The name of the file the snapshot is saved in.
+   */
+  VirtualNetworkSnapshot(String fileName) {
+    file = new File(fileName);
+  }
+
+  /**
+   * Returns the number of virtual links (plus one) of the loaded snapshot.
+   *
+   * @return The number of virtual links.
+   */
+  int getNbVirtualLinks() {
+    return nbVirtualLinks;
+  }
+
+  /**
+   * Returns the number of virtual nodes (plus one) of the loaded snapshot.
+   *
+   * @return The number of virtual nodes.
+   */
+  int getNbVirtualNodes() {
+    return nbVirtualNodes;
+  }
+
+  /**
+   * Loads the virtual nodes and links saved in the snapshot into the virtual node lists of a
+   * network, if the snapshot exists, is complete and was saved with the same key. The file is read
+   * in memory and its checksum verified before anything is built.
+   *
+   * @param key The key of the data the network is generated from.
+   * @param vnl The virtual node lists, which must still be empty.
+   * @param linksEsriLayer The layers of the real links the moving virtual links are generated from.
+   * @return True if the snapshot was loaded, false if the network must be generated.
+   */
+  boolean load(long key, VirtualNodeList[] vnl, NodusEsriLayer[] linksEsriLayer) {
+    if (!file.exists()) {
+      return false;
+    }
+
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    } catch (IOException | OutOfMemoryError e) {
+      return false;
+    }
+
+    // The file ends with the number of records and the checksum of all that precedes them
+    if (buffer.limit() < HEADER_SIZE + TRAILER_SIZE) {
+      return false;
+    }
+    int payloadEnd = buffer.limit() - TRAILER_SIZE;
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 0, payloadEnd + 4);
+    if (buffer.getLong(payloadEnd + 4) != crc.getValue()) {
+      return false;
+    }
+    int nbRecords = buffer.getInt(payloadEnd);
+
+    try {
+      if (buffer.getInt() != MAGIC
+          || buffer.getInt() != VERSION
+          || buffer.getLong() != key
+          || buffer.getInt() != vnl.length) {
+        return false;
+      }
+      nbVirtualNodes = buffer.getInt();
+      nbVirtualLinks = buffer.getInt();
+      if (nbVirtualNodes <= 0
+          || nbVirtualLinks <= 0
+          || nbVirtualNodes > payloadEnd / NODE_RECORD_SIZE
+          || nbVirtualLinks > payloadEnd / LINK_RECORD_SIZE) {
+        return false;
+      }
+
+      // Virtual nodes of each real node
+      VirtualNode[] nodes = new VirtualNode[nbVirtualNodes];
+      int nbLoadedRecords = 0;
+      for (VirtualNodeList element : vnl) {
+        OMPoint graphic = element.getGraphic();
+        int nbNodes = buffer.getInt();
+        for (int i = 0; i < nbNodes; i++) {
+          int id = buffer.getInt();
+          if (id <= 0 || id >= nbVirtualNodes || nodes[id] != null) {
+            throw new IllegalStateException("Invalid virtual node " + id);
+          }
+          VirtualNode vn =
+              new VirtualNode(
+                  id,
+                  buffer.getInt(),
+                  buffer.getInt(),
+                  buffer.get(),
+                  buffer.get(),
+                  buffer.getShort(),
+                  graphic.getLat(),
+                  graphic.getLon());
+          nodes[id] = vn;
+          element.addVirtualNode(vn);
+          nbLoadedRecords++;
+        }
+
+        if (element.isLoadingUnloadingNode()) {
+          element.setLoadingVirtualNodeNum(getNode(nodes, buffer.getInt()).getId());
+          element.setUnloadingVirtualNodeId(getNode(nodes, buffer.getInt()).getId());
+        }
+      }
+
+      // Virtual links that start from each virtual node
+      for (VirtualNodeList element : vnl) {
+        Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+        while (nodeLit.hasNext()) {
+          VirtualNode beginNode = nodeLit.next();
+          int nbLinks = buffer.getInt();
+          for (int i = 0; i < nbLinks; i++) {
+            int id = buffer.getInt();
+            if (id <= 0 || id >= nbVirtualLinks) {
+              throw new IllegalStateException("Invalid virtual link " + id);
+            }
+            VirtualNode endNode = getNode(nodes, buffer.getInt());
+            int layerIndex = buffer.getInt();
+            int indexInLayer = buffer.getInt();
+            byte type = buffer.get();
+
+            if (type == VirtualLink.TYPE_MOVE) {
+              RealLink realLink =
+                  (RealLink)
+                      linksEsriLayer[layerIndex]
+                          .getEsriGraphicList()
+                          .getOMGraphicAt(indexInLayer)
+                          .getAttribute(0);
+              beginNode.add(
+                  new VirtualLink(id, layerIndex, indexInLayer, beginNode, endNode, realLink));
+            } else {
+              beginNode.add(
+                  new VirtualLink(id, layerIndex, indexInLayer, beginNode, endNode, type));
+            }
+            nbLoadedRecords++;
+          }
+        }
+      }
+
+      if (buffer.position() != payloadEnd || nbLoadedRecords != nbRecords) {
+        throw new IllegalStateException("Incomplete snapshot");
+      }
+      return true;
+    } catch (RuntimeException e) {
+      // Damaged snapshot: the virtual node lists are filled again by the generation
+      for (VirtualNodeList element : vnl) {
+        element.getVirtualNodeList().clear();
+      }
+      return false;
+    }
+  }
+
+  /** Returns a loaded virtual node, checking that its ID is valid. */
+  private static VirtualNode getNode(VirtualNode[] nodes, int id) {
+    if (id <= 0 || id >= nodes.length || nodes[id] == null) {
+      throw new IllegalStateException("Invalid virtual node " + id);
+    }
+    return nodes[id];
+  }
+
+  /**
+   * Adds a value to a key.
+   *
+   * @param key The current key.
+   * @param value The value to add.
+   * @return The new key.
+   */
+  static long mix(long key, long value) {
+    long h = (key ^ value) * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Returns the message that explains why the snapshot could not be saved.
+   *
+   * @return The error message, or null.
+   */
+  String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * Saves the virtual nodes and links of a generated network. The snapshot is written in a
+   * temporary file which then replaces the previous snapshot, so that a snapshot is never read
+   * while it is only partially written.
+   *
+   * @param key The key of the data the network is generated from.
+   * @param vnl The virtual node lists of the network.
+   * @param nbVirtualNodes The number of virtual nodes (plus one) of the network.
+   * @param nbVirtualLinks The number of virtual links (plus one) of the network.
+   * @return True on success.
+   */
+  boolean save(long key, VirtualNodeList[] vnl, int nbVirtualNodes, int nbVirtualLinks) {
+    errorMessage = null;
+    File tmpFile = null;
+    try {
+      tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+      CRC32 crc = new CRC32();
+      try (DataOutputStream out =
+          new DataOutputStream(
+              new CheckedOutputStream(
+                  new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16), crc))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(key);
+        out.writeInt(vnl.length);
+        out.writeInt(nbVirtualNodes);
+        out.writeInt(nbVirtualLinks);
+
+        int nbRecords = 0;
+        for (VirtualNodeList element : vnl) {
+          out.writeInt(element.getVirtualNodeList().size());
+          Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+          while (nodeLit.hasNext()) {
+            VirtualNode vn = nodeLit.next();
+            out.writeInt(vn.getId());
+            out.writeInt(vn.getRealNodeId(true));
+            out.writeInt(vn.getRealLinkId());
+            out.writeByte(vn.getMode());
+            out.writeByte(vn.getMeans());
+            out.writeShort(vn.getService());
+            nbRecords++;
+          }
+
+          if (element.isLoadingUnloadingNode()) {
+            out.writeInt(element.getLoadingVirtualNodeId());
+            out.writeInt(element.getUnloadingVirtualNodeId());
+          }
+        }
+
+        for (VirtualNodeList element : vnl) {
+          Iterator<VirtualNode> nodeLit = element.getVirtualNodeList().iterator();
+          while (nodeLit.hasNext()) {
+            VirtualNode vn = nodeLit.next();
+            out.writeInt(vn.getVirtualLinkList().size());
+            Iterator<VirtualLink> linkLit = vn.getVirtualLinkList().iterator();
+            while (linkLit.hasNext()) {
+              VirtualLink vl = linkLit.next();
+              out.writeInt(vl.getId());
+              out.writeInt(vl.getEndVirtualNode().getId());
+              out.writeInt(vl.getLayerIndex());
+              out.writeInt(vl.getIndexInLayer());
+              out.writeByte(vl.getType());
+              nbRecords++;
+            }
+          }
+        }
+
+        // Number of records and checksum of all that precedes the checksum
+        out.writeInt(nbRecords);
+        out.flush();
+        out.writeLong(crc.getValue());
+      }
+
+      try {
+        Files.move(
+            tmpFile.toPath(),
+            file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      errorMessage = e.toString();
+      if (tmpFile != null) {
+        tmpFile.delete();
+      }
+      return false;
+    }
+    return true;
+  }
+}
@@ -138,10 +138,7 @@ public class VirtualNodeList {
     }
   }
 
-  /**
-   * Stores a demand in the relevant demand list, designated by its index. Called by addDemand(...)
-   * and relocateDemand(...).
-   */
+  /** Stores a demand in the demand list designated by its index. */
   private void storeDemand(int listIndex, ODCell odCell) {
 
     // Is there already a demand for this destination ?
@@ -193,32 +190,6 @@ public class VirtualNodeList {
     storeDemand(0, odCell);
   }
 
-  /**
-   * Relocates a demand to a another real node during a dynamic assignment.
-   *
-   * @param odCell The OD cell to relocate.
-   * @param newVirtualNodeId The ID of the virtual node the demand must be reallocated to.
-   */
-  public synchronized void relocateDemand(ODCell odCell, int newVirtualNodeId) {
-    // Is there already a list associated to the given starting virtual node ?
-    if (demands != null) {
-      for (int i = 0; i < demands.size(); i++) {
-        Demands d = demands.get(i);
-        if (d.loadingVirtualNodeId == newVirtualNodeId) {
-          storeDemand(i, odCell);
-          return;
-        }
-      }
-    } else {
-      demands = new Vector<>(1, 1);
-    }
-
-    Demands relocatedDemands = new Demands();
-    relocatedDemands.loadingVirtualNodeId = newVirtualNodeId;
-    demands.add(relocatedDemands);
-    storeDemand(demands.size() - 1, odCell);
-  }
-
   /**
    * Adds an exclude operation to the real node associated to this list. The exclusions are stored
    * in lists, per scenario and group of commodities. the scenario independent (-1) and group
@@ -295,36 +266,20 @@ public class VirtualNodeList {
    * @return LinkedList containing the Demands associated to this groups.
    */
   public LinkedList<ODCell> getDemandForGroup(int group, byte odClass) {
-    return getDemandForGroup(0, group, odClass);
-  }
 
-  /**
-   * Returns the demands from one loading-node-specific list for a given group and OD class.
-   *
-   * @param listIndex Index of the demand list.
-   * @param group The group ID.
-   * @param odClass The OD class ID.
-   * @return The matching demands, or null if none exist.
-   */
-  public synchronized LinkedList<ODCell> getDemandForGroup(
-      int listIndex, int group, byte odClass) {
-
-    if (demands == null || listIndex < 0 || listIndex >= demands.size()) {
+    if (demands == null) {
       return null;
     }
 
     LinkedList<ODCell> listForGroup = new LinkedList<>();
-    Collection<LinkedList<ODCell>> values = demands.get(listIndex).destinations.values();
+    Collection<LinkedList<ODCell>> values = demands.get(0).destinations.values();
     Iterator<LinkedList<ODCell>> it = values.iterator();
     while (it.hasNext()) {
-      LinkedList<ODCell> demandList = it.next();
-      synchronized (demandList) {
-        Iterator<ODCell> it2 = demandList.iterator();
-        while (it2.hasNext()) {
-          ODCell cell = it2.next();
-          if (cell.getGroup() == group && cell.getODClass() == odClass) {
-            listForGroup.add(cell);
-          }
+      Iterator<ODCell> it2 = it.next().iterator();
+      while (it2.hasNext()) {
+        ODCell cell = it2.next();
+        if (cell.getGroup() == group && cell.getODClass() == odClass) {
+          listForGroup.add(cell);
         }
       }
     }
@@ -425,32 +380,6 @@ public class VirtualNodeList {
     return demands.get(0).loadingVirtualNodeId;
   }
 
-  /**
-   * Returns the loading virtual node associated with a specific demand list.
-   *
-   * @param listIndex Index of the demand list.
-   * @return The loading virtual node ID, or -1 if the list does not exist.
-   */
-  public synchronized int getLoadingVirtualNodeId(int listIndex) {
-    if (demands == null || listIndex < 0 || listIndex >= demands.size()) {
-      return -1;
-    }
-    return demands.get(listIndex).loadingVirtualNodeId;
-  }
-
-  /**
-   * Returns the number of demand lists associated to the real node.
-   *
-   * @return The number of demand lists.
-   */
-  public synchronized int getNbDemandLists() {
-    if (demands == null) {
-      return 0;
-    } else {
-      return demands.size();
-    }
-  }
-
   /**
    * Returns the ID of the associated real node.
    *
@@ -485,25 +414,20 @@ public class VirtualNodeList {
    * @param odClass The ID of the OD class.
    * @return True if a demand exists.
    */
-  public synchronized boolean hasDemandForGroup(int group, byte odClass) {
+  public boolean hasDemandForGroup(int group, byte odClass) {
 
     if (demands == null) {
       return false;
     }
 
-    for (int i = 0; i < demands.size(); i++) {
-      Collection<LinkedList<ODCell>> values = demands.get(i).destinations.values();
-      Iterator<LinkedList<ODCell>> it = values.iterator();
-      while (it.hasNext()) {
-        LinkedList<ODCell> demandList = it.next();
-        synchronized (demandList) {
-          Iterator<ODCell> it2 = demandList.iterator();
-          while (it2.hasNext()) {
-            ODCell cell = it2.next();
-            if (cell.getGroup() == group && cell.getODClass() == odClass) {
-              return true;
-            }
-          }
+    Collection<LinkedList<ODCell>> values = demands.get(0).destinations.values();
+    Iterator<LinkedList<ODCell>> it = values.iterator();
+    while (it.hasNext()) {
+      Iterator<ODCell> it2 = it.next().iterator();
+      while (it2.hasNext()) {
+        ODCell cell = it2.next();
+        if (cell.getGroup() == group && cell.getODClass() == odClass) {
+          return true;
         }
       }
     }
@@ -546,32 +470,6 @@ public class VirtualNodeList {
     return allowTransit;
   }
 
-  /**
-   * Removes a demand cell from the list.
-   *
-   * @param listIndex Index of the demand list the demand must be deleted from.
-   * @param odCell The OD cell to remove.
-   */
-  public synchronized void removeDemand(int listIndex, ODCell odCell) {
-    if (demands == null || listIndex < 0 || listIndex >= demands.size() || odCell == null) {
-      return;
-    }
-
-    HashMap<Integer, LinkedList<ODCell>> destinations = demands.get(listIndex).destinations;
-
-    LinkedList<ODCell> ll = destinations.get(odCell.getDestinationNodeId());
-    if (ll == null) {
-      return;
-    }
-
-    synchronized (ll) {
-      ll.remove(odCell);
-      if (ll.isEmpty()) {
-        destinations.remove(odCell.getDestinationNodeId());
-      }
-    }
-  }
-
   /**
    * Sets the loading virtual node associated to the real node.
    *
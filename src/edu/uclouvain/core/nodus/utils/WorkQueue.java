@@ -25,6 +25,9 @@ import java.util.LinkedList;
 
 /**
  * A WorkQueue is a linked list with a special marker telling that there are no more jobs to handle.
+ * The queue also counts the jobs that are not completed yet, so that a pool of workers can be kept
+ * alive and fed with several successive series of jobs. In that case, the workers must call {@link
+ * #workDone()} after each job, and {@link #waitForCompletion()} waits for the end of the series.
  *
  * @author Bart Jourquin, inspired from The Java Developers Almanac 1.4
  */
@@ -39,6 +42,9 @@ public class WorkQueue {
   /** The list of workers to run. */
   private LinkedList<Object> queue = new LinkedList<Object>();
 
+  /** Number of jobs added to the queue that are not completed yet. */
+  private int pendingWorks = 0;
+
   /** Default constructor. */
   public WorkQueue() {}
 
@@ -49,6 +55,9 @@ public class WorkQueue {
    */
   public synchronized void addWork(Object work) {
     queue.addLast(work);
+    if (work != NO_MORE_WORK) {
+      pendingWorks++;
+    }
     notifyAll();
   }
 
@@ -64,4 +73,21 @@ public class WorkQueue {
     }
     return queue.removeFirst();
   }
+
+  /**
+   * Waits until all the jobs added to the queue are completed.
+   *
+   * @throws InterruptedException If the waiting thread was interrupted.
+   */
+  public synchronized void waitForCompletion() throws InterruptedException {
+    while (pendingWorks > 0) {
+      wait();
+    }
+  }
+
+  /** Tells the queue that a job retrieved by {@link #getWork()} is completed. */
+  public synchronized void workDone() {
+    pendingWorks--;
+    notifyAll();
+  }
 }